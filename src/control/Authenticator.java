@@ -0,0 +1,292 @@
+package control;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import model.IDAL;
+import model.PasswordHasher;
+import model.UserDTO;
+
+/**
+ * Verifies user credentials against the hashed passwords in the DAO.
+ *
+ * Hashing is deliberately slow, so verifications run on a bounded pool of worker threads with a bounded
+ * queue, and a login is turned away when the queue is full instead of letting hashing take over every core.
+ * Successful verifications are cached for a short time, so repeated logins with the same password only cost
+ * an HMAC. The cache holds an HMAC of the password under a key that only lives in memory, never the password,
+ * and an entry is only used while the stored hash is unchanged, so changing a password invalidates it.
+ *
+ * Passwords still stored in plaintext, or hashed with another cost, are rehashed on the first successful login.
+ * The rehash holds the user's {@link #editLock}, so it can't undo a change made by others holding the same lock.
+ */
+public class Authenticator {
+
+	/**
+	 * Default number of verifications that can wait for a worker
+	 */
+	public static final int DEFAULT_QUEUE_SIZE = 1024;
+	/**
+	 * Default number of milliseconds a successful verification is cached
+	 */
+	public static final long DEFAULT_CACHE_TTL = 5 * 60 * 1000;
+	/**
+	 * Default number of users whose verification is cached
+	 */
+	public static final int DEFAULT_CACHE_SIZE = 10000;
+
+	private static final String MAC_ALGORITHM = "HmacSHA256";
+	private static final int EDIT_LOCKS = 64;
+
+	private final IDAL dao;
+	private final PasswordHasher hasher;
+	private final ThreadPoolExecutor workers;
+	private final CredentialCache cache;
+	private final ThreadLocal<Mac> mac;
+	private final Object[] editLocks = new Object[EDIT_LOCKS];
+
+	/**
+	 * Creates an authenticator with the default cost, one worker per processor and the default cache
+	 * @param dao DAO the users are looked up in
+	 */
+	public Authenticator(IDAL dao) {
+		this(dao, new PasswordHasher(), Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_SIZE,
+				DEFAULT_CACHE_TTL, DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * @param dao DAO the users are looked up in
+	 * @param hasher hasher for verifying and creating password hashes
+	 * @param workers number of threads that verify passwords
+	 * @param queueSize number of verifications that can wait for a worker
+	 * @param cacheTtl milliseconds a successful verification is cached, 0 to disable the cache
+	 * @param cacheSize number of users whose verification is cached, the least recently used is evicted first
+	 */
+	public Authenticator(IDAL dao, PasswordHasher hasher, int workers, int queueSize, long cacheTtl, int cacheSize) {
+		this.dao = dao;
+		this.hasher = hasher;
+		AtomicInteger threads = new AtomicInteger();
+		this.workers = new ThreadPoolExecutor(workers, workers, 30, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(queueSize), runnable -> {
+					Thread thread = new Thread(runnable, "Authenticator worker " + threads.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		this.workers.allowCoreThreadTimeOut(true);
+		this.cache = new CredentialCache(TimeUnit.MILLISECONDS.toNanos(cacheTtl), cacheSize);
+
+		byte[] key = new byte[32];
+		new SecureRandom().nextBytes(key);
+		SecretKeySpec secret = new SecretKeySpec(key, MAC_ALGORITHM);
+		this.mac = ThreadLocal.withInitial(() -> {
+			try {
+				Mac mac = Mac.getInstance(MAC_ALGORITHM);
+				mac.init(secret);
+				return mac;
+			} catch (GeneralSecurityException e) {
+				throw new IllegalStateException(MAC_ALGORITHM + " isn't available", e);
+			}
+		});
+		for (int i = 0; i < EDIT_LOCKS; i++) {
+			editLocks[i] = new Object();
+		}
+	}
+
+	/**
+	 * Checks a user's password. A cached verification is checked on the calling thread,
+	 * otherwise the password is verified on a worker and the call waits for the result.
+	 * @param userId ID of the user
+	 * @param password the password to check
+	 * @return true if the user exists and the password matches
+	 * @throws IDAL.DALException if too many verifications are waiting, or the wait was interrupted
+	 */
+	public boolean authenticate(int userId, String password) throws IDAL.DALException {
+		UserDTO user = dao.getUser(userId);
+		if (user == null || user.getPassword() == null || password == null) {
+			return false;
+		}
+		String stored = user.getPassword();
+		byte[] digest = digest(userId, password);
+		if (cache.contains(userId, stored, digest)) {
+			return true;
+		}
+		Future<Boolean> result;
+		try {
+			result = workers.submit(() -> verify(userId, stored, password, digest));
+		} catch (RejectedExecutionException e) {
+			throw new IDAL.DALException("Too many logins in progress, try again later", e);
+		}
+		try {
+			return result.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IDAL.DALException("Login was interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IDAL.DALException("Login failed", e.getCause());
+		}
+	}
+
+	/**
+	 * Hashes a password to be stored
+	 * @param password the password in plaintext
+	 * @return the hash
+	 */
+	public String hash(String password) {
+		return hasher.hash(password);
+	}
+
+	/**
+	 * @return the hasher for verifying and creating password hashes
+	 */
+	public PasswordHasher getHasher() {
+		return hasher;
+	}
+
+	/**
+	 * Lock held while a user's password is rehashed. Others that read a user and write it back changed
+	 * should hold it too, so the rehash and their change don't undo each other.
+	 * @param userId ID of the user
+	 * @return the lock of the user, shared with some other users
+	 */
+	public Object editLock(int userId) {
+		return editLocks[Math.floorMod(userId, EDIT_LOCKS)];
+	}
+
+	/**
+	 * Forgets the cached verification of a user
+	 * @param userId ID of the user
+	 */
+	public void invalidate(int userId) {
+		cache.remove(userId);
+	}
+
+	/**
+	 * @return number of users with a cached verification, including expired ones not yet evicted
+	 */
+	public int getCachedCount() {
+		return cache.size();
+	}
+
+	/**
+	 * Stops the workers. Verifications already submitted are finished.
+	 */
+	public void close() {
+		workers.shutdown();
+	}
+
+	private boolean verify(int userId, String stored, String password, byte[] digest) {
+		if (!hasher.verify(password, stored)) {
+			return false;
+		}
+		if (hasher.needsRehash(stored)) {
+			try {
+				stored = rehash(userId, stored, password);
+			} catch (IDAL.DALException e) {
+				// the login is still valid, and the password is rehashed at a later login
+			}
+		}
+		cache.put(userId, stored, digest);
+		return true;
+	}
+
+	/**
+	 * Replaces a plaintext password or a hash of another cost with a new hash
+	 * @return the password now stored
+	 */
+	private String rehash(int userId, String stored, String password) throws IDAL.DALException {
+		String hash = hasher.hash(password);
+		// the user is read again under the edit lock, so other changes made since the login started
+		// aren't undone, and the password is left alone if it was changed meanwhile
+		synchronized (editLock(userId)) {
+			UserDTO current = dao.getUser(userId);
+			if (current == null || !stored.equals(current.getPassword())) {
+				return stored;
+			}
+			UserDTO user = new UserDTO(current);
+			user.setPassword(hash);
+			dao.updateUser(user);
+		}
+		return hash;
+	}
+
+	private byte[] digest(int userId, String password) {
+		Mac mac = this.mac.get();
+		mac.update((byte) (userId >>> 24));
+		mac.update((byte) (userId >>> 16));
+		mac.update((byte) (userId >>> 8));
+		mac.update((byte) userId);
+		return mac.doFinal(password.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Least recently used cache of successful verifications, with entries that expire after a fixed time
+	 */
+	private static class CredentialCache {
+
+		private static class Credential {
+			final String stored;
+			final byte[] digest;
+			final long expires;
+
+			Credential(String stored, byte[] digest, long expires) {
+				this.stored = stored;
+				this.digest = digest;
+				this.expires = expires;
+			}
+		}
+
+		private final long ttl;
+		private final LinkedHashMap<Integer, Credential> entries;
+
+		CredentialCache(long ttl, int maxSize) {
+			this.ttl = ttl;
+			this.entries = new LinkedHashMap<Integer, Credential>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Integer, Credential> eldest) {
+					return size() > maxSize;
+				}
+			};
+		}
+
+		synchronized boolean contains(int userId, String stored, byte[] digest) {
+			Credential credential = entries.get(userId);
+			if (credential == null) {
+				return false;
+			}
+			if (System.nanoTime() - credential.expires >= 0) {
+				entries.remove(userId);
+				return false;
+			}
+			return credential.stored.equals(stored) && MessageDigest.isEqual(credential.digest, digest);
+		}
+
+		synchronized void put(int userId, String stored, byte[] digest) {
+			if (ttl > 0) {
+				entries.put(userId, new Credential(stored, digest, System.nanoTime() + ttl));
+			}
+		}
+
+		synchronized void remove(int userId) {
+			entries.remove(userId);
+		}
+
+		synchronized int size() {
+			return entries.size();
+		}
+	}
+}
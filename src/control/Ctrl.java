@@ -1,20 +1,57 @@
 package control;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.stream.Stream;
 
+import model.ChangeCapturingUserDAO;
+import model.ChangeLog;
 import model.IDAL;
+import model.IdAllocator;
+import model.IndexedUserDAO;
 import model.UserDTO;
+import model.Validation;
+import model.metrics.MetricsRegistry;
 
 /**
  * This controller class handles communication with the data-layer.
- * It also has methods for generating and verifying passwords
+ * It also hashes passwords before they are stored and verifies logins.
+ * It can be shared by front-ends serving several clients at once, as edits of the same user are serialized.
+ * Every change of a user is published as an event that other systems can subscribe to.
  */
 public class Ctrl {
-	private IDAL dao;
+	private IndexedUserDAO dao;
+	private Authenticator authenticator;
+	private final ChangeLog changes;
+	private final IdAllocator ids;
 
+	/**
+	 * @param dao the data-layer, which is wrapped in indexes for the find methods
+	 */
 	public Ctrl(IDAL dao){
-		this.dao = dao;
+		this(dao, null, null);
+	}
+
+	/**
+	 * @param dao the data-layer, which is wrapped in indexes for the find methods
+	 * @param authenticator authenticator that verifies logins against the same DAO, or null to create one
+	 */
+	public Ctrl(IDAL dao, Authenticator authenticator){
+		this(dao, authenticator, null);
+	}
+
+	/**
+	 * @param dao the data-layer, which is wrapped in indexes for the find methods
+	 * @param authenticator authenticator that verifies logins against the same DAO, or null to create one
+	 * @param ids allocator of the IDs of users created without an ID, or null for one over the valid IDs kept in memory
+	 */
+	public Ctrl(IDAL dao, Authenticator authenticator, IdAllocator ids){
+		this.ids = ids != null ? ids : new IdAllocator(Validation.MIN_ID, Validation.MAX_ID);
+		this.changes = new ChangeLog();
+		this.dao = new IndexedUserDAO(new ChangeCapturingUserDAO(dao, changes));
+		this.authenticator = authenticator != null ? authenticator : new Authenticator(this.dao);
 	}
 
 	/**
@@ -34,6 +71,70 @@ public class Ctrl {
 		return dao.getUserList();
 	}
 
+	/**
+	 * Gets a page of users from DAO, in the same order as the full list
+	 * @param offset number of users to skip
+	 * @param limit maximum number of users in the page
+	 * @return array list of user objects
+	 */
+	public ArrayList<UserDTO> getUserPage(int offset, int limit) throws IDAL.DALException {
+		return dao.getUserPage(offset, limit);
+	}
+
+	/**
+	 * Streams all users from DAO, fetching a page at a time as the stream is consumed
+	 * @param pageSize number of users fetched at a time
+	 * @return lazy stream of user objects
+	 */
+	public Stream<UserDTO> streamUsers(int pageSize) {
+		return dao.streamUsers(pageSize);
+	}
+
+	/**
+	 * Finds users with a role
+	 * @param role the role, in any case
+	 * @return the users with the role, ordered by ID
+	 */
+	public ArrayList<UserDTO> findByRole(String role) {
+		return dao.findByRole(role);
+	}
+
+	/**
+	 * Finds users with a CPR number
+	 * @param cpr the CPR number
+	 * @return the users with the CPR number, ordered by ID
+	 */
+	public ArrayList<UserDTO> findByCpr(String cpr) {
+		return dao.findByCpr(cpr);
+	}
+
+	/**
+	 * Finds users with a set of initials
+	 * @param ini the initials, in any case
+	 * @return the users with the initials, ordered by ID
+	 */
+	public ArrayList<UserDTO> findByIni(String ini) {
+		return dao.findByIni(ini);
+	}
+
+	/**
+	 * Finds users whose user name starts with a prefix, a whole user name included
+	 * @param prefix start of the user name, in any case
+	 * @return the users, ordered by user name and then ID
+	 */
+	public ArrayList<UserDTO> findByUserName(String prefix) {
+		return dao.findByUserNamePrefix(prefix);
+	}
+
+	/**
+	 * Checks if a CPR number is used by any user
+	 * @param cpr the CPR number
+	 * @return true if a user has the CPR number
+	 */
+	public boolean isCprTaken(String cpr) {
+		return dao.isCprTaken(cpr);
+	}
+
 	/**
 	 * Checks if any users exist
 	 * @return true if user list is empty, false if not.
@@ -43,13 +144,59 @@ public class Ctrl {
 	}
 
 	/**
-	 * Creates new user
+	 * Creates new user. Without an ID the user gets a free one from the ID allocator, which is put in the hashmap.
 	 * @param hashMap user-details organized in a hashmap
-	 * @throws IDAL.DALException exception from data-layer
+	 * @throws IDAL.DALException exception from data-layer, or if no ID is free
 	 * @throws UserDTO.DTOException exception from userobject interactions
 	 */
 	public void createUser(HashMap<String, Object> hashMap) throws UserDTO.DTOException, IDAL.DALException {
-		this.dao.createUser(new UserDTO(hashMap));
+		boolean allocated = !hashMap.containsKey("ID");
+		if (allocated) {
+			int userId = ids.allocate();
+			// users created without the allocator, e.g. by an import, keep their IDs marked as used
+			while (dao.userExists(userId)) {
+				userId = ids.allocate();
+			}
+			hashMap.put("ID", userId);
+		}
+		int userId = (int) hashMap.get("ID");
+		try {
+			UserDTO user = new UserDTO(hashMap);
+			user.setPassword(authenticator.hash(user.getPassword()));
+			this.dao.createUser(user);
+		} catch (UserDTO.DTOException | IDAL.DALException e) {
+			if (allocated) {
+				ids.release(userId);
+				hashMap.remove("ID");
+			}
+			throw e;
+		}
+		if (!allocated) {
+			ids.reserve(userId);
+		}
+	}
+
+	/**
+	 * Checks a user's password
+	 * @param userId ID of the user
+	 * @param password the password in plaintext
+	 * @return true if the user exists and the password matches
+	 * @throws IDAL.DALException if the login couldn't be checked, e.g. when too many logins are in progress
+	 */
+	public boolean authenticate(int userId, String password) throws IDAL.DALException {
+		return authenticator.authenticate(userId, password);
+	}
+
+	/**
+	 * Imports users from a CSV or JSON file, see {@link UserImporter} for the formats.
+	 * Valid users are created in one batch and users without a password get a generated one.
+	 * @param path path of the file
+	 * @return number of imported users, errors for rejected records and the generated passwords
+	 * @throws IOException if the file can't be read
+	 * @throws IDAL.DALException exception from data-layer, in which case no users are created
+	 */
+	public UserImporter.ImportResult importUsers(String path) throws IOException, IDAL.DALException {
+		return new UserImporter(this.dao, authenticator.getHasher()).importFile(Paths.get(path));
 	}
 
 	/**
@@ -59,16 +206,32 @@ public class Ctrl {
 	 */
 	public void deleteUser(HashMap<String, Object> hashMap) throws IDAL.DALException {
 		this.dao.deleteUser((int) hashMap.get("ID"));
+		ids.release((int) hashMap.get("ID"));
+		authenticator.invalidate((int) hashMap.get("ID"));
 	}
 
 	/**
 	 * Edits a user. Takes ID for user being edited and a hashmap for which key to update.
+	 * The changes are made on a copy, so the stored user is never changed while others might be reading it,
+	 * and edits of the same user are made one at a time, so concurrent edits of different fields are all kept.
+	 * Edits hold the authenticator's edit lock, so rehashing a password at a login doesn't undo them.
 	 * @param hashMap user-details organized in a hashmap
 	 * @throws IDAL.DALException exception raised at data-layer
 	 */
-	@SuppressWarnings("unchecked")
 	public void editUser(HashMap<String, Object> hashMap) throws IDAL.DALException {
-		UserDTO user = this.dao.getUser((int) hashMap.get("ID"));
+		int userId = (int) hashMap.get("ID");
+		synchronized (authenticator.editLock(userId)) {
+			edit(hashMap);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void edit(HashMap<String, Object> hashMap) throws IDAL.DALException {
+		UserDTO stored = this.dao.getUser((int) hashMap.get("ID"));
+		if(stored == null){
+			throw new IDAL.DALException("User with ID " + hashMap.get("ID") + " doesn't exist");
+		}
+		UserDTO user = new UserDTO(stored);
 		if(hashMap.containsKey("userName")){
 			user.setUserName(hashMap.get("userName").toString());
 		}
@@ -79,12 +242,13 @@ public class Ctrl {
 			user.setCpr(hashMap.get("cpr").toString());
 		}
 		if(hashMap.containsKey("password")) {
-			user.setPassword(hashMap.get("password").toString());
+			user.setPassword(authenticator.hash(hashMap.get("password").toString()));
 		}
 		if(hashMap.containsKey("roles")){
 			user.setRoles((ArrayList<String>) hashMap.get("roles"));
 		}
 		this.dao.updateUser(user);
+		authenticator.invalidate(user.getUserID());
 	}
 
 	/**
@@ -96,6 +260,32 @@ public class Ctrl {
 		return this.dao.userExists((int) hashMap.get("ID"));
 	}
 
+	/**
+	 * Subscribes to the changes of users from the given sequence number on, so a subscriber can resume
+	 * where it stopped. Subscribers poll at their own pace and never hold up changes, see {@link ChangeLog}.
+	 * @param fromSequence sequence number of the first change to read
+	 * @return subscription to poll the changes with
+	 */
+	public ChangeLog.Subscription subscribe(long fromSequence){
+		return changes.subscribe(fromSequence);
+	}
+
+	/**
+	 * Subscribes to the changes of users from now on
+	 * @return subscription to poll the changes with
+	 */
+	public ChangeLog.Subscription subscribe(){
+		return changes.subscribe();
+	}
+
+	/**
+	 * Gets the operation counts and latencies recorded by the instrumented layers, see {@link MetricsRegistry}
+	 * @return a report per layer, empty if no layer is instrumented
+	 */
+	public String getStatistics(){
+		return MetricsRegistry.report();
+	}
+
 	/**
 	 * Initializes datapersistence/DAO.
 	 * @throws IDAL.DALException exception from data-layer
@@ -103,4 +293,18 @@ public class Ctrl {
 	public void initStorage() throws IDAL.DALException {
 		this.dao.init();
 	}
+
+	/**
+	 * Writes pending changes and closes datapersistence/DAO, saves the state of the ID allocator and stops verifying logins.
+	 * @throws IDAL.DALException exception from data-layer, or if the ID allocator couldn't be saved
+	 */
+	public void closeStorage() throws IDAL.DALException {
+		authenticator.close();
+		this.dao.close();
+		try {
+			ids.save();
+		} catch (IOException e) {
+			throw new IDAL.DALException("IOException", e);
+		}
+	}
 }
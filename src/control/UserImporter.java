@@ -0,0 +1,305 @@
+package control;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import model.IDAL;
+import model.PasswordGenerator;
+import model.PasswordHasher;
+import model.UserDTO;
+import model.Validation;
+
+/**
+ * Imports many users from a CSV or JSON file in one batch.
+ * The file is read as a stream, records are validated and given passwords in parallel on a fork-join pool,
+ * and all valid users are created with a single {@link IDAL#createUsers} call, so they are persisted together.
+ *
+ * CSV files have one user per line as ID,userName,ini,cpr,roles[,password] where roles are separated by ;
+ * and a first line starting with ID is taken as a header. JSON files hold an array of users, or an object
+ * with a users array as written by JSONStorage, with the keys ID or userID, userName, ini, cpr, roles and
+ * optionally password. Users without a password get a generated one.
+ * Passwords are hashed before the users are created, which is the bulk of the work for large files.
+ */
+public class UserImporter {
+
+	private final IDAL dao;
+	private final PasswordHasher hasher;
+	private final PasswordGenerator passwordGenerator = new PasswordGenerator();
+	private final int minId;
+	private final int maxId;
+	private final int parallelism;
+
+	/**
+	 * Result of an import
+	 */
+	public static class ImportResult {
+		private final int imported;
+		private final List<String> errors;
+		private final Map<Integer, String> generatedPasswords;
+
+		ImportResult(int imported, List<String> errors, Map<Integer, String> generatedPasswords) {
+			this.imported = imported;
+			this.errors = errors;
+			this.generatedPasswords = generatedPasswords;
+		}
+
+		/**
+		 * @return number of users created
+		 */
+		public int getImported() {
+			return imported;
+		}
+
+		/**
+		 * @return one message per rejected record, naming its line or position in the file
+		 */
+		public List<String> getErrors() {
+			return errors;
+		}
+
+		/**
+		 * @return the generated passwords of the created users, by user ID
+		 */
+		public Map<Integer, String> getGeneratedPasswords() {
+			return generatedPasswords;
+		}
+	}
+
+	/**
+	 * Creates an importer for the ID range accepted by {@link Validation#isValidID}
+	 * @param dao DAO the users are created in
+	 * @param hasher hasher for the stored passwords
+	 */
+	public UserImporter(IDAL dao, PasswordHasher hasher) {
+		this(dao, hasher, Validation.MIN_ID, Validation.MAX_ID, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param dao DAO the users are created in
+	 * @param hasher hasher for the stored passwords
+	 * @param minId lowest ID an imported user can have
+	 * @param maxId highest ID an imported user can have
+	 * @param parallelism number of threads used to validate, generate and hash passwords
+	 */
+	public UserImporter(IDAL dao, PasswordHasher hasher, int minId, int maxId, int parallelism) {
+		this.dao = dao;
+		this.hasher = hasher;
+		this.minId = minId;
+		this.maxId = maxId;
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Imports users from a file, as JSON if the name ends with .json and as CSV otherwise
+	 * @param file the file to import
+	 * @return number of imported users and errors for the records that weren't imported
+	 * @throws IOException if the file can't be read or parsed
+	 * @throws IDAL.DALException if the users couldn't be created, in which case none are
+	 */
+	public ImportResult importFile(Path file) throws IOException, IDAL.DALException {
+		List<HashMap<String, Object>> records = new ArrayList<>();
+		List<String> positions = new ArrayList<>();
+		if (file.getFileName().toString().toLowerCase().endsWith(".json")) {
+			readJson(file, records, positions);
+		} else {
+			readCsv(file, records, positions);
+		}
+		return importRecords(records, positions);
+	}
+
+	/**
+	 * Generates missing passwords and validates the records in parallel, and creates the valid users in one batch
+	 */
+	private ImportResult importRecords(List<HashMap<String, Object>> records, List<String> positions) throws IDAL.DALException {
+		boolean[] generated = new boolean[records.size()];
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			List<List<String>> validation = run(pool, () -> {
+				int missing = 0;
+				for (int i = 0; i < records.size(); i++) {
+					if (!records.get(i).containsKey("password")) {
+						generated[i] = true;
+						missing++;
+					}
+				}
+				Iterator<String> passwords = passwordGenerator.generate(missing).iterator();
+				for (int i = 0; i < records.size(); i++) {
+					if (generated[i]) {
+						records.get(i).put("password", passwords.next());
+					}
+				}
+				return Validation.validateAll(records, minId, maxId);
+			});
+			return createUsers(pool, records, positions, validation, generated);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Checks the valid records for repeated and taken IDs, hashes the passwords in parallel and creates the users
+	 */
+	private ImportResult createUsers(ForkJoinPool pool, List<HashMap<String, Object>> records, List<String> positions,
+			List<List<String>> validation, boolean[] generated) throws IDAL.DALException {
+
+		List<String> errors = new ArrayList<>();
+		List<UserDTO> users = new ArrayList<>();
+		Map<Integer, String> passwords = new LinkedHashMap<>();
+		HashMap<Integer, String> seen = new HashMap<>();
+		for (int i = 0; i < records.size(); i++) {
+			if (!validation.get(i).isEmpty()) {
+				errors.add(positions.get(i) + ": " + String.join(", ", validation.get(i)));
+				continue;
+			}
+			HashMap<String, Object> record = records.get(i);
+			int id = Integer.parseInt(record.get("ID").toString());
+			record.put("ID", id);
+			if (seen.containsKey(id)) {
+				errors.add(positions.get(i) + ": ID " + id + " is already used by " + seen.get(id));
+			} else if (dao.userExists(id)) {
+				errors.add(positions.get(i) + ": ID " + id + " is taken");
+			} else {
+				try {
+					users.add(new UserDTO(record));
+					seen.put(id, positions.get(i));
+					if (generated[i]) {
+						passwords.put(id, record.get("password").toString());
+					}
+				} catch (UserDTO.DTOException e) {
+					errors.add(positions.get(i) + ": " + e.getMessage());
+				}
+			}
+		}
+		if (!users.isEmpty()) {
+			run(pool, () -> {
+				users.parallelStream().forEach(user -> user.setPassword(hasher.hash(user.getPassword())));
+				return null;
+			});
+			dao.createUsers(users);
+		}
+		return new ImportResult(users.size(), errors, passwords);
+	}
+
+	private static <T> T run(ForkJoinPool pool, Callable<T> task) throws IDAL.DALException {
+		try {
+			return pool.submit(task).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IDAL.DALException("Import was interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IDAL.DALException("Import failed", e.getCause());
+		}
+	}
+
+	private static void readCsv(Path file, List<HashMap<String, Object>> records, List<String> positions) throws IOException {
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			String line;
+			int lineNumber = 0;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#") || (lineNumber == 1 && line.startsWith("ID"))) {
+					continue;
+				}
+				String[] columns = line.split(",", -1);
+				HashMap<String, Object> record = new HashMap<>();
+				String[] keys = {"ID", "userName", "ini", "cpr", "roles", "password"};
+				for (int i = 0; i < columns.length && i < keys.length; i++) {
+					String value = columns[i].trim();
+					if (value.isEmpty()) {
+						continue;
+					}
+					if (keys[i].equals("roles")) {
+						record.put("roles", roles(value.split(";")));
+					} else {
+						record.put(keys[i], value);
+					}
+				}
+				records.add(record);
+				positions.add("line " + lineNumber);
+			}
+		}
+	}
+
+	private static void readJson(Path file, List<HashMap<String, Object>> records, List<String> positions) throws IOException {
+		try (JsonReader reader = new JsonReader(Files.newBufferedReader(file, StandardCharsets.UTF_8))) {
+			if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+				reader.beginObject();
+				while (reader.hasNext()) {
+					if (reader.nextName().equals("users")) {
+						readJsonArray(reader, records, positions);
+					} else {
+						reader.skipValue();
+					}
+				}
+				reader.endObject();
+			} else {
+				readJsonArray(reader, records, positions);
+			}
+		} catch (JsonParseException | IllegalStateException e) {
+			throw new IOException("Invalid JSON in " + file, e);
+		}
+	}
+
+	private static void readJsonArray(JsonReader reader, List<HashMap<String, Object>> records, List<String> positions) throws IOException {
+		reader.beginArray();
+		while (reader.hasNext()) {
+			HashMap<String, Object> record = new HashMap<>();
+			reader.beginObject();
+			while (reader.hasNext()) {
+				String name = reader.nextName();
+				if (reader.peek() == JsonToken.NULL) {
+					reader.nextNull();
+				} else if (name.equals("roles")) {
+					List<String> roles = new ArrayList<>();
+					reader.beginArray();
+					while (reader.hasNext()) {
+						roles.add(reader.nextString());
+					}
+					reader.endArray();
+					record.put("roles", roles(roles.toArray(new String[0])));
+				} else if (name.equals("ID") || name.equals("userID")) {
+					record.put("ID", reader.nextString());
+				} else if (Arrays.asList("userName", "ini", "cpr", "password").contains(name)) {
+					record.put(name, reader.nextString());
+				} else {
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+			records.add(record);
+			positions.add("user " + records.size());
+		}
+		reader.endArray();
+	}
+
+	/**
+	 * @return the roles in lower case, as the TUI stores them
+	 */
+	private static ArrayList<String> roles(String[] values) {
+		ArrayList<String> roles = new ArrayList<>(values.length);
+		for (String value : values) {
+			if (!value.trim().isEmpty()) {
+				roles.add(value.trim().toLowerCase());
+			}
+		}
+		return roles;
+	}
+}
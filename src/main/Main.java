@@ -1,17 +1,104 @@
 package main;
 import control.Ctrl;
 import model.*;
+import model.metrics.Metrics;
+import model.metrics.MetricsRegistry;
+import model.storage.AsyncStorage;
+import model.storage.BinaryFileStorage;
 import model.storage.FileStorage;
 import model.storage.IDataStorage;
+import model.storage.IRandomAccessStorage;
+import model.storage.InstrumentedStorage;
+import model.storage.LazyFileStorage;
+import model.storage.ShardedStorage;
+import model.storage.StorageMigrator;
+import view.HttpUI;
 import view.TUI;
+import view.UI;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
 
 public class Main{
 	
+    /**
+     * Starts the TUI. With the argument lazy, users are loaded on demand from data.lazy,
+     * with tiered only the recently used of them are kept in memory,
+     * with binary they are kept in the compact data.bin, and with sharded they are split over the files in shards.
+     * These files are created from data.txt the first time.
+     * With the argument async, data.txt is written on a background thread, so changes don't wait for the disk.
+     * With http as any argument, users are served over HTTP on localhost instead of the TUI.
+     * IDs of users created without one are allocated from data.ids.
+     * The DAO and storage are instrumented, their statistics are shown by the stats command and published over JMX.
+     */
     public static void main(String[] args){
-        IDataStorage storage = new FileStorage();
-        IDAL dao = new PersistentUserDAO(storage);
-        Ctrl controller = new Ctrl(dao);
-        TUI tui = new TUI(controller);
-        tui.run();
+        Metrics storageMetrics = new Metrics("storage");
+        IDAL dao;
+        if (args.length > 0 && (args[0].equals("lazy") || args[0].equals("tiered"))) {
+            LazyFileStorage lazyStorage = new LazyFileStorage();
+            migrate(lazyStorage, "data.lazy");
+            IRandomAccessStorage storage = InstrumentedStorage.wrap(lazyStorage, storageMetrics, dataFile("data.lazy"));
+            dao = args[0].equals("lazy") ? new LazyUserDAO(storage) : new TieredUserDAO(storage);
+        } else if (args.length > 0 && args[0].equals("binary")) {
+            BinaryFileStorage binaryStorage = new BinaryFileStorage();
+            migrate(binaryStorage, "data.bin");
+            dao = new PersistentUserDAO(InstrumentedStorage.wrap(binaryStorage, storageMetrics, dataFile("data.bin")));
+        } else if (args.length > 0 && args[0].equals("sharded")) {
+            ShardedStorage shardedStorage = new ShardedStorage();
+            migrate(shardedStorage, "shards");
+            dao = new PersistentUserDAO(InstrumentedStorage.wrap(shardedStorage, storageMetrics, null));
+        } else if (args.length > 0 && args[0].equals("async")) {
+            IDataStorage storage = InstrumentedStorage.wrap(new FileStorage(), storageMetrics, dataFile("data.txt"));
+            dao = new PersistentUserDAO(new AsyncStorage(storage));
+        } else {
+            IDataStorage storage = InstrumentedStorage.wrap(new FileStorage(), storageMetrics, dataFile("data.txt"));
+            dao = new PersistentUserDAO(storage);
+        }
+        Metrics daoMetrics = new Metrics("dao");
+        MetricsRegistry.register(daoMetrics);
+        MetricsRegistry.register(storageMetrics);
+        Ctrl controller = new Ctrl(new InstrumentedUserDAO(dao, daoMetrics), null, idAllocator());
+        UI ui = Arrays.asList(args).contains("http") ? new HttpUI(controller) : new TUI(controller);
+        ui.run();
+    }
+
+    /**
+     * Opens the ID allocator saved in data.ids, or starts a new one if it can't be read
+     */
+    private static IdAllocator idAllocator() {
+        String path = dataFile("data.ids").getPath();
+        try {
+            return new IdAllocator(Validation.MIN_ID, Validation.MAX_ID, path);
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.out.println("Free IDs couldn't be read from data.ids, they are found again as users are created.");
+            new File(path).delete();
+            return new IdAllocator(Validation.MIN_ID, Validation.MAX_ID);
+        }
+    }
+
+    private static File dataFile(String fileName) {
+        return new File(System.getProperty("user.dir")+"/src/model/storage/"+fileName);
+    }
+
+    /**
+     * Copies the users of data.txt to another storage if its file doesn't exist yet
+     */
+    private static void migrate(IDataStorage storage, String fileName) {
+        FileStorage fileStorage = new FileStorage();
+        if (dataFile(fileName).exists() || !fileStorage.fileExists()) {
+            return;
+        }
+        try {
+            StorageMigrator.migrate(fileStorage, storage);
+            if (storage instanceof Closeable) {
+                ((Closeable) storage).close();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.out.println("Users couldn't be copied from data.txt.");
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,94 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * DAO decorator that publishes every successful change of the wrapped DAO to a {@link ChangeLog},
+ * so other systems can follow the changes instead of comparing full user lists.
+ * Events of one user are in the order of its changes when the user isn't changed by two threads at once,
+ * which Ctrl ensures for edits.
+ */
+public class ChangeCapturingUserDAO implements IDAL {
+
+	private final IDAL dao;
+	private final ChangeLog changes;
+
+	/**
+	 * @param dao DAO whose changes are captured
+	 * @param changes log the changes are published to
+	 */
+	public ChangeCapturingUserDAO(IDAL dao, ChangeLog changes) {
+		this.dao = dao;
+		this.changes = changes;
+	}
+
+	public ChangeLog getChanges() {
+		return changes;
+	}
+
+	public UserDTO getUser(int userId) {
+		return dao.getUser(userId);
+	}
+
+	public ArrayList<UserDTO> getUserList() throws DALException {
+		return dao.getUserList();
+	}
+
+	public ArrayList<UserDTO> getUserPage(int offset, int limit) throws DALException {
+		return dao.getUserPage(offset, limit);
+	}
+
+	@Override
+	public long getUserPageFrom(long position, int limit, List<UserDTO> page) throws DALException {
+		return dao.getUserPageFrom(position, limit, page);
+	}
+
+	@Override
+	public Stream<UserDTO> streamUsers(int pageSize) {
+		return dao.streamUsers(pageSize);
+	}
+
+	public boolean isUserListEmpty() {
+		return dao.isUserListEmpty();
+	}
+
+	public void createUser(UserDTO user) throws DALException {
+		dao.createUser(user);
+		changes.publish(ChangeEvent.Type.CREATE, user.getUserID(), user);
+	}
+
+	/**
+	 * Creates the users and publishes an event per user once the whole batch is created
+	 */
+	public void createUsers(Collection<UserDTO> users) throws DALException {
+		dao.createUsers(users);
+		for (UserDTO user : users) {
+			changes.publish(ChangeEvent.Type.CREATE, user.getUserID(), user);
+		}
+	}
+
+	public void updateUser(UserDTO user) throws DALException {
+		dao.updateUser(user);
+		changes.publish(ChangeEvent.Type.UPDATE, user.getUserID(), user);
+	}
+
+	public void deleteUser(int userId) throws DALException {
+		dao.deleteUser(userId);
+		changes.publish(ChangeEvent.Type.DELETE, userId, null);
+	}
+
+	public boolean userExists(int userId) {
+		return dao.userExists(userId);
+	}
+
+	public void init() throws DALException {
+		dao.init();
+	}
+
+	public void close() throws DALException {
+		dao.close();
+	}
+}
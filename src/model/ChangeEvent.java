@@ -0,0 +1,61 @@
+package model;
+
+/**
+ * A change of one user, as published to a {@link ChangeLog}. Events are immutable and numbered by the log
+ * in the order they were published. The user is a copy of its state after the change, without the password.
+ */
+public final class ChangeEvent {
+
+	public enum Type {
+		CREATE, UPDATE, DELETE
+	}
+
+	private final long sequence;
+	private final Type type;
+	private final int userId;
+	private final UserDTO user;
+	private final long timestamp;
+
+	ChangeEvent(long sequence, Type type, int userId, UserDTO user, long timestamp) {
+		this.sequence = sequence;
+		this.type = type;
+		this.userId = userId;
+		this.user = user;
+		this.timestamp = timestamp;
+	}
+
+	/**
+	 * @return number of the event, one higher than the event published before it
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public int getUserId() {
+		return userId;
+	}
+
+	/**
+	 * @return a copy of the user after the change without the password, or null for a deletion.
+	 * The copy is shared by every subscriber, so it must not be changed.
+	 */
+	public UserDTO getUser() {
+		return user;
+	}
+
+	/**
+	 * @return time of the change in milliseconds since the epoch
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	@Override
+	public String toString() {
+		return "#" + sequence + " " + type + " " + userId;
+	}
+}
@@ -0,0 +1,183 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free log of the latest user changes. Writers claim a sequence number and put the event
+ * in a ring buffer, overwriting the oldest event, so publishing never waits for a subscriber.
+ * Subscribers read with a {@link Subscription} at their own pace; one that falls more than the capacity
+ * behind gets a {@link LaggedException} instead of the events it missed, and has to read the full user list again.
+ */
+public class ChangeLog {
+
+	/**
+	 * Number of events kept by default
+	 */
+	public static final int DEFAULT_CAPACITY = 16384;
+
+	private final AtomicReferenceArray<ChangeEvent> events;
+	private final int mask;
+	private final AtomicLong nextSequence = new AtomicLong();
+
+	public ChangeLog() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity number of events kept, rounded up to a power of two
+	 */
+	public ChangeLog(int capacity) {
+		if (capacity < 1 || capacity > 1 << 30) {
+			throw new IllegalArgumentException("Capacity must be between 1 and 2^30");
+		}
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity) {
+			size <<= 1;
+		}
+		events = new AtomicReferenceArray<>(size);
+		mask = size - 1;
+	}
+
+	/**
+	 * Publishes a change
+	 * @param user the user after the change, or null for a deletion. A copy without the password is published.
+	 * @return sequence number of the event
+	 */
+	public long publish(ChangeEvent.Type type, int userId, UserDTO user) {
+		UserDTO copy = null;
+		if (user != null) {
+			copy = new UserDTO(user);
+			copy.setPassword(null);
+		}
+		long sequence = nextSequence.getAndIncrement();
+		ChangeEvent event = new ChangeEvent(sequence, type, userId, copy, System.currentTimeMillis());
+		int slot = (int) (sequence & mask);
+		ChangeEvent current;
+		do {
+			current = events.get(slot);
+			// a writer that stalled for a whole lap must not overwrite the newer event in its slot
+			if (current != null && current.getSequence() > sequence) {
+				break;
+			}
+		} while (!events.compareAndSet(slot, current, event));
+		return sequence;
+	}
+
+	/**
+	 * @return sequence number the next event will get
+	 */
+	public long getNextSequence() {
+		return nextSequence.get();
+	}
+
+	/**
+	 * @return number of events kept
+	 */
+	public int getCapacity() {
+		return mask + 1;
+	}
+
+	/**
+	 * Subscribes to the changes from the given sequence number on
+	 * @param fromSequence sequence number of the first event to read, e.g. one after the last event a subscriber handled
+	 */
+	public Subscription subscribe(long fromSequence) {
+		if (fromSequence < 0 || fromSequence > getNextSequence()) {
+			throw new IllegalArgumentException("Sequence " + fromSequence + " hasn't been published");
+		}
+		return new Subscription(fromSequence);
+	}
+
+	/**
+	 * Subscribes to the changes published from now on
+	 */
+	public Subscription subscribe() {
+		return new Subscription(getNextSequence());
+	}
+
+	/**
+	 * Position of a subscriber in the log. A subscription is used by one thread at a time.
+	 */
+	public class Subscription {
+
+		private long nextSequence;
+
+		private Subscription(long nextSequence) {
+			this.nextSequence = nextSequence;
+		}
+
+		/**
+		 * Reads the events published since the last poll, without waiting for new ones
+		 * @param maxEvents maximum number of events to read
+		 * @return the events in sequence order, empty if there are no new events
+		 * @throws LaggedException if events this subscription hasn't read have been overwritten
+		 */
+		public List<ChangeEvent> poll(int maxEvents) throws LaggedException {
+			List<ChangeEvent> polled = new ArrayList<>();
+			while (polled.size() < maxEvents) {
+				ChangeEvent event = events.get((int) (nextSequence & mask));
+				if (event == null || event.getSequence() < nextSequence) {
+					// not published yet, events after it are read by the next poll
+					break;
+				}
+				if (event.getSequence() > nextSequence) {
+					throw new LaggedException(nextSequence, Math.max(0, ChangeLog.this.getNextSequence() - getCapacity()));
+				}
+				polled.add(event);
+				nextSequence++;
+			}
+			return polled;
+		}
+
+		/**
+		 * @return sequence number of the next event this subscription reads, to resume from later
+		 */
+		public long getNextSequence() {
+			return nextSequence;
+		}
+
+		/**
+		 * Moves the subscription, e.g. to {@link ChangeLog#getNextSequence()} after reading the full user list again
+		 */
+		public void seek(long sequence) {
+			if (sequence < 0 || sequence > ChangeLog.this.getNextSequence()) {
+				throw new IllegalArgumentException("Sequence " + sequence + " hasn't been published");
+			}
+			nextSequence = sequence;
+		}
+	}
+
+	/**
+	 * Thrown when a subscriber has fallen so far behind that events it hasn't read have been overwritten
+	 */
+	public static class LaggedException extends Exception {
+
+		private static final long serialVersionUID = -3105432946771519183L;
+
+		private final long missedSequence;
+		private final long oldestSequence;
+
+		public LaggedException(long missedSequence, long oldestSequence) {
+			super("Event " + missedSequence + " has been overwritten, the oldest kept event is " + oldestSequence);
+			this.missedSequence = missedSequence;
+			this.oldestSequence = oldestSequence;
+		}
+
+		/**
+		 * @return sequence number of the first event that was missed
+		 */
+		public long getMissedSequence() {
+			return missedSequence;
+		}
+
+		/**
+		 * @return sequence number of the oldest event still kept when the lag was found
+		 */
+		public long getOldestSequence() {
+			return oldestSequence;
+		}
+	}
+}
@@ -0,0 +1,367 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * In-memory DAO that keeps the users in columns of primitive arrays instead of one object per user,
+ * so millions of users take a fraction of the heap of {@link UserDAO}. A {@link UserDTO} is only made when
+ * a user is read, and is a copy: changing it doesn't change the stored user.
+ *
+ * Every user is a row: its ID, references into string pools for user name, initials and password,
+ * its CPR number packed into a long and its roles packed into an int. The pools keep strings as UTF-8 bytes
+ * in one array; user names and initials are deduplicated, so initials shared by many users are stored once.
+ * Roles that are valid roles are stored as 3-bit codes in the order they were given, up to ten of them;
+ * any other roles are kept as a list for that user. Deleted rows are dropped, and unused strings with them,
+ * when they outnumber the users, so users are listed in the order they were created like in UserDAO.
+ * All methods are thread-safe.
+ */
+public class CompactUserDAO implements IDAL {
+
+	private static final int MIN_CAPACITY = 16;
+	private static final String[] ROLE_TABLE = Validation.ROLES.toArray(new String[0]);
+	private static final int ROLE_BITS = 3;
+	private static final int MAX_ROLES = 30 / ROLE_BITS;
+
+	// roles of a row that has no roles list, roles kept in otherRoles, and a deleted row
+	private static final int ROLES_NULL = -1;
+	private static final int ROLES_OTHER = -2;
+	private static final int DELETED = Integer.MIN_VALUE;
+
+	// CPR numbers that aren't 10 digits are kept in the names pool, as -2 - reference
+	private static final long CPR_NULL = -1;
+
+	private int[] ids;
+	private int[] userNames;
+	private int[] inis;
+	private int[] passwords;
+	private long[] cprs;
+	private int[] roles;
+	private HashMap<Integer, ArrayList<String>> otherRoles = new HashMap<>();
+	private StringPool names = new StringPool(true);
+	private StringPool passwordPool = new StringPool(false);
+	private int end;
+	private int size;
+	private int staleStrings;
+
+	// row of every user
+	private final IntIndex index;
+	private final RowOrder order;
+
+	static {
+		if (ROLE_TABLE.length >= 1 << ROLE_BITS) {
+			throw new IllegalStateException("Too many roles for " + ROLE_BITS + "-bit role codes");
+		}
+	}
+
+	public CompactUserDAO() {
+		this(MIN_CAPACITY);
+	}
+
+	/**
+	 * @param expectedSize number of users the DAO can hold before its arrays have to grow
+	 */
+	public CompactUserDAO(int expectedSize) {
+		int capacity = Math.max(MIN_CAPACITY, expectedSize);
+		ids = new int[capacity];
+		userNames = new int[capacity];
+		inis = new int[capacity];
+		passwords = new int[capacity];
+		cprs = new long[capacity];
+		roles = new int[capacity];
+		index = new IntIndex(capacity);
+		order = new RowOrder(capacity);
+	}
+
+	public synchronized UserDTO getUser(int userId) {
+		int row = index.get(userId);
+		return row < 0 ? null : view(row);
+	}
+
+	public synchronized ArrayList<UserDTO> getUserList() {
+		return getUserPage(0, size);
+	}
+
+	public synchronized ArrayList<UserDTO> getUserPage(int offset, int limit) {
+		DTOList<UserDTO> page = new DTOList<>();
+		if (offset >= size || limit <= 0) {
+			return page;
+		}
+		page.ensureCapacity(Math.min(limit, size - offset));
+		// with no deleted rows the offset is a row
+		int row = end == size ? offset : order.row(offset);
+		for (; row < end && page.size() < limit; row++) {
+			if (roles[row] != DELETED) {
+				page.add(view(row));
+			}
+		}
+		return page;
+	}
+
+	@Override
+	public synchronized long getUserPageFrom(long position, int limit, List<UserDTO> page) {
+		int added = 0;
+		for (int row = order.rowFrom(position, end); row < end; row++) {
+			if (roles[row] != DELETED) {
+				if (added == limit) {
+					return order.position(row);
+				}
+				page.add(view(row));
+				added++;
+			}
+		}
+		return order.nextPosition();
+	}
+
+	public synchronized boolean isUserListEmpty() {
+		return size == 0;
+	}
+
+	public synchronized void createUser(UserDTO user) throws DALException {
+		if (index.get(user.getUserID()) >= 0) {
+			throw new DALException("User couldn't be created, ID " + user.getUserID() + " is taken");
+		}
+		append(user);
+	}
+
+	public synchronized void createUsers(Collection<UserDTO> users) throws DALException {
+		UserStore batch = new UserStore(users.size());
+		for (UserDTO user : users) {
+			if (index.get(user.getUserID()) >= 0 || batch.put(user) != null) {
+				throw new DALException("Users couldn't be created, ID " + user.getUserID() + " is taken");
+			}
+		}
+		for (UserDTO user : users) {
+			append(user);
+		}
+	}
+
+	public synchronized void updateUser(UserDTO user) throws DALException {
+		int row = index.get(user.getUserID());
+		if (row < 0) {
+			throw new DALException("User couldn't be updated, ID " + user.getUserID() + " doesn't exist");
+		}
+		String password = passwordPool.get(passwords[row]);
+		if (password == null ? user.getPassword() != null : !password.equals(user.getPassword())) {
+			// passwords aren't deduplicated, so the old one stays in the pool until it is compacted
+			passwords[row] = passwordPool.add(user.getPassword());
+			staleStrings++;
+		}
+		int userName = userNames[row];
+		int ini = inis[row];
+		long cpr = cprs[row];
+		otherRoles.remove(user.getUserID());
+		fill(row, user);
+		// a replaced name, initials or CPR number may stay in the pool unused until it is compacted
+		if (userNames[row] != userName) {
+			staleStrings++;
+		}
+		if (inis[row] != ini) {
+			staleStrings++;
+		}
+		if (cprs[row] != cpr && cpr < CPR_NULL) {
+			staleStrings++;
+		}
+		compactIfStale();
+	}
+
+	public synchronized void deleteUser(int userId) {
+		int row = index.remove(userId);
+		if (row < 0) {
+			return;
+		}
+		roles[row] = DELETED;
+		order.remove(row);
+		otherRoles.remove(userId);
+		size--;
+		staleStrings++;
+		if (row == end - 1) {
+			end--;
+		}
+		compactIfStale();
+	}
+
+	public synchronized boolean userExists(int userId) {
+		return index.get(userId) >= 0;
+	}
+
+	public void init() {
+
+	}
+
+	public void close() {
+
+	}
+
+	/**
+	 * @return bytes taken by the arrays of the DAO, not counting users with roles that aren't valid roles
+	 */
+	public synchronized long getSizeInBytes() {
+		long rows = ids.length * (4L + 4 + 4 + 4 + 8 + 4);
+		return rows + index.sizeInBytes() + order.sizeInBytes() + names.sizeInBytes() + passwordPool.sizeInBytes();
+	}
+
+	private UserDTO view(int row) {
+		UserDTO user = new UserDTO();
+		user.setUserID(ids[row]);
+		user.setUserName(names.get(userNames[row]));
+		user.setIni(names.get(inis[row]));
+		user.setPassword(passwordPool.get(passwords[row]));
+		long cpr = cprs[row];
+		if (cpr >= 0) {
+			user.setCpr(unpackCpr(cpr));
+		} else if (cpr != CPR_NULL) {
+			user.setCpr(names.get((int) (-2 - cpr)));
+		}
+		int packed = roles[row];
+		if (packed == ROLES_OTHER) {
+			user.setRoles(new ArrayList<>(otherRoles.get(ids[row])));
+		} else if (packed != ROLES_NULL) {
+			ArrayList<String> list = new ArrayList<>();
+			for (; packed != 0; packed >>>= ROLE_BITS) {
+				list.add(ROLE_TABLE[(packed & ((1 << ROLE_BITS) - 1)) - 1]);
+			}
+			user.setRoles(list);
+		}
+		return user;
+	}
+
+	private void append(UserDTO user) {
+		if (end == ids.length) {
+			grow();
+		}
+		int row = end++;
+		ids[row] = user.getUserID();
+		passwords[row] = passwordPool.add(user.getPassword());
+		fill(row, user);
+		index.put(user.getUserID(), row);
+		order.add(row);
+		size++;
+	}
+
+	private void fill(int row, UserDTO user) {
+		userNames[row] = names.add(user.getUserName());
+		inis[row] = names.add(user.getIni());
+		String cpr = user.getCpr();
+		if (cpr == null) {
+			cprs[row] = CPR_NULL;
+		} else if (isPackable(cpr)) {
+			cprs[row] = Long.parseLong(cpr);
+		} else {
+			cprs[row] = -2 - names.add(cpr);
+		}
+		roles[row] = packRoles(user.getRoles());
+		if (roles[row] == ROLES_OTHER) {
+			otherRoles.put(user.getUserID(), new ArrayList<>(user.getRoles()));
+		}
+	}
+
+	private static int packRoles(List<String> list) {
+		if (list == null) {
+			return ROLES_NULL;
+		}
+		if (list.size() > MAX_ROLES) {
+			return ROLES_OTHER;
+		}
+		int packed = 0;
+		for (int i = list.size() - 1; i >= 0; i--) {
+			int code = roleCode(list.get(i));
+			if (code == 0) {
+				return ROLES_OTHER;
+			}
+			packed = packed << ROLE_BITS | code;
+		}
+		return packed;
+	}
+
+	private static int roleCode(String role) {
+		for (int i = 0; i < ROLE_TABLE.length; i++) {
+			if (ROLE_TABLE[i].equals(role)) {
+				return i + 1;
+			}
+		}
+		return 0;
+	}
+
+	private static boolean isPackable(String cpr) {
+		if (cpr.length() != 10) {
+			return false;
+		}
+		for (int i = 0; i < 10; i++) {
+			char c = cpr.charAt(i);
+			if (c < '0' || c > '9') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static String unpackCpr(long value) {
+		char[] cpr = new char[10];
+		for (int i = 9; i >= 0; i--) {
+			cpr[i] = (char) ('0' + value % 10);
+			value /= 10;
+		}
+		return new String(cpr);
+	}
+
+	private void grow() {
+		int capacity = ids.length + (ids.length >> 1);
+		ids = Arrays.copyOf(ids, capacity);
+		userNames = Arrays.copyOf(userNames, capacity);
+		inis = Arrays.copyOf(inis, capacity);
+		passwords = Arrays.copyOf(passwords, capacity);
+		cprs = Arrays.copyOf(cprs, capacity);
+		roles = Arrays.copyOf(roles, capacity);
+		order.resize(capacity);
+	}
+
+	/**
+	 * Drops deleted rows and unused strings once they outnumber the users, keeping the order of the rows
+	 */
+	private void compactIfStale() {
+		if (staleStrings <= Math.max(size, MIN_CAPACITY)) {
+			return;
+		}
+		int[] oldIds = ids;
+		int[] oldUserNames = userNames;
+		int[] oldInis = inis;
+		int[] oldPasswords = passwords;
+		long[] oldCprs = cprs;
+		int[] oldRoles = roles;
+		StringPool oldNames = names;
+		StringPool oldPasswordPool = passwordPool;
+		int oldEnd = end;
+		int capacity = Math.max(MIN_CAPACITY, size + (size >> 1));
+		ids = new int[capacity];
+		userNames = new int[capacity];
+		inis = new int[capacity];
+		passwords = new int[capacity];
+		cprs = new long[capacity];
+		roles = new int[capacity];
+		names = new StringPool(true);
+		passwordPool = new StringPool(false);
+		end = 0;
+		for (int row = 0; row < oldEnd; row++) {
+			if (oldRoles[row] == DELETED) {
+				continue;
+			}
+			int newRow = end++;
+			ids[newRow] = oldIds[row];
+			userNames[newRow] = names.add(oldNames.get(oldUserNames[row]));
+			inis[newRow] = names.add(oldNames.get(oldInis[row]));
+			passwords[newRow] = passwordPool.add(oldPasswordPool.get(oldPasswords[row]));
+			long cpr = oldCprs[row];
+			cprs[newRow] = cpr >= CPR_NULL ? cpr : -2 - names.add(oldNames.get((int) (-2 - cpr)));
+			roles[newRow] = oldRoles[row];
+			index.put(oldIds[row], newRow);
+			order.move(row, newRow);
+		}
+		order.compacted(end);
+		order.resize(capacity);
+		staleStrings = 0;
+	}
+}
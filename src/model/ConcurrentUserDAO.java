@@ -0,0 +1,226 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Thread-safe in-memory DAO. Users are spread over a number of stripes by ID, and every stripe
+ * has its own store and read/write lock. Any number of threads can read at once, and writes to
+ * users in different stripes don't block each other.
+ *
+ * Stored users are shared with callers, so they should be treated as read-only.
+ * Changes are made by passing a new or copied user to {@link #updateUser}.
+ */
+public class ConcurrentUserDAO implements IDAL {
+
+	// a position holds the stripe in its high bits and the position within the stripe in the rest
+	private static final int STRIPE_SHIFT = 48;
+
+	private final Stripe[] stripes;
+	private final int mask;
+	private final LongAdder size = new LongAdder();
+
+	private static class Stripe {
+		final ReadWriteLock lock = new ReentrantReadWriteLock();
+		final UserStore users = new UserStore();
+	}
+
+	/**
+	 * Creates a DAO with four stripes per available processor
+	 */
+	public ConcurrentUserDAO() {
+		this(4 * Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param concurrency number of writers expected at the same time, rounded up to a power of two
+	 */
+	public ConcurrentUserDAO(int concurrency) {
+		int count = 1;
+		while (count < concurrency) {
+			count <<= 1;
+		}
+		stripes = new Stripe[count];
+		for (int i = 0; i < count; i++) {
+			stripes[i] = new Stripe();
+		}
+		mask = count - 1;
+	}
+
+	private Stripe stripe(int userId) {
+		int h = userId * 0x9E3779B9;
+		return stripes[(h ^ (h >>> 16)) & mask];
+	}
+
+	public UserDTO getUser(int userId) {
+		Stripe stripe = stripe(userId);
+		stripe.lock.readLock().lock();
+		try {
+			return stripe.users.get(userId);
+		} finally {
+			stripe.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Copies the users of every stripe into a new list, stripe by stripe in insertion order.
+	 * Each stripe is copied under its own lock, so concurrent writes to other stripes may or may not be seen.
+	 */
+	public ArrayList<UserDTO> getUserList() throws DALException {
+		DTOList<UserDTO> list = new DTOList<>();
+		list.ensureCapacity(size.intValue());
+		for (Stripe stripe : stripes) {
+			stripe.lock.readLock().lock();
+			try {
+				for (UserDTO user : stripe.users) {
+					list.add(user);
+				}
+			} finally {
+				stripe.lock.readLock().unlock();
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Gets a page in the order of {@link #getUserList()}. Stripes before the offset are skipped by their size.
+	 */
+	public ArrayList<UserDTO> getUserPage(int offset, int limit) throws DALException {
+		DTOList<UserDTO> page = new DTOList<>();
+		for (Stripe stripe : stripes) {
+			if (page.size() >= limit) {
+				break;
+			}
+			stripe.lock.readLock().lock();
+			try {
+				int stripeSize = stripe.users.size();
+				if (offset >= stripeSize) {
+					offset -= stripeSize;
+				} else {
+					stripe.users.page(offset, limit - page.size(), page);
+					offset = 0;
+				}
+			} finally {
+				stripe.lock.readLock().unlock();
+			}
+		}
+		return page;
+	}
+
+	/**
+	 * Gets a page in the order of {@link #getUserList()}, continuing in the stripe and at the position
+	 * the previous page ended.
+	 */
+	@Override
+	public long getUserPageFrom(long position, int limit, List<UserDTO> page) {
+		int added = 0;
+		long inStripe = position & ((1L << STRIPE_SHIFT) - 1);
+		for (int i = (int) (position >>> STRIPE_SHIFT); i < stripes.length; i++) {
+			Stripe stripe = stripes[i];
+			int before = page.size();
+			long next;
+			stripe.lock.readLock().lock();
+			try {
+				next = stripe.users.pageFrom(inStripe, limit - added, page);
+			} finally {
+				stripe.lock.readLock().unlock();
+			}
+			added += page.size() - before;
+			if (added == limit) {
+				return (long) i << STRIPE_SHIFT | next;
+			}
+			inStripe = 0;
+		}
+		return (long) stripes.length << STRIPE_SHIFT;
+	}
+
+	public boolean isUserListEmpty() {
+		return size.sum() == 0;
+	}
+
+	public void createUser(UserDTO user) throws DALException {
+		Stripe stripe = stripe(user.getUserID());
+		stripe.lock.writeLock().lock();
+		try {
+			if (stripe.users.contains(user.getUserID())) {
+				throw new DALException("User couldn't be created, ID " + user.getUserID() + " is taken");
+			}
+			stripe.users.put(user);
+			size.increment();
+		} finally {
+			stripe.lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Creates all users while holding the write lock of every stripe, so the batch is seen all at once
+	 */
+	public void createUsers(Collection<UserDTO> users) throws DALException {
+		for (Stripe stripe : stripes) {
+			stripe.lock.writeLock().lock();
+		}
+		try {
+			UserStore batch = new UserStore(users.size());
+			for (UserDTO user : users) {
+				if (stripe(user.getUserID()).users.contains(user.getUserID()) || batch.put(user) != null) {
+					throw new DALException("Users couldn't be created, ID " + user.getUserID() + " is taken");
+				}
+			}
+			for (UserDTO user : users) {
+				stripe(user.getUserID()).users.put(user);
+			}
+			size.add(users.size());
+		} finally {
+			for (Stripe stripe : stripes) {
+				stripe.lock.writeLock().unlock();
+			}
+		}
+	}
+
+	public void updateUser(UserDTO user) throws DALException {
+		Stripe stripe = stripe(user.getUserID());
+		stripe.lock.writeLock().lock();
+		try {
+			if (!stripe.users.contains(user.getUserID())) {
+				throw new DALException("User couldn't be updated, ID " + user.getUserID() + " doesn't exist");
+			}
+			stripe.users.put(user);
+		} finally {
+			stripe.lock.writeLock().unlock();
+		}
+	}
+
+	public void deleteUser(int userId) throws DALException {
+		Stripe stripe = stripe(userId);
+		stripe.lock.writeLock().lock();
+		try {
+			if (stripe.users.remove(userId) != null) {
+				size.decrement();
+			}
+		} finally {
+			stripe.lock.writeLock().unlock();
+		}
+	}
+
+	public boolean userExists(int userId) {
+		Stripe stripe = stripe(userId);
+		stripe.lock.readLock().lock();
+		try {
+			return stripe.users.contains(userId);
+		} finally {
+			stripe.lock.readLock().unlock();
+		}
+	}
+
+	public void init() throws DALException {
+
+	}
+
+	public void close() throws DALException {
+
+	}
+}
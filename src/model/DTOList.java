@@ -14,8 +14,11 @@ public class DTOList<E> extends ArrayList<E> {
     public String toString(){
         StringBuilder result = new StringBuilder();
         for (int i = 0; i < this.size(); i++){
-            result.append(this.get(i).toString()+ "\n");
+            if (i > 0) {
+                result.append('\n');
+            }
+            result.append(this.get(i));
         }
-        return result.toString().substring(0, result.toString().length()-1);
+        return result.toString();
     }
-}
\ No newline at end of file
+}
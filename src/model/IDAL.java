@@ -1,17 +1,61 @@
 package model;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public interface IDAL {
 
 	UserDTO getUser(int userId);
 
 	ArrayList<UserDTO> getUserList() throws DALException;
+
+	/**
+	 * Gets a page of users in the same order as {@link #getUserList()}
+	 * @param offset number of users to skip
+	 * @param limit maximum number of users in the page
+	 * @return the users of the page, empty when the offset is past the last user
+	 */
+	ArrayList<UserDTO> getUserPage(int offset, int limit) throws DALException;
+
+	/**
+	 * Gets a page of users in the same order as {@link #getUserList()}, starting at a position instead of an offset.
+	 * Positions don't move when users are deleted, so paging by position neither skips nor repeats users
+	 * that exist from the first page to the last. A DAO that doesn't keep positions uses offsets as positions.
+	 * @param position 0 for the first page, or the position returned for the previous page
+	 * @param limit maximum number of users in the page
+	 * @param page list the users of the page are added to
+	 * @return the position of the next page
+	 */
+	default long getUserPageFrom(long position, int limit, List<UserDTO> page) throws DALException {
+		ArrayList<UserDTO> users = getUserPage((int) Math.min(position, Integer.MAX_VALUE), limit);
+		page.addAll(users);
+		return position + users.size();
+	}
+
+	/**
+	 * Streams all users, fetching one page at a time by position as the stream is consumed.
+	 * The consumer pulls users at its own pace, so no more than a page is held at once.
+	 * Users that exist during the whole stream are seen once; other changes made while streaming may or may not be seen.
+	 * @param pageSize number of users fetched at a time
+	 * @return lazy stream of users
+	 */
+	default Stream<UserDTO> streamUsers(int pageSize) {
+		return StreamSupport.stream(new UserPageSpliterator(this, pageSize), false);
+	}
 	
 	boolean isUserListEmpty();
 
 	void createUser(UserDTO user) throws DALException;
 
+	/**
+	 * Creates many users as one batch, persisted together. Either all users are created or none.
+	 * @param users users with IDs that are neither taken nor repeated in the batch
+	 */
+	void createUsers(Collection<UserDTO> users) throws DALException;
+
 	void updateUser(UserDTO user) throws DALException;
 
 	void deleteUser(int userId) throws DALException;
@@ -19,6 +63,8 @@ public interface IDAL {
 	boolean userExists(int userId);
 	
 	void init() throws DALException;
+
+	void close() throws DALException;
     
 	class DALException extends Exception {
   		
@@ -0,0 +1,266 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * Hands out free user IDs from a range, so users don't have to pick an ID and retry until they find a free one.
+ * Used IDs are kept in a bitset. IDs that are released are pushed on a free stack and handed out again first;
+ * after that IDs are handed out upwards from the lowest ID never handed out. A second bitset marks the IDs on the
+ * stack, so an ID that is reserved and released again while it waits there is only pushed once. Allocating and
+ * releasing take constant time, apart from skipping IDs that were reserved while they were free.
+ * All methods are thread-safe.
+ *
+ * An allocator with a file keeps its state there, written by {@link #save()}: [int magic][int min ID][int max ID]
+ * [long next ID][int words][long used bits...][int free IDs][int free ID...].
+ */
+public class IdAllocator {
+
+	private static final int MAGIC = 0x49444131;
+
+	private final int minId;
+	private final int maxId;
+	private final String path;
+
+	// bit i is set when minId + i is used, indexes are longs so the range can span every int
+	private long[] used = new long[1];
+	private int usedCount;
+	private int[] free = new int[16];
+	private int freeCount;
+	// bit i is set when minId + i is on the free stack
+	private long[] queued = new long[1];
+	// lowest ID that hasn't been handed out from the top, a long so maxId can be Integer.MAX_VALUE
+	private long next;
+
+	/**
+	 * Creates an allocator that only keeps its state in memory
+	 * @param minId lowest ID to hand out
+	 * @param maxId highest ID to hand out
+	 */
+	public IdAllocator(int minId, int maxId) {
+		if (minId > maxId) {
+			throw new IllegalArgumentException("Lowest ID " + minId + " is above highest ID " + maxId);
+		}
+		this.minId = minId;
+		this.maxId = maxId;
+		this.path = null;
+		this.next = minId;
+	}
+
+	/**
+	 * Creates an allocator that keeps its state in a file, reading the state saved there if the file exists
+	 * @param path file of the state
+	 * @throws IOException if the file can't be read or was saved with another range
+	 */
+	public IdAllocator(int minId, int maxId, String path) throws IOException {
+		if (minId > maxId) {
+			throw new IllegalArgumentException("Lowest ID " + minId + " is above highest ID " + maxId);
+		}
+		this.minId = minId;
+		this.maxId = maxId;
+		this.path = path;
+		this.next = minId;
+		if (new File(path).exists()) {
+			load();
+		}
+	}
+
+	public int getMinId() {
+		return minId;
+	}
+
+	public int getMaxId() {
+		return maxId;
+	}
+
+	/**
+	 * @return number of IDs in use
+	 */
+	public synchronized int getUsedCount() {
+		return usedCount;
+	}
+
+	/**
+	 * Hands out a free ID, which is used until it is released
+	 * @return the ID
+	 * @throws IDAL.DALException if every ID in the range is used
+	 */
+	public synchronized int allocate() throws IDAL.DALException {
+		while (freeCount > 0) {
+			int userId = free[--freeCount];
+			queued = setBit(queued, userId, false);
+			if (!isSet(userId)) {
+				set(userId);
+				return userId;
+			}
+		}
+		while (next <= maxId) {
+			int userId = (int) next++;
+			if (!isSet(userId)) {
+				set(userId);
+				return userId;
+			}
+		}
+		throw new IDAL.DALException("No free IDs between " + minId + " and " + maxId);
+	}
+
+	/**
+	 * Marks an ID as used without handing it out, e.g. for a user created with a chosen ID
+	 * @return true if the ID was free, false if it was used already or is outside the range
+	 */
+	public synchronized boolean reserve(int userId) {
+		if (!inRange(userId) || isSet(userId)) {
+			return false;
+		}
+		set(userId);
+		return true;
+	}
+
+	/**
+	 * Frees an ID, so it can be handed out again
+	 * @return true if the ID was used
+	 */
+	public synchronized boolean release(int userId) {
+		if (!inRange(userId) || !isSet(userId)) {
+			return false;
+		}
+		long index = (long) userId - minId;
+		used[(int) (index >>> 6)] &= ~(1L << index);
+		usedCount--;
+		if (userId < next && !getBit(queued, userId)) {
+			push(userId);
+		}
+		return true;
+	}
+
+	/**
+	 * @return true if the ID is handed out or reserved
+	 */
+	public synchronized boolean isUsed(int userId) {
+		return inRange(userId) && isSet(userId);
+	}
+
+	/**
+	 * Writes the state to the allocator's file, replacing the old state at once. Does nothing without a file.
+	 */
+	public synchronized void save() throws IOException {
+		if (path == null) {
+			return;
+		}
+		File tempFile = new File(path + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(minId);
+			out.writeInt(maxId);
+			out.writeLong(next);
+			out.writeInt(used.length);
+			for (long word : used) {
+				out.writeLong(word);
+			}
+			out.writeInt(freeCount);
+			for (int i = 0; i < freeCount; i++) {
+				out.writeInt(free[i]);
+			}
+		}
+		Files.move(tempFile.toPath(), new File(path).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private void load() throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(path)))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Not an ID allocator file");
+			}
+			int savedMin = in.readInt();
+			int savedMax = in.readInt();
+			if (savedMin != minId || savedMax != maxId) {
+				throw new IOException("IDs were allocated between " + savedMin + " and " + savedMax + ", not " + minId + " and " + maxId);
+			}
+			next = in.readLong();
+			int words = in.readInt();
+			if (words < 1 || words > words(maxId)) {
+				throw new IOException("Corrupt ID allocator file");
+			}
+			used = new long[words];
+			for (int i = 0; i < words; i++) {
+				used[i] = in.readLong();
+				usedCount += Long.bitCount(used[i]);
+			}
+			int count = in.readInt();
+			if (count < 0 || count > (long) maxId - minId + 1) {
+				throw new IOException("Corrupt ID allocator file");
+			}
+			free = new int[Math.max(16, count)];
+			for (int i = 0; i < count; i++) {
+				int userId = in.readInt();
+				if (!inRange(userId)) {
+					throw new IOException("Corrupt ID allocator file");
+				}
+				// files saved before IDs were queued once can hold an ID more than once
+				if (!getBit(queued, userId)) {
+					push(userId);
+				}
+			}
+		}
+	}
+
+	private boolean inRange(int userId) {
+		return userId >= minId && userId <= maxId;
+	}
+
+	private int words(int userId) {
+		return (int) (((long) userId - minId) >>> 6) + 1;
+	}
+
+	private boolean isSet(int userId) {
+		return getBit(used, userId);
+	}
+
+	private void push(int userId) {
+		if (freeCount == free.length) {
+			free = Arrays.copyOf(free, freeCount * 2);
+		}
+		free[freeCount++] = userId;
+		queued = setBit(queued, userId, true);
+	}
+
+	private boolean getBit(long[] bits, int userId) {
+		long index = (long) userId - minId;
+		int word = (int) (index >>> 6);
+		return word < bits.length && (bits[word] & (1L << index)) != 0;
+	}
+
+	/**
+	 * @return the bitset with the bit of the ID changed, grown if needed
+	 */
+	private long[] setBit(long[] bits, int userId, boolean value) {
+		long index = (long) userId - minId;
+		int word = (int) (index >>> 6);
+		if (word >= bits.length) {
+			// a bitset grows with the highest ID in it, so a wide range costs nothing until it's used
+			if (!value) {
+				return bits;
+			}
+			bits = Arrays.copyOf(bits, Math.max(word + 1, (int) Math.min(words(maxId), 2L * bits.length)));
+		}
+		if (value) {
+			bits[word] |= 1L << index;
+		} else {
+			bits[word] &= ~(1L << index);
+		}
+		return bits;
+	}
+
+	private void set(int userId) {
+		used = setBit(used, userId, true);
+		usedCount++;
+	}
+}
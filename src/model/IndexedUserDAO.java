@@ -0,0 +1,366 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * DAO that adds secondary indexes to another DAO. Every create, update and delete goes to the wrapped DAO
+ * and then updates the indexes, so users can be looked up by user name, initials, CPR or role in time
+ * proportional to the number of users found.
+ *
+ * User names are indexed in sorted order without regard to case, which also allows prefix searches.
+ * Initials are matched without regard to case, CPR exactly, and roles map to the IDs of all users that have them.
+ * Writes to the same user are serialized by striped locks, while writes to different users run in parallel
+ * if the wrapped DAO allows it. A query made during a write may or may not see it.
+ *
+ * The indexes are built from the wrapped DAO at the first query, so initializing doesn't read every user,
+ * which keeps a lazily loading DAO lazy until the indexes are needed.
+ */
+public class IndexedUserDAO implements IDAL {
+
+	private static final int STRIPES = 64;
+
+	private final IDAL dao;
+
+	private final ConcurrentNavigableMap<String, Set<Integer>> byUserName = new ConcurrentSkipListMap<>();
+	private final ConcurrentMap<String, Set<Integer>> byIni = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Set<Integer>> byCpr = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Set<Integer>> byRole = new ConcurrentHashMap<>();
+
+	// the keys each user is indexed under, so a user can be removed even if the stored object was changed
+	private final ConcurrentMap<Integer, Keys> indexed = new ConcurrentHashMap<>();
+
+	private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+	private volatile boolean built;
+
+	private static class Keys {
+		final String userName;
+		final String ini;
+		final String cpr;
+		final List<String> roles;
+
+		Keys(UserDTO user) {
+			this.userName = user.getUserName() == null ? null : user.getUserName().toLowerCase(Locale.ROOT);
+			this.ini = user.getIni() == null ? null : user.getIni().toUpperCase(Locale.ROOT);
+			this.cpr = user.getCpr();
+			if (user.getRoles() == null) {
+				this.roles = Collections.emptyList();
+			} else {
+				this.roles = new ArrayList<>(user.getRoles().size());
+				for (String role : user.getRoles()) {
+					if (role != null) {
+						this.roles.add(role.toLowerCase(Locale.ROOT));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param dao the DAO the users are stored in
+	 */
+	public IndexedUserDAO(IDAL dao) {
+		this.dao = dao;
+		for (int i = 0; i < STRIPES; i++) {
+			locks[i] = new ReentrantLock();
+		}
+	}
+
+	/**
+	 * Finds users with a role
+	 * @param role the role, in any case
+	 * @return the users with the role, ordered by ID
+	 */
+	public ArrayList<UserDTO> findByRole(String role) {
+		buildIndexes();
+		String key = role.toLowerCase(Locale.ROOT);
+		return find(byRole.get(key), keys -> keys.roles.contains(key));
+	}
+
+	/**
+	 * Finds users with a CPR number
+	 * @param cpr the CPR number
+	 * @return the users with the CPR number, ordered by ID
+	 */
+	public ArrayList<UserDTO> findByCpr(String cpr) {
+		buildIndexes();
+		return find(byCpr.get(cpr), keys -> cpr.equals(keys.cpr));
+	}
+
+	/**
+	 * Finds users with a set of initials
+	 * @param ini the initials, in any case
+	 * @return the users with the initials, ordered by ID
+	 */
+	public ArrayList<UserDTO> findByIni(String ini) {
+		buildIndexes();
+		String key = ini.toUpperCase(Locale.ROOT);
+		return find(byIni.get(key), keys -> key.equals(keys.ini));
+	}
+
+	/**
+	 * Finds users with a user name
+	 * @param userName the user name, in any case
+	 * @return the users with the user name, ordered by ID
+	 */
+	public ArrayList<UserDTO> findByUserName(String userName) {
+		buildIndexes();
+		String key = userName.toLowerCase(Locale.ROOT);
+		return find(byUserName.get(key), keys -> key.equals(keys.userName));
+	}
+
+	/**
+	 * Finds users whose user name starts with a prefix
+	 * @param prefix start of the user name, in any case
+	 * @return the users, ordered by user name and then ID
+	 */
+	public ArrayList<UserDTO> findByUserNamePrefix(String prefix) {
+		buildIndexes();
+		String key = prefix.toLowerCase(Locale.ROOT);
+		ArrayList<UserDTO> users = new ArrayList<>();
+		for (Map.Entry<String, Set<Integer>> entry : byUserName.tailMap(key).entrySet()) {
+			if (!entry.getKey().startsWith(key)) {
+				break;
+			}
+			String userName = entry.getKey();
+			users.addAll(find(entry.getValue(), keys -> userName.equals(keys.userName)));
+		}
+		return users;
+	}
+
+	/**
+	 * @param cpr a CPR number
+	 * @return true if a user has the CPR number
+	 */
+	public boolean isCprTaken(String cpr) {
+		buildIndexes();
+		Set<Integer> ids = byCpr.get(cpr);
+		return ids != null && !ids.isEmpty();
+	}
+
+	public UserDTO getUser(int userId) {
+		return dao.getUser(userId);
+	}
+
+	public ArrayList<UserDTO> getUserList() throws DALException {
+		return dao.getUserList();
+	}
+
+	public ArrayList<UserDTO> getUserPage(int offset, int limit) throws DALException {
+		return dao.getUserPage(offset, limit);
+	}
+
+	@Override
+	public long getUserPageFrom(long position, int limit, List<UserDTO> page) throws DALException {
+		return dao.getUserPageFrom(position, limit, page);
+	}
+
+	@Override
+	public Stream<UserDTO> streamUsers(int pageSize) {
+		return dao.streamUsers(pageSize);
+	}
+
+	public boolean isUserListEmpty() {
+		return dao.isUserListEmpty();
+	}
+
+	public void createUser(UserDTO user) throws DALException {
+		ReentrantLock lock = lock(user.getUserID());
+		lock.lock();
+		try {
+			dao.createUser(user);
+			index(user);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Creates the users in the wrapped DAO as one batch, and indexes them once it succeeded
+	 */
+	public void createUsers(Collection<UserDTO> users) throws DALException {
+		for (ReentrantLock lock : locks) {
+			lock.lock();
+		}
+		try {
+			dao.createUsers(users);
+			for (UserDTO user : users) {
+				index(user);
+			}
+		} finally {
+			for (ReentrantLock lock : locks) {
+				lock.unlock();
+			}
+		}
+	}
+
+	public void updateUser(UserDTO user) throws DALException {
+		ReentrantLock lock = lock(user.getUserID());
+		lock.lock();
+		try {
+			dao.updateUser(user);
+			unindex(user.getUserID());
+			index(user);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void deleteUser(int userId) throws DALException {
+		ReentrantLock lock = lock(userId);
+		lock.lock();
+		try {
+			dao.deleteUser(userId);
+			unindex(userId);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public boolean userExists(int userId) {
+		return dao.userExists(userId);
+	}
+
+	/**
+	 * Initializes the wrapped DAO. The indexes are built again at the next query.
+	 */
+	public void init() throws DALException {
+		for (ReentrantLock lock : locks) {
+			lock.lock();
+		}
+		try {
+			dao.init();
+			built = false;
+		} finally {
+			for (ReentrantLock lock : locks) {
+				lock.unlock();
+			}
+		}
+	}
+
+	public void close() throws DALException {
+		dao.close();
+	}
+
+	private ReentrantLock lock(int userId) {
+		int h = userId * 0x9E3779B9;
+		return locks[(h ^ (h >>> 16)) & (STRIPES - 1)];
+	}
+
+	/**
+	 * Builds the indexes from the users of the wrapped DAO, unless they are built already
+	 */
+	private void buildIndexes() {
+		if (built) {
+			return;
+		}
+		for (ReentrantLock lock : locks) {
+			lock.lock();
+		}
+		try {
+			if (!built) {
+				byUserName.clear();
+				byIni.clear();
+				byCpr.clear();
+				byRole.clear();
+				indexed.clear();
+				built = true;
+				try {
+					for (UserDTO user : dao.getUserList()) {
+						index(user);
+					}
+				} catch (DALException e) {
+					built = false;
+					throw new IllegalStateException("Users couldn't be indexed", e);
+				}
+			}
+		} finally {
+			for (ReentrantLock lock : locks) {
+				lock.unlock();
+			}
+		}
+	}
+
+	private void index(UserDTO user) {
+		if (!built) {
+			return;
+		}
+		Keys keys = new Keys(user);
+		int userId = user.getUserID();
+		indexed.put(userId, keys);
+		add(byUserName, keys.userName, userId);
+		add(byIni, keys.ini, userId);
+		add(byCpr, keys.cpr, userId);
+		for (String role : keys.roles) {
+			add(byRole, role, userId);
+		}
+	}
+
+	private void unindex(int userId) {
+		if (!built) {
+			return;
+		}
+		Keys keys = indexed.remove(userId);
+		if (keys == null) {
+			return;
+		}
+		remove(byUserName, keys.userName, userId);
+		remove(byIni, keys.ini, userId);
+		remove(byCpr, keys.cpr, userId);
+		for (String role : keys.roles) {
+			remove(byRole, role, userId);
+		}
+	}
+
+	private static void add(ConcurrentMap<String, Set<Integer>> index, String key, int userId) {
+		if (key != null) {
+			index.compute(key, (k, ids) -> {
+				Set<Integer> set = ids == null ? ConcurrentHashMap.newKeySet() : ids;
+				set.add(userId);
+				return set;
+			});
+		}
+	}
+
+	private static void remove(ConcurrentMap<String, Set<Integer>> index, String key, int userId) {
+		if (key != null) {
+			index.computeIfPresent(key, (k, ids) -> {
+				ids.remove(userId);
+				return ids.isEmpty() ? null : ids;
+			});
+		}
+	}
+
+	/**
+	 * Looks up the users with the given IDs, skipping users changed or deleted since the IDs were read
+	 */
+	private ArrayList<UserDTO> find(Set<Integer> ids, Predicate<Keys> matches) {
+		if (ids == null) {
+			return new ArrayList<>();
+		}
+		Integer[] sorted = ids.toArray(new Integer[0]);
+		Arrays.sort(sorted);
+		ArrayList<UserDTO> users = new ArrayList<>(sorted.length);
+		for (Integer userId : sorted) {
+			Keys keys = indexed.get(userId);
+			UserDTO user = dao.getUser(userId);
+			if (keys != null && user != null && matches.test(keys)) {
+				users.add(user);
+			}
+		}
+		return users;
+	}
+}
@@ -0,0 +1,220 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import model.metrics.Histogram;
+import model.metrics.Metrics;
+import model.metrics.OperationMetrics;
+
+/**
+ * DAO decorator that records the count, failures and latency of every call to the wrapped DAO,
+ * and the number of users per batch. Recording only updates lock-free counters and allocates nothing,
+ * so the decorator can stay in place in production.
+ */
+public class InstrumentedUserDAO implements IDAL {
+
+	private final IDAL dao;
+	private final Metrics metrics;
+
+	private final OperationMetrics getUser;
+	private final OperationMetrics getUserList;
+	private final OperationMetrics getUserPage;
+	private final OperationMetrics getUserPageFrom;
+	private final OperationMetrics isUserListEmpty;
+	private final OperationMetrics createUser;
+	private final OperationMetrics createUsers;
+	private final OperationMetrics updateUser;
+	private final OperationMetrics deleteUser;
+	private final OperationMetrics userExists;
+	private final OperationMetrics init;
+	private final OperationMetrics close;
+	private final Histogram usersPerBatch;
+	private final LongAdder usersRead;
+
+	/**
+	 * @param dao DAO to instrument
+	 * @param metrics group the metrics are recorded in
+	 */
+	public InstrumentedUserDAO(IDAL dao, Metrics metrics) {
+		this.dao = dao;
+		this.metrics = metrics;
+		getUser = metrics.operation("getUser");
+		getUserList = metrics.operation("getUserList");
+		getUserPage = metrics.operation("getUserPage");
+		getUserPageFrom = metrics.operation("getUserPageFrom");
+		isUserListEmpty = metrics.operation("isUserListEmpty");
+		createUser = metrics.operation("createUser");
+		createUsers = metrics.operation("createUsers");
+		updateUser = metrics.operation("updateUser");
+		deleteUser = metrics.operation("deleteUser");
+		userExists = metrics.operation("userExists");
+		init = metrics.operation("init");
+		close = metrics.operation("close");
+		usersPerBatch = metrics.histogram("usersPerBatch");
+		usersRead = metrics.counter("usersRead");
+	}
+
+	/**
+	 * @return the group the metrics are recorded in
+	 */
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+	public UserDTO getUser(int userId) {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			UserDTO user = dao.getUser(userId);
+			failed = false;
+			return user;
+		} finally {
+			getUser.record(start, failed);
+		}
+	}
+
+	public ArrayList<UserDTO> getUserList() throws DALException {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			ArrayList<UserDTO> users = dao.getUserList();
+			failed = false;
+			usersRead.add(users.size());
+			return users;
+		} finally {
+			getUserList.record(start, failed);
+		}
+	}
+
+	public ArrayList<UserDTO> getUserPage(int offset, int limit) throws DALException {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			ArrayList<UserDTO> users = dao.getUserPage(offset, limit);
+			failed = false;
+			usersRead.add(users.size());
+			return users;
+		} finally {
+			getUserPage.record(start, failed);
+		}
+	}
+
+	@Override
+	public long getUserPageFrom(long position, int limit, List<UserDTO> page) throws DALException {
+		long start = System.nanoTime();
+		boolean failed = true;
+		int before = page.size();
+		try {
+			long next = dao.getUserPageFrom(position, limit, page);
+			failed = false;
+			usersRead.add(page.size() - before);
+			return next;
+		} finally {
+			getUserPageFrom.record(start, failed);
+		}
+	}
+
+	/**
+	 * Streams the users of the wrapped DAO, so a DAO that streams a consistent snapshot still does.
+	 * The stream is lazy, so it isn't timed.
+	 */
+	@Override
+	public Stream<UserDTO> streamUsers(int pageSize) {
+		return dao.streamUsers(pageSize);
+	}
+
+	public boolean isUserListEmpty() {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			boolean empty = dao.isUserListEmpty();
+			failed = false;
+			return empty;
+		} finally {
+			isUserListEmpty.record(start, failed);
+		}
+	}
+
+	public void createUser(UserDTO user) throws DALException {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			dao.createUser(user);
+			failed = false;
+		} finally {
+			createUser.record(start, failed);
+		}
+	}
+
+	public void createUsers(Collection<UserDTO> users) throws DALException {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			dao.createUsers(users);
+			failed = false;
+		} finally {
+			createUsers.record(start, failed);
+		}
+		usersPerBatch.record(users.size());
+	}
+
+	public void updateUser(UserDTO user) throws DALException {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			dao.updateUser(user);
+			failed = false;
+		} finally {
+			updateUser.record(start, failed);
+		}
+	}
+
+	public void deleteUser(int userId) throws DALException {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			dao.deleteUser(userId);
+			failed = false;
+		} finally {
+			deleteUser.record(start, failed);
+		}
+	}
+
+	public boolean userExists(int userId) {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			boolean exists = dao.userExists(userId);
+			failed = false;
+			return exists;
+		} finally {
+			userExists.record(start, failed);
+		}
+	}
+
+	public void init() throws DALException {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			dao.init();
+			failed = false;
+		} finally {
+			init.record(start, failed);
+		}
+	}
+
+	public void close() throws DALException {
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			dao.close();
+			failed = false;
+		} finally {
+			close.record(start, failed);
+		}
+	}
+}
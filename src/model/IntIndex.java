@@ -0,0 +1,149 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash table from an int key to a non-negative int, such as the position of a user in a dense array.
+ * Keys and values are kept in primitive arrays, so get, put and remove run in constant time without boxing,
+ * and removing shifts the following entries of the probe chain back, so no tombstones are needed.
+ * Not thread-safe.
+ */
+public final class IntIndex {
+
+	private static final int MIN_CAPACITY = 16;
+
+	// key and value + 1 per slot, 0 marks a free slot
+	private int[] keys;
+	private int[] values;
+	private int mask;
+	private int size;
+
+	public IntIndex() {
+		this(MIN_CAPACITY);
+	}
+
+	/**
+	 * @param expectedSize number of keys the index can hold before it has to grow
+	 */
+	public IntIndex(int expectedSize) {
+		int capacity = MIN_CAPACITY;
+		while (capacity * 3 < expectedSize * 4) {
+			capacity <<= 1;
+		}
+		keys = new int[capacity];
+		values = new int[capacity];
+		mask = capacity - 1;
+	}
+
+	/**
+	 * @return the value of the key, or -1 if the key isn't in the index
+	 */
+	public int get(int key) {
+		int slot = find(key);
+		return slot < 0 ? -1 : values[slot] - 1;
+	}
+
+	/**
+	 * Sets the value of a key, replacing the value it had
+	 * @param value a value of 0 or more
+	 */
+	public void put(int key, int value) {
+		int slot = find(key);
+		if (slot >= 0) {
+			values[slot] = value + 1;
+			return;
+		}
+		if ((size + 1) * 4 > keys.length * 3) {
+			rehash(keys.length << 1);
+		}
+		insert(key, value + 1);
+		size++;
+	}
+
+	/**
+	 * @return the value the key had, or -1 if the key wasn't in the index
+	 */
+	public int remove(int key) {
+		int slot = find(key);
+		if (slot < 0) {
+			return -1;
+		}
+		int value = values[slot] - 1;
+		deleteSlot(slot);
+		size--;
+		return value;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		Arrays.fill(values, 0);
+		size = 0;
+	}
+
+	/**
+	 * @return bytes taken by the index's arrays
+	 */
+	public long sizeInBytes() {
+		return 8L * keys.length;
+	}
+
+	private static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private int find(int key) {
+		int i = hash(key) & mask;
+		while (values[i] != 0) {
+			if (keys[i] == key) {
+				return i;
+			}
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	private void insert(int key, int storedValue) {
+		int i = hash(key) & mask;
+		while (values[i] != 0) {
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		values[i] = storedValue;
+	}
+
+	/**
+	 * Frees a slot and shifts following entries of the probe chain back, so no tombstones are needed.
+	 */
+	private void deleteSlot(int slot) {
+		int gap = slot;
+		int i = (slot + 1) & mask;
+		while (values[i] != 0) {
+			int home = hash(keys[i]) & mask;
+			// move the entry into the gap if its home slot is not between the gap and its current slot
+			if (((i - home) & mask) >= ((i - gap) & mask)) {
+				keys[gap] = keys[i];
+				values[gap] = values[i];
+				gap = i;
+			}
+			i = (i + 1) & mask;
+		}
+		values[gap] = 0;
+	}
+
+	private void rehash(int capacity) {
+		int[] oldKeys = keys;
+		int[] oldValues = values;
+		keys = new int[capacity];
+		values = new int[capacity];
+		mask = capacity - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldValues[i] != 0) {
+				insert(oldKeys[i], oldValues[i]);
+			}
+		}
+	}
+}
@@ -0,0 +1,196 @@
+package model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import model.storage.IRandomAccessStorage;
+
+/**
+ * DAO that loads users from an {@link IRandomAccessStorage} on demand. Initializing only opens the storage,
+ * which loads its ID index, and a user is decoded the first time it is read through {@link #getUser},
+ * {@link #getUserPage} or {@link #getUserList}. Loaded users are kept in memory after that.
+ * The storage knows which users exist, and every change is written to it right away.
+ */
+public class LazyUserDAO implements IDAL {
+
+	private final IRandomAccessStorage storage;
+	private UserStore loaded = new UserStore();
+
+	/**
+	 * @param storage storage the users are read from and persisted in
+	 */
+	public LazyUserDAO(IRandomAccessStorage storage) {
+		this.storage = storage;
+	}
+
+	public synchronized UserDTO getUser(int userId) {
+		try {
+			return load(userId);
+		} catch (IOException e) {
+			// getUser can't throw, so a user that can't be read is reported like a missing user
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	public synchronized ArrayList<UserDTO> getUserList() throws DALException {
+		return getUserPage(0, Integer.MAX_VALUE);
+	}
+
+	public synchronized ArrayList<UserDTO> getUserPage(int offset, int limit) throws DALException {
+		try {
+			int[] ids = storage.readUserIds(offset, limit);
+			DTOList<UserDTO> page = new DTOList<>();
+			page.ensureCapacity(ids.length);
+			for (int userId : ids) {
+				page.add(load(userId));
+			}
+			return page;
+		} catch (IOException e) {
+			throw new DALException("IOException", e);
+		}
+	}
+
+	@Override
+	public synchronized long getUserPageFrom(long position, int limit, List<UserDTO> page) throws DALException {
+		try {
+			IntStream.Builder ids = IntStream.builder();
+			long next = storage.readUserIdsFrom(position, limit, ids);
+			for (int userId : ids.build().toArray()) {
+				page.add(load(userId));
+			}
+			return next;
+		} catch (IOException e) {
+			throw new DALException("IOException", e);
+		}
+	}
+
+	public synchronized boolean isUserListEmpty() {
+		try {
+			return storage.countUsers() == 0;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return loaded.isEmpty();
+		}
+	}
+
+	public synchronized void createUser(UserDTO user) throws DALException {
+		if (userExists(user.getUserID())) {
+			throw new DALException("User couldn't be created, ID " + user.getUserID() + " is taken");
+		}
+		try {
+			storage.writeUser(user);
+		} catch (IOException e) {
+			throw new DALException("IOException", e);
+		}
+		loaded.put(user);
+	}
+
+	/**
+	 * Creates the users one record at a time. If a record can't be written, the users already written are deleted again.
+	 */
+	public synchronized void createUsers(Collection<UserDTO> users) throws DALException {
+		UserStore batch = new UserStore(users.size());
+		for (UserDTO user : users) {
+			if (userExists(user.getUserID()) || batch.put(user) != null) {
+				throw new DALException("Users couldn't be created, ID " + user.getUserID() + " is taken");
+			}
+		}
+		ArrayList<UserDTO> written = new ArrayList<>(users.size());
+		try {
+			for (UserDTO user : users) {
+				storage.writeUser(user);
+				written.add(user);
+			}
+		} catch (IOException e) {
+			try {
+				for (UserDTO user : written) {
+					storage.deleteUser(user.getUserID());
+				}
+			} catch (IOException rollback) {
+				e.addSuppressed(rollback);
+			}
+			throw new DALException("IOException", e);
+		}
+		for (UserDTO user : users) {
+			loaded.put(user);
+		}
+	}
+
+	public synchronized void updateUser(UserDTO user) throws DALException {
+		if (!userExists(user.getUserID())) {
+			throw new DALException("User couldn't be updated, ID " + user.getUserID() + " doesn't exist");
+		}
+		try {
+			storage.writeUser(user);
+		} catch (IOException e) {
+			throw new DALException("IOException", e);
+		}
+		loaded.put(user);
+	}
+
+	public synchronized void deleteUser(int userId) throws DALException {
+		try {
+			storage.deleteUser(userId);
+		} catch (IOException e) {
+			throw new DALException("IOException", e);
+		}
+		loaded.remove(userId);
+	}
+
+	public synchronized boolean userExists(int userId) {
+		if (loaded.contains(userId)) {
+			return true;
+		}
+		try {
+			return storage.containsUser(userId);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	/**
+	 * Opens the storage and forgets loaded users, without reading any user
+	 */
+	public synchronized void init() throws DALException {
+		loaded = new UserStore();
+		try {
+			storage.countUsers();
+		} catch (IOException e) {
+			throw new DALException("IOException", e);
+		}
+	}
+
+	public synchronized void close() throws DALException {
+		if (storage instanceof Closeable) {
+			try {
+				((Closeable) storage).close();
+			} catch (IOException e) {
+				throw new DALException("IOException", e);
+			}
+		}
+	}
+
+	/**
+	 * @return number of users decoded and kept in memory so far
+	 */
+	public synchronized int getLoadedCount() {
+		return loaded.size();
+	}
+
+	private UserDTO load(int userId) throws IOException {
+		UserDTO user = loaded.get(userId);
+		if (user == null) {
+			user = storage.readUser(userId);
+			if (user != null) {
+				loaded.put(user);
+			}
+		}
+		return user;
+	}
+}
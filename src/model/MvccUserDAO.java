@@ -0,0 +1,102 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.stream.Stream;
+
+/**
+ * Thread-safe in-memory DAO where reads never wait for writes. The users are kept in an immutable
+ * {@link UserSnapshot}; a write builds the next version from the current one and publishes it with a single
+ * volatile write, so readers see either the old or the new version and never a change in progress.
+ * Writes are made one at a time. Users are listed in ID order.
+ *
+ * A long listing or export should use {@link #snapshot()} or {@link #streamUsers}, which see every user as they
+ * were when the listing started without copying or locking anything, however many changes are made meanwhile.
+ * Stored users are shared with callers, so they should be treated as read-only.
+ */
+public class MvccUserDAO implements IDAL {
+
+	private volatile UserSnapshot current = UserSnapshot.EMPTY;
+
+	/**
+	 * @return the users as they are now. The snapshot never changes.
+	 */
+	public UserSnapshot snapshot() {
+		return current;
+	}
+
+	public UserDTO getUser(int userId) {
+		return current.get(userId);
+	}
+
+	/**
+	 * Copies the current snapshot to a list
+	 */
+	public ArrayList<UserDTO> getUserList() {
+		return current.toList();
+	}
+
+	public ArrayList<UserDTO> getUserPage(int offset, int limit) {
+		DTOList<UserDTO> page = new DTOList<>();
+		current.page(offset, limit, page);
+		return page;
+	}
+
+	/**
+	 * Streams the users of the snapshot taken when this is called, without fetching pages
+	 * @param pageSize ignored, as the whole snapshot is already in memory
+	 */
+	@Override
+	public Stream<UserDTO> streamUsers(int pageSize) {
+		return current.stream();
+	}
+
+	public boolean isUserListEmpty() {
+		return current.isEmpty();
+	}
+
+	public synchronized void createUser(UserDTO user) throws DALException {
+		if (current.contains(user.getUserID())) {
+			throw new DALException("User couldn't be created, ID " + user.getUserID() + " is taken");
+		}
+		current = current.with(user);
+	}
+
+	/**
+	 * Creates the users in a new version that is only published once every user is in it,
+	 * so readers see all of the batch or none of it.
+	 */
+	public synchronized void createUsers(Collection<UserDTO> users) throws DALException {
+		UserSnapshot next = current;
+		for (UserDTO user : users) {
+			if (next.contains(user.getUserID())) {
+				throw new DALException("Users couldn't be created, ID " + user.getUserID() + " is taken");
+			}
+			next = next.with(user);
+		}
+		current = next;
+	}
+
+	public synchronized void updateUser(UserDTO user) throws DALException {
+		if (!current.contains(user.getUserID())) {
+			throw new DALException("User couldn't be updated, ID " + user.getUserID() + " doesn't exist");
+		}
+		current = current.with(user);
+	}
+
+	public synchronized void deleteUser(int userId) {
+		current = current.without(userId);
+	}
+
+	public boolean userExists(int userId) {
+		return current.contains(userId);
+	}
+
+	public void init() {
+
+	}
+
+	public void close() {
+
+	}
+}
@@ -0,0 +1,153 @@
+package model;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Generates random passwords that meet a password policy.
+ * A password is built in a single pass: the required number of characters is drawn from each class,
+ * the rest from all classes, and the characters are shuffled, so no password is ever rejected and drawn again.
+ * Every thread draws from its own {@link SecureRandom}, so threads generating passwords don't contend.
+ */
+public class PasswordGenerator {
+
+	private static final String UPPER = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+	private static final String LOWER = "abcdefghijklmnopqrstuvwxyz";
+	private static final String DIGITS = "0123456789";
+
+	// number of passwords from which generate(n) runs in parallel
+	private static final int PARALLEL_THRESHOLD = 256;
+
+	private static final ThreadLocal<SecureRandom> RANDOM = ThreadLocal.withInitial(PasswordGenerator::newRandom);
+
+	/**
+	 * Length and minimum number of characters of each class a password must have
+	 */
+	public static class Policy {
+
+		/**
+		 * The policy checked by {@link Validation#isValidPassword}, with passwords of 10 characters
+		 */
+		public static final Policy DEFAULT = new Policy(10, 2, 3, 2, 1, Validation.PASSWORD_SYMBOLS);
+
+		private final int length;
+		private final int minUpper;
+		private final int minLower;
+		private final int minDigits;
+		private final int minSymbols;
+		private final String symbols;
+
+		/**
+		 * @param length number of characters in a password
+		 * @param minUpper minimum number of upper case letters
+		 * @param minLower minimum number of lower case letters
+		 * @param minDigits minimum number of digits
+		 * @param minSymbols minimum number of symbols
+		 * @param symbols the symbols a password can contain
+		 */
+		public Policy(int length, int minUpper, int minLower, int minDigits, int minSymbols, String symbols) {
+			if (minUpper < 0 || minLower < 0 || minDigits < 0 || minSymbols < 0
+					|| minUpper + minLower + minDigits + minSymbols > length) {
+				throw new IllegalArgumentException("The minimums can't be negative and must fit in " + length + " characters");
+			}
+			if (minSymbols > 0 && symbols.isEmpty()) {
+				throw new IllegalArgumentException("Symbols are required but none are given");
+			}
+			this.length = length;
+			this.minUpper = minUpper;
+			this.minLower = minLower;
+			this.minDigits = minDigits;
+			this.minSymbols = minSymbols;
+			this.symbols = symbols;
+		}
+
+		public int getLength() {
+			return length;
+		}
+	}
+
+	private final Policy policy;
+	private final String all;
+
+	public PasswordGenerator() {
+		this(Policy.DEFAULT);
+	}
+
+	/**
+	 * @param policy the policy every generated password meets
+	 */
+	public PasswordGenerator(Policy policy) {
+		this.policy = policy;
+		this.all = UPPER + LOWER + DIGITS + policy.symbols;
+	}
+
+	/**
+	 * Generates a password
+	 * @return a password that meets the policy
+	 */
+	public String generate() {
+		SecureRandom random = RANDOM.get();
+		char[] password = new char[policy.length];
+		int i = 0;
+		i = draw(password, i, policy.minUpper, UPPER, random);
+		i = draw(password, i, policy.minLower, LOWER, random);
+		i = draw(password, i, policy.minDigits, DIGITS, random);
+		i = draw(password, i, policy.minSymbols, policy.symbols, random);
+		draw(password, i, policy.length - i, all, random);
+		// Fisher-Yates shuffle, so the required characters can be anywhere
+		for (int j = password.length - 1; j > 0; j--) {
+			int k = random.nextInt(j + 1);
+			char c = password[j];
+			password[j] = password[k];
+			password[k] = c;
+		}
+		return new String(password);
+	}
+
+	/**
+	 * Generates many passwords. Large batches are split over the fork-join pool the call runs in.
+	 * @param count number of passwords
+	 * @return the passwords
+	 */
+	public List<String> generate(int count) {
+		if (count < PARALLEL_THRESHOLD) {
+			List<String> passwords = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				passwords.add(generate());
+			}
+			return passwords;
+		}
+		return IntStream.range(0, count).parallel().mapToObj(i -> generate()).collect(Collectors.toList());
+	}
+
+	public Policy getPolicy() {
+		return policy;
+	}
+
+	/**
+	 * The default SecureRandom on Linux reads from one shared, synchronized source, so each thread
+	 * gets its own SHA1PRNG seeded from it instead, which only the owning thread ever locks
+	 */
+	private static SecureRandom newRandom() {
+		try {
+			SecureRandom random = SecureRandom.getInstance("SHA1PRNG");
+			byte[] seed = new byte[32];
+			new SecureRandom().nextBytes(seed);
+			random.setSeed(seed);
+			return random;
+		} catch (NoSuchAlgorithmException e) {
+			return new SecureRandom();
+		}
+	}
+
+	private static int draw(char[] password, int from, int count, String characters, SecureRandom random) {
+		for (int i = 0; i < count; i++) {
+			password[from + i] = characters.charAt(random.nextInt(characters.length()));
+		}
+		return from + count;
+	}
+}
@@ -0,0 +1,119 @@
+package model;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Salted password hashing with PBKDF2. A hash is stored as pbkdf2-sha256$iterations$salt$hash
+ * with the salt and hash in base64, so the cost can be raised later without breaking existing hashes.
+ * Stored passwords without that prefix are taken as plaintext from before passwords were hashed.
+ */
+public class PasswordHasher {
+
+	/**
+	 * Number of iterations used when none is given
+	 */
+	public static final int DEFAULT_ITERATIONS = 20000;
+
+	private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+	private static final String PREFIX = "pbkdf2-sha256$";
+	private static final int SALT_BYTES = 16;
+	private static final int HASH_BITS = 256;
+
+	private static final ThreadLocal<SecureRandom> RANDOM = ThreadLocal.withInitial(SecureRandom::new);
+
+	private final int iterations;
+
+	public PasswordHasher() {
+		this(DEFAULT_ITERATIONS);
+	}
+
+	/**
+	 * @param iterations cost of a new hash, every doubling doubles the time to hash and verify
+	 */
+	public PasswordHasher(int iterations) {
+		if (iterations < 1) {
+			throw new IllegalArgumentException("Iterations must be at least 1");
+		}
+		this.iterations = iterations;
+	}
+
+	public int getIterations() {
+		return iterations;
+	}
+
+	/**
+	 * Hashes a password with a new random salt
+	 * @param password the password in plaintext
+	 * @return the hash in the stored format
+	 */
+	public String hash(String password) {
+		byte[] salt = new byte[SALT_BYTES];
+		RANDOM.get().nextBytes(salt);
+		Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+		return PREFIX + iterations + "$" + base64.encodeToString(salt) + "$" + base64.encodeToString(pbkdf2(password, salt, iterations));
+	}
+
+	/**
+	 * Checks a password against a stored hash, or against a stored plaintext password.
+	 * The comparison takes the same time no matter where the first difference is.
+	 * @param password the password to check
+	 * @param stored the stored hash or legacy plaintext password
+	 * @return true if the password matches
+	 */
+	public boolean verify(String password, String stored) {
+		if (password == null || stored == null) {
+			return false;
+		}
+		if (!isHashed(stored)) {
+			return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8), stored.getBytes(StandardCharsets.UTF_8));
+		}
+		String[] parts = stored.substring(PREFIX.length()).split("\\$");
+		if (parts.length != 3) {
+			return false;
+		}
+		try {
+			int storedIterations = Integer.parseInt(parts[0]);
+			byte[] salt = Base64.getDecoder().decode(parts[1]);
+			byte[] hash = Base64.getDecoder().decode(parts[2]);
+			return storedIterations > 0 && MessageDigest.isEqual(hash, pbkdf2(password, salt, storedIterations));
+		} catch (IllegalArgumentException e) {
+			// malformed iterations or base64
+			return false;
+		}
+	}
+
+	/**
+	 * @param stored a stored password
+	 * @return true if the password is hashed, false if it's legacy plaintext
+	 */
+	public static boolean isHashed(String stored) {
+		return stored != null && stored.startsWith(PREFIX);
+	}
+
+	/**
+	 * @param stored a stored password
+	 * @return true if the password is plaintext or hashed with another number of iterations than this hasher uses
+	 */
+	public boolean needsRehash(String stored) {
+		return !isHashed(stored) || !stored.startsWith(PREFIX + iterations + "$");
+	}
+
+	private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+		PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+		try {
+			return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+		} catch (GeneralSecurityException e) {
+			// PBKDF2WithHmacSHA256 is part of the standard providers since Java 8
+			throw new IllegalStateException(ALGORITHM + " isn't available", e);
+		} finally {
+			spec.clearPassword();
+		}
+	}
+}
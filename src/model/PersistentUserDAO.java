@@ -1,92 +1,354 @@
 package model;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
+import model.storage.IAsyncDataStorage;
 import model.storage.IDataStorage;
+import model.storage.IRecordStorage;
 
+/**
+ * DAO that keeps users in memory and persists them through an {@link IDataStorage}.
+ *
+ * By default every change is written to the storage before the method returns.
+ * In write-behind mode changes only mark the DAO dirty, and all changes made within a time window,
+ * or up to a number of changes, are written together with a single {@link IDataStorage#write}.
+ * {@link #flush()} and {@link #close()} write pending changes right away.
+ * In async mode every change is acknowledged once it's made in memory, and a snapshot of the users is handed to
+ * an {@link IAsyncDataStorage}, which writes it on its own thread. {@link #whenDurable()} tells when it's written.
+ */
 public class PersistentUserDAO implements IDAL{
 
 	private IDataStorage storage;
-	private DTOList<UserDTO> users;
+	private IAsyncDataStorage asyncStorage;
+	private UserStore users;
+	private CompletableFuture<Void> lastWrite = CompletableFuture.completedFuture(null);
 
+	private final long flushInterval;
+	private final int flushThreshold;
+	private ScheduledExecutorService flusher;
+	private ScheduledFuture<?> scheduledFlush;
+	private int pendingChanges;
+	// failure of a flush in the background, thrown by the next flush
+	private DALException backgroundFailure;
+
+	/**
+	 * Creates a DAO that writes every change to the storage right away
+	 * @param storage storage the users are persisted in
+	 */
 	public PersistentUserDAO(IDataStorage storage) {
-		this.storage = storage;
-		users = new DTOList<>();
+		this(storage, 0, 1);
 	}
 
-	public UserDTO getUser(int userId) {
-		for (UserDTO user : users) {
-			if (user.getUserID() == userId) {
-				return user;
-			}
+	/**
+	 * Creates a DAO in write-behind mode
+	 * @param storage storage the users are persisted in
+	 * @param flushInterval milliseconds a change may wait before it's written, 0 for no time limit
+	 * @param flushThreshold number of changes that are written together at most
+	 */
+	public PersistentUserDAO(IDataStorage storage, long flushInterval, int flushThreshold) {
+		if (flushInterval < 0 || flushThreshold < 1) {
+			throw new IllegalArgumentException("Flush interval can't be negative and threshold must be at least 1");
 		}
-		return null;
+		this.storage = storage;
+		this.flushInterval = flushInterval;
+		this.flushThreshold = flushThreshold;
+		users = new UserStore();
 	}
 
-	public ArrayList<UserDTO> getUserList() throws DALException {
+	/**
+	 * Creates a DAO in async mode
+	 * @param storage storage the users are persisted in without blocking
+	 */
+	public PersistentUserDAO(IAsyncDataStorage storage) {
+		this.asyncStorage = storage;
+		this.flushInterval = 0;
+		this.flushThreshold = 1;
+		users = new UserStore();
+	}
+
+	public synchronized UserDTO getUser(int userId) {
+		return users.get(userId);
+	}
+
+	public synchronized ArrayList<UserDTO> getUserList() throws DALException {
 		if (users == null) {
 			throw new DALException("Userlist not instantiated");
 		} else {
-			return users;
+			return users.toList();
 		}
 	}
-	
-	public boolean isUserListEmpty(){
+
+	public synchronized ArrayList<UserDTO> getUserPage(int offset, int limit) throws DALException {
+		DTOList<UserDTO> page = new DTOList<>();
+		users.page(offset, limit, page);
+		return page;
+	}
+
+	@Override
+	public synchronized long getUserPageFrom(long position, int limit, List<UserDTO> page) {
+		return users.pageFrom(position, limit, page);
+	}
+
+	public synchronized boolean isUserListEmpty(){
         return users.isEmpty();
     }
 
-	public void createUser(UserDTO user) throws DALException {
-		users.add(user);
+	public synchronized void createUser(UserDTO user) throws DALException {
+		if (users.contains(user.getUserID())) {
+			throw new DALException("User couldn't be created, ID " + user.getUserID() + " is taken");
+		}
+		users.put(user);
+		writeUser(user);
+	}
 
+	/**
+	 * Creates all users and persists them with a single write, also in write-behind and async mode.
+	 * If the write fails the users are removed again.
+	 */
+	public synchronized void createUsers(Collection<UserDTO> users) throws DALException {
+		UserDAO.checkBatch(this.users, users);
+		for (UserDTO user : users) {
+			this.users.put(user);
+		}
 		try {
-			storage.write(users);
-		}catch (IOException e){
+			if (asyncStorage != null) {
+				lastWrite = asyncStorage.writeAsync(this.users.toList());
+				await(lastWrite);
+			} else {
+				storage.write(this.users.toList());
+			}
+			pendingChanges = 0;
+		} catch (IOException | ClassNotFoundException e) {
+			for (UserDTO user : users) {
+				this.users.remove(user.getUserID());
+			}
 			throw new DALException("IOException", e);
 		}
 	}
 
-	public void updateUser(UserDTO user) throws DALException {
-		deleteUser(user.getUserID());
-		createUser(user);
+	public synchronized void updateUser(UserDTO user) throws DALException {
+		if (!users.contains(user.getUserID())) {
+			throw new DALException("User couldn't be updated, ID " + user.getUserID() + " doesn't exist");
+		}
+		users.put(user);
+		writeUser(user);
+	}
+
+	public synchronized void deleteUser(int userId) throws DALException {
+		if (users.remove(userId) != null) {
+			if (asyncStorage != null) {
+				lastWrite = asyncStorage.writeAsync(users.toList());
+				return;
+			}
+			if (isWriteBehind()) {
+				markDirty();
+				return;
+			}
+			try {
+				if (storage instanceof IRecordStorage) {
+					((IRecordStorage) storage).deleteUser(userId);
+				} else {
+					storage.write(users.toList());
+				}
+			}catch (IOException e){
+				throw new DALException("IOException", e);
+			}
+		}
+	}
+
+	public synchronized boolean userExists(int userId){
+		return users.contains(userId);
+	}
 
+	public synchronized void init() throws DALException {
 		try {
-			storage.write(users);
-		}catch (IOException e){
+			DTOList<UserDTO> stored = asyncStorage != null ? await(asyncStorage.readAsync()) : storage.read();
+			users = new UserStore(stored.size());
+			for (UserDTO user : stored) {
+				users.put(user);
+			}
+			pendingChanges = 0;
+		} catch (ClassNotFoundException e){
+			throw new DALException("ClassNotFoundException", e);
+		} catch (IOException e){
 			throw new DALException("IOException", e);
 		}
 	}
 
-	public void deleteUser(int userId) throws DALException {
-		for (int i = 0; i < users.size(); i++) {
-			if (users.get(i).getUserID() == userId) {
-				users.remove(users.get(i));
+	/**
+	 * Writes pending changes to the storage. Does nothing when no changes are pending.
+	 * In async mode it waits until the changes made so far are written.
+	 * Changes a flush in the background failed to write are written now, and if that fails too,
+	 * the background failure is added to the exception as suppressed.
+	 * @throws DALException if the storage couldn't be written, the changes stay pending
+	 */
+	public synchronized void flush() throws DALException {
+		DALException failure = backgroundFailure;
+		backgroundFailure = null;
+		try {
+			writePending();
+		} catch (DALException e) {
+			if (failure != null) {
+				e.addSuppressed(failure);
 			}
+			throw e;
 		}
+	}
 
+	private void writePending() throws DALException {
+		if (asyncStorage != null) {
+			try {
+				await(lastWrite);
+			} catch (IOException | ClassNotFoundException e) {
+				throw new DALException("IOException", e);
+			}
+			return;
+		}
+		if (scheduledFlush != null) {
+			scheduledFlush.cancel(false);
+			scheduledFlush = null;
+		}
+		if (pendingChanges == 0) {
+			return;
+		}
 		try {
-			storage.write(users);
-		}catch (IOException e){
+			storage.write(users.toList());
+			pendingChanges = 0;
+		} catch (IOException e) {
 			throw new DALException("IOException", e);
 		}
 	}
 
-	public boolean userExists(int userId){
-		for (UserDTO user : users) {
-			if (user.getUserID() == userId) {
-				return true;
+	/**
+	 * Writes pending changes, stops the background flushing and closes the storage.
+	 * The flushing is stopped and the storage closed even if the changes couldn't be written.
+	 * @throws DALException if pending changes couldn't be written or the storage couldn't be closed
+	 */
+	public synchronized void close() throws DALException {
+		DALException failure = null;
+		try {
+			flush();
+		} catch (DALException e) {
+			failure = e;
+			throw e;
+		} finally {
+			if (flusher != null) {
+				flusher.shutdown();
+				flusher = null;
+			}
+			Object storage = asyncStorage != null ? asyncStorage : this.storage;
+			if (storage instanceof Closeable) {
+				try {
+					((Closeable) storage).close();
+				} catch (IOException e) {
+					if (failure == null) {
+						throw new DALException("IOException", e);
+					}
+					failure.addSuppressed(e);
+				}
 			}
 		}
-		return false;
 	}
 
-	public void init() throws DALException {
+	/**
+	 * @return true if changes are written behind instead of right away
+	 */
+	public boolean isWriteBehind() {
+		return flushInterval > 0 || flushThreshold > 1;
+	}
+
+	/**
+	 * @return a future completed once the changes made so far are written, or completed exceptionally if the
+	 * write failed. Outside async mode changes are written before they're acknowledged, so it's always completed.
+	 */
+	public synchronized CompletableFuture<Void> whenDurable() {
+		return lastWrite;
+	}
+
+	/**
+	 * @return number of changes not yet written to the storage
+	 */
+	public synchronized int getPendingChanges() {
+		return pendingChanges;
+	}
+
+	/**
+	 * Persists a created or updated user, as a single record if the storage supports it
+	 */
+	private void writeUser(UserDTO user) throws DALException {
+		if (asyncStorage != null) {
+			lastWrite = asyncStorage.writeAsync(users.toList());
+			return;
+		}
+		if (isWriteBehind()) {
+			markDirty();
+			return;
+		}
 		try {
-			users = storage.read();
-		} catch (ClassNotFoundException e){
-			throw new DALException("ClassNotFoundException", e);
-		} catch (IOException e){
+			if (storage instanceof IRecordStorage) {
+				((IRecordStorage) storage).writeUser(user);
+			} else {
+				storage.write(users.toList());
+			}
+		}catch (IOException e){
 			throw new DALException("IOException", e);
 		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Counts a pending change, and writes the changes once the threshold is reached.
+	 * The first change of a window schedules a flush at the end of the window.
+	 */
+	private void markDirty() throws DALException {
+		pendingChanges++;
+		if (pendingChanges >= flushThreshold) {
+			writePending();
+		} else if (flushInterval > 0 && scheduledFlush == null) {
+			if (flusher == null) {
+				flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+					Thread thread = new Thread(runnable, "PersistentUserDAO flusher");
+					thread.setDaemon(true);
+					return thread;
+				});
+			}
+			scheduledFlush = flusher.schedule(this::flushInBackground, flushInterval, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private synchronized void flushInBackground() {
+		scheduledFlush = null;
+		try {
+			writePending();
+		} catch (DALException e) {
+			// the changes stay pending, and the next flush writes them or reports the failure
+			backgroundFailure = e;
+		}
+	}
+
+	/**
+	 * Waits for a storage operation and throws the exception it failed with
+	 */
+	private static <T> T await(CompletableFuture<T> future) throws IOException, ClassNotFoundException {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			if (e.getCause() instanceof ClassNotFoundException) {
+				throw (ClassNotFoundException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+	}
+}
@@ -0,0 +1,153 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Order of the rows of a dense array that keeps entries in insertion order, with holes for removed entries
+ * until the array is compacted. Used to page through the entries without counting the holes.
+ *
+ * A Fenwick tree over the live rows finds the row of the n-th live entry in logarithmic time, so a page
+ * at an offset costs the same after removals as before. Every entry also gets a position when it is added,
+ * which only grows and is kept through compaction, so a page can continue from the position after the last
+ * entry of the previous page and neither skips nor repeats entries when entries are removed in between.
+ * Not thread-safe.
+ */
+public final class RowOrder {
+
+	// 1-based Fenwick tree of the number of live rows
+	private int[] tree;
+	// position of every row, also of removed rows until compaction, in increasing order
+	private long[] positions;
+	private long nextPosition;
+
+	/**
+	 * @param capacity number of rows
+	 */
+	public RowOrder(int capacity) {
+		tree = new int[capacity + 1];
+		positions = new long[capacity];
+	}
+
+	/**
+	 * Changes the number of rows, keeping the rows that remain
+	 */
+	public void resize(int capacity) {
+		int[] rows = new int[capacity + 1];
+		int[] old = tree;
+		// undo the building of the tree to get back the mark of every row
+		for (int i = old.length - 1; i > 0; i--) {
+			int parent = i + (i & -i);
+			if (parent < old.length) {
+				old[parent] -= old[i];
+			}
+		}
+		System.arraycopy(old, 1, rows, 1, Math.min(capacity, old.length - 1));
+		tree = build(rows);
+		positions = Arrays.copyOf(positions, capacity);
+	}
+
+	/**
+	 * Gives a new row at the end of the array the next position and marks it as live
+	 */
+	public void add(int row) {
+		positions[row] = nextPosition++;
+		update(row, 1);
+	}
+
+	/**
+	 * Marks a live row as removed. It keeps its position until the array is compacted.
+	 */
+	public void remove(int row) {
+		update(row, -1);
+	}
+
+	/**
+	 * Moves the position of a live row while the array is compacted
+	 */
+	public void move(int from, int to) {
+		positions[to] = positions[from];
+	}
+
+	/**
+	 * Marks the first rows as live and the rest as removed, after the live rows were moved to the front
+	 * @param count number of live rows
+	 */
+	public void compacted(int count) {
+		Arrays.fill(tree, 0);
+		Arrays.fill(tree, 1, count + 1, 1);
+		tree = build(tree);
+	}
+
+	/**
+	 * @param offset number of live rows before the row
+	 * @return the row of the live entry at the offset, or -1 if there are fewer live rows
+	 */
+	public int row(int offset) {
+		int row = 0;
+		int remaining = offset + 1;
+		for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1) {
+			int next = row + step;
+			if (next < tree.length && tree[next] < remaining) {
+				row = next;
+				remaining -= tree[next];
+			}
+		}
+		return row < tree.length - 1 ? row : -1;
+	}
+
+	/**
+	 * @param position a position returned by {@link #position} or {@link #nextPosition}
+	 * @param end number of rows in use
+	 * @return the first row with the position or a later one, end if there is none
+	 */
+	public int rowFrom(long position, int end) {
+		int low = 0;
+		int high = end;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (positions[middle] < position) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	public long position(int row) {
+		return positions[row];
+	}
+
+	/**
+	 * @return the position the next row will get
+	 */
+	public long nextPosition() {
+		return nextPosition;
+	}
+
+	/**
+	 * @return bytes taken by the order's arrays
+	 */
+	public long sizeInBytes() {
+		return 4L * tree.length + 8L * positions.length;
+	}
+
+	private void update(int row, int delta) {
+		for (int i = row + 1; i < tree.length; i += i & -i) {
+			tree[i] += delta;
+		}
+	}
+
+	/**
+	 * Turns the marks of the rows into a Fenwick tree in linear time
+	 */
+	private static int[] build(int[] rows) {
+		for (int i = 1; i < rows.length; i++) {
+			int parent = i + (i & -i);
+			if (parent < rows.length) {
+				rows[parent] += rows[i];
+			}
+		}
+		return rows;
+	}
+}
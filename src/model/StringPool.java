@@ -0,0 +1,128 @@
+package model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Strings stored back to back as UTF-8 bytes in a single array, referred to by an int.
+ * A deduplicating pool gives equal strings the same reference, so a string shared by many users,
+ * like common initials, is stored once. Strings are never removed; a pool is rebuilt to drop unused ones.
+ * Not thread-safe.
+ */
+final class StringPool {
+
+	private final boolean deduplicate;
+	private byte[] bytes = new byte[256];
+	private int used;
+	// start of every string, and the end of the last one
+	private int[] offsets = new int[17];
+	private int count;
+	// deduplication table: reference + 1 per slot, 0 marks a free slot
+	private int[] table;
+	private int mask;
+
+	/**
+	 * @param deduplicate true to store equal strings once
+	 */
+	StringPool(boolean deduplicate) {
+		this.deduplicate = deduplicate;
+		if (deduplicate) {
+			table = new int[16];
+			mask = 15;
+		}
+	}
+
+	/**
+	 * Stores a string
+	 * @return reference of the string, or -1 for null
+	 */
+	int add(String value) {
+		if (value == null) {
+			return -1;
+		}
+		byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+		if (!deduplicate) {
+			return append(encoded);
+		}
+		int slot = hash(encoded, 0, encoded.length) & mask;
+		while (table[slot] != 0) {
+			int ref = table[slot] - 1;
+			if (equals(ref, encoded)) {
+				return ref;
+			}
+			slot = (slot + 1) & mask;
+		}
+		int ref = append(encoded);
+		table[slot] = ref + 1;
+		if (count * 4 > table.length * 3) {
+			rehash();
+		}
+		return ref;
+	}
+
+	/**
+	 * @param ref reference returned by {@link #add}
+	 * @return the string, or null for -1
+	 */
+	String get(int ref) {
+		if (ref < 0) {
+			return null;
+		}
+		return new String(bytes, offsets[ref], offsets[ref + 1] - offsets[ref], StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return bytes taken by the pool's arrays
+	 */
+	long sizeInBytes() {
+		return bytes.length + 4L * offsets.length + (table == null ? 0 : 4L * table.length);
+	}
+
+	private int append(byte[] encoded) {
+		if (used + encoded.length > bytes.length) {
+			bytes = Arrays.copyOf(bytes, Math.max(used + encoded.length, bytes.length + (bytes.length >> 1)));
+		}
+		if (count + 2 > offsets.length) {
+			offsets = Arrays.copyOf(offsets, offsets.length + (offsets.length >> 1));
+		}
+		System.arraycopy(encoded, 0, bytes, used, encoded.length);
+		offsets[count] = used;
+		used += encoded.length;
+		offsets[count + 1] = used;
+		return count++;
+	}
+
+	private boolean equals(int ref, byte[] encoded) {
+		int start = offsets[ref];
+		int length = offsets[ref + 1] - start;
+		if (length != encoded.length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (bytes[start + i] != encoded[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void rehash() {
+		table = new int[table.length << 1];
+		mask = table.length - 1;
+		for (int ref = 0; ref < count; ref++) {
+			int slot = hash(bytes, offsets[ref], offsets[ref + 1]) & mask;
+			while (table[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = ref + 1;
+		}
+	}
+
+	private static int hash(byte[] data, int from, int to) {
+		int hash = 1;
+		for (int i = from; i < to; i++) {
+			hash = 31 * hash + data[i];
+		}
+		return hash ^ (hash >>> 16);
+	}
+}
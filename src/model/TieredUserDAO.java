@@ -0,0 +1,326 @@
+package model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import model.storage.IRandomAccessStorage;
+
+/**
+ * DAO that keeps the users on disk in an {@link IRandomAccessStorage} and only the recently used ones in memory.
+ * The memory tier is an LRU cache bounded by an estimate of the heap its users take, so the number of users is
+ * bounded by the disk instead of the heap. A user read through {@link #getUser} that isn't cached is read from
+ * the storage and cached, evicting the least recently used users until the cache fits its budget again.
+ *
+ * Pages and full lists are read through without being cached, so listing every user doesn't evict the hot ones.
+ * Every change is written to the storage right away and the new state is cached.
+ */
+public class TieredUserDAO implements IDAL {
+
+	/**
+	 * Memory budget used by default, in bytes
+	 */
+	public static final long DEFAULT_MEMORY_BUDGET = 64L << 20;
+
+	// rough heap use of a cache entry besides the user's strings: map entry, boxed key, user object and role list
+	private static final int ENTRY_OVERHEAD = 40 + 16 + 40 + 40;
+	private static final int STRING_OVERHEAD = 40;
+
+	private final IRandomAccessStorage storage;
+	private final long memoryBudget;
+	private final LinkedHashMap<Integer, Cached> cache = new LinkedHashMap<>(16, 0.75f, true);
+	private long cachedBytes;
+
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	private static class Cached {
+		final UserDTO user;
+		final int bytes;
+
+		Cached(UserDTO user) {
+			this.user = user;
+			this.bytes = estimateSize(user);
+		}
+	}
+
+	/**
+	 * @param storage storage the users are read from and persisted in
+	 */
+	public TieredUserDAO(IRandomAccessStorage storage) {
+		this(storage, DEFAULT_MEMORY_BUDGET);
+	}
+
+	/**
+	 * @param storage storage the users are read from and persisted in
+	 * @param memoryBudget estimated bytes of heap the cached users may take
+	 */
+	public TieredUserDAO(IRandomAccessStorage storage, long memoryBudget) {
+		if (memoryBudget < 0) {
+			throw new IllegalArgumentException("Memory budget can't be negative");
+		}
+		this.storage = storage;
+		this.memoryBudget = memoryBudget;
+	}
+
+	public synchronized UserDTO getUser(int userId) {
+		Cached cached = cache.get(userId);
+		if (cached != null) {
+			hits++;
+			return cached.user;
+		}
+		misses++;
+		try {
+			UserDTO user = storage.readUser(userId);
+			if (user != null) {
+				cache(user);
+			}
+			return user;
+		} catch (IOException e) {
+			// getUser can't throw, so a user that can't be read is reported like a missing user
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	public synchronized ArrayList<UserDTO> getUserList() throws DALException {
+		return getUserPage(0, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Reads a page, taking cached users from memory. Users that aren't cached are read without being cached.
+	 */
+	public synchronized ArrayList<UserDTO> getUserPage(int offset, int limit) throws DALException {
+		try {
+			int[] ids = storage.readUserIds(offset, limit);
+			DTOList<UserDTO> page = new DTOList<>();
+			page.ensureCapacity(ids.length);
+			for (int userId : ids) {
+				Cached cached = cache.get(userId);
+				page.add(cached != null ? cached.user : storage.readUser(userId));
+			}
+			return page;
+		} catch (IOException e) {
+			throw new DALException("IOException", e);
+		}
+	}
+
+	@Override
+	public synchronized long getUserPageFrom(long position, int limit, List<UserDTO> page) throws DALException {
+		try {
+			IntStream.Builder ids = IntStream.builder();
+			long next = storage.readUserIdsFrom(position, limit, ids);
+			for (int userId : ids.build().toArray()) {
+				Cached cached = cache.get(userId);
+				page.add(cached != null ? cached.user : storage.readUser(userId));
+			}
+			return next;
+		} catch (IOException e) {
+			throw new DALException("IOException", e);
+		}
+	}
+
+	public synchronized boolean isUserListEmpty() {
+		try {
+			return storage.countUsers() == 0;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return cache.isEmpty();
+		}
+	}
+
+	public synchronized void createUser(UserDTO user) throws DALException {
+		if (userExists(user.getUserID())) {
+			throw new DALException("User couldn't be created, ID " + user.getUserID() + " is taken");
+		}
+		try {
+			storage.writeUser(user);
+		} catch (IOException e) {
+			throw new DALException("IOException", e);
+		}
+		cache(user);
+	}
+
+	/**
+	 * Creates the users one record at a time. If a record can't be written, the users already written are deleted again.
+	 * The users aren't cached, as a batch is rarely read right away.
+	 */
+	public synchronized void createUsers(Collection<UserDTO> users) throws DALException {
+		UserStore batch = new UserStore(users.size());
+		for (UserDTO user : users) {
+			if (userExists(user.getUserID()) || batch.put(user) != null) {
+				throw new DALException("Users couldn't be created, ID " + user.getUserID() + " is taken");
+			}
+		}
+		ArrayList<UserDTO> written = new ArrayList<>(users.size());
+		try {
+			for (UserDTO user : users) {
+				storage.writeUser(user);
+				written.add(user);
+			}
+		} catch (IOException e) {
+			try {
+				for (UserDTO user : written) {
+					storage.deleteUser(user.getUserID());
+				}
+			} catch (IOException rollback) {
+				e.addSuppressed(rollback);
+			}
+			throw new DALException("IOException", e);
+		}
+	}
+
+	public synchronized void updateUser(UserDTO user) throws DALException {
+		if (!userExists(user.getUserID())) {
+			throw new DALException("User couldn't be updated, ID " + user.getUserID() + " doesn't exist");
+		}
+		try {
+			storage.writeUser(user);
+		} catch (IOException e) {
+			throw new DALException("IOException", e);
+		}
+		cache(user);
+	}
+
+	public synchronized void deleteUser(int userId) throws DALException {
+		try {
+			storage.deleteUser(userId);
+		} catch (IOException e) {
+			throw new DALException("IOException", e);
+		}
+		uncache(userId);
+	}
+
+	public synchronized boolean userExists(int userId) {
+		if (cache.containsKey(userId)) {
+			return true;
+		}
+		try {
+			return storage.containsUser(userId);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	/**
+	 * Opens the storage and empties the cache, without reading any user
+	 */
+	public synchronized void init() throws DALException {
+		cache.clear();
+		cachedBytes = 0;
+		try {
+			storage.countUsers();
+		} catch (IOException e) {
+			throw new DALException("IOException", e);
+		}
+	}
+
+	public synchronized void close() throws DALException {
+		if (storage instanceof Closeable) {
+			try {
+				((Closeable) storage).close();
+			} catch (IOException e) {
+				throw new DALException("IOException", e);
+			}
+		}
+	}
+
+	/**
+	 * @return estimated bytes of heap the cached users may take
+	 */
+	public long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	/**
+	 * @return estimated bytes of heap the cached users take
+	 */
+	public synchronized long getCachedBytes() {
+		return cachedBytes;
+	}
+
+	/**
+	 * @return number of users in memory
+	 */
+	public synchronized int getCachedCount() {
+		return cache.size();
+	}
+
+	/**
+	 * @return number of calls to getUser answered from memory
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return number of calls to getUser that went to the storage
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return share of calls to getUser answered from memory, 0 before the first call
+	 */
+	public synchronized double getHitRate() {
+		return hits + misses == 0 ? 0 : hits / (double) (hits + misses);
+	}
+
+	/**
+	 * @return number of users evicted to stay within the memory budget
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Estimates the heap taken by a cached user, counting two bytes per character as a Java 8 string does
+	 */
+	static int estimateSize(UserDTO user) {
+		int bytes = ENTRY_OVERHEAD;
+		bytes += estimateSize(user.getUserName());
+		bytes += estimateSize(user.getIni());
+		bytes += estimateSize(user.getCpr());
+		bytes += estimateSize(user.getPassword());
+		if (user.getRoles() != null) {
+			for (String role : user.getRoles()) {
+				bytes += 8 + estimateSize(role);
+			}
+		}
+		return bytes;
+	}
+
+	private static int estimateSize(String value) {
+		return value == null ? 0 : STRING_OVERHEAD + 2 * value.length();
+	}
+
+	private void cache(UserDTO user) {
+		Cached cached = new Cached(user);
+		Cached replaced = cache.put(user.getUserID(), cached);
+		cachedBytes += cached.bytes - (replaced == null ? 0 : replaced.bytes);
+		// the eldest entries are the least recently used, the one just put is the newest
+		Iterator<Map.Entry<Integer, Cached>> eldest = cache.entrySet().iterator();
+		while (cachedBytes > memoryBudget && eldest.hasNext()) {
+			Cached evicted = eldest.next().getValue();
+			eldest.remove();
+			cachedBytes -= evicted.bytes;
+			evictions++;
+		}
+	}
+
+	private void uncache(int userId) {
+		Cached removed = cache.remove(userId);
+		if (removed != null) {
+			cachedBytes -= removed.bytes;
+		}
+	}
+}
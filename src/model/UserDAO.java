@@ -1,71 +1,90 @@
 package model;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 public class UserDAO implements IDAL{
 
-	private DTOList<UserDTO> users;
+	private UserStore users;
 
 	public UserDAO() {
-		users = new DTOList<>();
+		users = new UserStore();
 	}
 
 	public UserDTO getUser(int userId){
-		for (UserDTO user : users) {
-			if (user.getUserID() == userId) {
-				return user;
-			}
-		}
-		return null;
+		return users.get(userId);
 	}
 
 	public ArrayList<UserDTO> getUserList() throws DALException {
 		if(users == null){
 			throw new DALException("Userlist not instantiated!");
 		}else {
-			return users;
+			return users.toList();
 		}
 	}
 
+	public ArrayList<UserDTO> getUserPage(int offset, int limit) throws DALException {
+		DTOList<UserDTO> page = new DTOList<>();
+		users.page(offset, limit, page);
+		return page;
+	}
+
+	@Override
+	public long getUserPageFrom(long position, int limit, List<UserDTO> page) {
+		return users.pageFrom(position, limit, page);
+	}
+
 	public boolean isUserListEmpty(){
 		return users.isEmpty();
 	}
 
 	public void createUser(UserDTO user) throws DALException {
-		if(users.add(user)){
+		if(users.contains(user.getUserID())){
+			throw new DALException("User couldn't be created, ID " + user.getUserID() + " is taken");
+		}
+		users.put(user);
+	}
 
-		} else {
-			throw new DALException("User couldn't be created");
+	public void createUsers(Collection<UserDTO> users) throws DALException {
+		checkBatch(this.users, users);
+		for (UserDTO user : users) {
+			this.users.put(user);
+		}
+	}
+
+	/**
+	 * Checks that no user in a batch has a taken ID, or the same ID as another user in the batch
+	 */
+	static void checkBatch(UserStore existing, Collection<UserDTO> users) throws DALException {
+		UserStore batch = new UserStore(users.size());
+		for (UserDTO user : users) {
+			if (existing.contains(user.getUserID()) || batch.put(user) != null) {
+				throw new DALException("Users couldn't be created, ID " + user.getUserID() + " is taken");
+			}
 		}
 	}
 
 	public void updateUser(UserDTO user) throws DALException {
-		deleteUser(user.getUserID());
-		createUser(user);
+		if(!users.contains(user.getUserID())){
+			throw new DALException("User couldn't be updated, ID " + user.getUserID() + " doesn't exist");
+		}
+		users.put(user);
 	}
 
 	public void deleteUser(int userId) throws DALException {
-		for (int i = 0; i < users.size(); i++) {
-			if (users.get(i).getUserID() == userId) {
-				if(users.remove(users.get(i))) {
-
-				} else {
-					throw new DALException("User couldn't be removed");
-				}
-			}
-		}
+		users.remove(userId);
 	}
 
 	public boolean userExists(int userId){
-		for (UserDTO user : users) {
-			if (user.getUserID() == userId) {
-				return true;
-			}
-		}
-		return false;
+		return users.contains(userId);
 	}
 	
 	public void init() throws DALException {
 
 	}
-}
\ No newline at end of file
+
+	public void close() throws DALException {
+
+	}
+}
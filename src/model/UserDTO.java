@@ -15,6 +15,19 @@ public class UserDTO implements Serializable {
     
     public UserDTO() {}
 
+    /**
+     * Creates a copy of a user, with its own list of roles
+     * @param user user to copy
+     */
+    public UserDTO(UserDTO user) {
+        this.userID = user.userID;
+        this.userName = user.userName;
+        this.ini = user.ini;
+        this.cpr = user.cpr;
+        this.password = user.password;
+        this.roles = user.roles == null ? null : new ArrayList<>(user.roles);
+    }
+
     @SuppressWarnings("unchecked")
     public UserDTO(HashMap<String, Object> hashMap) throws DTOException {
         if(hashMap.containsKey("ID")){
@@ -0,0 +1,50 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator that fetches users from a DAO one page at a time by position, as they are consumed.
+ */
+class UserPageSpliterator extends Spliterators.AbstractSpliterator<UserDTO> {
+
+	private final IDAL dao;
+	private final int pageSize;
+	private ArrayList<UserDTO> page;
+	private int index;
+	private long position;
+	private boolean lastPage;
+
+	UserPageSpliterator(IDAL dao, int pageSize) {
+		super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+		if (pageSize < 1) {
+			throw new IllegalArgumentException("Page size must be at least 1");
+		}
+		this.dao = dao;
+		this.pageSize = pageSize;
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super UserDTO> action) {
+		if (page == null || index == page.size()) {
+			if (lastPage) {
+				return false;
+			}
+			page = new ArrayList<>();
+			try {
+				position = dao.getUserPageFrom(position, pageSize, page);
+			} catch (IDAL.DALException e) {
+				throw new IllegalStateException("Couldn't get users from position " + position, e);
+			}
+			index = 0;
+			lastPage = page.size() < pageSize;
+			if (page.isEmpty()) {
+				return false;
+			}
+		}
+		action.accept(page.get(index++));
+		return true;
+	}
+}
@@ -0,0 +1,245 @@
+package model;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Immutable set of users at a point in time, ordered by ID. A change returns a new snapshot that shares
+ * everything but the changed path with the old one, so taking a snapshot is free and changing one user copies
+ * at most seven small nodes.
+ *
+ * The users are kept in a bitmapped trie on the bits of their ID, five bits per level. Every node knows how
+ * many users are below it, so a page at any offset is found without walking the users before it.
+ */
+public final class UserSnapshot implements Iterable<UserDTO> {
+
+	/**
+	 * Snapshot without users
+	 */
+	public static final UserSnapshot EMPTY = new UserSnapshot(null);
+
+	private static final int BITS = 5;
+	private static final int TOP_SHIFT = 30;
+	private static final int DEPTH = TOP_SHIFT / BITS + 1;
+
+	private static final class Node {
+		final int bitmap;
+		// child nodes, or users on the last level, in the order of their bits
+		final Object[] children;
+		final int size;
+
+		Node(int bitmap, Object[] children, int size) {
+			this.bitmap = bitmap;
+			this.children = children;
+			this.size = size;
+		}
+	}
+
+	private final Node root;
+
+	private UserSnapshot(Node root) {
+		this.root = root;
+	}
+
+	// flipping the sign bit makes unsigned order of the keys the signed order of the IDs
+	private static int key(int userId) {
+		return userId ^ Integer.MIN_VALUE;
+	}
+
+	private static int bit(int key, int shift) {
+		return 1 << ((key >>> shift) & ((1 << BITS) - 1));
+	}
+
+	/**
+	 * @param userId ID of the user
+	 * @return the user or null if no user has that ID
+	 */
+	public UserDTO get(int userId) {
+		int key = key(userId);
+		Node node = root;
+		for (int shift = TOP_SHIFT; node != null; shift -= BITS) {
+			int bit = bit(key, shift);
+			if ((node.bitmap & bit) == 0) {
+				return null;
+			}
+			Object child = node.children[Integer.bitCount(node.bitmap & (bit - 1))];
+			if (shift == 0) {
+				return (UserDTO) child;
+			}
+			node = (Node) child;
+		}
+		return null;
+	}
+
+	/**
+	 * @param userId ID of the user
+	 * @return true if a user with that ID is in the snapshot
+	 */
+	public boolean contains(int userId) {
+		return get(userId) != null;
+	}
+
+	public int size() {
+		return root == null ? 0 : root.size;
+	}
+
+	public boolean isEmpty() {
+		return root == null;
+	}
+
+	/**
+	 * @param user user to add, or to replace the user with the same ID with
+	 * @return a snapshot with the user, this snapshot is unchanged
+	 */
+	public UserSnapshot with(UserDTO user) {
+		int delta = contains(user.getUserID()) ? 0 : 1;
+		return new UserSnapshot(put(root, key(user.getUserID()), TOP_SHIFT, user, delta));
+	}
+
+	/**
+	 * @param userId ID of the user to remove
+	 * @return a snapshot without the user, or this snapshot if it has no user with that ID
+	 */
+	public UserSnapshot without(int userId) {
+		if (!contains(userId)) {
+			return this;
+		}
+		return new UserSnapshot(remove(root, key(userId), TOP_SHIFT));
+	}
+
+	private static Node put(Node node, int key, int shift, UserDTO user, int delta) {
+		int bitmap = node == null ? 0 : node.bitmap;
+		Object[] old = node == null ? new Object[0] : node.children;
+		int bit = bit(key, shift);
+		int index = Integer.bitCount(bitmap & (bit - 1));
+		boolean present = (bitmap & bit) != 0;
+		Object child = shift == 0 ? user : put(present ? (Node) old[index] : null, key, shift - BITS, user, delta);
+		Object[] children;
+		if (present) {
+			children = old.clone();
+			children[index] = child;
+		} else {
+			children = new Object[old.length + 1];
+			System.arraycopy(old, 0, children, 0, index);
+			children[index] = child;
+			System.arraycopy(old, index, children, index + 1, old.length - index);
+		}
+		return new Node(bitmap | bit, children, (node == null ? 0 : node.size) + delta);
+	}
+
+	// the key must be in the trie
+	private static Node remove(Node node, int key, int shift) {
+		int bit = bit(key, shift);
+		int index = Integer.bitCount(node.bitmap & (bit - 1));
+		Node child = shift == 0 ? null : remove((Node) node.children[index], key, shift - BITS);
+		if (child != null) {
+			Object[] children = node.children.clone();
+			children[index] = child;
+			return new Node(node.bitmap, children, node.size - 1);
+		}
+		if (node.bitmap == bit) {
+			return null;
+		}
+		Object[] children = new Object[node.children.length - 1];
+		System.arraycopy(node.children, 0, children, 0, index);
+		System.arraycopy(node.children, index + 1, children, index, children.length - index);
+		return new Node(node.bitmap & ~bit, children, node.size - 1);
+	}
+
+	/**
+	 * Adds a page of users in ID order to a list
+	 * @param offset number of users to skip
+	 * @param limit maximum number of users to add
+	 * @param page list the users are added to
+	 */
+	public void page(int offset, int limit, DTOList<UserDTO> page) {
+		if (root == null || offset >= root.size || limit <= 0) {
+			return;
+		}
+		page.ensureCapacity(page.size() + Math.min(limit, root.size - offset));
+		addRange(root, TOP_SHIFT, offset, page, page.size() + Math.min(limit, root.size - offset));
+	}
+
+	private static void addRange(Node node, int shift, int from, DTOList<UserDTO> page, int targetSize) {
+		for (Object child : node.children) {
+			if (page.size() >= targetSize) {
+				return;
+			}
+			if (shift == 0) {
+				if (from > 0) {
+					from--;
+				} else {
+					page.add((UserDTO) child);
+				}
+				continue;
+			}
+			Node childNode = (Node) child;
+			if (from >= childNode.size) {
+				from -= childNode.size;
+				continue;
+			}
+			addRange(childNode, shift - BITS, from, page, targetSize);
+			from = 0;
+		}
+	}
+
+	/**
+	 * Copies the users into a new list in ID order
+	 * @return list of all users
+	 */
+	public DTOList<UserDTO> toList() {
+		DTOList<UserDTO> list = new DTOList<>();
+		page(0, size(), list);
+		return list;
+	}
+
+	/**
+	 * @return the users in ID order, without copying them
+	 */
+	public Stream<UserDTO> stream() {
+		return StreamSupport.stream(Spliterators.spliterator(iterator(), size(),
+				Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE), false);
+	}
+
+	@Override
+	public Iterator<UserDTO> iterator() {
+		return new Iterator<UserDTO>() {
+			// path from the root to the current leaf, and the next child to visit on every level
+			private final Node[] nodes = new Node[DEPTH];
+			private final int[] positions = new int[DEPTH];
+			private int level = root == null ? -1 : 0;
+
+			{
+				nodes[0] = root;
+			}
+
+			@Override
+			public boolean hasNext() {
+				while (level >= 0) {
+					if (positions[level] < nodes[level].children.length) {
+						if (level == DEPTH - 1) {
+							return true;
+						}
+						nodes[level + 1] = (Node) nodes[level].children[positions[level]++];
+						positions[++level] = 0;
+					} else {
+						level--;
+					}
+				}
+				return false;
+			}
+
+			@Override
+			public UserDTO next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return (UserDTO) nodes[level].children[positions[level]++];
+			}
+		};
+	}
+}
@@ -0,0 +1,230 @@
+package model;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * In-memory user store keyed directly by user ID.
+ * Lookups go through an {@link IntIndex} from ID to position, so get, contains and remove
+ * run in constant time without boxing the ID. Users are kept in a dense array in insertion order,
+ * which gives a stable order when listing.
+ */
+public class UserStore implements Iterable<UserDTO> {
+
+	private static final int MIN_CAPACITY = 16;
+
+	// position of every user in the entries
+	private final IntIndex index;
+
+	// dense storage in insertion order, removed entries are null until compacted
+	private UserDTO[] entries;
+	private final RowOrder order;
+	private int end;
+	private int size;
+
+	public UserStore() {
+		this(MIN_CAPACITY);
+	}
+
+	/**
+	 * @param expectedSize number of users the store can hold before it has to grow
+	 */
+	public UserStore(int expectedSize) {
+		index = new IntIndex(expectedSize);
+		entries = new UserDTO[Math.max(MIN_CAPACITY, expectedSize)];
+		order = new RowOrder(entries.length);
+	}
+
+	/**
+	 * Looks up a user by ID
+	 * @param userId ID of the user
+	 * @return the user or null if no user has that ID
+	 */
+	public UserDTO get(int userId) {
+		int i = index.get(userId);
+		return i < 0 ? null : entries[i];
+	}
+
+	/**
+	 * @param userId ID of the user
+	 * @return true if a user with that ID is stored
+	 */
+	public boolean contains(int userId) {
+		return index.get(userId) >= 0;
+	}
+
+	/**
+	 * Stores a user. A user that replaces an existing one with the same ID keeps its position.
+	 * @param user user to store
+	 * @return the user previously stored under the same ID, or null
+	 */
+	public UserDTO put(UserDTO user) {
+		int userId = user.getUserID();
+		int i = index.get(userId);
+		if (i >= 0) {
+			UserDTO previous = entries[i];
+			entries[i] = user;
+			return previous;
+		}
+		if (end == entries.length) {
+			growEntries();
+		}
+		entries[end] = user;
+		index.put(userId, end);
+		order.add(end);
+		end++;
+		size++;
+		return null;
+	}
+
+	/**
+	 * Removes a user by ID
+	 * @param userId ID of the user
+	 * @return the removed user, or null if no user had that ID
+	 */
+	public UserDTO remove(int userId) {
+		int i = index.remove(userId);
+		if (i < 0) {
+			return null;
+		}
+		UserDTO removed = entries[i];
+		entries[i] = null;
+		order.remove(i);
+		size--;
+		if (i == end - 1) {
+			end--;
+		} else if (end - size > size && end > MIN_CAPACITY) {
+			compact();
+		}
+		return removed;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		index.clear();
+		Arrays.fill(entries, 0, end, null);
+		order.compacted(0);
+		end = 0;
+		size = 0;
+	}
+
+	/**
+	 * Copies the stored users into a new list in insertion order
+	 * @return list of all users
+	 */
+	public DTOList<UserDTO> toList() {
+		DTOList<UserDTO> list = new DTOList<>();
+		list.ensureCapacity(size);
+		for (int i = 0; i < end; i++) {
+			if (entries[i] != null) {
+				list.add(entries[i]);
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Adds a page of users in insertion order to a list
+	 * @param offset number of users to skip
+	 * @param limit maximum number of users to add
+	 * @param page list the users are added to
+	 */
+	public void page(int offset, int limit, DTOList<UserDTO> page) {
+		if (offset >= size || limit <= 0) {
+			return;
+		}
+		// with no removed entries the offset is an index
+		int i = end == size ? offset : order.row(offset);
+		for (int added = 0; i < end && added < limit; i++) {
+			if (entries[i] != null) {
+				page.add(entries[i]);
+				added++;
+			}
+		}
+	}
+
+	/**
+	 * Adds a page of users in insertion order to a list, starting at a position instead of an offset.
+	 * Positions don't move when users are removed, so paging by position neither skips nor repeats users.
+	 * @param position 0 for the first page, or the position returned for the previous page
+	 * @param limit maximum number of users to add
+	 * @param page list the users are added to
+	 * @return the position of the next page
+	 */
+	public long pageFrom(long position, int limit, List<UserDTO> page) {
+		int added = 0;
+		for (int i = order.rowFrom(position, end); i < end; i++) {
+			if (entries[i] != null) {
+				if (added == limit) {
+					return order.position(i);
+				}
+				page.add(entries[i]);
+				added++;
+			}
+		}
+		return order.nextPosition();
+	}
+
+	@Override
+	public Iterator<UserDTO> iterator() {
+		return new Iterator<UserDTO>() {
+			private int next = advance(0);
+
+			private int advance(int from) {
+				while (from < end && entries[from] == null) {
+					from++;
+				}
+				return from;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return next < end;
+			}
+
+			@Override
+			public UserDTO next() {
+				if (next >= end) {
+					throw new NoSuchElementException();
+				}
+				UserDTO user = entries[next];
+				next = advance(next + 1);
+				return user;
+			}
+		};
+	}
+
+	private void growEntries() {
+		if (end - size > size >> 1) {
+			compact();
+		} else {
+			entries = Arrays.copyOf(entries, entries.length << 1);
+			order.resize(entries.length);
+		}
+	}
+
+	private void compact() {
+		int j = 0;
+		for (int i = 0; i < end; i++) {
+			if (entries[i] != null) {
+				order.move(i, j);
+				entries[j++] = entries[i];
+			}
+		}
+		Arrays.fill(entries, j, end, null);
+		order.compacted(j);
+		end = j;
+		for (int i = 0; i < end; i++) {
+			index.put(entries[i].getUserID(), i);
+		}
+	}
+}
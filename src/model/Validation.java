@@ -1,29 +1,57 @@
 package model;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.GregorianCalendar;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
+/**
+ * Validation of user input. The single value checks don't allocate, so they can be called in tight loops,
+ * and {@link #validateAll} checks many users at once on the common fork-join pool.
+ */
 public class Validation {
 
 	/**
-	 * 
+	 * Lowest and highest user ID that can be chosen
+	 */
+	public static final int MIN_ID = 11;
+	public static final int MAX_ID = 99;
+
+	/**
+	 * The valid roles, in lower case
+	 */
+	public static final List<String> ROLES = Collections.unmodifiableList(Arrays.asList("admin", "pharmacist", "foreman", "operator"));
+	private static final String[] ROLE_TABLE = ROLES.toArray(new String[0]);
+
+	/**
+	 * Symbols a password can contain
+	 */
+	public static final String PASSWORD_SYMBOLS = "!@#$&*";
+
+	private static final int[] CPR_WEIGHTS = {4, 3, 2, 7, 6, 5, 4, 3, 2, 1};
+	private static final int[] DAYS_IN_MONTH = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+	// todays date as yyyymmdd, refreshed when the day changes
+	private static volatile long todayExpires;
+	private static volatile int today;
+
+	// number of users from which validateAll runs in parallel
+	private static final int PARALLEL_THRESHOLD = 512;
+
+	/**
+	 *
 	 * @param input
 	 * @return true if the input i a positive integer
 	 */
 	public static boolean isPositiveInteger(String input) {
-		try {
-			long i = Long.parseLong(input);
-			if (i >= 0) {
-				return true;
-			} else {
-				return false;
-			}
-		} catch (Exception e) {
-			return false;
-		}
+		return parsePositive(input) >= 0;
 	}
 
 	/**
@@ -32,16 +60,19 @@ public class Validation {
 	 * @return true if the ID is valid
 	 */
 	public static boolean isValidID(String ID) {
-		if (isPositiveInteger(ID)) {
-			int i = Integer.parseInt(ID);
-			if(i < 11 || i > 99) {
-				return false;
-			} else {
-				return true;
-			}
-		} else {
-			return false;
-		}
+		return isValidID(ID, MIN_ID, MAX_ID);
+	}
+
+	/**
+	 * Method to validate if an ID is within a range.
+	 * @param ID
+	 * @param minId lowest valid ID
+	 * @param maxId highest valid ID
+	 * @return true if the ID is valid
+	 */
+	public static boolean isValidID(String ID, int minId, int maxId) {
+		long i = parsePositive(ID);
+		return i >= minId && i <= maxId;
 	}
 
 	/**
@@ -74,39 +105,37 @@ public class Validation {
 
 	/**
 	 * Method to validate if a cpr is a valid.
+	 * The cpr must be 10 digits, start with a date that isn't in the future in either the 1900's or 2000's,
+	 * and pass the modulus 11 check.
 	 * @param cpr
 	 * @return true if the cpr is valid
 	 */
 	public static boolean isValidCpr(String cpr) {
-		if (isPositiveInteger(cpr)) {
-			int month = Integer.parseInt(cpr.substring(2, 4));
-			// Checks if month is valid
-			if (month > 0 && month < 13) {
-				for (int i = 1900; i < 2100; i += 100) {
-					int day = Integer.parseInt(cpr.substring(0, 2));
-					int year = i + Integer.parseInt(cpr.substring(4, 6));
-					// Creates a calendar object and sets year and month
-					Calendar cprDate = new GregorianCalendar(year, month-1, 1);
-					// Get the number of days in that month
-					int daysInMonth = cprDate.getActualMaximum(Calendar.DAY_OF_MONTH);
-					// Checks if day is valid
-					if (day > 0 && day <= daysInMonth) {
-						// check if the date later than todays date
-						cprDate.set(year, month-1, day);
-						Calendar currentDate = new GregorianCalendar();
-						if (cprDate.compareTo(currentDate) <= 0) {
-							// check if full cpr is valid
-							int CprProductSum = 0;
-							int[] multiplyBy = {4, 3, 2, 7, 6, 5, 4, 3, 2, 1};
-							for (int j = 0; j < cpr.length(); j++) {
-								CprProductSum += Integer.parseInt(cpr.substring(j, j+1)) * multiplyBy[j];
-							}
-							if (CprProductSum % 11 == 0) {
-								return true;
-							}
-						}
-					}
-				}
+		if (cpr == null || cpr.length() != 10) {
+			return false;
+		}
+		int productSum = 0;
+		for (int i = 0; i < 10; i++) {
+			int digit = cpr.charAt(i) - '0';
+			if (digit < 0 || digit > 9) {
+				return false;
+			}
+			productSum += digit * CPR_WEIGHTS[i];
+		}
+		if (productSum % 11 != 0) {
+			return false;
+		}
+		int day = digitPair(cpr, 0);
+		int month = digitPair(cpr, 2);
+		int year = digitPair(cpr, 4);
+		if (month < 1 || month > 12 || day < 1) {
+			return false;
+		}
+		int currentDate = today();
+		for (int century = 1900; century < 2100; century += 100) {
+			if (day <= daysInMonth(century + year, month)
+					&& (century + year) * 10000 + month * 100 + day <= currentDate) {
+				return true;
 			}
 		}
 		return false;
@@ -114,18 +143,39 @@ public class Validation {
 
 	/**
 	 * Method can validate if a chosen password is allowed or not, based on the following requirements:
-	 * minimum 2 symbols
+	 * minimum 8 characters
 	 * minimum 2 upper case characters
-	 * minimum 2 lower case characters
+	 * minimum 3 lower case characters
+	 * minimum 2 digits
+	 * minimum 1 symbol from !@#$&*
 	 * (username not present in password string)
 	 * @param password
 	 * @return true if the password is valid.
 	 */
 	public static boolean isValidPassword(String password) {
-		//(?!.*" + hashMap.get("userName").toString()+")
-		Pattern p = Pattern.compile("^(?=.*[A-Z].*[A-Z])(?=.*[!@#$&*])(?=.*[0-9].*[0-9])(?=.*[a-z].*[a-z].*[a-z]).{8,}$");
-		Matcher m = p.matcher(password);
-		return m.matches();
+		if (password == null || password.length() < 8) {
+			return false;
+		}
+		int upper = 0;
+		int lower = 0;
+		int digits = 0;
+		int symbols = 0;
+		for (int i = 0; i < password.length(); i++) {
+			char c = password.charAt(i);
+			if (c >= 'A' && c <= 'Z') {
+				upper++;
+			} else if (c >= 'a' && c <= 'z') {
+				lower++;
+			} else if (c >= '0' && c <= '9') {
+				digits++;
+			} else if (PASSWORD_SYMBOLS.indexOf(c) >= 0) {
+				symbols++;
+			} else if (c == '\n' || c == '\r' || c == 0x85 || c == 0x2028 || c == 0x2029) {
+				// line terminators aren't allowed
+				return false;
+			}
+		}
+		return upper >= 2 && lower >= 3 && digits >= 2 && symbols >= 1;
 	}
 
 	/**
@@ -134,17 +184,173 @@ public class Validation {
 	 * @return true if the role is valid
 	 */
 	public static boolean isValidRole(String role) {
-		ArrayList<String> validRoles = new ArrayList<>();
-		validRoles.add("admin");
-		validRoles.add("pharmacist");
-		validRoles.add("foreman");
-		validRoles.add("operator");
-		role = role.toLowerCase();
-		// if its a valid role
-		if (validRoles.contains(role)) {
-			return true;
+		return roleIndex(role) >= 0;
+	}
+
+	/**
+	 * Looks up a role without regard to case
+	 * @param role
+	 * @return index of the role in {@link #ROLES}, or -1 if the role isn't valid
+	 */
+	public static int roleIndex(String role) {
+		for (int i = 0; i < ROLE_TABLE.length; i++) {
+			if (ROLE_TABLE[i].equalsIgnoreCase(role)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Validates user details organized in a hashmap, with the same keys as used by the controller.
+	 * @param user map with the keys ID, userName, ini, cpr, password and roles
+	 * @return a message for every missing or invalid value, empty if the user is valid
+	 */
+	public static List<String> validate(Map<String, Object> user) {
+		return validate(user, MIN_ID, MAX_ID);
+	}
+
+	/**
+	 * Validates user details organized in a hashmap, with IDs in the given range.
+	 * @param user map with the keys ID, userName, ini, cpr, password and roles
+	 * @param minId lowest valid ID
+	 * @param maxId highest valid ID
+	 * @return a message for every missing or invalid value, empty if the user is valid
+	 */
+	public static List<String> validate(Map<String, Object> user, int minId, int maxId) {
+		List<String> errors = null;
+		Object id = user.get("ID");
+		if (id == null) {
+			errors = addError(errors, "No ID provided");
+		} else if (id instanceof Number ? !isInRange(((Number) id).longValue(), minId, maxId) : !isValidID(id.toString(), minId, maxId)) {
+			errors = addError(errors, "Invalid ID: " + id);
+		}
+		Object userName = user.get("userName");
+		if (userName == null) {
+			errors = addError(errors, "No user name provided");
+		} else if (!isValidUserName(userName.toString())) {
+			errors = addError(errors, "Invalid user name: " + userName);
+		}
+		Object ini = user.get("ini");
+		if (ini == null) {
+			errors = addError(errors, "No initials provided");
+		} else if (!isValidInitials(ini.toString())) {
+			errors = addError(errors, "Invalid initials: " + ini);
+		}
+		Object cpr = user.get("cpr");
+		if (cpr == null) {
+			errors = addError(errors, "No CPR provided");
+		} else if (!isValidCpr(cpr.toString())) {
+			errors = addError(errors, "Invalid CPR: " + cpr);
+		}
+		Object password = user.get("password");
+		if (password == null) {
+			errors = addError(errors, "No password provided");
+		} else if (!isValidPassword(password.toString())) {
+			errors = addError(errors, "Invalid password");
+		}
+		Object roles = user.get("roles");
+		if (!(roles instanceof Collection) || ((Collection<?>) roles).isEmpty()) {
+			errors = addError(errors, "No role provided");
 		} else {
-			return false;
+			for (Object role : (Collection<?>) roles) {
+				if (role == null || !isValidRole(role.toString())) {
+					errors = addError(errors, "Invalid role: " + role);
+				}
+			}
+		}
+		return errors == null ? Collections.<String>emptyList() : errors;
+	}
+
+	/**
+	 * Validates many users. Large batches are split over the common fork-join pool.
+	 * @param users user details organized in hashmaps
+	 * @return the result of {@link #validate} for every user, in the same order
+	 */
+	public static List<List<String>> validateAll(Collection<? extends Map<String, Object>> users) {
+		return validateAll(users, MIN_ID, MAX_ID);
+	}
+
+	/**
+	 * Validates many users with IDs in the given range. Large batches are split over the fork-join pool
+	 * the call runs in, which is the common pool unless called from a task in another pool.
+	 * @param users user details organized in hashmaps
+	 * @param minId lowest valid ID
+	 * @param maxId highest valid ID
+	 * @return the result of {@link #validate} for every user, in the same order
+	 */
+	@SuppressWarnings("unchecked")
+	public static List<List<String>> validateAll(Collection<? extends Map<String, Object>> users, int minId, int maxId) {
+		if (users.size() < PARALLEL_THRESHOLD) {
+			List<List<String>> results = new ArrayList<>(users.size());
+			for (Map<String, Object> user : users) {
+				results.add(validate(user, minId, maxId));
+			}
+			return results;
+		}
+		// an ArrayList splits evenly, while many other collections don't
+		List<? extends Map<String, Object>> list = users instanceof ArrayList ? (List<? extends Map<String, Object>>) users : new ArrayList<>(users);
+		return list.parallelStream().map(user -> validate(user, minId, maxId)).collect(Collectors.toList());
+	}
+
+	private static List<String> addError(List<String> errors, String error) {
+		if (errors == null) {
+			errors = new ArrayList<>(2);
+		}
+		errors.add(error);
+		return errors;
+	}
+
+	private static boolean isInRange(long id, int minId, int maxId) {
+		return id >= minId && id <= maxId;
+	}
+
+	/**
+	 * Parses a string of digits, optionally with a leading plus
+	 * @return the value, or -1 if the input isn't a positive integer that fits in a long
+	 */
+	private static long parsePositive(String input) {
+		if (input == null) {
+			return -1;
+		}
+		int length = input.length();
+		int i = length > 0 && input.charAt(0) == '+' ? 1 : 0;
+		if (i == length) {
+			return -1;
+		}
+		long value = 0;
+		for (; i < length; i++) {
+			int digit = input.charAt(i) - '0';
+			if (digit < 0 || digit > 9 || value > (Long.MAX_VALUE - digit) / 10) {
+				return -1;
+			}
+			value = value * 10 + digit;
+		}
+		return value;
+	}
+
+	private static int digitPair(String s, int index) {
+		return (s.charAt(index) - '0') * 10 + (s.charAt(index + 1) - '0');
+	}
+
+	private static int daysInMonth(int year, int month) {
+		if (month == 2 && (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0))) {
+			return 29;
+		}
+		return DAYS_IN_MONTH[month - 1];
+	}
+
+	/**
+	 * @return todays date as yyyymmdd, only looked up again when the day has changed
+	 */
+	private static int today() {
+		long now = System.currentTimeMillis();
+		if (now >= todayExpires) {
+			ZoneId zone = ZoneId.systemDefault();
+			LocalDate date = LocalDate.now(zone);
+			today = date.getYear() * 10000 + date.getMonthValue() * 100 + date.getDayOfMonth();
+			todayExpires = LocalDateTime.of(date.plusDays(1), LocalTime.MIDNIGHT).atZone(zone).toInstant().toEpochMilli();
 		}
+		return today;
 	}
 }
@@ -0,0 +1,189 @@
+package model.metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanConstructorInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanNotificationInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ReflectionException;
+
+/**
+ * Named group of operation metrics, counters and histograms, e.g. the metrics of one DAO or storage.
+ * Instruments are created once, when the component that updates them is set up; the component keeps
+ * references to them, so updating an instrument never goes through this class.
+ *
+ * The group is a read-only MBean with the attributes {@code <operation>.count}, {@code <operation>.errors},
+ * {@code <operation>.p50Micros}, {@code .p99Micros}, {@code .p999Micros}, {@code .maxMicros}, one attribute per
+ * counter and {@code <histogram>.p50}, {@code .p99}, {@code .max}, {@code .mean} per histogram.
+ */
+public class Metrics implements DynamicMBean {
+
+	private final String name;
+	private final Map<String, OperationMetrics> operations = new LinkedHashMap<>();
+	private final Map<String, LongAdder> counters = new LinkedHashMap<>();
+	private final Map<String, Histogram> histograms = new LinkedHashMap<>();
+
+	public Metrics(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the metrics of the operation, created if the group doesn't have them yet
+	 */
+	public synchronized OperationMetrics operation(String name) {
+		return operations.computeIfAbsent(name, OperationMetrics::new);
+	}
+
+	/**
+	 * @return the counter, created if the group doesn't have it yet
+	 */
+	public synchronized LongAdder counter(String name) {
+		return counters.computeIfAbsent(name, key -> new LongAdder());
+	}
+
+	/**
+	 * @return the histogram, created if the group doesn't have it yet
+	 */
+	public synchronized Histogram histogram(String name) {
+		return histograms.computeIfAbsent(name, key -> new Histogram());
+	}
+
+	/**
+	 * @return a table of the operations that have been called, followed by the counters and histograms
+	 */
+	public synchronized String report() {
+		StringBuilder report = new StringBuilder(name).append('\n');
+		report.append(String.format("  %-20s %10s %8s %10s %10s %10s %10s%n",
+				"operation", "count", "errors", "p50 us", "p99 us", "p99.9 us", "max us"));
+		for (OperationMetrics operation : operations.values()) {
+			Histogram latency = operation.getLatency();
+			if (latency.getCount() == 0) {
+				continue;
+			}
+			report.append(String.format("  %-20s %10d %8d %10.1f %10.1f %10.1f %10.1f%n", operation.getName(),
+					latency.getCount(), operation.getErrors(), micros(latency.getPercentile(0.5)),
+					micros(latency.getPercentile(0.99)), micros(latency.getPercentile(0.999)), micros(latency.getMax())));
+		}
+		for (Map.Entry<String, LongAdder> counter : counters.entrySet()) {
+			report.append(String.format("  %-20s %10d%n", counter.getKey(), counter.getValue().sum()));
+		}
+		for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+			Histogram histogram = entry.getValue();
+			report.append(String.format("  %-20s %10d values, mean %.1f, p50 %d, p99 %d, max %d%n", entry.getKey(),
+					histogram.getCount(), histogram.getMean(), histogram.getPercentile(0.5),
+					histogram.getPercentile(0.99), histogram.getMax()));
+		}
+		return report.toString();
+	}
+
+	private static double micros(long nanos) {
+		return nanos / 1000.0;
+	}
+
+	@Override
+	public synchronized Object getAttribute(String attribute) throws AttributeNotFoundException {
+		if (counters.containsKey(attribute)) {
+			return counters.get(attribute).sum();
+		}
+		int dot = attribute.lastIndexOf('.');
+		if (dot > 0) {
+			String instrument = attribute.substring(0, dot);
+			String field = attribute.substring(dot + 1);
+			OperationMetrics operation = operations.get(instrument);
+			if (operation != null) {
+				Histogram latency = operation.getLatency();
+				switch (field) {
+				case "count": return latency.getCount();
+				case "errors": return operation.getErrors();
+				case "p50Micros": return micros(latency.getPercentile(0.5));
+				case "p99Micros": return micros(latency.getPercentile(0.99));
+				case "p999Micros": return micros(latency.getPercentile(0.999));
+				case "maxMicros": return micros(latency.getMax());
+				}
+			}
+			Histogram histogram = histograms.get(instrument);
+			if (histogram != null) {
+				switch (field) {
+				case "count": return histogram.getCount();
+				case "p50": return histogram.getPercentile(0.5);
+				case "p99": return histogram.getPercentile(0.99);
+				case "max": return histogram.getMax();
+				case "mean": return histogram.getMean();
+				}
+			}
+		}
+		throw new AttributeNotFoundException(attribute);
+	}
+
+	@Override
+	public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+		throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+	}
+
+	@Override
+	public AttributeList getAttributes(String[] attributes) {
+		AttributeList list = new AttributeList();
+		for (String attribute : attributes) {
+			try {
+				list.add(new Attribute(attribute, getAttribute(attribute)));
+			} catch (AttributeNotFoundException e) {
+				// unknown attributes are left out, as the MBean contract allows
+			}
+		}
+		return list;
+	}
+
+	@Override
+	public AttributeList setAttributes(AttributeList attributes) {
+		return new AttributeList();
+	}
+
+	@Override
+	public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+		throw new ReflectionException(new NoSuchMethodException(actionName), "Metrics have no operations");
+	}
+
+	@Override
+	public synchronized MBeanInfo getMBeanInfo() {
+		List<MBeanAttributeInfo> attributes = new ArrayList<>();
+		for (String operation : operations.keySet()) {
+			attributes.add(attribute(operation + ".count", "long", "Calls"));
+			attributes.add(attribute(operation + ".errors", "long", "Calls that threw"));
+			attributes.add(attribute(operation + ".p50Micros", "double", "Median latency in microseconds"));
+			attributes.add(attribute(operation + ".p99Micros", "double", "99th percentile latency in microseconds"));
+			attributes.add(attribute(operation + ".p999Micros", "double", "99.9th percentile latency in microseconds"));
+			attributes.add(attribute(operation + ".maxMicros", "double", "Highest latency in microseconds"));
+		}
+		for (String counter : counters.keySet()) {
+			attributes.add(attribute(counter, "long", counter));
+		}
+		for (String histogram : histograms.keySet()) {
+			attributes.add(attribute(histogram + ".count", "long", "Values"));
+			attributes.add(attribute(histogram + ".p50", "long", "Median value"));
+			attributes.add(attribute(histogram + ".p99", "long", "99th percentile value"));
+			attributes.add(attribute(histogram + ".max", "long", "Highest value"));
+			attributes.add(attribute(histogram + ".mean", "double", "Mean value"));
+		}
+		return new MBeanInfo(getClass().getName(), "Metrics of " + name,
+				attributes.toArray(new MBeanAttributeInfo[attributes.size()]),
+				new MBeanConstructorInfo[0], new MBeanOperationInfo[0], new MBeanNotificationInfo[0]);
+	}
+
+	private static MBeanAttributeInfo attribute(String name, String type, String description) {
+		return new MBeanAttributeInfo(name, type, description, true, false, false);
+	}
+}
@@ -0,0 +1,74 @@
+package model.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Registry of the metric groups of the running program. Registered groups are published as MBeans on the
+ * platform MBean server under {@code model.metrics:type=Metrics,name=<group>}, so they can be read with JConsole
+ * or any other JMX client, and their reports are collected for the TUI.
+ */
+public final class MetricsRegistry {
+
+	private static final List<Metrics> registered = new ArrayList<>();
+
+	private MetricsRegistry() {
+	}
+
+	/**
+	 * Registers a group, replacing a registered group of the same name
+	 */
+	public static synchronized void register(Metrics metrics) {
+		unregister(metrics.getName());
+		registered.add(metrics);
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, objectName(metrics.getName()));
+		} catch (JMException e) {
+			// the report in the TUI still works without JMX
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Removes the group of the given name, if it is registered
+	 */
+	public static synchronized void unregister(String name) {
+		registered.removeIf(metrics -> metrics.getName().equals(name));
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = objectName(name);
+			if (server.isRegistered(objectName)) {
+				server.unregisterMBean(objectName);
+			}
+		} catch (JMException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * @return the registered groups in the order they were registered
+	 */
+	public static synchronized List<Metrics> getAll() {
+		return new ArrayList<>(registered);
+	}
+
+	/**
+	 * @return the reports of the registered groups, empty if none are registered
+	 */
+	public static String report() {
+		StringBuilder report = new StringBuilder();
+		for (Metrics metrics : getAll()) {
+			report.append(metrics.report());
+		}
+		return report.toString();
+	}
+
+	static ObjectName objectName(String name) throws JMException {
+		return new ObjectName("model.metrics:type=Metrics,name=" + ObjectName.quote(name));
+	}
+}
@@ -0,0 +1,49 @@
+package model.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Count, failures and latency of one operation. A caller takes the time with {@link System#nanoTime()}
+ * before the operation and passes it to {@link #record}, so measuring allocates nothing.
+ */
+public final class OperationMetrics {
+
+	private final String name;
+	private final Histogram latency = new Histogram();
+	private final LongAdder errors = new LongAdder();
+
+	OperationMetrics(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Records a finished call
+	 * @param startNanos value of System.nanoTime() when the call started
+	 * @param failed true if the call threw
+	 */
+	public void record(long startNanos, boolean failed) {
+		latency.record(System.nanoTime() - startNanos);
+		if (failed) {
+			errors.increment();
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getCount() {
+		return latency.getCount();
+	}
+
+	public long getErrors() {
+		return errors.sum();
+	}
+
+	/**
+	 * @return latencies of the calls in nanoseconds
+	 */
+	public Histogram getLatency() {
+		return latency;
+	}
+}
@@ -0,0 +1,158 @@
+package model.storage;
+
+import model.DTOList;
+import model.UserDTO;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the writes and reads of an {@link IDataStorage} on a single I/O thread of its own.
+ *
+ * Since every write holds all users, a snapshot still waiting when a newer one arrives is dropped,
+ * and its future completes when the newer snapshot is written. So however fast snapshots arrive,
+ * at most one write is running and one is waiting, and the storage never sees two writes at once.
+ * Reads run on the same thread in the order they were started, after the writes started before them.
+ */
+public class AsyncStorage implements IAsyncDataStorage, Closeable {
+
+    private final IDataStorage storage;
+    private final ExecutorService executor;
+
+    // the snapshot waiting to be written, and the futures completed when it is
+    private ArrayList<UserDTO> pending;
+    private List<CompletableFuture<Void>> waiting = new ArrayList<>();
+    private boolean writeScheduled;
+    private boolean closed;
+
+    private long written;
+    private long dropped;
+
+    /**
+     * @param storage the storage the I/O thread writes and reads
+     */
+    public AsyncStorage(IDataStorage storage) {
+        this.storage = storage;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "AsyncStorage I/O");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public synchronized CompletableFuture<Void> writeAsync(ArrayList<UserDTO> users) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if (closed) {
+            future.completeExceptionally(new IOException("Storage is closed"));
+            return future;
+        }
+        if (pending != null) {
+            dropped++;
+        }
+        pending = users;
+        waiting.add(future);
+        if (!writeScheduled) {
+            writeScheduled = true;
+            executor.execute(this::writePending);
+        }
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<DTOList<UserDTO>> readAsync() {
+        CompletableFuture<DTOList<UserDTO>> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(storage.read());
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(new IOException("Storage is closed"));
+        }
+        return future;
+    }
+
+    /**
+     * @return a future completed once every write started before is done
+     */
+    public CompletableFuture<Void> flushAsync() {
+        try {
+            return CompletableFuture.runAsync(() -> { }, executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    /**
+     * Waits for the started writes, stops the I/O thread and closes the storage if it's closeable
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for writes", e);
+        }
+        if (storage instanceof Closeable) {
+            ((Closeable) storage).close();
+        }
+    }
+
+    /**
+     * @return number of snapshots written to the storage
+     */
+    public synchronized long getWrittenCount() {
+        return written;
+    }
+
+    /**
+     * @return number of snapshots dropped because a newer one arrived before they were written
+     */
+    public synchronized long getDroppedCount() {
+        return dropped;
+    }
+
+    private void writePending() {
+        ArrayList<UserDTO> users;
+        List<CompletableFuture<Void>> futures;
+        synchronized (this) {
+            users = pending;
+            futures = waiting;
+            pending = null;
+            waiting = new ArrayList<>();
+            writeScheduled = false;
+        }
+        try {
+            storage.write(users);
+            synchronized (this) {
+                written++;
+            }
+            for (CompletableFuture<Void> future : futures) {
+                future.complete(null);
+            }
+        } catch (Exception e) {
+            for (CompletableFuture<Void> future : futures) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+}
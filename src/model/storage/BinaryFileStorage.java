@@ -0,0 +1,115 @@
+package model.storage;
+
+import model.DTOList;
+import model.UserDTO;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+
+/**
+ * Storage that writes every user with {@link UserCodec} instead of Java serialization,
+ * which makes the file several times smaller and faster to write and read than the one of {@link FileStorage}.
+ *
+ * The file starts with a header [int magic][int codec version][int number of users], followed by the records.
+ * It is written to a temporary file that replaces the old one, so a failed write leaves the old users in place.
+ */
+public class BinaryFileStorage implements IStreamStorage {
+
+    private static final int MAGIC = 0x55534231;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final String path;
+
+    public BinaryFileStorage() {
+        this(System.getProperty("user.dir")+"/src/model/storage/data.bin");
+    }
+
+    public BinaryFileStorage(String path) {
+        this.path = path;
+    }
+
+    @Override
+    public void write(ArrayList<UserDTO> users) throws IOException {
+        File file = new File(path);
+        File tempFile = new File(path + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tempFile)) {
+            write(users, out);
+        }
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void write(ArrayList<UserDTO> users, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+        data.writeInt(MAGIC);
+        data.writeInt(UserCodec.VERSION);
+        data.writeInt(users.size());
+        UserCodec codec = new UserCodec();
+        for (UserDTO user : users) {
+            codec.write(user, data);
+        }
+        data.flush();
+    }
+
+    /**
+     * @return the users in the file, or an empty list if it doesn't exist
+     * @throws IOException if the file isn't a binary user file of a supported version, or is cut short
+     */
+    @Override
+    public DTOList<UserDTO> read() throws IOException {
+        if (!fileExists()) {
+            return new DTOList<>();
+        }
+        try (FileInputStream in = new FileInputStream(path)) {
+            return read(in);
+        }
+    }
+
+    @Override
+    public DTOList<UserDTO> read(InputStream stream) throws IOException {
+        DTOList<UserDTO> userList = new DTOList<>();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream, BUFFER_SIZE));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a binary user file");
+        }
+        int version = in.readInt();
+        if (version < 1 || version > UserCodec.VERSION) {
+            throw new IOException("Unsupported binary user file version " + version);
+        }
+        int count = in.readInt();
+        UserCodec codec = new UserCodec();
+        // the count only sizes the list up to a bound, so a corrupt header can't allocate much
+        userList.ensureCapacity(Math.min(count, BUFFER_SIZE));
+        for (int i = 0; i < count; i++) {
+            UserDTO user = codec.read(in);
+            if (user == null) {
+                throw new EOFException("Users end after " + i + " of " + count);
+            }
+            userList.add(user);
+        }
+        return userList;
+    }
+
+    public boolean fileExists() {
+        return new File(path).exists();
+    }
+
+    /**
+     * @return size of the file in bytes
+     */
+    public long getFileSize() {
+        return new File(path).length();
+    }
+}
@@ -0,0 +1,268 @@
+package model.storage;
+
+import model.DTOList;
+import model.UserDTO;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Storage that compresses the stream of another storage into its own file, for example
+ * new CompressedStorage(new JSONStorage(), "data.json.gz", Codec.GZIP).
+ * The users are compressed as the wrapped storage writes them and decompressed as it reads them,
+ * so only the buffers of the streams are held in memory besides the users.
+ *
+ * Reading detects whether a file is GZIP or zlib from its first bytes, so a file can be read whichever codec
+ * is configured. The sizes and speed of the last write and read are kept as {@link Stats}.
+ */
+public class CompressedStorage implements IDataStorage {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int GZIP_MAGIC = 0x8B1F;
+
+    /**
+     * Compression format and level, from the fastest to the smallest output
+     */
+    public enum Codec {
+        DEFLATE_FAST(Deflater.BEST_SPEED),
+        DEFLATE(Deflater.DEFAULT_COMPRESSION),
+        DEFLATE_BEST(Deflater.BEST_COMPRESSION),
+        GZIP(Deflater.DEFAULT_COMPRESSION);
+
+        private final int level;
+
+        Codec(int level) {
+            this.level = level;
+        }
+    }
+
+    /**
+     * Sizes and duration of a write or read
+     */
+    public static class Stats {
+        private final long compressedBytes;
+        private final long uncompressedBytes;
+        private final long nanos;
+
+        Stats(long compressedBytes, long uncompressedBytes, long nanos) {
+            this.compressedBytes = compressedBytes;
+            this.uncompressedBytes = uncompressedBytes;
+            this.nanos = nanos;
+        }
+
+        public long getCompressedBytes() {
+            return compressedBytes;
+        }
+
+        public long getUncompressedBytes() {
+            return uncompressedBytes;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * @return compressed size divided by uncompressed size
+         */
+        public double getRatio() {
+            return uncompressedBytes == 0 ? 1 : compressedBytes / (double) uncompressedBytes;
+        }
+
+        /**
+         * @return uncompressed megabytes written or read per second
+         */
+        public double getMegabytesPerSecond() {
+            return nanos == 0 ? 0 : uncompressedBytes / (nanos / 1e9) / (1 << 20);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d -> %d bytes (%.1f%%), %.1f MB/s", uncompressedBytes, compressedBytes,
+                    getRatio() * 100, getMegabytesPerSecond());
+        }
+    }
+
+    private final IStreamStorage storage;
+    private final String path;
+    private final Codec codec;
+    private volatile Stats lastWrite;
+    private volatile Stats lastRead;
+
+    /**
+     * @param storage the storage whose stream is compressed. Its own file isn't used.
+     * @param path path of the compressed file
+     * @param codec the compression written
+     */
+    public CompressedStorage(IStreamStorage storage, String path, Codec codec) {
+        this.storage = storage;
+        this.path = path;
+        this.codec = codec;
+    }
+
+    /**
+     * Writes the compressed users to a temporary file that replaces the old one, so a failed write leaves the old users in place.
+     * The temporary file is deleted if the write fails.
+     */
+    @Override
+    public void write(ArrayList<UserDTO> users) throws IOException {
+        long start = System.nanoTime();
+        File tempFile = new File(path + ".tmp");
+        CountingOutputStream compressed;
+        CountingOutputStream uncompressed;
+        Deflater deflater = codec == Codec.GZIP ? null : new Deflater(codec.level);
+        try (FileOutputStream file = new FileOutputStream(tempFile)) {
+            compressed = new CountingOutputStream(file);
+            // closing the GZIP stream ends its own deflater, the deflater given to the other stream is ended below
+            try (DeflaterOutputStream deflating = deflater == null
+                    ? new GZIPOutputStream(compressed, BUFFER_SIZE)
+                    : new DeflaterOutputStream(compressed, deflater, BUFFER_SIZE)) {
+                uncompressed = new CountingOutputStream(deflating);
+                storage.write(users, uncompressed);
+                deflating.finish();
+            }
+        } catch (IOException | RuntimeException e) {
+            tempFile.delete();
+            throw e;
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+        Files.move(tempFile.toPath(), new File(path).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        lastWrite = new Stats(compressed.count, uncompressed.count, System.nanoTime() - start);
+    }
+
+    /**
+     * @return the users in the file, or an empty list if it doesn't exist
+     */
+    @Override
+    public DTOList<UserDTO> read() throws IOException, ClassNotFoundException {
+        if (!new File(path).exists()) {
+            return new DTOList<>();
+        }
+        long start = System.nanoTime();
+        Inflater inflater = null;
+        try (FileInputStream file = new FileInputStream(path)) {
+            CountingInputStream compressed = new CountingInputStream(new BufferedInputStream(file, BUFFER_SIZE));
+            compressed.mark(2);
+            int magic = compressed.read() | compressed.read() << 8;
+            compressed.reset();
+            InputStream inflating;
+            if (magic == GZIP_MAGIC) {
+                inflating = new GZIPInputStream(compressed, BUFFER_SIZE);
+            } else {
+                inflater = new Inflater();
+                inflating = new InflaterInputStream(compressed, inflater, BUFFER_SIZE);
+            }
+            CountingInputStream uncompressed = new CountingInputStream(inflating);
+            DTOList<UserDTO> users = storage.read(uncompressed);
+            lastRead = new Stats(compressed.count, uncompressed.count, System.nanoTime() - start);
+            return users;
+        } finally {
+            if (inflater != null) {
+                inflater.end();
+            }
+        }
+    }
+
+    public Codec getCodec() {
+        return codec;
+    }
+
+    /**
+     * @return stats of the last write, or null if nothing was written
+     */
+    public Stats getLastWrite() {
+        return lastWrite;
+    }
+
+    /**
+     * @return stats of the last read, or null if nothing was read
+     */
+    public Stats getLastRead() {
+        return lastRead;
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        long count;
+        private long mark;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        @Override
+        public synchronized void mark(int readLimit) {
+            in.mark(readLimit);
+            mark = count;
+        }
+
+        @Override
+        public synchronized void reset() throws IOException {
+            in.reset();
+            count = mark;
+        }
+    }
+}
@@ -6,7 +6,7 @@ import model.UserDTO;
 import java.io.*;
 import java.util.ArrayList;
 
-public class FileStorage implements IDataStorage {
+public class FileStorage implements IStreamStorage {
 
     private String path;
 
@@ -20,21 +20,21 @@ public class FileStorage implements IDataStorage {
 
     @Override
     public void write(ArrayList<UserDTO> users) throws IOException {
-        FileOutputStream fOS = null;
-        ObjectOutputStream oOS = null;
+        try (FileOutputStream fOS = new FileOutputStream(path)) {
+            write(users, fOS);
+        }
+    }
 
-        try {
-            // Serialize the collection of UserDTO's
-            fOS = new FileOutputStream(path);
-            oOS = new ObjectOutputStream(fOS);
+    @Override
+    public void write(ArrayList<UserDTO> users, OutputStream out) throws IOException {
+        // Serialize the collection of UserDTO's
+        ObjectOutputStream oOS = new ObjectOutputStream(out);
 
-            // Write every object to the file
-            for (int i = 0; i < users.size(); i++) {
-                oOS.writeObject(users.get(i));
-            }
-        } finally {
-            oOS.close();
+        // Write every object to the stream
+        for (int i = 0; i < users.size(); i++) {
+            oOS.writeObject(users.get(i));
         }
+        oOS.flush();
     }
 
     @Override
@@ -42,28 +42,25 @@ public class FileStorage implements IDataStorage {
         if(!fileExists()) {
             createFile();
         }
-        DTOList<UserDTO> userList = new DTOList<>();
-        FileInputStream fIS = null;
-        ObjectInputStream oIS = null;
-        try {
-            // Deserialize the file back into the collection
-            fIS = new FileInputStream(path);
-            oIS = new ObjectInputStream(fIS);
+        try (FileInputStream fIS = new FileInputStream(path)) {
+            return read(fIS);
+        }
+    }
 
-            // Pull every object into the ArrayList
-            try {
-                while (true) {
-                    UserDTO user = (UserDTO) oIS.readObject();
-                    userList.add(user);
-                }
-            } catch (EOFException e) {
-                // No problem - no more objects to import
-            }
+    @Override
+    public DTOList<UserDTO> read(InputStream in) throws IOException, ClassNotFoundException {
+        DTOList<UserDTO> userList = new DTOList<>();
+        // Deserialize the stream back into the collection
+        ObjectInputStream oIS = new ObjectInputStream(in);
 
-        } finally {
-            if (oIS != null){
-                oIS.close();
+        // Pull every object into the ArrayList
+        try {
+            while (true) {
+                UserDTO user = (UserDTO) oIS.readObject();
+                userList.add(user);
             }
+        } catch (EOFException e) {
+            // No problem - no more objects to import
         }
         return userList;
     }
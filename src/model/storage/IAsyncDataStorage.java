@@ -0,0 +1,26 @@
+package model.storage;
+
+import model.DTOList;
+import model.UserDTO;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Storage that writes and reads without blocking the caller. The futures complete exceptionally
+ * with the IOException or ClassNotFoundException of the storage when the operation fails.
+ */
+public interface IAsyncDataStorage {
+    /**
+     * Starts writing a snapshot of every user
+     * @param users the users, which the caller must not change afterwards
+     * @return a future completed once the users, or a later snapshot that replaced them, are written
+     */
+    CompletableFuture<Void> writeAsync(ArrayList<UserDTO> users);
+
+    /**
+     * Starts reading every user, after the writes started before
+     * @return a future completed with the users
+     */
+    CompletableFuture<DTOList<UserDTO>> readAsync();
+}
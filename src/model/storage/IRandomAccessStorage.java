@@ -0,0 +1,54 @@
+package model.storage;
+
+import model.UserDTO;
+
+import java.io.IOException;
+import java.util.function.IntConsumer;
+
+/**
+ * Storage that can read a single user without reading every user, so a DAO can load users on demand.
+ */
+public interface IRandomAccessStorage extends IRecordStorage {
+    /**
+     * Reads one user
+     * @param userId ID of the user
+     * @return the user, or null if no user with that ID is stored
+     */
+    UserDTO readUser(int userId) throws IOException;
+
+    /**
+     * Reads a page of the stored IDs, in the order the users are listed in
+     * @param offset number of IDs to skip
+     * @param limit maximum number of IDs
+     * @return the IDs of the page, empty when the offset is past the last user
+     */
+    int[] readUserIds(int offset, int limit) throws IOException;
+
+    /**
+     * Reads a page of the stored IDs like {@link #readUserIds}, starting at a position instead of an offset.
+     * Positions don't move when users are deleted, so paging by position neither skips nor repeats users.
+     * A storage that doesn't keep positions uses offsets as positions.
+     * @param position 0 for the first page, or the position returned for the previous page
+     * @param limit maximum number of IDs
+     * @param ids receives the IDs of the page
+     * @return the position of the next page
+     */
+    default long readUserIdsFrom(long position, int limit, IntConsumer ids) throws IOException {
+        int[] page = readUserIds((int) Math.min(position, Integer.MAX_VALUE), limit);
+        for (int userId : page) {
+            ids.accept(userId);
+        }
+        return position + page.length;
+    }
+
+    /**
+     * @param userId ID of a user
+     * @return true if a user with that ID is stored
+     */
+    boolean containsUser(int userId) throws IOException;
+
+    /**
+     * @return number of stored users
+     */
+    int countUsers() throws IOException;
+}
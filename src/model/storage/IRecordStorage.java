@@ -0,0 +1,23 @@
+package model.storage;
+
+import model.UserDTO;
+
+import java.io.IOException;
+
+/**
+ * Storage that can persist a single user change without rewriting every user.
+ * PersistentUserDAO uses these methods instead of {@link IDataStorage#write} when the storage supports them.
+ */
+public interface IRecordStorage extends IDataStorage {
+    /**
+     * Persists a created or updated user
+     * @param user the new state of the user
+     */
+    void writeUser(UserDTO user) throws IOException;
+
+    /**
+     * Persists that a user has been deleted
+     * @param userId ID of the deleted user
+     */
+    void deleteUser(int userId) throws IOException;
+}
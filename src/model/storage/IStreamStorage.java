@@ -0,0 +1,29 @@
+package model.storage;
+
+import model.DTOList;
+import model.UserDTO;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+
+/**
+ * Storage whose format is a single byte stream, so the stream can be wrapped, for example by {@link CompressedStorage}.
+ * The file methods of {@link IDataStorage} write and read the storage's own file through these methods.
+ */
+public interface IStreamStorage extends IDataStorage {
+    /**
+     * Writes every user to a stream and flushes it, without closing it
+     * @param users the users
+     * @param out the stream
+     */
+    void write(ArrayList<UserDTO> users, OutputStream out) throws IOException;
+
+    /**
+     * Reads every user from a stream, without closing it
+     * @param in the stream
+     * @return the users
+     */
+    DTOList<UserDTO> read(InputStream in) throws IOException, ClassNotFoundException;
+}
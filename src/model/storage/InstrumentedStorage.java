@@ -0,0 +1,255 @@
+package model.storage;
+
+import model.DTOList;
+import model.UserDTO;
+import model.metrics.Histogram;
+import model.metrics.Metrics;
+import model.metrics.OperationMetrics;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+
+/**
+ * Storage decorator that records the count and latency of every operation, the records per write and
+ * the bytes read and written. Use {@link #wrap} to get a decorator with the same capabilities as the wrapped
+ * storage, so a DAO still writes single records to an {@link IRecordStorage} through it.
+ *
+ * Bytes are taken from the size of the storage's file, when one is given: a full write or read counts the whole
+ * file and a single record counts how much the file grew, which is exact for the append-only storages.
+ */
+public class InstrumentedStorage implements IDataStorage, Closeable {
+
+    final IDataStorage storage;
+    private final File file;
+    private final OperationMetrics write;
+    private final OperationMetrics read;
+    private final Histogram recordsPerWrite;
+    private final LongAdder recordsWritten;
+    private final LongAdder recordsRead;
+    private final LongAdder bytesWritten;
+    private final LongAdder bytesRead;
+
+    /**
+     * @param storage storage to instrument
+     * @param metrics group the metrics are recorded in
+     * @param file file of the storage, or null if bytes shouldn't be counted
+     * @return a decorator implementing the same storage interfaces as the given storage
+     */
+    public static IDataStorage wrap(IDataStorage storage, Metrics metrics, File file) {
+        if (storage instanceof IRandomAccessStorage) {
+            return new RandomAccess((IRandomAccessStorage) storage, metrics, file);
+        }
+        if (storage instanceof IRecordStorage) {
+            return new Records((IRecordStorage) storage, metrics, file);
+        }
+        return new InstrumentedStorage(storage, metrics, file);
+    }
+
+    /**
+     * @see #wrap(IDataStorage, Metrics, File)
+     */
+    public static IRandomAccessStorage wrap(IRandomAccessStorage storage, Metrics metrics, File file) {
+        return new RandomAccess(storage, metrics, file);
+    }
+
+    InstrumentedStorage(IDataStorage storage, Metrics metrics, File file) {
+        this.storage = storage;
+        this.file = file;
+        this.write = metrics.operation("write");
+        this.read = metrics.operation("read");
+        this.recordsPerWrite = metrics.histogram("recordsPerWrite");
+        this.recordsWritten = metrics.counter("recordsWritten");
+        this.recordsRead = metrics.counter("recordsRead");
+        this.bytesWritten = metrics.counter("bytesWritten");
+        this.bytesRead = metrics.counter("bytesRead");
+    }
+
+    @Override
+    public void write(ArrayList<UserDTO> users) throws IOException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            storage.write(users);
+            failed = false;
+        } finally {
+            write.record(start, failed);
+        }
+        recordsPerWrite.record(users.size());
+        recordsWritten.add(users.size());
+        if (file != null) {
+            bytesWritten.add(file.length());
+        }
+    }
+
+    @Override
+    public DTOList<UserDTO> read() throws IOException, ClassNotFoundException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        DTOList<UserDTO> users;
+        try {
+            users = storage.read();
+            failed = false;
+        } finally {
+            read.record(start, failed);
+        }
+        recordsRead.add(users.size());
+        if (file != null) {
+            bytesRead.add(file.length());
+        }
+        return users;
+    }
+
+    /**
+     * Closes the wrapped storage if it is closeable
+     */
+    @Override
+    public void close() throws IOException {
+        if (storage instanceof Closeable) {
+            ((Closeable) storage).close();
+        }
+    }
+
+    void recordSingleWrite(long fileLengthBefore) {
+        recordsPerWrite.record(1);
+        recordsWritten.increment();
+        if (file != null) {
+            bytesWritten.add(Math.max(0, file.length() - fileLengthBefore));
+        }
+    }
+
+    void recordSingleRead() {
+        recordsRead.increment();
+    }
+
+    long fileLength() {
+        return file == null ? 0 : file.length();
+    }
+
+    private static class Records extends InstrumentedStorage implements IRecordStorage {
+
+        private final OperationMetrics writeUser;
+        private final OperationMetrics deleteUser;
+
+        Records(IRecordStorage storage, Metrics metrics, File file) {
+            super(storage, metrics, file);
+            this.writeUser = metrics.operation("writeUser");
+            this.deleteUser = metrics.operation("deleteUser");
+        }
+
+        @Override
+        public void writeUser(UserDTO user) throws IOException {
+            long before = fileLength();
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                ((IRecordStorage) storage).writeUser(user);
+                failed = false;
+            } finally {
+                writeUser.record(start, failed);
+            }
+            recordSingleWrite(before);
+        }
+
+        @Override
+        public void deleteUser(int userId) throws IOException {
+            long before = fileLength();
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                ((IRecordStorage) storage).deleteUser(userId);
+                failed = false;
+            } finally {
+                deleteUser.record(start, failed);
+            }
+            recordSingleWrite(before);
+        }
+    }
+
+    private static class RandomAccess extends Records implements IRandomAccessStorage {
+
+        private final OperationMetrics readUser;
+        private final OperationMetrics readUserIds;
+        private final OperationMetrics containsUser;
+        private final OperationMetrics countUsers;
+
+        RandomAccess(IRandomAccessStorage storage, Metrics metrics, File file) {
+            super(storage, metrics, file);
+            this.readUser = metrics.operation("readUser");
+            this.readUserIds = metrics.operation("readUserIds");
+            this.containsUser = metrics.operation("containsUser");
+            this.countUsers = metrics.operation("countUsers");
+        }
+
+        @Override
+        public UserDTO readUser(int userId) throws IOException {
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                UserDTO user = ((IRandomAccessStorage) storage).readUser(userId);
+                failed = false;
+                if (user != null) {
+                    recordSingleRead();
+                }
+                return user;
+            } finally {
+                readUser.record(start, failed);
+            }
+        }
+
+        @Override
+        public int[] readUserIds(int offset, int limit) throws IOException {
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                int[] ids = ((IRandomAccessStorage) storage).readUserIds(offset, limit);
+                failed = false;
+                return ids;
+            } finally {
+                readUserIds.record(start, failed);
+            }
+        }
+
+        @Override
+        public long readUserIdsFrom(long position, int limit, IntConsumer ids) throws IOException {
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                long next = ((IRandomAccessStorage) storage).readUserIdsFrom(position, limit, ids);
+                failed = false;
+                return next;
+            } finally {
+                readUserIds.record(start, failed);
+            }
+        }
+
+        @Override
+        public boolean containsUser(int userId) throws IOException {
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                boolean contained = ((IRandomAccessStorage) storage).containsUser(userId);
+                failed = false;
+                return contained;
+            } finally {
+                containsUser.record(start, failed);
+            }
+        }
+
+        @Override
+        public int countUsers() throws IOException {
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                int count = ((IRandomAccessStorage) storage).countUsers();
+                failed = false;
+                return count;
+            } finally {
+                countUsers.record(start, failed);
+            }
+        }
+    }
+}
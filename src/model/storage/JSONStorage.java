@@ -1,21 +1,30 @@
 package model.storage;
 
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 
 import model.DTOList;
 import model.UserDTO;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+public class JSONStorage implements IStreamStorage {
+    private static final int BUFFER_SIZE = 65536;
 
-public class JSONStorage implements IDataStorage {
     private String filePath;
+    private boolean prettyPrint;
 
     /**
      * Constructor overload for dafault filepath
@@ -29,72 +38,151 @@ public class JSONStorage implements IDataStorage {
      * @param filePath path to which the json file will be read/written
      */
     public JSONStorage(String filePath){
+        this(filePath, true);
+    }
+
+    /**
+     * @param filePath path to which the json file will be read/written
+     * @param prettyPrint true to indent the written file, false for the most compact output
+     */
+    public JSONStorage(String filePath, boolean prettyPrint){
         this.filePath = filePath;
+        this.prettyPrint = prettyPrint;
     }
 
     /**
-     * Method writes data to persistent json-file
+     * Method writes data to persistent json-file.
+     * Users are encoded one at a time straight into a buffered writer, so no document tree is built in memory.
      * @param users arraylist of userDTO objects
      */
     @Override
-    @SuppressWarnings("unchecked")
     public void write(ArrayList<UserDTO> users) throws IOException{
-        Gson gson = new GsonBuilder().setPrettyPrinting().create();
-        JSONObject usersJSON = new JSONObject();
-        JSONArray usersArray = new JSONArray();
-        // Get all users from input and create json object from it.
-        for (int i = 0; i < users.size(); i++){
-            JSONObject user = new JSONObject();
-            user.put("password", users.get(i).getPassword());
-            user.put("cpr", users.get(i).getCpr());
-            user.put("ini", users.get(i).getIni());
-            user.put("userName", users.get(i).getUserName());
-            user.put("userID", users.get(i).getUserID());
-            JSONArray roles = new JSONArray();
-            roles.addAll(users.get(i).getRoles());
-            user.put("roles", roles);
-            usersArray.add(user);
+        try (FileOutputStream out = new FileOutputStream(this.filePath)) {
+            write(users, out);
         }
-        usersJSON.put("users", usersArray);
+    }
 
-        FileWriter file = new FileWriter(this.filePath);
-        file.write(gson.toJson(usersJSON));
-        System.out.println("Successfully Copied JSON Object to File...");
-        System.out.println("\nJSON Object: \n" + gson.toJson(usersJSON));
+    @Override
+    public void write(ArrayList<UserDTO> users, OutputStream out) throws IOException {
+        JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE));
+        if (prettyPrint) {
+            writer.setIndent("  ");
+        }
+        writer.beginObject();
+        writer.name("users");
+        writer.beginArray();
+        for (UserDTO user : users) {
+            writeUser(writer, user);
+        }
+        writer.endArray();
+        writer.endObject();
+        writer.flush();
     }
 
     /**
-     * Method reads data from json file to memory
+     * Method reads data from json file to memory.
+     * Users are decoded one at a time from a buffered stream, so memory beyond the users themselves stays constant.
      * @return ArrayList<UserDTO>
      */
     @Override
-    @SuppressWarnings("unchecked")
     public DTOList<UserDTO> read() throws IOException {
-        JSONParser parser = new JSONParser();
+        try (FileInputStream in = new FileInputStream(this.filePath)) {
+            return read(in);
+        }
+    }
+
+    @Override
+    public DTOList<UserDTO> read(InputStream in) throws IOException {
         try {
-            Object obj = parser.parse(new FileReader(this.filePath));
+            JsonReader reader = new JsonReader(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER_SIZE));
+            DTOList<UserDTO> userList = new DTOList<>();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("users")) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        userList.add(readUser(reader));
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return userList;
+        } catch (JsonParseException | IllegalStateException | NumberFormatException e) {
+            throw new IOException("Invalid user file " + this.filePath, e);
+        }
+    }
 
-            JSONObject jsonObject = (JSONObject) obj;
-            JSONArray users = (JSONArray) jsonObject.get("users");
+    public boolean isPrettyPrint() {
+        return prettyPrint;
+    }
 
-            DTOList<UserDTO> userList = new DTOList<>();
+    public void setPrettyPrint(boolean prettyPrint) {
+        this.prettyPrint = prettyPrint;
+    }
 
-            for (Object user: users) {
-                JSONObject jsonUser = (JSONObject) user;
-                UserDTO userDTO = new UserDTO();
-                userDTO.setIni(jsonUser.get("ini").toString());
-                userDTO.setUserName(jsonUser.get("userName").toString());
-                userDTO.setUserID((int)(long)jsonUser.get("userID"));
-                userDTO.setPassword(jsonUser.get("password").toString());
-                userDTO.setCpr(jsonUser.get("cpr").toString());
-                ArrayList<String> roles = new ArrayList<>();
-                roles.addAll((ArrayList<String>) jsonUser.get("roles"));
-                userDTO.setRoles(roles);
-                userList.add(userDTO);
+    static void writeUser(JsonWriter writer, UserDTO user) throws IOException {
+        writer.beginObject();
+        writer.name("password").value(user.getPassword());
+        writer.name("cpr").value(user.getCpr());
+        writer.name("ini").value(user.getIni());
+        writer.name("userName").value(user.getUserName());
+        writer.name("userID").value(user.getUserID());
+        writer.name("roles");
+        if (user.getRoles() == null) {
+            writer.nullValue();
+        } else {
+            writer.beginArray();
+            for (String role : user.getRoles()) {
+                writer.value(role);
+            }
+            writer.endArray();
+        }
+        writer.endObject();
+    }
+
+    static UserDTO readUser(JsonReader reader) throws IOException {
+        UserDTO userDTO = new UserDTO();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "password":
+                    userDTO.setPassword(reader.nextString());
+                    break;
+                case "cpr":
+                    userDTO.setCpr(reader.nextString());
+                    break;
+                case "ini":
+                    userDTO.setIni(reader.nextString());
+                    break;
+                case "userName":
+                    userDTO.setUserName(reader.nextString());
+                    break;
+                case "userID":
+                    userDTO.setUserID(reader.nextInt());
+                    break;
+                case "roles":
+                    ArrayList<String> roles = new ArrayList<>();
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        roles.add(reader.nextString());
+                    }
+                    reader.endArray();
+                    userDTO.setRoles(roles);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
             }
-            return userList;
-        } catch (Exception e) {
-            throw new IOException("", e);
         }
+        reader.endObject();
+        return userDTO;
     }
 }
@@ -0,0 +1,415 @@
+package model.storage;
+
+import model.DTOList;
+import model.UserDTO;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Storage that can read single users on demand. Users are records in an append-only data file,
+ * and an index from user ID to record offset is kept in memory and saved next to the data file,
+ * so opening the storage only loads the index and no user is decoded before it is read.
+ *
+ * Files used, with path as the base:
+ * path - a header followed by records framed as [int length][int CRC32][byte type][int userID][user fields]
+ * path.idx - the index as [header][int userID][long offset] per user, valid for the data file up to a length
+ *
+ * A changed user is appended and the index points at the new record. When the data file holds more than twice
+ * as many records as users, the live records are copied to a new data file. If the index is missing or out of date,
+ * for instance after a crash, the records after the saved length are scanned, or the whole file if needed.
+ */
+public class LazyFileStorage implements IRandomAccessStorage, Closeable {
+
+    private static final int MAGIC = 0x4C5A5553;
+    private static final int INDEX_MAGIC = 0x4C5A4958;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int INDEX_HEADER_SIZE = 36;
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+
+    // records below which the data file isn't compacted
+    private static final int COMPACT_MIN_RECORDS = 1024;
+
+    private final File dataFile;
+    private final File indexFile;
+
+    private FileChannel channel;
+    private long generation;
+    private OffsetIndex index;
+    private long appendPosition;
+    private long records;
+    private boolean indexChanged;
+
+    private final ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream(256);
+    private final CRC32 crc = new CRC32();
+
+    public LazyFileStorage() {
+        this(System.getProperty("user.dir")+"/src/model/storage/data.lazy");
+    }
+
+    /**
+     * @param path path of the data file, the index is saved at path.idx
+     */
+    public LazyFileStorage(String path) {
+        this.dataFile = new File(path);
+        this.indexFile = new File(path + ".idx");
+    }
+
+    /**
+     * Opens the data file and loads the index, if not done yet. Called by every other method,
+     * so it only has to be called directly to open the storage ahead of the first access.
+     */
+    public synchronized void open() throws IOException {
+        if (channel != null) {
+            return;
+        }
+        if (!dataFile.exists()) {
+            writeFile(new ArrayList<>());
+        }
+        channel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(header, 0);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            channel.close();
+            channel = null;
+            throw new IOException(dataFile + " isn't a data file of this storage");
+        }
+        generation = header.getLong(8);
+        long scanFrom = loadIndex();
+        scan(scanFrom);
+    }
+
+    @Override
+    public synchronized UserDTO readUser(int userId) throws IOException {
+        open();
+        long offset = index.get(userId);
+        return offset < 0 ? null : readRecord(offset);
+    }
+
+    @Override
+    public synchronized int[] readUserIds(int offset, int limit) throws IOException {
+        open();
+        return index.page(offset, limit);
+    }
+
+    @Override
+    public synchronized long readUserIdsFrom(long position, int limit, IntConsumer ids) throws IOException {
+        open();
+        return index.pageFrom(position, limit, ids);
+    }
+
+    @Override
+    public synchronized boolean containsUser(int userId) throws IOException {
+        open();
+        return index.contains(userId);
+    }
+
+    @Override
+    public synchronized int countUsers() throws IOException {
+        open();
+        return index.size();
+    }
+
+    /**
+     * Reads and decodes every user
+     * @return all users in the storage
+     */
+    @Override
+    public synchronized DTOList<UserDTO> read() throws IOException {
+        open();
+        DTOList<UserDTO> users = new DTOList<>();
+        users.ensureCapacity(index.size());
+        index.forEach((userId, offset) -> users.add(readRecord(offset)));
+        return users;
+    }
+
+    /**
+     * Replaces everything in the storage with the given users by writing a new data file and index
+     * @param users array-list of userDTO objects
+     */
+    @Override
+    public synchronized void write(ArrayList<UserDTO> users) throws IOException {
+        closeChannel();
+        writeFile(users);
+        open();
+        saveIndex();
+    }
+
+    @Override
+    public synchronized void writeUser(UserDTO user) throws IOException {
+        open();
+        index.put(user.getUserID(), append(PUT, user.getUserID(), user));
+        compactIfNeeded();
+    }
+
+    @Override
+    public synchronized void deleteUser(int userId) throws IOException {
+        open();
+        if (index.contains(userId)) {
+            append(DELETE, userId, null);
+            index.remove(userId);
+            compactIfNeeded();
+        }
+    }
+
+    /**
+     * Saves the index, so the next open doesn't have to scan, and closes the data file
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            if (indexChanged) {
+                saveIndex();
+            }
+            closeChannel();
+        }
+    }
+
+    /**
+     * @return size in bytes of the data file
+     */
+    public synchronized long getDataSize() throws IOException {
+        open();
+        return appendPosition;
+    }
+
+    private void closeChannel() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+            index = null;
+        }
+    }
+
+    /**
+     * Loads the saved index if it belongs to the current data file
+     * @return offset in the data file from which records aren't covered by the index
+     */
+    private long loadIndex() throws IOException {
+        index = null;
+        records = 0;
+        if (indexFile.exists()) {
+            ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(indexFile.toPath()));
+            if (in.remaining() >= INDEX_HEADER_SIZE && in.getInt() == INDEX_MAGIC && in.getInt() == VERSION
+                    && in.getLong() == generation) {
+                long dataLength = in.getLong();
+                long indexedRecords = in.getLong();
+                int count = in.getInt();
+                // a torn index or one ahead of the data file is rebuilt from the data file
+                if (dataLength >= HEADER_SIZE && dataLength <= channel.size() && in.remaining() == count * 12L) {
+                    OffsetIndex loaded = new OffsetIndex(count);
+                    for (int i = 0; i < count; i++) {
+                        loaded.put(in.getInt(), in.getLong());
+                    }
+                    index = loaded;
+                    records = indexedRecords;
+                    indexChanged = false;
+                    return dataLength;
+                }
+            }
+        }
+        index = new OffsetIndex();
+        indexChanged = true;
+        return HEADER_SIZE;
+    }
+
+    /**
+     * Indexes the records from an offset to the end of the data file. A torn or corrupt record,
+     * left by a crash during an append, ends the scan and is cut off so new records follow valid ones.
+     */
+    private void scan(long from) throws IOException {
+        long position = from;
+        long size = channel.size();
+        CRC32 checksum = new CRC32();
+        channel.position(from);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 65536));
+        byte[] payload = new byte[256];
+        while (position + RECORD_HEADER_SIZE <= size) {
+            int length = in.readInt();
+            int expectedCrc = in.readInt();
+            if (length < 5 || position + RECORD_HEADER_SIZE + length > size) {
+                break;
+            }
+            if (payload.length < length) {
+                payload = new byte[length];
+            }
+            in.readFully(payload, 0, length);
+            checksum.reset();
+            checksum.update(payload, 0, length);
+            if ((int) checksum.getValue() != expectedCrc) {
+                break;
+            }
+            int userId = ((payload[1] & 0xFF) << 24) | ((payload[2] & 0xFF) << 16) | ((payload[3] & 0xFF) << 8) | (payload[4] & 0xFF);
+            if (payload[0] == DELETE) {
+                index.remove(userId);
+            } else {
+                index.put(userId, position);
+            }
+            records++;
+            indexChanged = true;
+            position += RECORD_HEADER_SIZE + length;
+        }
+        if (position < size) {
+            channel.truncate(position);
+        }
+        appendPosition = position;
+    }
+
+    private void saveIndex() throws IOException {
+        File tempFile = new File(indexFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 65536))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(generation);
+            out.writeLong(appendPosition);
+            out.writeLong(records);
+            out.writeInt(index.size());
+            index.forEach((userId, offset) -> {
+                out.writeInt(userId);
+                out.writeLong(offset);
+            });
+        }
+        Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        indexChanged = false;
+    }
+
+    /**
+     * Writes a data file holding the given users under a new generation, through a temporary file
+     */
+    private void writeFile(ArrayList<UserDTO> users) throws IOException {
+        File tempFile = new File(dataFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 65536))) {
+            writeHeader(out);
+            for (UserDTO user : users) {
+                writeRecord(out, PUT, user.getUserID(), user);
+            }
+        }
+        Files.move(tempFile.toPath(), dataFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void writeHeader(DataOutputStream out) throws IOException {
+        generation = ThreadLocalRandom.current().nextLong();
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(generation);
+    }
+
+    /**
+     * Copies the live records to a new data file once most records are outdated
+     */
+    private void compactIfNeeded() throws IOException {
+        if (records < COMPACT_MIN_RECORDS || records <= 2L * index.size()) {
+            return;
+        }
+        File tempFile = new File(dataFile.getPath() + ".tmp");
+        OffsetIndex compacted = new OffsetIndex(index.size());
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 65536))) {
+            writeHeader(out);
+            long[] position = {HEADER_SIZE};
+            index.forEach((userId, offset) -> {
+                ByteBuffer record = readRaw(offset);
+                out.write(record.array(), 0, record.limit());
+                compacted.put(userId, position[0]);
+                position[0] += record.limit();
+            });
+        }
+        channel.close();
+        Files.move(tempFile.toPath(), dataFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // the index keeps its order and positions, so paging continues across a compaction
+        compacted.forEach(index::put);
+        records = index.size();
+        appendPosition = channel.size();
+        saveIndex();
+    }
+
+    /**
+     * Appends a record at the end of the data file
+     * @return offset of the record
+     */
+    private long append(byte type, int userId, UserDTO user) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(RECORD_HEADER_SIZE + 128);
+        writeRecord(new DataOutputStream(bytes), type, userId, user);
+        long offset = appendPosition;
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        long position = offset;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        appendPosition = position;
+        records++;
+        indexChanged = true;
+        return offset;
+    }
+
+    /**
+     * Writes a record framed as length, CRC32 and payload
+     */
+    private void writeRecord(DataOutputStream out, byte type, int userId, UserDTO user) throws IOException {
+        recordBuffer.reset();
+        DataOutputStream payload = new DataOutputStream(recordBuffer);
+        payload.writeByte(type);
+        payload.writeInt(userId);
+        if (type == PUT) {
+            RecordCodec.writeUser(payload, user);
+        }
+        crc.reset();
+        crc.update(recordBuffer.toByteArray(), 0, recordBuffer.size());
+        out.writeInt(recordBuffer.size());
+        out.writeInt((int) crc.getValue());
+        recordBuffer.writeTo(out);
+    }
+
+    /**
+     * Reads a whole record, header included, and checks its CRC
+     */
+    private ByteBuffer readRaw(long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        readFully(header, offset);
+        int length = header.getInt(0);
+        if (length < 5 || offset + RECORD_HEADER_SIZE + length > appendPosition) {
+            throw new IOException("Corrupt record at offset " + offset + " in " + dataFile);
+        }
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + length);
+        record.put(header.array());
+        readFully(record, offset + RECORD_HEADER_SIZE);
+        CRC32 checksum = new CRC32();
+        checksum.update(record.array(), RECORD_HEADER_SIZE, length);
+        if ((int) checksum.getValue() != header.getInt(4)) {
+            throw new IOException("Corrupt record at offset " + offset + " in " + dataFile);
+        }
+        record.flip();
+        return record;
+    }
+
+    private UserDTO readRecord(long offset) throws IOException {
+        ByteBuffer record = readRaw(offset);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record.array(), RECORD_HEADER_SIZE, record.limit() - RECORD_HEADER_SIZE));
+        in.readByte();
+        int userId = in.readInt();
+        return RecordCodec.readUser(in, userId);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of " + dataFile);
+            }
+            position += read;
+        }
+    }
+}
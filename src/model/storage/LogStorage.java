@@ -0,0 +1,299 @@
+package model.storage;
+
+import model.DTOList;
+import model.UserDTO;
+import model.UserStore;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only storage. Every created, updated or deleted user is appended as one small record to a log file,
+ * so a single change costs I/O in proportion to the change and not to the number of users.
+ * On read the snapshot file and the log are replayed. Once the log passes a size threshold it is compacted
+ * in the background into a new snapshot.
+ *
+ * Files used, with path as the base:
+ * path - snapshot with one record per user
+ * path.log - records appended since the last compaction
+ * path.log.old - records being folded into a new snapshot by a running compaction
+ */
+public class LogStorage implements IRecordStorage, Closeable {
+
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+
+    private static final long DEFAULT_COMPACT_THRESHOLD = 1024 * 1024;
+
+    private final File snapshotFile;
+    private final File logFile;
+    private final File oldLogFile;
+    private final long compactThreshold;
+
+    // users as known by the storage, used to write a snapshot when compacting
+    private UserStore users;
+    private DataOutputStream log;
+    private long logSize;
+    private final ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream(256);
+    private final CRC32 crc = new CRC32();
+    private final ExecutorService compactor;
+    private Future<?> compaction;
+
+    public LogStorage() {
+        this(System.getProperty("user.dir")+"/src/model/storage/data.wal");
+    }
+
+    public LogStorage(String path) {
+        this(path, DEFAULT_COMPACT_THRESHOLD);
+    }
+
+    /**
+     * @param path base path of the snapshot and log files
+     * @param compactThreshold size in bytes the log may reach before it is compacted
+     */
+    public LogStorage(String path, long compactThreshold) {
+        this.snapshotFile = new File(path);
+        this.logFile = new File(path + ".log");
+        this.oldLogFile = new File(path + ".log.old");
+        this.compactThreshold = compactThreshold;
+        this.compactor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "LogStorage compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Replays the snapshot and the logs
+     * @return all users in the storage
+     */
+    @Override
+    public synchronized DTOList<UserDTO> read() throws IOException {
+        awaitCompaction();
+        closeLog();
+        users = new UserStore();
+        replay(snapshotFile);
+        replay(oldLogFile);
+        replay(logFile);
+        return users.toList();
+    }
+
+    /**
+     * Replaces everything in the storage with the given users by writing a new snapshot and emptying the log
+     * @param users array-list of userDTO objects
+     */
+    @Override
+    public synchronized void write(ArrayList<UserDTO> users) throws IOException {
+        awaitCompaction();
+        closeLog();
+        this.users = new UserStore(users.size());
+        for (UserDTO user : users) {
+            this.users.put(user);
+        }
+        writeSnapshot(users);
+        Files.deleteIfExists(oldLogFile.toPath());
+        Files.deleteIfExists(logFile.toPath());
+        logSize = 0;
+    }
+
+    @Override
+    public synchronized void writeUser(UserDTO user) throws IOException {
+        ensureLoaded();
+        users.put(user);
+        append(PUT, user.getUserID(), user);
+    }
+
+    @Override
+    public synchronized void deleteUser(int userId) throws IOException {
+        ensureLoaded();
+        users.remove(userId);
+        append(DELETE, userId, null);
+    }
+
+    /**
+     * Waits for a running compaction and closes the log file
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        awaitCompaction();
+        closeLog();
+    }
+
+    /**
+     * @return size in bytes of the current log file
+     */
+    public synchronized long getLogSize() {
+        return logSize;
+    }
+
+    private void ensureLoaded() throws IOException {
+        if (users == null) {
+            read();
+        }
+    }
+
+    private void append(byte type, int userId, UserDTO user) throws IOException {
+        if (log == null) {
+            log = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(logFile, true)));
+            logSize = logFile.length();
+        }
+        logSize += writeRecord(log, type, userId, user);
+        log.flush();
+        if (logSize >= compactThreshold && compaction == null) {
+            startCompaction();
+        }
+    }
+
+    /**
+     * Moves the current log aside and writes a snapshot of the current users on the compactor thread.
+     * New records go to a fresh log meanwhile, and the old log is deleted once the snapshot is in place.
+     */
+    private void startCompaction() throws IOException {
+        closeLog();
+        if (oldLogFile.exists()) {
+            // an earlier compaction didn't finish, so its records are kept by adding the current log to them
+            try (OutputStream out = new FileOutputStream(oldLogFile, true)) {
+                Files.copy(logFile.toPath(), out);
+            }
+            Files.delete(logFile.toPath());
+        } else {
+            Files.move(logFile.toPath(), oldLogFile.toPath());
+        }
+        logSize = 0;
+        final DTOList<UserDTO> snapshot = users.toList();
+        compaction = compactor.submit(() -> {
+            writeSnapshot(snapshot);
+            synchronized (LogStorage.this) {
+                Files.deleteIfExists(oldLogFile.toPath());
+                compaction = null;
+            }
+            return null;
+        });
+    }
+
+    private void awaitCompaction() throws IOException {
+        if (compaction == null) {
+            return;
+        }
+        Future<?> running = compaction;
+        try {
+            // the compaction needs this lock to finish, so release it while waiting
+            while (compaction == running && !running.isDone()) {
+                wait(10);
+            }
+            running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for log compaction");
+        } catch (ExecutionException e) {
+            throw new IOException("Log compaction failed", e.getCause());
+        } finally {
+            if (compaction == running) {
+                compaction = null;
+            }
+        }
+    }
+
+    private void closeLog() throws IOException {
+        if (log != null) {
+            log.close();
+            log = null;
+        }
+    }
+
+    /**
+     * Writes all users to a temporary file and moves it over the snapshot, so a crash never leaves half a snapshot
+     */
+    private void writeSnapshot(ArrayList<UserDTO> snapshot) throws IOException {
+        File tempFile = new File(snapshotFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 65536))) {
+            for (UserDTO user : snapshot) {
+                writeRecord(out, PUT, user.getUserID(), user);
+            }
+        }
+        Files.move(tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes a record framed as length, CRC32 and payload
+     * @return number of bytes written
+     */
+    private int writeRecord(DataOutputStream out, byte type, int userId, UserDTO user) throws IOException {
+        synchronized (recordBuffer) {
+            recordBuffer.reset();
+            DataOutputStream payload = new DataOutputStream(recordBuffer);
+            payload.writeByte(type);
+            payload.writeInt(userId);
+            if (type == PUT) {
+                RecordCodec.writeUser(payload, user);
+            }
+            crc.reset();
+            crc.update(recordBuffer.toByteArray(), 0, recordBuffer.size());
+            out.writeInt(recordBuffer.size());
+            out.writeInt((int) crc.getValue());
+            recordBuffer.writeTo(out);
+            return 8 + recordBuffer.size();
+        }
+    }
+
+    /**
+     * Applies every record in the file to the users. A torn or corrupt record at the end,
+     * left by a crash during an append, ends the replay and is cut off, so records appended later
+     * follow the valid ones instead of being hidden behind it.
+     */
+    private void replay(File file) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        long fileLength = file.length();
+        long position = 0;
+        CRC32 checksum = new CRC32();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 65536))) {
+            byte[] payload = new byte[256];
+            while (position < fileLength) {
+                if (fileLength - position < 8) {
+                    break;
+                }
+                int length = in.readInt();
+                int expectedCrc = in.readInt();
+                // a corrupt length mustn't make us allocate more than the file holds
+                if (length < 5 || length > fileLength - position - 8) {
+                    break;
+                }
+                if (payload.length < length) {
+                    payload = new byte[length];
+                }
+                in.readFully(payload, 0, length);
+                checksum.reset();
+                checksum.update(payload, 0, length);
+                if ((int) checksum.getValue() != expectedCrc) {
+                    break;
+                }
+                applyRecord(new DataInputStream(new ByteArrayInputStream(payload, 0, length)));
+                position += 8 + length;
+            }
+        }
+        if (position < fileLength) {
+            try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+                out.getChannel().truncate(position);
+            }
+        }
+    }
+
+    private void applyRecord(DataInputStream record) throws IOException {
+        byte type = record.readByte();
+        int userId = record.readInt();
+        if (type == DELETE) {
+            users.remove(userId);
+            return;
+        }
+        users.put(RecordCodec.readUser(record, userId));
+    }
+}
@@ -0,0 +1,407 @@
+package model.storage;
+
+import model.DTOList;
+import model.UserDTO;
+import model.Validation;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.zip.CRC32;
+
+/**
+ * Storage that keeps every user in a fixed-size slot of a memory-mapped file.
+ * The slot of a user is found directly from the user ID, so writing or deleting a user only touches
+ * the bytes of that slot, and opening the storage maps the file instead of deserializing it.
+ *
+ * The file starts with a header holding the layout, followed by one slot per ID in the range:
+ * [byte state][int userID][copy A][copy B], where each copy is [short payload length][int CRC32][payload]
+ * and the payload holds user name, initials, cpr, password and roles as length-prefixed UTF-8 strings.
+ * The state tells which copy holds the user. A change is written to the other copy and the state byte is
+ * switched last, so a crash during a change leaves the old copy intact; a copy whose CRC doesn't match
+ * is ignored in favour of the other one. Deleting a user frees its slot and invalidates both copies.
+ */
+public class MappedStorage implements IRecordStorage, Closeable {
+
+    private static final int MAGIC = 0x55534552;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 32;
+    private static final int SLOT_HEADER_SIZE = 5;
+    private static final int COPY_HEADER_SIZE = 6;
+    // four string lengths and the role count
+    private static final int MIN_PAYLOAD = 10;
+    private static final int DEFAULT_SLOT_SIZE = 512;
+    // each mapped chunk stays below the 2 GB limit of a single MappedByteBuffer
+    private static final long MAX_CHUNK_SIZE = 1L << 30;
+
+    private static final byte FREE = 0;
+    private static final byte USED_A = 1;
+    private static final byte USED_B = 2;
+
+    private final String path;
+    private final int minId;
+    private final int maxId;
+    private final int slotSize;
+    private final int copySize;
+    private final int slotsPerChunk;
+
+    private RandomAccessFile file;
+    private MappedByteBuffer[] chunks;
+    private final ByteBuffer scratch;
+    private final CRC32 crc = new CRC32();
+
+    public MappedStorage() {
+        this(System.getProperty("user.dir")+"/src/model/storage/data.slots");
+    }
+
+    /**
+     * Creates a storage for the ID range accepted by {@link Validation#isValidID}
+     * @param path path of the mapped file
+     */
+    public MappedStorage(String path) {
+        this(path, Validation.MIN_ID, Validation.MAX_ID, DEFAULT_SLOT_SIZE);
+    }
+
+    /**
+     * @param path path of the mapped file
+     * @param minId lowest user ID that can be stored
+     * @param maxId highest user ID that can be stored
+     * @param slotSize bytes reserved for each user, holding two copies of the encoded user
+     */
+    public MappedStorage(String path, int minId, int maxId, int slotSize) {
+        if (minId > maxId || minId < 0) {
+            throw new IllegalArgumentException("Invalid ID range " + minId + "-" + maxId);
+        }
+        if (slotSize < 128 || slotSize > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Slot size must be between 128 and " + Short.MAX_VALUE + " bytes");
+        }
+        this.path = path;
+        this.minId = minId;
+        this.maxId = maxId;
+        this.slotSize = slotSize;
+        this.copySize = (slotSize - SLOT_HEADER_SIZE) / 2;
+        this.slotsPerChunk = (int) (MAX_CHUNK_SIZE / slotSize);
+        this.scratch = ByteBuffer.allocate(copySize - COPY_HEADER_SIZE);
+    }
+
+    /**
+     * Maps the file and decodes every used slot
+     * @return all users in the storage
+     */
+    @Override
+    public synchronized DTOList<UserDTO> read() throws IOException {
+        ensureMapped();
+        DTOList<UserDTO> userList = new DTOList<>();
+        long slots = (long) maxId - minId + 1;
+        for (long slot = 0; slot < slots; slot++) {
+            MappedByteBuffer chunk = chunks[(int) (slot / slotsPerChunk)];
+            int offset = (int) (slot % slotsPerChunk) * slotSize;
+            if (chunk.get(offset) != FREE) {
+                UserDTO user = decode(chunk, offset, minId + (int) slot);
+                if (user != null) {
+                    userList.add(user);
+                }
+            }
+        }
+        return userList;
+    }
+
+    /**
+     * Looks up a single user by decoding only its slot
+     * @param userId ID of the user
+     * @return the user, or null if the slot is free
+     */
+    public synchronized UserDTO readUser(int userId) throws IOException {
+        ensureMapped();
+        if (userId < minId || userId > maxId) {
+            return null;
+        }
+        long slot = (long) userId - minId;
+        MappedByteBuffer chunk = chunks[(int) (slot / slotsPerChunk)];
+        int offset = (int) (slot % slotsPerChunk) * slotSize;
+        return chunk.get(offset) == FREE ? null : decode(chunk, offset, userId);
+    }
+
+    /**
+     * Replaces the users in the storage with the given users. Every user is encoded before any slot is changed,
+     * so a user that is out of range or too big leaves the storage as it was.
+     * @param users array-list of userDTO objects
+     */
+    @Override
+    public synchronized void write(ArrayList<UserDTO> users) throws IOException {
+        ensureMapped();
+        byte[][] payloads = new byte[users.size()][];
+        BitSet kept = new BitSet();
+        for (int i = 0; i < users.size(); i++) {
+            int userId = users.get(i).getUserID();
+            checkRange(userId);
+            payloads[i] = encode(users.get(i));
+            kept.set(userId - minId);
+        }
+        long slots = (long) maxId - minId + 1;
+        for (long slot = 0; slot < slots; slot++) {
+            if (!kept.get((int) slot)) {
+                free(slot);
+            }
+        }
+        for (int i = 0; i < users.size(); i++) {
+            commit(users.get(i).getUserID(), payloads[i]);
+        }
+    }
+
+    @Override
+    public synchronized void writeUser(UserDTO user) throws IOException {
+        ensureMapped();
+        checkRange(user.getUserID());
+        commit(user.getUserID(), encode(user));
+    }
+
+    @Override
+    public synchronized void deleteUser(int userId) throws IOException {
+        ensureMapped();
+        checkRange(userId);
+        free((long) userId - minId);
+    }
+
+    /**
+     * Forces changes in the mapping to disk
+     */
+    public synchronized void flush() {
+        if (chunks != null) {
+            for (MappedByteBuffer chunk : chunks) {
+                chunk.force();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        chunks = null;
+        if (file != null) {
+            file.close();
+            file = null;
+        }
+    }
+
+    private void checkRange(int userId) throws IOException {
+        if (userId < minId || userId > maxId) {
+            throw new IOException("User ID " + userId + " is outside the storage range " + minId + "-" + maxId);
+        }
+    }
+
+    /**
+     * Opens the file and maps it. A new file is created sparse with a header, an existing file
+     * must have been created with the same ID range and slot size.
+     */
+    private void ensureMapped() throws IOException {
+        if (chunks != null) {
+            return;
+        }
+        long slots = (long) maxId - minId + 1;
+        long length = HEADER_SIZE + slots * slotSize;
+        boolean exists = new File(path).exists();
+        file = new RandomAccessFile(path, "rw");
+        try {
+            if (exists && file.length() >= HEADER_SIZE) {
+                if (file.readInt() != MAGIC || file.readInt() != VERSION) {
+                    throw new IOException(path + " is not a mapped user storage file");
+                }
+                if (file.readInt() != minId || file.readInt() != maxId || file.readInt() != slotSize) {
+                    throw new IOException(path + " was created with a different ID range or slot size");
+                }
+            } else {
+                file.setLength(length);
+                file.seek(0);
+                file.writeInt(MAGIC);
+                file.writeInt(VERSION);
+                file.writeInt(minId);
+                file.writeInt(maxId);
+                file.writeInt(slotSize);
+            }
+            FileChannel channel = file.getChannel();
+            int chunkCount = (int) ((slots + slotsPerChunk - 1) / slotsPerChunk);
+            MappedByteBuffer[] mapped = new MappedByteBuffer[chunkCount];
+            for (int i = 0; i < chunkCount; i++) {
+                long first = (long) i * slotsPerChunk;
+                long size = Math.min(slotsPerChunk, slots - first) * slotSize;
+                mapped[i] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + first * slotSize, size);
+            }
+            chunks = mapped;
+        } catch (IOException e) {
+            file.close();
+            file = null;
+            throw e;
+        }
+    }
+
+    /**
+     * Encodes the user into a payload without touching the mapping
+     * @throws IOException if the user doesn't fit in a copy of a slot
+     */
+    private byte[] encode(UserDTO user) throws IOException {
+        scratch.clear();
+        try {
+            putString(scratch, user.getUserName());
+            putString(scratch, user.getIni());
+            putString(scratch, user.getCpr());
+            putString(scratch, user.getPassword());
+            ArrayList<String> roles = user.getRoles();
+            scratch.putShort((short) (roles == null ? -1 : roles.size()));
+            if (roles != null) {
+                for (String role : roles) {
+                    putString(scratch, role);
+                }
+            }
+        } catch (BufferOverflowException e) {
+            throw new IOException("User " + user.getUserID() + " doesn't fit in a slot of " + slotSize + " bytes");
+        }
+        byte[] payload = new byte[scratch.position()];
+        scratch.flip();
+        scratch.get(payload);
+        return payload;
+    }
+
+    /**
+     * Writes the payload into the copy of the slot that doesn't hold the user, then switches the state byte to it
+     */
+    private void commit(int userId, byte[] payload) {
+        long slot = (long) userId - minId;
+        MappedByteBuffer chunk = chunks[(int) (slot / slotsPerChunk)];
+        int offset = (int) (slot % slotsPerChunk) * slotSize;
+        byte state = chunk.get(offset) == USED_A ? USED_B : USED_A;
+        int copy = copyOffset(offset, state);
+        crc.reset();
+        crc.update(payload, 0, payload.length);
+        ByteBuffer target = chunk.duplicate();
+        target.position(copy + COPY_HEADER_SIZE);
+        target.put(payload);
+        chunk.putShort(copy, (short) payload.length);
+        chunk.putInt(copy + 2, (int) crc.getValue());
+        chunk.putInt(offset + 1, userId);
+        chunk.put(offset, state);
+    }
+
+    /**
+     * Frees the slot first and then invalidates both copies, so a later user in the slot can't fall back
+     * to a copy of the deleted user
+     */
+    private void free(long slot) {
+        MappedByteBuffer chunk = chunks[(int) (slot / slotsPerChunk)];
+        int offset = (int) (slot % slotsPerChunk) * slotSize;
+        if (chunk.get(offset) == FREE && chunk.getShort(copyOffset(offset, USED_A)) == 0
+                && chunk.getShort(copyOffset(offset, USED_B)) == 0) {
+            return;
+        }
+        chunk.put(offset, FREE);
+        chunk.putShort(copyOffset(offset, USED_A), (short) 0);
+        chunk.putShort(copyOffset(offset, USED_B), (short) 0);
+    }
+
+    private int copyOffset(int offset, byte state) {
+        return offset + SLOT_HEADER_SIZE + (state == USED_A ? 0 : copySize);
+    }
+
+    /**
+     * Decodes the copy named by the state byte, or the other copy if that one is torn
+     * @return the user, or null if neither copy is valid, as after a crash while a new user was written
+     * @throws IOException if a copy with a valid CRC can't be decoded
+     */
+    private UserDTO decode(MappedByteBuffer chunk, int offset, int userId) throws IOException {
+        byte state = chunk.get(offset);
+        if (state != USED_A && state != USED_B) {
+            throw new IOException("Corrupt slot at offset " + offset + " in " + path);
+        }
+        int copy = copyOffset(offset, state);
+        if (!isValid(chunk, copy)) {
+            copy = copyOffset(offset, state == USED_A ? USED_B : USED_A);
+            if (!isValid(chunk, copy)) {
+                return null;
+            }
+        }
+        if (chunk.getInt(offset + 1) != userId) {
+            throw new IOException("Slot of user " + userId + " holds user " + chunk.getInt(offset + 1) + " in " + path);
+        }
+        int[] position = {copy + COPY_HEADER_SIZE};
+        int limit = position[0] + chunk.getShort(copy);
+        try {
+            UserDTO user = new UserDTO();
+            user.setUserID(userId);
+            user.setUserName(getString(chunk, position, limit));
+            user.setIni(getString(chunk, position, limit));
+            user.setCpr(getString(chunk, position, limit));
+            user.setPassword(getString(chunk, position, limit));
+            int roleCount = getShort(chunk, position, limit);
+            // every role takes at least its length, so a bigger count can't be right
+            if (roleCount > (limit - position[0]) / 2) {
+                throw new BufferUnderflowException();
+            }
+            if (roleCount >= 0) {
+                ArrayList<String> roles = new ArrayList<>(roleCount);
+                for (int i = 0; i < roleCount; i++) {
+                    roles.add(getString(chunk, position, limit));
+                }
+                user.setRoles(roles);
+            }
+            return user;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Corrupt slot at offset " + offset + " in " + path, e);
+        }
+    }
+
+    private boolean isValid(MappedByteBuffer chunk, int copy) {
+        int length = chunk.getShort(copy);
+        if (length < MIN_PAYLOAD || length > copySize - COPY_HEADER_SIZE) {
+            return false;
+        }
+        crc.reset();
+        for (int i = 0; i < length; i++) {
+            crc.update(chunk.get(copy + COPY_HEADER_SIZE + i));
+        }
+        return (int) crc.getValue() == chunk.getInt(copy + 2);
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putShort((short) -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static int getShort(MappedByteBuffer chunk, int[] position, int limit) {
+        if (position[0] + 2 > limit) {
+            throw new BufferUnderflowException();
+        }
+        int value = chunk.getShort(position[0]);
+        position[0] += 2;
+        return value;
+    }
+
+    private static String getString(MappedByteBuffer chunk, int[] position, int limit) {
+        int length = getShort(chunk, position, limit);
+        if (length < 0) {
+            return null;
+        }
+        if (position[0] + length > limit) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = chunk.get(position[0] + i);
+        }
+        position[0] += length;
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,171 @@
+package model.storage;
+
+import model.IntIndex;
+import model.RowOrder;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Map from user ID to the file offset of the user's record, on primitive arrays.
+ * Like UserStore it has an {@link IntIndex} over a dense array in insertion order and a {@link RowOrder}
+ * to page through it, so it takes about 32 bytes per user and lists the IDs in a stable order.
+ */
+final class OffsetIndex {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final long REMOVED = -1;
+
+    // position of every ID in the dense arrays
+    private final IntIndex index;
+
+    // dense arrays in insertion order, removed entries have the offset REMOVED until compacted
+    private int[] ids;
+    private long[] offsets;
+    private final RowOrder order;
+    private int end;
+    private int size;
+
+    OffsetIndex() {
+        this(MIN_CAPACITY);
+    }
+
+    OffsetIndex(int expectedSize) {
+        index = new IntIndex(expectedSize);
+        ids = new int[Math.max(MIN_CAPACITY, expectedSize)];
+        offsets = new long[ids.length];
+        order = new RowOrder(ids.length);
+    }
+
+    /**
+     * @return the offset of the user's record, or -1 if the ID isn't indexed
+     */
+    long get(int userId) {
+        int i = index.get(userId);
+        return i < 0 ? REMOVED : offsets[i];
+    }
+
+    boolean contains(int userId) {
+        return index.get(userId) >= 0;
+    }
+
+    /**
+     * Sets the offset of a user's record. A user already indexed keeps its position.
+     */
+    void put(int userId, long offset) {
+        int i = index.get(userId);
+        if (i >= 0) {
+            offsets[i] = offset;
+            return;
+        }
+        if (end == ids.length) {
+            if (end - size > size >> 1) {
+                compact();
+            } else {
+                ids = Arrays.copyOf(ids, ids.length << 1);
+                offsets = Arrays.copyOf(offsets, offsets.length << 1);
+                order.resize(ids.length);
+            }
+        }
+        ids[end] = userId;
+        offsets[end] = offset;
+        index.put(userId, end);
+        order.add(end);
+        end++;
+        size++;
+    }
+
+    /**
+     * @return the offset of the removed user's record, or -1 if the ID wasn't indexed
+     */
+    long remove(int userId) {
+        int i = index.remove(userId);
+        if (i < 0) {
+            return REMOVED;
+        }
+        long offset = offsets[i];
+        offsets[i] = REMOVED;
+        order.remove(i);
+        size--;
+        if (i == end - 1) {
+            end--;
+        } else if (end - size > size && end > MIN_CAPACITY) {
+            compact();
+        }
+        return offset;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the IDs of a page in insertion order
+     */
+    int[] page(int offset, int limit) {
+        if (offset >= size || limit <= 0) {
+            return new int[0];
+        }
+        int[] page = new int[Math.min(limit, size - offset)];
+        // with no removed entries the offset is an index
+        int i = end == size ? offset : order.row(offset);
+        for (int added = 0; i < end && added < page.length; i++) {
+            if (offsets[i] != REMOVED) {
+                page[added++] = ids[i];
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Passes the IDs of a page in insertion order to a consumer, starting at a position instead of an offset
+     * @param position 0 for the first page, or the position returned for the previous page
+     * @return the position of the next page
+     */
+    long pageFrom(long position, int limit, IntConsumer page) {
+        int added = 0;
+        for (int i = order.rowFrom(position, end); i < end; i++) {
+            if (offsets[i] != REMOVED) {
+                if (added == limit) {
+                    return order.position(i);
+                }
+                page.accept(ids[i]);
+                added++;
+            }
+        }
+        return order.nextPosition();
+    }
+
+    /**
+     * Calls the visitor for every ID and offset in insertion order
+     */
+    void forEach(Visitor visitor) throws IOException {
+        for (int i = 0; i < end; i++) {
+            if (offsets[i] != REMOVED) {
+                visitor.visit(ids[i], offsets[i]);
+            }
+        }
+    }
+
+    interface Visitor {
+        void visit(int userId, long offset) throws IOException;
+    }
+
+    private void compact() {
+        int j = 0;
+        for (int i = 0; i < end; i++) {
+            if (offsets[i] != REMOVED) {
+                order.move(i, j);
+                ids[j] = ids[i];
+                offsets[j] = offsets[i];
+                j++;
+            }
+        }
+        order.compacted(j);
+        end = j;
+        for (int i = 0; i < end; i++) {
+            index.put(ids[i], i);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package model.storage;
+
+import model.UserDTO;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Encoding of a user as a record payload, shared by the record based storages:
+ * user name, initials, cpr and password as optional modified UTF-8 strings,
+ * followed by the number of roles (-1 for none) and the roles.
+ */
+final class RecordCodec {
+
+    private RecordCodec() {
+    }
+
+    /**
+     * Writes the fields of a user, except the ID
+     */
+    static void writeUser(DataOutput out, UserDTO user) throws IOException {
+        writeString(out, user.getUserName());
+        writeString(out, user.getIni());
+        writeString(out, user.getCpr());
+        writeString(out, user.getPassword());
+        ArrayList<String> roles = user.getRoles();
+        out.writeShort(roles == null ? -1 : roles.size());
+        if (roles != null) {
+            for (String role : roles) {
+                writeString(out, role);
+            }
+        }
+    }
+
+    /**
+     * Reads the fields written by {@link #writeUser}
+     * @param userId ID of the user, which is stored by the caller
+     */
+    static UserDTO readUser(DataInput in, int userId) throws IOException {
+        UserDTO user = new UserDTO();
+        user.setUserID(userId);
+        user.setUserName(readString(in));
+        user.setIni(readString(in));
+        user.setCpr(readString(in));
+        user.setPassword(readString(in));
+        int roleCount = in.readShort();
+        if (roleCount >= 0) {
+            ArrayList<String> roles = new ArrayList<>(roleCount);
+            for (int i = 0; i < roleCount; i++) {
+                roles.add(readString(in));
+            }
+            user.setRoles(roles);
+        }
+        return user;
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,380 @@
+package model.storage;
+
+import model.DTOList;
+import model.UserDTO;
+import model.UserStore;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Storage that splits the users over a number of shard files by a hash of their ID, so a change only rewrites
+ * the shard of the changed user and the shards are read in parallel.
+ *
+ * The storage remembers which users it last wrote or read in every shard. A full {@link #write} only rewrites
+ * the shards whose users changed, comparing the users by identity as the DAOs replace a user to change it,
+ * and {@link #writeUser}/{@link #deleteUser} rewrite the one shard of the user. Users are read back grouped
+ * by shard, and in the order they were written within a shard.
+ *
+ * The directory holds a file "shards" with the number of shards and a file "shard-i-of-n" per shard,
+ * written by the storage made by the shard factory, {@link BinaryFileStorage} by default.
+ * Use {@link #rebalance} to change the number of shards of stored users.
+ */
+public class ShardedStorage implements IRecordStorage, Closeable {
+
+    /**
+     * Number of shards used by default
+     */
+    public static final int DEFAULT_SHARDS = 8;
+
+    private static final String MANIFEST = "shards";
+
+    private final File directory;
+    private final int shardCount;
+    private final IDataStorage[] shards;
+    // users of every shard as last written or read, null until the shard is known
+    private final UserStore[] known;
+    private boolean manifestWritten;
+    private ExecutorService executor;
+
+    public ShardedStorage() {
+        this(System.getProperty("user.dir")+"/src/model/storage/shards", DEFAULT_SHARDS);
+    }
+
+    public ShardedStorage(String directory, int shardCount) {
+        this(directory, shardCount, BinaryFileStorage::new);
+    }
+
+    /**
+     * @param directory directory of the shard files, created on the first write
+     * @param shardCount number of shards the users are split over
+     * @param shardFactory makes the storage of a shard from the path of its file
+     */
+    public ShardedStorage(String directory, int shardCount, Function<String, IDataStorage> shardFactory) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("There must be at least one shard");
+        }
+        this.directory = new File(directory);
+        this.shardCount = shardCount;
+        this.shards = new IDataStorage[shardCount];
+        this.known = new UserStore[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = shardFactory.apply(new File(directory, shardName(i, shardCount)).getPath());
+        }
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * @return the shard a user is stored in
+     */
+    public int shardOf(int userId) {
+        // spread the bits of consecutive IDs before taking the remainder
+        int hash = userId * 0x9E3779B9;
+        return Math.floorMod(hash ^ (hash >>> 16), shardCount);
+    }
+
+    /**
+     * Writes the shards whose users differ from the ones last written or read
+     */
+    @Override
+    public synchronized void write(ArrayList<UserDTO> users) throws IOException {
+        UserStore[] split = new UserStore[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            split[i] = new UserStore(users.size() / shardCount + 1);
+        }
+        for (UserDTO user : users) {
+            split[shardOf(user.getUserID())].put(user);
+        }
+        List<Integer> changed = new ArrayList<>();
+        for (int i = 0; i < shardCount; i++) {
+            if (known[i] == null || !sameUsers(known[i], split[i])) {
+                changed.add(i);
+            }
+        }
+        writeShards(changed, split);
+    }
+
+    @Override
+    public synchronized void writeUser(UserDTO user) throws IOException {
+        int shard = shardOf(user.getUserID());
+        UserStore users = knownShard(shard);
+        users.put(user);
+        try {
+            writeShard(shard, users);
+        } catch (IOException e) {
+            known[shard] = null;
+            throw e;
+        }
+        writeManifest();
+    }
+
+    @Override
+    public synchronized void deleteUser(int userId) throws IOException {
+        int shard = shardOf(userId);
+        UserStore users = knownShard(shard);
+        if (users.remove(userId) == null) {
+            return;
+        }
+        try {
+            writeShard(shard, users);
+        } catch (IOException e) {
+            known[shard] = null;
+            throw e;
+        }
+    }
+
+    /**
+     * Reads every shard in parallel
+     * @throws IOException if a shard can't be read, or the users are stored in another number of shards
+     */
+    @Override
+    public synchronized DTOList<UserDTO> read() throws IOException, ClassNotFoundException {
+        checkShardCount();
+        List<Future<DTOList<UserDTO>>> reads = new ArrayList<>(shardCount);
+        for (IDataStorage shard : shards) {
+            reads.add(executor().submit(shard::read));
+        }
+        DTOList<UserDTO> users = new DTOList<>();
+        for (int i = 0; i < shardCount; i++) {
+            DTOList<UserDTO> shardUsers = await(reads.get(i));
+            UserStore store = new UserStore(shardUsers.size());
+            for (UserDTO user : shardUsers) {
+                store.put(user);
+            }
+            known[i] = store;
+            users.addAll(shardUsers);
+        }
+        return users;
+    }
+
+    /**
+     * Stops the threads reading and writing shards
+     */
+    @Override
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    /**
+     * Moves the users stored in a directory to another number of shards. The new shards are written next to the
+     * old ones and the shard count is switched at once before the old shards are deleted, so a failed rebalance
+     * leaves the users in the old shards.
+     * @param directory directory of the shards
+     * @param shardCount number of shards to split the users over
+     * @param shardFactory makes the storage of a shard from the path of its file
+     * @return number of users moved
+     */
+    public static int rebalance(String directory, int shardCount, Function<String, IDataStorage> shardFactory) throws IOException {
+        int stored = readManifest(new File(directory));
+        if (stored == 0 || stored == shardCount) {
+            return 0;
+        }
+        ShardedStorage source = new ShardedStorage(directory, stored, shardFactory);
+        ShardedStorage target = new ShardedStorage(directory, shardCount, shardFactory);
+        try {
+            DTOList<UserDTO> users;
+            try {
+                users = source.read();
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Users couldn't be read", e);
+            }
+            List<Integer> all = new ArrayList<>();
+            UserStore[] split = new UserStore[shardCount];
+            for (int i = 0; i < shardCount; i++) {
+                all.add(i);
+                split[i] = new UserStore(users.size() / shardCount + 1);
+            }
+            for (UserDTO user : users) {
+                split[target.shardOf(user.getUserID())].put(user);
+            }
+            target.writeShards(all, split);
+            for (int i = 0; i < stored; i++) {
+                new File(directory, shardName(i, stored)).delete();
+            }
+            return users.size();
+        } finally {
+            source.close();
+            target.close();
+        }
+    }
+
+    /**
+     * Rebalances the default shard directory, or the given one
+     * Run with: java model.storage.ShardedStorage shards [directory]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java model.storage.ShardedStorage shards [directory]");
+            return;
+        }
+        int shardCount = Integer.parseInt(args[0]);
+        String directory = args.length > 1 ? args[1] : System.getProperty("user.dir")+"/src/model/storage/shards";
+        int moved = rebalance(directory, shardCount, BinaryFileStorage::new);
+        System.out.println("Moved " + moved + " users to " + shardCount + " shards in " + directory + ".");
+    }
+
+    private void writeShards(List<Integer> changed, UserStore[] split) throws IOException {
+        if (changed.isEmpty()) {
+            return;
+        }
+        directory.mkdirs();
+        List<Future<Void>> writes = new ArrayList<>(changed.size());
+        for (int shard : changed) {
+            UserStore users = split[shard];
+            writes.add(executor().submit(() -> {
+                shards[shard].write(users.toList());
+                return null;
+            }));
+        }
+        IOException failure = null;
+        for (int i = 0; i < writes.size(); i++) {
+            int shard = changed.get(i);
+            try {
+                await(writes.get(i));
+                known[shard] = split[shard];
+            } catch (IOException | ClassNotFoundException e) {
+                // the shard's file might be the old or the new one, so it is read again before its next change
+                known[shard] = null;
+                IOException error = e instanceof IOException ? (IOException) e : new IOException(e);
+                if (failure == null) {
+                    failure = error;
+                } else {
+                    failure.addSuppressed(error);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        writeManifest();
+    }
+
+    private void writeShard(int shard, UserStore users) throws IOException {
+        directory.mkdirs();
+        shards[shard].write(users.toList());
+    }
+
+    private UserStore knownShard(int shard) throws IOException {
+        if (known[shard] == null) {
+            try {
+                DTOList<UserDTO> users = checkShardCount() ? shards[shard].read() : new DTOList<>();
+                UserStore store = new UserStore(users.size());
+                for (UserDTO user : users) {
+                    store.put(user);
+                }
+                known[shard] = store;
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Users couldn't be read", e);
+            }
+        }
+        return known[shard];
+    }
+
+    private static boolean sameUsers(UserStore a, UserStore b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        Iterator<UserDTO> other = b.iterator();
+        for (UserDTO user : a) {
+            if (user != other.next()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if users are stored, false if the directory has none yet
+     * @throws IOException if the users are stored in another number of shards
+     */
+    private boolean checkShardCount() throws IOException {
+        int stored = readManifest();
+        if (stored != 0 && stored != shardCount) {
+            throw new IOException("Users are stored in " + stored + " shards, not " + shardCount + ", rebalance them first");
+        }
+        return stored != 0;
+    }
+
+    private void writeManifest() throws IOException {
+        if (manifestWritten || readManifest() == shardCount) {
+            manifestWritten = true;
+            return;
+        }
+        directory.mkdirs();
+        File manifest = new File(directory, MANIFEST);
+        File tempFile = new File(directory, MANIFEST + ".tmp");
+        Files.write(tempFile.toPath(), Integer.toString(shardCount).getBytes(StandardCharsets.UTF_8));
+        Files.move(tempFile.toPath(), manifest.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        manifestWritten = true;
+    }
+
+    private int readManifest() throws IOException {
+        return readManifest(directory);
+    }
+
+    /**
+     * @return the number of shards the users in the directory are stored in, 0 if none are stored
+     */
+    private static int readManifest(File directory) throws IOException {
+        File manifest = new File(directory, MANIFEST);
+        if (!manifest.exists()) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(new String(Files.readAllBytes(manifest.toPath()), StandardCharsets.UTF_8).trim());
+        } catch (NumberFormatException e) {
+            throw new IOException("Corrupt shard count in " + manifest, e);
+        }
+    }
+
+    private static String shardName(int shard, int shardCount) {
+        return "shard-" + shard + "-of-" + shardCount;
+    }
+
+    private ExecutorService executor() {
+        if (executor == null) {
+            int threads = Math.min(shardCount, Runtime.getRuntime().availableProcessors());
+            executor = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "shard-io");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    private static <T> T await(Future<T> future) throws IOException, ClassNotFoundException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof ClassNotFoundException) {
+                throw (ClassNotFoundException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+}
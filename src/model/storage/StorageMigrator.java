@@ -0,0 +1,76 @@
+package model.storage;
+
+import model.DTOList;
+import model.UserDTO;
+import model.UserStore;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Copies the users of one storage to another, such as a data.txt file of {@link FileStorage} to {@link BinaryFileStorage}.
+ * The copy is read back and compared with the source by ID, so a migration that lost or changed a user fails,
+ * while a target that lists the users in another order, such as {@link ShardedStorage}, is accepted.
+ *
+ * Run once with: java model.storage.StorageMigrator [source data.txt] [target data.bin]
+ */
+public final class StorageMigrator {
+
+    private StorageMigrator() {
+    }
+
+    /**
+     * Writes the users of the source to the target and checks that the target reads back the same users
+     * @return number of users copied
+     * @throws IOException if either storage fails, or the target doesn't read back the users of the source
+     */
+    public static int migrate(IDataStorage source, IDataStorage target) throws IOException {
+        DTOList<UserDTO> users = read(source);
+        target.write(users);
+        DTOList<UserDTO> copied = read(target);
+        if (copied.size() != users.size()) {
+            throw new IOException("Copied " + copied.size() + " of " + users.size() + " users");
+        }
+        UserStore copies = new UserStore(copied.size());
+        for (UserDTO user : copied) {
+            copies.put(user);
+        }
+        for (UserDTO user : users) {
+            UserDTO copy = copies.get(user.getUserID());
+            if (copy == null || !user.toString().equals(copy.toString())) {
+                throw new IOException("User " + user.getUserID() + " changed when copied");
+            }
+        }
+        return users.size();
+    }
+
+    public static void main(String[] args) {
+        String directory = System.getProperty("user.dir")+"/src/model/storage/";
+        String source = args.length > 0 ? args[0] : directory + "data.txt";
+        String target = args.length > 1 ? args[1] : directory + "data.bin";
+        if (!new File(source).exists()) {
+            System.out.println(source + " doesn't exist.");
+            return;
+        }
+        if (new File(target).exists()) {
+            System.out.println(target + " exists already and is left as it is.");
+            return;
+        }
+        try {
+            int count = migrate(new FileStorage(source), new BinaryFileStorage(target));
+            System.out.println("Copied " + count + " users from " + source + " (" + new File(source).length()
+                    + " bytes) to " + target + " (" + new File(target).length() + " bytes).");
+        } catch (IOException e) {
+            new File(target).delete();
+            System.out.println("Users couldn't be copied: " + e.getMessage());
+        }
+    }
+
+    private static DTOList<UserDTO> read(IDataStorage storage) throws IOException {
+        try {
+            return storage.read();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Users couldn't be read", e);
+        }
+    }
+}
@@ -0,0 +1,361 @@
+package model.storage;
+
+import model.UserDTO;
+import model.Validation;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Compact binary encoding of a user, written by hand instead of through Java serialization.
+ *
+ * A record is [varint userID][byte flags][fields], where the flags tell which fields are present and how they
+ * are encoded. Strings are a varint byte length followed by UTF-8. A CPR of 10 digits is packed as a varint number.
+ * Roles are a bitmask of {@link Validation#ROLES} when they are known roles in that order, indexes into
+ * ROLES when they are known roles in another order, and strings otherwise, so every user reads back as written.
+ *
+ * Records are framed by their length as a varint, so a reader can skip fields added by later versions.
+ * An encoder or decoder reuses its buffer between calls, so an instance is meant for one thread.
+ */
+public final class UserCodec {
+
+    /**
+     * Version of the record format, written in the header of files holding records
+     */
+    public static final int VERSION = 1;
+    /**
+     * Largest record in bytes that is written and read, far above any valid user, so a corrupt length is caught
+     * before a buffer for it is allocated
+     */
+    public static final int MAX_RECORD_SIZE = 1 << 20;
+
+    private static final int USER_NAME = 1;
+    private static final int INI = 1 << 1;
+    private static final int CPR = 1 << 2;
+    private static final int CPR_PACKED = 1 << 3;
+    private static final int PASSWORD = 1 << 4;
+    private static final int ROLES = 1 << 5;
+    private static final int ROLE_ENCODING_SHIFT = 6;
+    private static final int ROLES_BITMASK = 0;
+    private static final int ROLES_INDEXED = 1;
+    private static final int ROLES_STRINGS = 2;
+
+    private static final String[] ROLE_TABLE = Validation.ROLES.toArray(new String[0]);
+
+    private byte[] buffer = new byte[128];
+    private int position;
+    private int limit;
+
+    /**
+     * Encodes a user into the internal buffer
+     * @param user the user
+     * @return number of bytes encoded, available from {@link #getBuffer()}
+     */
+    public int encode(UserDTO user) {
+        position = 0;
+        writeVarInt(user.getUserID());
+        int flagsPosition = position++;
+        int flags = 0;
+        if (user.getUserName() != null) {
+            flags |= USER_NAME;
+            writeString(user.getUserName());
+        }
+        if (user.getIni() != null) {
+            flags |= INI;
+            writeString(user.getIni());
+        }
+        String cpr = user.getCpr();
+        if (cpr != null) {
+            flags |= CPR;
+            if (isPackable(cpr)) {
+                flags |= CPR_PACKED;
+                writeVarLong(Long.parseLong(cpr));
+            } else {
+                writeString(cpr);
+            }
+        }
+        if (user.getPassword() != null) {
+            flags |= PASSWORD;
+            writeString(user.getPassword());
+        }
+        if (user.getRoles() != null) {
+            flags |= ROLES | writeRoles(user.getRoles()) << ROLE_ENCODING_SHIFT;
+        }
+        buffer[flagsPosition] = (byte) flags;
+        return position;
+    }
+
+    /**
+     * @return the buffer holding the last encoded user from index 0
+     */
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Encodes a user and writes it framed by its length
+     * @return number of bytes written
+     */
+    public int write(UserDTO user, OutputStream out) throws IOException {
+        int length = encode(user);
+        if (length > MAX_RECORD_SIZE) {
+            throw new IOException("User " + user.getUserID() + " takes " + length + " bytes, more than " + MAX_RECORD_SIZE);
+        }
+        int header = writeVarInt(out, length);
+        out.write(buffer, 0, length);
+        return header + length;
+    }
+
+    /**
+     * Reads a user written by {@link #write}
+     * @return the user, or null at the end of the stream
+     * @throws EOFException if the stream ends inside a record or the record length is corrupt
+     */
+    public UserDTO read(InputStream in) throws IOException {
+        int first = in.read();
+        if (first < 0) {
+            return null;
+        }
+        int length = first & 0x7F;
+        for (int shift = 7; (first & 0x80) != 0; shift += 7) {
+            first = in.read();
+            if (first < 0 || shift > 28) {
+                throw new EOFException("Corrupt record length");
+            }
+            length |= (first & 0x7F) << shift;
+        }
+        if (length < 0 || length > MAX_RECORD_SIZE) {
+            throw new EOFException("Corrupt record length");
+        }
+        byte[] record = length <= buffer.length ? buffer : new byte[length];
+        int read = 0;
+        while (read < length) {
+            int n = in.read(record, read, length - read);
+            if (n < 0) {
+                throw new EOFException("Stream ended inside a record");
+            }
+            read += n;
+        }
+        buffer = record;
+        return decode(record, 0, length);
+    }
+
+    /**
+     * Decodes a user
+     * @param data bytes holding the record, without its length
+     * @param offset start of the record
+     * @param length length of the record
+     * @return the user
+     * @throws IOException if the record is corrupt
+     */
+    public UserDTO decode(byte[] data, int offset, int length) throws IOException {
+        byte[] saved = buffer;
+        buffer = data;
+        position = offset;
+        limit = offset + length;
+        try {
+            UserDTO user = new UserDTO();
+            user.setUserID(readVarInt());
+            int flags = readByte();
+            if ((flags & USER_NAME) != 0) {
+                user.setUserName(readString());
+            }
+            if ((flags & INI) != 0) {
+                user.setIni(readString());
+            }
+            if ((flags & CPR) != 0) {
+                user.setCpr((flags & CPR_PACKED) != 0 ? padCpr(readVarLong()) : readString());
+            }
+            if ((flags & PASSWORD) != 0) {
+                user.setPassword(readString());
+            }
+            if ((flags & ROLES) != 0) {
+                user.setRoles(readRoles(flags >>> ROLE_ENCODING_SHIFT & 3));
+            }
+            // fields added by later versions end the record and are skipped
+            return user;
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Corrupt user record", e);
+        } finally {
+            buffer = saved;
+        }
+    }
+
+    private static boolean isPackable(String cpr) {
+        if (cpr.length() != 10) {
+            return false;
+        }
+        for (int i = 0; i < 10; i++) {
+            char c = cpr.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String padCpr(long value) {
+        char[] cpr = new char[10];
+        for (int i = 9; i >= 0; i--) {
+            cpr[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return new String(cpr);
+    }
+
+    /**
+     * @return the role encoding used
+     */
+    private int writeRoles(ArrayList<String> roles) {
+        int[] indexes = new int[roles.size()];
+        boolean ordered = true;
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = roleIndex(roles.get(i));
+            if (indexes[i] < 0) {
+                writeVarInt(roles.size());
+                for (String role : roles) {
+                    writeString(role);
+                }
+                return ROLES_STRINGS;
+            }
+            ordered &= i == 0 || indexes[i] > indexes[i - 1];
+        }
+        if (ordered) {
+            int mask = 0;
+            for (int index : indexes) {
+                mask |= 1 << index;
+            }
+            writeVarInt(mask);
+            return ROLES_BITMASK;
+        }
+        writeVarInt(indexes.length);
+        for (int index : indexes) {
+            ensureCapacity(1);
+            buffer[position++] = (byte) index;
+        }
+        return ROLES_INDEXED;
+    }
+
+    private ArrayList<String> readRoles(int encoding) throws IOException {
+        if (encoding == ROLES_BITMASK) {
+            int mask = readVarInt();
+            ArrayList<String> roles = new ArrayList<>(Integer.bitCount(mask));
+            for (int i = 0; i < ROLE_TABLE.length; i++) {
+                if ((mask & 1 << i) != 0) {
+                    roles.add(ROLE_TABLE[i]);
+                }
+            }
+            return roles;
+        }
+        int count = readVarInt();
+        if (count < 0 || count > limit - position) {
+            throw new IOException("Corrupt role count " + count);
+        }
+        ArrayList<String> roles = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            roles.add(encoding == ROLES_INDEXED ? ROLE_TABLE[readByte()] : readString());
+        }
+        return roles;
+    }
+
+    /**
+     * @return index of the role in the table when it matches exactly, otherwise -1
+     */
+    private static int roleIndex(String role) {
+        for (int i = 0; i < ROLE_TABLE.length; i++) {
+            if (ROLE_TABLE[i].equals(role)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void writeString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    private String readString() throws IOException {
+        int length = readVarInt();
+        if (length < 0 || length > limit - position) {
+            throw new IOException("Corrupt string length " + length);
+        }
+        String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    private void writeVarInt(int value) {
+        ensureCapacity(5);
+        while ((value & ~0x7F) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    private void writeVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    private static int writeVarInt(OutputStream out, int value) throws IOException {
+        int bytes = 1;
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+            bytes++;
+        }
+        out.write(value);
+        return bytes;
+    }
+
+    private int readByte() throws IOException {
+        if (position >= limit) {
+            throw new IOException("Record ended early");
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    private int readVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt varint");
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt varint");
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (position + bytes > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, position + bytes));
+        }
+    }
+}
@@ -0,0 +1,520 @@
+package view;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import control.Ctrl;
+import model.IDAL.DALException;
+import model.PasswordGenerator;
+import model.UserDTO;
+import model.UserDTO.DTOException;
+import model.Validation;
+
+/**
+ * Front-end that serves the controller as JSON over HTTP on localhost, so several operators can use the system at once.
+ * Every request runs on a thread of a fixed pool, and the controller and DAOs it calls are safe for concurrent use.
+ *
+ * GET /users?offset=0&amp;limit=100 lists a page of users, GET /users/{id} gets a user and GET /users/{id}/exists
+ * checks if it exists. POST /users creates a user from a JSON object with the keys userName, ini, cpr, roles,
+ * an optional ID, which is allocated if it's left out, and an optional password, which is generated and returned
+ * if it's left out. PUT /users/{id} edits the given keys
+ * and DELETE /users/{id} deletes the user. Passwords are never returned for stored users.
+ * Errors are answered with a status code and a JSON object holding the messages.
+ */
+public class HttpUI implements UI {
+
+	public static final int DEFAULT_PORT = 8080;
+
+	private static final int DEFAULT_PAGE_SIZE = 100;
+	private static final int MAX_PAGE_SIZE = 1000;
+	private static final int MAX_BODY_SIZE = 1 << 16;
+	private static final PasswordGenerator PASSWORD_GENERATOR = new PasswordGenerator();
+
+	static {
+		// the server writes the headers and the body of a response separately, which without TCP_NODELAY
+		// waits for the client's delayed ACK, about 40 ms, on every request of a kept-alive connection
+		if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+	}
+
+	private final Ctrl controller;
+	private final int port;
+	private final int threads;
+	private final CountDownLatch stopped = new CountDownLatch(1);
+	private final CountDownLatch finished = new CountDownLatch(1);
+
+	private HttpServer server;
+	private ExecutorService executor;
+
+	/**
+	 * Thrown to answer a request with an error status
+	 */
+	private static class HttpError extends Exception {
+		private static final long serialVersionUID = 1L;
+
+		final int status;
+		final List<String> messages;
+
+		HttpError(int status, String message) {
+			this(status, Collections.singletonList(message));
+		}
+
+		HttpError(int status, List<String> messages) {
+			super(messages.toString());
+			this.status = status;
+			this.messages = messages;
+		}
+	}
+
+	public HttpUI(Ctrl controller) {
+		this(controller, DEFAULT_PORT, Math.max(4, 2 * Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * @param controller the controller the requests are served by
+	 * @param port port on localhost, 0 for any free port
+	 * @param threads number of requests handled at once
+	 */
+	public HttpUI(Ctrl controller, int port, int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("At least one thread is needed");
+		}
+		this.controller = controller;
+		this.port = port;
+		this.threads = threads;
+	}
+
+	/**
+	 * Loads the users, serves requests until {@link #stop()} is called or the JVM is shut down, and saves the users
+	 */
+	@Override
+	public void run() {
+		try {
+			controller.initStorage();
+			start();
+		} catch (DALException | IOException e) {
+			e.printStackTrace();
+			System.out.println("The server couldn't be started.");
+			return;
+		}
+		// on Ctrl+C the users are saved before the JVM exits
+		Thread hook = new Thread(() -> {
+			stop();
+			try {
+				finished.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		Runtime.getRuntime().addShutdownHook(hook);
+		System.out.println("Serving users on http://localhost:" + getPort() + "/users, press Ctrl+C to stop.");
+		try {
+			stopped.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		shutDown();
+		try {
+			controller.closeStorage();
+		} catch (DALException e) {
+			e.printStackTrace();
+			System.out.println("Something went wrong when trying to save users to storage.");
+		} finally {
+			finished.countDown();
+		}
+		try {
+			Runtime.getRuntime().removeShutdownHook(hook);
+		} catch (IllegalStateException e) {
+			// the JVM is shutting down already
+		}
+	}
+
+	/**
+	 * Starts serving requests without loading the users, and returns right away
+	 * @throws IOException if the port can't be bound
+	 */
+	public synchronized void start() throws IOException {
+		if (server != null) {
+			return;
+		}
+		executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "HttpUI worker");
+			thread.setDaemon(true);
+			return thread;
+		});
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.setExecutor(executor);
+		server.createContext("/users", this::handle);
+		server.start();
+	}
+
+	/**
+	 * Stops serving requests, so {@link #run()} saves the users and returns
+	 */
+	public void stop() {
+		shutDown();
+		stopped.countDown();
+	}
+
+	/**
+	 * @return the port requests are served on, or -1 if the server isn't running
+	 */
+	public synchronized int getPort() {
+		return server == null ? -1 : server.getAddress().getPort();
+	}
+
+	private synchronized void shutDown() {
+		if (server == null) {
+			return;
+		}
+		// requests in progress get a second to finish
+		server.stop(1);
+		executor.shutdown();
+		try {
+			executor.awaitTermination(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		server = null;
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			route(exchange);
+		} catch (HttpError e) {
+			respond(exchange, e.status, writer -> {
+				writer.beginObject();
+				writer.name("errors").beginArray();
+				for (String message : e.messages) {
+					writer.value(message);
+				}
+				writer.endArray();
+				writer.endObject();
+			});
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			respond(exchange, 500, writer -> writer.beginObject().name("errors").beginArray().value("Internal error").endArray().endObject());
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void route(HttpExchange exchange) throws IOException, HttpError {
+		URI uri = exchange.getRequestURI();
+		String[] path = uri.getPath().split("/");
+		String method = exchange.getRequestMethod();
+		// path is "", "users" and then the ID and the action
+		if (path.length < 2 || !path[1].equals("users")) {
+			throw new HttpError(404, "No such resource " + uri.getPath());
+		}
+		if (path.length == 2) {
+			if (method.equals("GET")) {
+				list(exchange, uri.getRawQuery());
+			} else if (method.equals("POST")) {
+				create(exchange);
+			} else {
+				throw new HttpError(405, method + " isn't allowed on /users");
+			}
+			return;
+		}
+		int userId = parseId(path[2]);
+		if (path.length == 4 && path[3].equals("exists") && method.equals("GET")) {
+			boolean exists = controller.exists(idMap(userId));
+			respond(exchange, 200, writer -> writer.beginObject().name("exists").value(exists).endObject());
+			return;
+		}
+		if (path.length != 3) {
+			throw new HttpError(404, "No such resource " + uri.getPath());
+		}
+		switch (method) {
+			case "GET":
+				get(exchange, userId);
+				break;
+			case "PUT":
+				edit(exchange, userId);
+				break;
+			case "DELETE":
+				delete(exchange, userId);
+				break;
+			default:
+				throw new HttpError(405, method + " isn't allowed on a user");
+		}
+	}
+
+	private void list(HttpExchange exchange, String query) throws IOException, HttpError {
+		int offset = 0;
+		int limit = DEFAULT_PAGE_SIZE;
+		if (query != null) {
+			for (String parameter : query.split("&")) {
+				String[] pair = parameter.split("=", 2);
+				if (pair.length == 2 && pair[0].equals("offset")) {
+					offset = parseInt(pair[1], "offset");
+				} else if (pair.length == 2 && pair[0].equals("limit")) {
+					limit = Math.min(parseInt(pair[1], "limit"), MAX_PAGE_SIZE);
+				}
+			}
+		}
+		ArrayList<UserDTO> users;
+		try {
+			users = controller.getUserPage(offset, limit);
+		} catch (DALException e) {
+			throw new HttpError(500, e.getMessage());
+		}
+		respond(exchange, 200, writer -> {
+			writer.beginArray();
+			for (UserDTO user : users) {
+				writeUser(writer, user);
+			}
+			writer.endArray();
+		});
+	}
+
+	private void get(HttpExchange exchange, int userId) throws IOException, HttpError {
+		UserDTO user;
+		try {
+			user = controller.getUser(idMap(userId));
+		} catch (DALException e) {
+			throw new HttpError(500, e.getMessage());
+		}
+		if (user == null) {
+			throw new HttpError(404, "User with ID " + userId + " doesn't exist");
+		}
+		respond(exchange, 200, writer -> writeUser(writer, user));
+	}
+
+	private void create(HttpExchange exchange) throws IOException, HttpError {
+		HashMap<String, Object> user = readBody(exchange);
+		boolean generated = !user.containsKey("password");
+		if (generated) {
+			user.put("password", PASSWORD_GENERATOR.generate());
+		}
+		boolean allocated = !user.containsKey("ID");
+		if (allocated) {
+			// validated with a placeholder, the controller picks a free ID
+			user.put("ID", Validation.MIN_ID);
+		}
+		List<String> errors = Validation.validate(user);
+		if (!errors.isEmpty()) {
+			throw new HttpError(400, errors);
+		}
+		if (allocated) {
+			user.remove("ID");
+		} else {
+			user.put("ID", Integer.parseInt(user.get("ID").toString()));
+		}
+		try {
+			controller.createUser(user);
+		} catch (DTOException e) {
+			throw new HttpError(400, e.getMessage());
+		} catch (DALException e) {
+			throw new HttpError(409, e.getMessage());
+		}
+		respond(exchange, 201, writer -> {
+			writer.beginObject();
+			writer.name("userID").value((int) user.get("ID"));
+			if (generated) {
+				writer.name("password").value(user.get("password").toString());
+			}
+			writer.endObject();
+		});
+	}
+
+	private void edit(HttpExchange exchange, int userId) throws IOException, HttpError {
+		HashMap<String, Object> changes = readBody(exchange);
+		changes.remove("ID");
+		// only the given values are checked, an edit needn't give them all
+		List<String> errors = new ArrayList<>();
+		if (changes.containsKey("userName") && !Validation.isValidUserName(changes.get("userName").toString())) {
+			errors.add("Invalid user name: " + changes.get("userName"));
+		}
+		if (changes.containsKey("ini") && !Validation.isValidInitials(changes.get("ini").toString())) {
+			errors.add("Invalid initials: " + changes.get("ini"));
+		}
+		if (changes.containsKey("cpr") && !Validation.isValidCpr(changes.get("cpr").toString())) {
+			errors.add("Invalid CPR: " + changes.get("cpr"));
+		}
+		if (changes.containsKey("password") && !Validation.isValidPassword(changes.get("password").toString())) {
+			errors.add("Invalid password");
+		}
+		if (changes.containsKey("roles")) {
+			List<?> roles = (List<?>) changes.get("roles");
+			if (roles.isEmpty()) {
+				errors.add("No role provided");
+			}
+			for (Object role : roles) {
+				if (!Validation.isValidRole(role.toString())) {
+					errors.add("Invalid role: " + role);
+				}
+			}
+		}
+		if (!errors.isEmpty()) {
+			throw new HttpError(400, errors);
+		}
+		changes.put("ID", userId);
+		try {
+			controller.editUser(changes);
+		} catch (DALException e) {
+			if (!controller.exists(idMap(userId))) {
+				throw new HttpError(404, "User with ID " + userId + " doesn't exist");
+			}
+			throw new HttpError(409, e.getMessage());
+		}
+		respond(exchange, 204, null);
+	}
+
+	private void delete(HttpExchange exchange, int userId) throws IOException, HttpError {
+		HashMap<String, Object> id = idMap(userId);
+		if (!controller.exists(id)) {
+			throw new HttpError(404, "User with ID " + userId + " doesn't exist");
+		}
+		try {
+			controller.deleteUser(id);
+		} catch (DALException e) {
+			throw new HttpError(409, e.getMessage());
+		}
+		respond(exchange, 204, null);
+	}
+
+	private static HashMap<String, Object> idMap(int userId) {
+		HashMap<String, Object> map = new HashMap<>();
+		map.put("ID", userId);
+		return map;
+	}
+
+	private static int parseId(String value) throws HttpError {
+		if (!Validation.isPositiveInteger(value) || value.length() > 9) {
+			throw new HttpError(404, "Invalid user ID " + value);
+		}
+		return Integer.parseInt(value);
+	}
+
+	private static int parseInt(String value, String name) throws HttpError {
+		if (!Validation.isPositiveInteger(value) || value.length() > 9) {
+			throw new HttpError(400, "Invalid " + name + " " + value);
+		}
+		return Integer.parseInt(value);
+	}
+
+	/**
+	 * Reads a JSON object with user details into a hashmap with the keys of the controller.
+	 * Roles are stored in lower case, as the TUI stores them.
+	 */
+	private static HashMap<String, Object> readBody(HttpExchange exchange) throws IOException, HttpError {
+		byte[] body = readFully(exchange.getRequestBody());
+		HashMap<String, Object> user = new HashMap<>();
+		try (JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8))) {
+			reader.beginObject();
+			while (reader.hasNext()) {
+				String name = reader.nextName();
+				if (reader.peek() == JsonToken.NULL) {
+					reader.nextNull();
+				} else if (name.equals("roles")) {
+					ArrayList<String> roles = new ArrayList<>();
+					reader.beginArray();
+					while (reader.hasNext()) {
+						roles.add(reader.nextString().trim().toLowerCase(Locale.ROOT));
+					}
+					reader.endArray();
+					user.put("roles", roles);
+				} else if (name.equals("ID") || name.equals("userID")) {
+					user.put("ID", reader.nextString());
+				} else if (name.equals("userName") || name.equals("ini") || name.equals("cpr") || name.equals("password")) {
+					user.put(name, reader.nextString());
+				} else {
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+		} catch (JsonParseException | IllegalStateException | MalformedJsonException e) {
+			throw new HttpError(400, "The body must be a JSON object with user details");
+		}
+		if (user.containsKey("ini")) {
+			user.put("ini", user.get("ini").toString().toUpperCase(Locale.ROOT));
+		}
+		return user;
+	}
+
+	private static byte[] readFully(InputStream in) throws IOException, HttpError {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int n;
+		while ((n = in.read(buffer)) >= 0) {
+			body.write(buffer, 0, n);
+			if (body.size() > MAX_BODY_SIZE) {
+				throw new HttpError(413, "The body can't be larger than " + MAX_BODY_SIZE + " bytes");
+			}
+		}
+		return body.toByteArray();
+	}
+
+	private static void writeUser(JsonWriter writer, UserDTO user) throws IOException {
+		writer.beginObject();
+		writer.name("userID").value(user.getUserID());
+		writer.name("userName").value(user.getUserName());
+		writer.name("ini").value(user.getIni());
+		writer.name("cpr").value(user.getCpr());
+		writer.name("roles");
+		if (user.getRoles() == null) {
+			writer.nullValue();
+		} else {
+			writer.beginArray();
+			for (String role : user.getRoles()) {
+				writer.value(role);
+			}
+			writer.endArray();
+		}
+		writer.endObject();
+	}
+
+	private interface Body {
+		void write(JsonWriter writer) throws IOException;
+	}
+
+	/**
+	 * Sends a response with a JSON body, or without a body if it's null
+	 */
+	private static void respond(HttpExchange exchange, int status, Body body) throws IOException {
+		if (body == null) {
+			exchange.sendResponseHeaders(status, -1);
+			return;
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Writer out = new OutputStreamWriter(bytes, StandardCharsets.UTF_8);
+		JsonWriter writer = new JsonWriter(out);
+		body.write(writer);
+		writer.flush();
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.size());
+		try (OutputStream response = exchange.getResponseBody()) {
+			bytes.writeTo(response);
+		}
+	}
+}
@@ -1,17 +1,34 @@
 package view;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Random;
 import java.util.Scanner;
 
 import control.Ctrl;
+import control.UserImporter;
 import model.IDAL.DALException;
+import model.PasswordGenerator;
+import model.UserDTO;
 import model.UserDTO.DTOException;
 import model.Validation;
 
 public class TUI implements UI {
 
+	private static final int PAGE_SIZE = 20;
+	private static final int MAX_PRINTED_ERRORS = 20;
+	private static final PasswordGenerator PASSWORD_GENERATOR = new PasswordGenerator();
+
 	private Ctrl controller;
 	private Scanner scanner;
 
@@ -29,6 +46,12 @@ public class TUI implements UI {
 			System.out.println("Something went wrong when trying to load users from storage.");
 		}
 		mainMenu();
+		try {
+			controller.closeStorage();
+		} catch (DALException e) {
+			e.printStackTrace();
+			System.out.println("Something went wrong when trying to save users to storage.");
+		}
 		scanner.close();
 	}
 
@@ -42,6 +65,8 @@ public class TUI implements UI {
 						+ "list - prints a list of all the current users.\n"
 						+ "edit - lets you edit current users.\n"
 						+ "delete - deletes a user by ID.\n"
+						+ "import - creates users from a CSV or JSON file.\n"
+						+ "stats - prints operation counts and latencies.\n"
 						+ "exit - terminates the program.").toLowerCase();
 				// divides the flow
 				switch (choice) {
@@ -57,6 +82,12 @@ public class TUI implements UI {
 				case "delete":
 					delete();
 					break;
+				case "import":
+					importUsers();
+					break;
+				case "stats":
+					printStatistics();
+					break;
 				case "exit":
 					break program;
 				default:
@@ -66,13 +97,18 @@ public class TUI implements UI {
 			}
 	}
 
+	private void printStatistics() {
+		String statistics = controller.getStatistics();
+		System.out.println(statistics.isEmpty() ? "No statistics are recorded." : statistics);
+	}
+
 	private void createUser() {
 		HashMap<String, Object> hashMap = new HashMap<String, Object>();
 		String input;
 		String password;
 
 		// gets ID
-		input = getID("Choose an ID between 11 and 99, or type cancel to go to main menu.", hashMap);
+		input = getID("Choose an ID between 11 and 99, type auto to get a free ID, or type cancel to go to main menu.", hashMap);
 
 		// gets user name
 		if (!input.equals("cancel")) {
@@ -112,12 +148,32 @@ public class TUI implements UI {
 		}
 	}
 
+	/**
+	 * Prints users one page at a time as they are streamed from the controller,
+	 * asking before each following page.
+	 */
 	private void listUsers() {
+		Iterator<UserDTO> users;
 		try {
-			System.out.println(controller.getUserList());
-		} catch (DALException e) {
+			users = controller.streamUsers(PAGE_SIZE).iterator();
+			if (!users.hasNext()) {
+				System.out.println("There are no users in the system.");
+				return;
+			}
+			int printed = 0;
+			while (users.hasNext()) {
+				if (printed > 0 && printed % PAGE_SIZE == 0) {
+					String input = getInput("Press enter to show more users, or type cancel to go to main menu.");
+					if (input.equals("cancel")) {
+						return;
+					}
+				}
+				System.out.println(users.next());
+				printed++;
+			}
+		} catch (IllegalStateException e) {
 			e.printStackTrace();
-			System.out.println("There are no users in the system.");
+			System.out.println("Something went wrong when trying to list users.");
 		}
 	}
 
@@ -211,6 +267,73 @@ public class TUI implements UI {
 		}
 	}
 
+	private void importUsers() {
+		String path = getInput("Type the path of a CSV file with lines of ID,userName,ini,cpr,roles separated by ; "
+				+ "or a JSON file, or type cancel to go to main menu.");
+		if (path.equals("cancel")) {
+			return;
+		}
+		try {
+			UserImporter.ImportResult result = controller.importUsers(path);
+			System.out.println(result.getImported() + " users were imported, " + result.getErrors().size() + " were rejected.");
+			for (int i = 0; i < result.getErrors().size() && i < MAX_PRINTED_ERRORS; i++) {
+				System.out.println(result.getErrors().get(i));
+			}
+			if (result.getErrors().size() > MAX_PRINTED_ERRORS) {
+				System.out.println("... and " + (result.getErrors().size() - MAX_PRINTED_ERRORS) + " more.");
+			}
+			if (!result.getGeneratedPasswords().isEmpty()) {
+				Path passwordFile = Paths.get(path + ".passwords");
+				try {
+					writePasswords(passwordFile, result.getGeneratedPasswords());
+					System.out.println("The generated passwords were written to " + passwordFile + ", which only you can read. "
+							+ "Delete the file once the passwords are handed out.");
+				} catch (IOException e) {
+					// the users exist already, so their passwords are shown rather than lost
+					System.out.println("The generated passwords couldn't be written to " + passwordFile + ", they are shown once here:");
+					for (Map.Entry<Integer, String> entry : result.getGeneratedPasswords().entrySet()) {
+						System.out.println(entry.getKey() + "," + entry.getValue());
+					}
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.out.println("The file couldn't be read, no users were imported.");
+		} catch (DALException e) {
+			e.printStackTrace();
+			System.out.println("Something went wrong, no users were imported.");
+		}
+	}
+
+	/**
+	 * Writes generated passwords to a new file only the owner can read and write, replacing an existing file
+	 * @param file the file
+	 * @param passwords passwords by user ID
+	 */
+	private static void writePasswords(Path file, Map<Integer, String> passwords) throws IOException {
+		Files.deleteIfExists(file);
+		try {
+			Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+		} catch (UnsupportedOperationException e) {
+			// not a POSIX file system, so the permissions are set once the file exists
+			File created = Files.createFile(file).toFile();
+			created.setReadable(false, false);
+			created.setWritable(false, false);
+			if (!created.setReadable(true, true) || !created.setWritable(true, true)) {
+				Files.delete(file);
+				throw new IOException("The permissions of " + file + " couldn't be set", e);
+			}
+		}
+		try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+			for (Map.Entry<Integer, String> entry : passwords.entrySet()) {
+				writer.println(entry.getKey() + "," + entry.getValue());
+			}
+			if (writer.checkError()) {
+				throw new IOException("The passwords couldn't be written to " + file);
+			}
+		}
+	}
+
 	private String getInput(String message) {
 		System.out.println(message);
 		String input = scanner.nextLine();
@@ -218,7 +341,8 @@ public class TUI implements UI {
 	}
 
 	/**
-	 * Generates a random password with listed characters and symbols
+	 * Generates a random password with listed characters and symbols.
+	 * The password isn't guaranteed to be valid, use {@link PasswordGenerator} for that
 	 * @param length how many characters should the password be
 	 * @return String
 	 */
@@ -262,7 +386,11 @@ public class TUI implements UI {
 					System.out.println("That ID is taken.");
 				}
 			}
-		} while ((!Validation.isValidID(input) || controller.exists(dataMap)) && !input.equals("cancel"));
+		} while ((!Validation.isValidID(input) || controller.exists(dataMap)) && !input.equals("cancel") && !input.equals("auto"));
+		if (input.equals("auto")) {
+			// the controller picks the ID when the user is created
+			dataMap.remove("ID");
+		}
 		return input;
 	}
 
@@ -295,10 +423,7 @@ public class TUI implements UI {
 	}
 
 	private String getPassword(String message, HashMap<String, Object> dataMap) {
-		String input;
-		do {
-			input = generatePassword(10);
-		} while(!Validation.isValidPassword(input) && !input.equals("cancel"));
+		String input = PASSWORD_GENERATOR.generate();
 		dataMap.put("password", input);
 		return input;
 	}
@@ -0,0 +1,47 @@
+package benchmark;
+
+import control.Authenticator;
+import model.ConcurrentUserDAO;
+import model.PasswordHasher;
+import model.UserDTO;
+
+/**
+ * Measures logins through {@link Authenticator}, with every login hashing and with repeated logins
+ * answered from the cache, at a few hashing costs.
+ * Run with: java -cp bin:lib/* benchmark.AuthenticatorBenchmark [users] [iterations,...]
+ */
+public class AuthenticatorBenchmark {
+
+	private static final String PASSWORD = "Abc12!Defg";
+
+	public static void main(String[] args) throws Exception {
+		int users = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		String costs = args.length > 1 ? args[1] : "1000,10000," + PasswordHasher.DEFAULT_ITERATIONS;
+		Bench bench = Bench.fromSystemProperties();
+		System.out.println(Bench.header());
+		for (String cost : costs.split(",")) {
+			int iterations = Integer.parseInt(cost.trim());
+			PasswordHasher hasher = new PasswordHasher(iterations);
+			ConcurrentUserDAO dao = new ConcurrentUserDAO();
+			String hash = hasher.hash(PASSWORD);
+			for (int i = 0; i < users; i++) {
+				UserDTO user = new UserDTO();
+				user.setUserID(i);
+				user.setPassword(hash);
+				dao.createUser(user);
+			}
+			int workers = Runtime.getRuntime().availableProcessors();
+			Authenticator uncached = new Authenticator(dao, hasher, workers, Authenticator.DEFAULT_QUEUE_SIZE, 0, 0);
+			bench.run("login uncached " + iterations, i -> uncached.authenticate(i % users, PASSWORD));
+			Authenticator cached = new Authenticator(dao, hasher, workers, Authenticator.DEFAULT_QUEUE_SIZE,
+					Authenticator.DEFAULT_CACHE_TTL, Authenticator.DEFAULT_CACHE_SIZE);
+			// every user logs in once first, so the measurement only sees repeated logins
+			for (int i = 0; i < users; i++) {
+				cached.authenticate(i, PASSWORD);
+			}
+			bench.run("login cached " + iterations, i -> cached.authenticate(i % users, PASSWORD));
+			uncached.close();
+			cached.close();
+		}
+	}
+}
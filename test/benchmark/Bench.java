@@ -0,0 +1,173 @@
+package benchmark;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Small benchmark harness in the spirit of JMH, built on the JDK only.
+ * An operation is run for a warm up period and then for a measurement period, and the result holds
+ * throughput, latency percentiles, allocated bytes per operation and garbage collections during the measurement.
+ */
+public class Bench {
+
+	private static final int MAX_SAMPLES = 1 << 20;
+
+	private final long warmupMillis;
+	private final long measureMillis;
+	private final List<Result> results = new ArrayList<>();
+	private final long[] samples = new long[MAX_SAMPLES];
+
+	/**
+	 * An operation to measure. The argument counts up from 0 for every call, in warm up and measurement alike.
+	 */
+	public interface Operation {
+		void run(int i) throws Exception;
+	}
+
+	public static class Result {
+		public final String name;
+		public final long operations;
+		public final double opsPerSecond;
+		public final double p50;
+		public final double p99;
+		public final double p999;
+		public final double bytesPerOp;
+		public final long gcCount;
+		public final long gcMillis;
+
+		Result(String name, long operations, double opsPerSecond, double p50, double p99, double p999,
+				double bytesPerOp, long gcCount, long gcMillis) {
+			this.name = name;
+			this.operations = operations;
+			this.opsPerSecond = opsPerSecond;
+			this.p50 = p50;
+			this.p99 = p99;
+			this.p999 = p999;
+			this.bytesPerOp = bytesPerOp;
+			this.gcCount = gcCount;
+			this.gcMillis = gcMillis;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%-44s %10d %14.1f %11.2f %11.2f %11.2f %13.1f %5d %7d", name, operations, opsPerSecond,
+					p50 / 1000, p99 / 1000, p999 / 1000, bytesPerOp, gcCount, gcMillis);
+		}
+	}
+
+	public Bench(long warmupMillis, long measureMillis) {
+		this.warmupMillis = warmupMillis;
+		this.measureMillis = measureMillis;
+	}
+
+	/**
+	 * Creates a harness from the system properties bench.warmup and bench.time, in milliseconds
+	 */
+	public static Bench fromSystemProperties() {
+		return new Bench(Long.getLong("bench.warmup", 500), Long.getLong("bench.time", 1000));
+	}
+
+	public static String header() {
+		return String.format("%-44s %10s %14s %11s %11s %11s %13s %5s %7s", "benchmark", "ops", "ops/s",
+				"p50 us", "p99 us", "p99.9 us", "bytes/op", "gc", "gc ms");
+	}
+
+	/**
+	 * Runs an operation until the warm up and measurement periods have passed, and prints the result.
+	 * @param name name of the benchmark
+	 * @param operation the operation
+	 * @return the result
+	 */
+	public Result run(String name, Operation operation) throws Exception {
+		return run(name, Long.MAX_VALUE, operation);
+	}
+
+	/**
+	 * Runs an operation until the warm up and measurement periods have passed, or it has been called
+	 * maxCalls times, and prints the result. The warm up uses at most half of the calls.
+	 * @param name name of the benchmark
+	 * @param maxCalls upper bound on calls, for operations that use up their input
+	 * @param operation the operation
+	 * @return the result
+	 */
+	public Result run(String name, long maxCalls, Operation operation) throws Exception {
+		int i = 0;
+		long warmupEnd = System.nanoTime() + warmupMillis * 1000000;
+		while (System.nanoTime() < warmupEnd && i < maxCalls / 2) {
+			operation.run(i++);
+		}
+		System.gc();
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		long gcCountBefore = gcCount();
+		long gcMillisBefore = gcMillis();
+		long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+		long operations = 0;
+		long start = System.nanoTime();
+		long end = start + measureMillis * 1000000;
+		long now = start;
+		while (now < end && i < maxCalls) {
+			operation.run(i++);
+			long after = System.nanoTime();
+			samples[(int) (operations & (MAX_SAMPLES - 1))] = after - now;
+			now = after;
+			operations++;
+		}
+		long elapsed = now - start;
+		long allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+
+		int sampleCount = (int) Math.min(operations, MAX_SAMPLES);
+		Arrays.sort(samples, 0, sampleCount);
+		Result result = new Result(name, operations, operations / (elapsed / 1e9),
+				percentile(sampleCount, 0.5), percentile(sampleCount, 0.99), percentile(sampleCount, 0.999),
+				operations == 0 ? 0 : allocated / (double) operations,
+				gcCount() - gcCountBefore, gcMillis() - gcMillisBefore);
+		results.add(result);
+		System.out.println(result);
+		return result;
+	}
+
+	/**
+	 * Writes all results so far as CSV, for comparing runs
+	 * @param path file to write
+	 */
+	public void writeCsv(String path) throws IOException {
+		try (PrintWriter out = new PrintWriter(new FileWriter(path))) {
+			out.println("benchmark,ops,ops_per_s,p50_ns,p99_ns,p999_ns,bytes_per_op,gc_count,gc_ms");
+			for (Result r : results) {
+				out.printf("%s,%d,%.1f,%.0f,%.0f,%.0f,%.1f,%d,%d%n", r.name, r.operations, r.opsPerSecond,
+						r.p50, r.p99, r.p999, r.bytesPerOp, r.gcCount, r.gcMillis);
+			}
+		}
+	}
+
+	private double percentile(int count, double percentile) {
+		if (count == 0) {
+			return 0;
+		}
+		return samples[Math.min(count - 1, (int) (count * percentile))];
+	}
+
+	private static long gcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, gc.getCollectionCount());
+		}
+		return count;
+	}
+
+	private static long gcMillis() {
+		long millis = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			millis += Math.max(0, gc.getCollectionTime());
+		}
+		return millis;
+	}
+}
@@ -0,0 +1,82 @@
+package benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import model.UserDTO;
+import model.storage.UserCodec;
+
+/**
+ * Compares {@link UserCodec} with the Java serialization used by FileStorage: encoded bytes per user,
+ * and encoding and decoding a batch of users in memory, so disk speed doesn't hide the difference.
+ * The batch is written to a single stream as FileStorage does, so serialization writes each class description once.
+ * Run with: java -cp bin:lib/* benchmark.CodecBenchmark [batch size]
+ */
+public class CodecBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		Bench bench = Bench.fromSystemProperties();
+		List<UserDTO> users = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			users.add(UserBenchmarks.user(i));
+		}
+		byte[] serialized = serialize(users);
+		byte[] encoded = encode(users, new UserCodec());
+		System.out.printf("Java serialization: %d bytes, %.1f bytes/user%n", serialized.length, serialized.length / (double) size);
+		System.out.printf("UserCodec:          %d bytes, %.1f bytes/user%n", encoded.length, encoded.length / (double) size);
+
+		System.out.println(Bench.header());
+		Bench.Result serialize = bench.run("serialization encode " + size, i -> serialize(users));
+		Bench.Result deserialize = bench.run("serialization decode " + size, i -> deserialize(serialized));
+		UserCodec codec = new UserCodec();
+		Bench.Result encode = bench.run("UserCodec encode " + size, i -> encode(users, codec));
+		Bench.Result decode = bench.run("UserCodec decode " + size, i -> decode(encoded, codec));
+		System.out.printf("encode %.1fx, decode %.1fx faster, %.1fx smaller%n", encode.opsPerSecond / serialize.opsPerSecond,
+				decode.opsPerSecond / deserialize.opsPerSecond, serialized.length / (double) encoded.length);
+	}
+
+	private static byte[] serialize(List<UserDTO> users) throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			for (UserDTO user : users) {
+				out.writeObject(user);
+			}
+		}
+		return bytes.toByteArray();
+	}
+
+	private static List<UserDTO> deserialize(byte[] data) throws Exception {
+		List<UserDTO> users = new ArrayList<>();
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data))) {
+			while (true) {
+				users.add((UserDTO) in.readObject());
+			}
+		} catch (EOFException e) {
+			return users;
+		}
+	}
+
+	private static byte[] encode(List<UserDTO> users, UserCodec codec) throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		for (UserDTO user : users) {
+			codec.write(user, bytes);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static List<UserDTO> decode(byte[] data, UserCodec codec) throws Exception {
+		List<UserDTO> users = new ArrayList<>();
+		ByteArrayInputStream in = new ByteArrayInputStream(data);
+		UserDTO user;
+		while ((user = codec.read(in)) != null) {
+			users.add(user);
+		}
+		return users;
+	}
+}
@@ -0,0 +1,105 @@
+package benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import model.CompactUserDAO;
+import model.IDAL;
+import model.UserDAO;
+import model.UserDTO;
+
+/**
+ * Measures the heap taken per user by {@link CompactUserDAO} against {@link UserDAO}, after a full GC before
+ * and after filling each DAO, and the speed of getting users, which makes a UserDTO per call in CompactUserDAO.
+ * The users have unique names, initials from a small set, and passwords in the format of PasswordHasher.
+ * Run with: java -cp bin:lib/* benchmark.CompactUserDAOBenchmark [users]
+ */
+public class CompactUserDAOBenchmark {
+
+	private static final String[] INITIALS = {"AB", "JK", "MH", "SØ", "PL", "TN", "US", "KRJ"};
+
+	public static void main(String[] args) throws Exception {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		List<UserDTO> users = users(size);
+		System.out.println("Heap per user with " + size + " users:");
+		measureHeap("UserDAO", UserDAO::new, users);
+		measureHeap("CompactUserDAO", CompactUserDAO::new, users);
+
+		Bench bench = Bench.fromSystemProperties();
+		System.out.println(Bench.header());
+		measureGet(bench, "UserDAO", new UserDAO(), users);
+		measureGet(bench, "CompactUserDAO", new CompactUserDAO(), users);
+	}
+
+	private static void measureHeap(String name, Supplier<IDAL> factory, List<UserDTO> users) throws Exception {
+		// the DAO is filled with deep copies, so the strings kept by the benchmark aren't counted
+		long before = usedHeap();
+		IDAL dao = factory.get();
+		for (UserDTO user : users) {
+			dao.createUser(copy(user));
+		}
+		long after = usedHeap();
+		System.out.printf("  %-16s %6.1f bytes/user%n", name, (after - before) / (double) users.size());
+		if (dao instanceof CompactUserDAO) {
+			System.out.printf("  %-16s %6.1f bytes/user in its arrays%n", "",
+					((CompactUserDAO) dao).getSizeInBytes() / (double) users.size());
+		}
+		// keeps the DAO reachable until after the second measurement
+		dao.userExists(users.get(0).getUserID());
+	}
+
+	private static void measureGet(Bench bench, String name, IDAL dao, List<UserDTO> users) throws Exception {
+		dao.createUsers(users);
+		Random random = new Random(42);
+		int size = users.size();
+		bench.run(name + " " + size + " get", i -> dao.getUser(users.get(random.nextInt(size)).getUserID()));
+		bench.run(name + " " + size + " page of 100", i -> dao.getUserPage(random.nextInt(size - 100), 100));
+	}
+
+	private static List<UserDTO> users(int size) {
+		Random random = new Random(1);
+		Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+		List<UserDTO> users = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			byte[] salt = new byte[16];
+			byte[] hash = new byte[32];
+			random.nextBytes(salt);
+			random.nextBytes(hash);
+			UserDTO user = new UserDTO();
+			user.setUserID(11 + i);
+			user.setUserName("User " + i);
+			user.setIni(INITIALS[random.nextInt(INITIALS.length)]);
+			user.setCpr(String.format("%02d%02d%02d%04d", 1 + random.nextInt(28), 1 + random.nextInt(12), random.nextInt(100), random.nextInt(10000)));
+			user.setPassword("pbkdf2-sha256$120000$" + base64.encodeToString(salt) + "$" + base64.encodeToString(hash));
+			user.setRoles(new ArrayList<>(random.nextBoolean() ? Arrays.asList("operator") : Arrays.asList("operator", "foreman")));
+			users.add(user);
+		}
+		return users;
+	}
+
+	private static UserDTO copy(UserDTO user) {
+		UserDTO copy = new UserDTO();
+		copy.setUserID(user.getUserID());
+		copy.setUserName(new String(user.getUserName().toCharArray()));
+		copy.setIni(new String(user.getIni().toCharArray()));
+		copy.setCpr(new String(user.getCpr().toCharArray()));
+		copy.setPassword(new String(user.getPassword().toCharArray()));
+		copy.setRoles(new ArrayList<>(user.getRoles()));
+		return copy;
+	}
+
+	private static long usedHeap() throws InterruptedException {
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+			Thread.sleep(50);
+		}
+		return memory.getHeapMemoryUsage().getUsed();
+	}
+}
@@ -0,0 +1,55 @@
+package benchmark;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+import model.UserDTO;
+import model.storage.BinaryFileStorage;
+import model.storage.CompressedStorage;
+import model.storage.FileStorage;
+import model.storage.IStreamStorage;
+import model.storage.JSONStorage;
+
+/**
+ * Measures writing and reading the users through {@link CompressedStorage} with every codec, for each stream storage,
+ * against writing the storage's file uncompressed. After each pair the file size, the compression ratio
+ * and the uncompressed throughput of the last write and read are printed.
+ * Run with: java -cp bin:lib/* benchmark.CompressionBenchmark [users]
+ */
+public class CompressionBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		Bench bench = Bench.fromSystemProperties();
+		File directory = Files.createTempDirectory("compressionbenchmark").toFile();
+		ArrayList<UserDTO> users = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			users.add(UserBenchmarks.user(i));
+		}
+		String[] names = { "JSONStorage", "FileStorage", "BinaryFileStorage" };
+		IStreamStorage[] storages = { new JSONStorage(new File(directory, "users.json").getPath(), true),
+				new FileStorage(new File(directory, "users.ser").getPath()),
+				new BinaryFileStorage(new File(directory, "users.bin").getPath()) };
+		String[] files = { "users.json", "users.ser", "users.bin" };
+
+		System.out.println(Bench.header());
+		for (int s = 0; s < storages.length; s++) {
+			IStreamStorage storage = storages[s];
+			bench.run(names[s] + " " + size + " write", i -> storage.write(users));
+			bench.run(names[s] + " " + size + " read", i -> storage.read());
+			System.out.printf("  uncompressed: %d bytes%n", new File(directory, files[s]).length());
+			for (CompressedStorage.Codec codec : CompressedStorage.Codec.values()) {
+				CompressedStorage compressed = new CompressedStorage(storage, new File(directory, files[s] + "." + codec).getPath(), codec);
+				bench.run(names[s] + "+" + codec + " " + size + " write", i -> compressed.write(users));
+				bench.run(names[s] + "+" + codec + " " + size + " read", i -> compressed.read());
+				System.out.println("  write: " + compressed.getLastWrite() + ", read: " + compressed.getLastRead());
+			}
+		}
+
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+}
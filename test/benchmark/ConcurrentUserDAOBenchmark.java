@@ -0,0 +1,98 @@
+package benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import model.ConcurrentUserDAO;
+import model.DTOList;
+import model.IDAL;
+import model.PersistentUserDAO;
+import model.UserDTO;
+import model.storage.IDataStorage;
+
+/**
+ * Measures throughput of a mixed workload (90% lookups, 10% updates) from 1 up to N threads,
+ * for {@link ConcurrentUserDAO} and for the synchronized {@link PersistentUserDAO} in write-behind mode
+ * so that no disk I/O is measured.
+ * Run with: java -cp bin:lib/* benchmark.ConcurrentUserDAOBenchmark [users] [seconds per run]
+ */
+public class ConcurrentUserDAOBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int users = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+		int maxThreads = Runtime.getRuntime().availableProcessors();
+
+		System.out.printf("%-20s %8s %16s%n", "dao", "threads", "ops/s");
+		for (int threads = 1; threads <= maxThreads; threads <<= 1) {
+			run("ConcurrentUserDAO", new ConcurrentUserDAO(), users, threads, seconds);
+			run("PersistentUserDAO", new PersistentUserDAO(new NullStorage(), 0, Integer.MAX_VALUE), users, threads, seconds);
+		}
+	}
+
+	private static void run(String name, final IDAL dao, final int users, int threads, int seconds) throws Exception {
+		dao.init();
+		for (int i = 0; i < users; i++) {
+			dao.createUser(user(i));
+		}
+		final AtomicBoolean running = new AtomicBoolean(true);
+		final LongAdder operations = new LongAdder();
+		final CountDownLatch start = new CountDownLatch(1);
+		ArrayList<Thread> workers = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			Thread worker = new Thread(() -> {
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				try {
+					start.await();
+					while (running.get()) {
+						int userId = random.nextInt(users);
+						if (random.nextInt(10) == 0) {
+							dao.updateUser(user(userId));
+						} else {
+							dao.getUser(userId);
+						}
+						operations.increment();
+					}
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			});
+			worker.start();
+			workers.add(worker);
+		}
+		// short warm up before counting
+		start.countDown();
+		Thread.sleep(500);
+		operations.reset();
+		long begin = System.nanoTime();
+		Thread.sleep(seconds * 1000L);
+		running.set(false);
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		double elapsed = (System.nanoTime() - begin) / 1e9;
+		System.out.printf("%-20s %8d %16.0f%n", name, threads, operations.sum() / elapsed);
+	}
+
+	private static UserDTO user(int userId) {
+		UserDTO user = new UserDTO();
+		user.setUserID(userId);
+		user.setUserName("User " + userId);
+		return user;
+	}
+
+	private static class NullStorage implements IDataStorage {
+		@Override
+		public void write(ArrayList<UserDTO> users) throws IOException {
+		}
+
+		@Override
+		public DTOList<UserDTO> read() throws IOException {
+			return new DTOList<>();
+		}
+	}
+}
@@ -0,0 +1,151 @@
+package benchmark;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import control.Authenticator;
+import control.Ctrl;
+import model.PasswordHasher;
+import model.UserDAO;
+import model.Validation;
+import view.HttpUI;
+
+/**
+ * Load test of {@link HttpUI}: a number of client threads send requests over keep-alive connections for a period,
+ * 80% gets of a user, 10% existence checks and 10% edits of a user name, and the throughput and latency
+ * percentiles are printed for each number of clients, to show how the server scales with concurrent clients.
+ * Run with: java -cp bin:lib/* benchmark.HttpUIBenchmark [client counts] [server threads]
+ * where client counts is a comma separated list (default 1,2,4,8,16,32). -Dbench.time sets the period per count.
+ */
+public class HttpUIBenchmark {
+
+	private static final byte[] DRAIN = new byte[8192];
+
+	public static void main(String[] args) throws Exception {
+		String counts = args.length > 0 ? args[0] : "1,2,4,8,16,32";
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+		long warmupMillis = Long.getLong("bench.warmup", 1000);
+		long measureMillis = Long.getLong("bench.time", 3000);
+
+		UserDAO dao = new UserDAO();
+		Ctrl controller = new Ctrl(dao, new Authenticator(dao, new PasswordHasher(1000), 2, 1024, 60000, 1000));
+		for (int id = Validation.MIN_ID; id <= Validation.MAX_ID; id++) {
+			HashMap<String, Object> user = new HashMap<>();
+			user.put("ID", id);
+			user.put("userName", "User " + id);
+			user.put("ini", "US");
+			user.put("cpr", "1402011234");
+			user.put("password", "Ab12!cdeFG");
+			user.put("roles", new ArrayList<>(Arrays.asList("operator")));
+			controller.createUser(user);
+		}
+		HttpUI ui = new HttpUI(controller, 0, threads);
+		ui.start();
+		String base = "http://localhost:" + ui.getPort() + "/users/";
+		System.out.println("server threads: " + threads + ", cores: " + Runtime.getRuntime().availableProcessors());
+
+		run(base, 4, warmupMillis);
+		System.out.printf("%8s %12s %10s %10s %10s%n", "clients", "requests/s", "p50 us", "p99 us", "errors");
+		for (String count : counts.split(",")) {
+			long[] result = run(base, Integer.parseInt(count.trim()), measureMillis);
+			System.out.printf("%8s %12.1f %10.1f %10.1f %10d%n", count.trim(), result[0] * 1000.0 / measureMillis,
+					result[1] / 1000.0, result[2] / 1000.0, result[3]);
+		}
+		ui.stop();
+		controller.closeStorage();
+	}
+
+	/**
+	 * @return number of requests, p50 and p99 latency in nanoseconds, and number of failed requests
+	 */
+	private static long[] run(String base, int clients, long millis) throws Exception {
+		List<long[]> latencies = new ArrayList<>();
+		int[] counts = new int[clients];
+		long[] errors = new long[clients];
+		CountDownLatch done = new CountDownLatch(clients);
+		long deadline = System.nanoTime() + millis * 1000000;
+		for (int c = 0; c < clients; c++) {
+			int client = c;
+			long[] samples = new long[1 << 20];
+			latencies.add(samples);
+			Thread thread = new Thread(() -> {
+				Random random = new Random(client);
+				try {
+					while (System.nanoTime() < deadline) {
+						int id = Validation.MIN_ID + random.nextInt(Validation.MAX_ID - Validation.MIN_ID + 1);
+						int kind = random.nextInt(10);
+						long start = System.nanoTime();
+						int status;
+						if (kind < 8) {
+							status = send("GET", base + id, null);
+						} else if (kind < 9) {
+							status = send("GET", base + id + "/exists", null);
+						} else {
+							status = send("PUT", base + id, "{\"userName\": \"User " + random.nextInt(1000) + "\"}");
+						}
+						if (status >= 400) {
+							errors[client]++;
+						}
+						if (counts[client] < samples.length) {
+							samples[counts[client]] = System.nanoTime() - start;
+						}
+						counts[client]++;
+					}
+				} catch (Exception e) {
+					e.printStackTrace();
+				} finally {
+					done.countDown();
+				}
+			});
+			thread.start();
+		}
+		done.await();
+		int total = 0;
+		long failed = 0;
+		for (int c = 0; c < clients; c++) {
+			total += counts[c];
+			failed += errors[c];
+		}
+		long[] all = new long[total];
+		int n = 0;
+		for (int c = 0; c < clients; c++) {
+			int kept = Math.min(counts[c], latencies.get(c).length);
+			System.arraycopy(latencies.get(c), 0, all, n, kept);
+			n += kept;
+		}
+		Arrays.sort(all, 0, n);
+		return new long[] { total, n == 0 ? 0 : all[n / 2], n == 0 ? 0 : all[(int) (n * 0.99)], failed };
+	}
+
+	/**
+	 * Sends a request and reads the whole response, so the connection is kept alive for the next request
+	 */
+	private static int send(String method, String url, String body) throws Exception {
+		HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+		connection.setRequestMethod(method);
+		if (body != null) {
+			connection.setDoOutput(true);
+			try (OutputStream out = connection.getOutputStream()) {
+				out.write(body.getBytes(StandardCharsets.UTF_8));
+			}
+		}
+		int status = connection.getResponseCode();
+		InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+		if (in != null) {
+			while (in.read(DRAIN) >= 0) {
+				// discard the body
+			}
+			in.close();
+		}
+		return status;
+	}
+}
@@ -0,0 +1,34 @@
+package benchmark;
+
+import model.IDAL;
+import model.InstrumentedUserDAO;
+import model.UserDAO;
+import model.metrics.Metrics;
+
+/**
+ * Measures the overhead of {@link InstrumentedUserDAO} on the cheapest DAO calls, where it is largest relative
+ * to the call, and prints bytes allocated per call, which should be the same with and without instrumentation.
+ * Run with: java -cp bin:lib/* benchmark.InstrumentationBenchmark [users]
+ */
+public class InstrumentationBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		Bench bench = Bench.fromSystemProperties();
+		UserDAO plain = new UserDAO();
+		for (int i = 0; i < size; i++) {
+			plain.createUser(UserBenchmarks.user(i));
+		}
+		InstrumentedUserDAO instrumented = new InstrumentedUserDAO(plain, new Metrics("benchmark"));
+
+		System.out.println(Bench.header());
+		Bench.Result before = measure(bench, "UserDAO", plain, size);
+		Bench.Result after = measure(bench, "InstrumentedUserDAO", instrumented, size);
+		System.out.printf("overhead %.0f ns per call%n", 1e9 / after.opsPerSecond - 1e9 / before.opsPerSecond);
+		System.out.print(instrumented.getMetrics().report());
+	}
+
+	private static Bench.Result measure(Bench bench, String name, IDAL dao, int size) throws Exception {
+		return bench.run(name + " getUser " + size, i -> dao.getUser(i % size));
+	}
+}
@@ -0,0 +1,60 @@
+package benchmark;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import model.ConcurrentUserDAO;
+import model.IDAL;
+import model.MvccUserDAO;
+import model.UserDTO;
+
+/**
+ * Lists every user while another thread keeps updating users, comparing the snapshot stream of
+ * {@link MvccUserDAO} with the locked copy of {@link ConcurrentUserDAO}, and prints how many updates the writer
+ * got through meanwhile. Also measures single gets and updates without a concurrent writer.
+ * Run with: java -cp bin:lib/* benchmark.MvccUserDAOBenchmark [users]
+ */
+public class MvccUserDAOBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		Bench bench = Bench.fromSystemProperties();
+		System.out.println(Bench.header());
+		measure(bench, "MvccUserDAO", new MvccUserDAO(), size);
+		measure(bench, "ConcurrentUserDAO", new ConcurrentUserDAO(), size);
+	}
+
+	private static void measure(Bench bench, String name, IDAL dao, int size) throws Exception {
+		for (int i = 0; i < size; i++) {
+			dao.createUser(UserBenchmarks.user(i));
+		}
+		Random random = new Random(42);
+		String prefix = name + " " + size + " ";
+		bench.run(prefix + "get", i -> dao.getUser(random.nextInt(size)));
+		bench.run(prefix + "update", i -> dao.updateUser(UserBenchmarks.user(random.nextInt(size))));
+
+		AtomicBoolean running = new AtomicBoolean(true);
+		long[] updates = new long[1];
+		Thread writer = new Thread(() -> {
+			Random writes = new Random(7);
+			try {
+				while (running.get()) {
+					dao.updateUser(UserBenchmarks.user(writes.nextInt(size)));
+					updates[0]++;
+				}
+			} catch (IDAL.DALException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		writer.start();
+		long start = System.nanoTime();
+		if (dao instanceof MvccUserDAO) {
+			bench.run(prefix + "stream all while writing", i -> dao.streamUsers(1000).mapToInt(UserDTO::getUserID).sum());
+		} else {
+			bench.run(prefix + "list all while writing", i -> dao.getUserList());
+		}
+		running.set(false);
+		writer.join();
+		System.out.printf("  writer made %.0f updates/s meanwhile%n", updates[0] / ((System.nanoTime() - start) / 1e9));
+	}
+}
@@ -0,0 +1,37 @@
+package benchmark;
+
+import model.PasswordGenerator;
+import model.Validation;
+import view.TUI;
+
+/**
+ * Measures generating a valid password with {@link PasswordGenerator} against the previous loop,
+ * which drew random strings with {@link TUI#generatePassword} until one was valid,
+ * with both the regex based validation it used and the current one. Also measures batch generation.
+ * Run with: java -cp bin:lib/* benchmark.PasswordGeneratorBenchmark
+ */
+public class PasswordGeneratorBenchmark {
+
+	private static final int BATCH = 1000;
+
+	public static void main(String[] args) throws Exception {
+		Bench bench = Bench.fromSystemProperties();
+		PasswordGenerator generator = new PasswordGenerator();
+		System.out.println(Bench.header());
+		bench.run("retry loop, legacy validation", i -> {
+			String password;
+			do {
+				password = TUI.generatePassword(10);
+			} while (!ValidationBenchmark.Legacy.isValidPassword(password));
+		});
+		bench.run("retry loop", i -> {
+			String password;
+			do {
+				password = TUI.generatePassword(10);
+			} while (!Validation.isValidPassword(password));
+		});
+		bench.run("PasswordGenerator.generate()", i -> generator.generate());
+		Bench.Result batch = bench.run("PasswordGenerator.generate(" + BATCH + ")", i -> generator.generate(BATCH));
+		System.out.printf("batch: %.0f passwords/s%n", batch.opsPerSecond * BATCH);
+	}
+}
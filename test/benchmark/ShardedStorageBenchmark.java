@@ -0,0 +1,61 @@
+package benchmark;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Random;
+
+import model.UserDTO;
+import model.storage.BinaryFileStorage;
+import model.storage.ShardedStorage;
+
+/**
+ * Measures {@link ShardedStorage} against a single {@link BinaryFileStorage} file: reading every user at startup,
+ * and persisting the change of one user, for each shard count. Reads only get faster with more shards on a
+ * machine with more than one core.
+ * Run with: java -cp bin:lib/* benchmark.ShardedStorageBenchmark [users] [shard counts]
+ * where shard counts is a comma separated list (default 1,2,4,8,16).
+ */
+public class ShardedStorageBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		String shardCounts = args.length > 1 ? args[1] : "1,2,4,8,16";
+		Bench bench = Bench.fromSystemProperties();
+		File directory = Files.createTempDirectory("shardedbenchmark").toFile();
+		ArrayList<UserDTO> users = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			users.add(UserBenchmarks.user(i));
+		}
+		System.out.println("cores: " + Runtime.getRuntime().availableProcessors());
+		System.out.println(Bench.header());
+
+		BinaryFileStorage single = new BinaryFileStorage(new File(directory, "single.bin").getPath());
+		single.write(users);
+		Random random = new Random(42);
+		bench.run("BinaryFileStorage " + size + " read", i -> single.read());
+		bench.run("BinaryFileStorage " + size + " change one user", i -> {
+			users.set(random.nextInt(size), UserBenchmarks.user(random.nextInt(size)));
+			single.write(users);
+		});
+
+		for (String count : shardCounts.split(",")) {
+			int shardCount = Integer.parseInt(count.trim());
+			File shardDirectory = new File(directory, "shards-" + shardCount);
+			ShardedStorage storage = new ShardedStorage(shardDirectory.getPath(), shardCount);
+			storage.write(users);
+			String prefix = "ShardedStorage " + size + " " + shardCount + " shards ";
+			bench.run(prefix + "read", i -> storage.read());
+			bench.run(prefix + "change one user", i -> storage.writeUser(UserBenchmarks.user(random.nextInt(size))));
+			storage.close();
+			for (File file : shardDirectory.listFiles()) {
+				file.delete();
+			}
+			shardDirectory.delete();
+		}
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+}
@@ -0,0 +1,81 @@
+package benchmark;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+import model.IDAL;
+import model.LazyUserDAO;
+import model.PersistentUserDAO;
+import model.UserDTO;
+import model.storage.FileStorage;
+import model.storage.LazyFileStorage;
+
+/**
+ * Measures time to first prompt: creating a DAO, initializing it and reading the first page of users
+ * as the TUI list does, for the eager PersistentUserDAO with FileStorage and for LazyUserDAO with LazyFileStorage,
+ * with a saved index and with the index rebuilt from the data file.
+ * Run with: java -cp bin:lib/* benchmark.StartupBenchmark [sizes] [runs]
+ */
+public class StartupBenchmark {
+
+	private interface DaoFactory {
+		IDAL create() throws Exception;
+	}
+
+	public static void main(String[] args) throws Exception {
+		String sizes = args.length > 0 ? args[0] : "1000,10000,100000,1000000";
+		int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		File directory = Files.createTempDirectory("startupbenchmark").toFile();
+		System.out.printf("%-28s %10s %14s %14s%n", "dao", "users", "median ms", "file MB");
+		for (String size : sizes.split(",")) {
+			int count = Integer.parseInt(size.trim());
+			ArrayList<UserDTO> users = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				users.add(UserBenchmarks.user(i));
+			}
+			File eagerFile = new File(directory, "users-" + count + ".txt");
+			File lazyFile = new File(directory, "users-" + count + ".lazy");
+			File indexFile = new File(lazyFile.getPath() + ".idx");
+			new FileStorage(eagerFile.getPath()).write(users);
+			LazyFileStorage lazy = new LazyFileStorage(lazyFile.getPath());
+			lazy.write(users);
+			lazy.close();
+			users = null;
+
+			run("PersistentUserDAO+FileStorage", count, runs, eagerFile.length(),
+					() -> new PersistentUserDAO(new FileStorage(eagerFile.getPath())), null);
+			run("LazyUserDAO", count, runs, lazyFile.length(),
+					() -> new LazyUserDAO(new LazyFileStorage(lazyFile.getPath())), null);
+			run("LazyUserDAO, no index", count, runs, lazyFile.length(),
+					() -> new LazyUserDAO(new LazyFileStorage(lazyFile.getPath())), indexFile);
+		}
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+
+	/**
+	 * @param deleteBefore file deleted before every run, or null
+	 */
+	private static void run(String name, int count, int runs, long fileSize, DaoFactory factory, File deleteBefore) throws Exception {
+		long[] times = new long[runs];
+		for (int run = 0; run < runs; run++) {
+			if (deleteBefore != null) {
+				deleteBefore.delete();
+			}
+			System.gc();
+			long start = System.nanoTime();
+			IDAL dao = factory.create();
+			dao.init();
+			if (!dao.isUserListEmpty()) {
+				dao.getUserPage(0, 20);
+			}
+			times[run] = System.nanoTime() - start;
+			dao.close();
+		}
+		java.util.Arrays.sort(times);
+		System.out.printf("%-28s %10d %14.1f %14.1f%n", name, count, times[runs / 2] / 1e6, fileSize / 1e6);
+	}
+}
@@ -0,0 +1,60 @@
+package benchmark;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.Random;
+
+import model.TieredUserDAO;
+import model.storage.LazyFileStorage;
+
+/**
+ * Measures {@link TieredUserDAO} on a storage with more users than the heap could hold, under a skewed access
+ * pattern where 90% of the reads go to 1% of the users. For each memory budget it prints the hit rate,
+ * evictions and the heap used after the measurement, next to the throughput.
+ * Run with a small heap, e.g.: java -Xmx96m -cp bin:lib/* benchmark.TieredUserDAOBenchmark [users] [budgets in MB]
+ * where budgets is a comma separated list (default 1,8,32).
+ */
+public class TieredUserDAOBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		String budgets = args.length > 1 ? args[1] : "1,8,32";
+		Bench bench = Bench.fromSystemProperties();
+		File directory = Files.createTempDirectory("tieredbenchmark").toFile();
+		String path = new File(directory, "users.lazy").getPath();
+
+		LazyFileStorage storage = new LazyFileStorage(path);
+		storage.countUsers();
+		long start = System.nanoTime();
+		for (int i = 0; i < size; i++) {
+			storage.writeUser(UserBenchmarks.user(i));
+		}
+		storage.close();
+		System.out.printf("wrote %d users in %.1f s, %d MB on disk, max heap %d MB%n", size, (System.nanoTime() - start) / 1e9,
+				new File(path).length() >> 20, Runtime.getRuntime().maxMemory() >> 20);
+
+		int hotUsers = Math.max(1, size / 100);
+		System.out.println(Bench.header());
+		for (String budget : budgets.split(",")) {
+			LazyFileStorage opened = new LazyFileStorage(path);
+			TieredUserDAO dao = new TieredUserDAO(opened, Long.parseLong(budget.trim()) << 20);
+			dao.init();
+			Random random = new Random(42);
+			bench.run("TieredUserDAO " + size + " budget " + budget.trim() + " MB get", i -> {
+				int userId = random.nextInt(10) < 9 ? random.nextInt(hotUsers) : random.nextInt(size);
+				dao.getUser(userId);
+			});
+			System.gc();
+			long heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+			System.out.printf("  hit rate %.1f%%, %d users cached in %d KB, %d evictions, heap used %d MB%n",
+					dao.getHitRate() * 100, dao.getCachedCount(), dao.getCachedBytes() >> 10, dao.getEvictions(), heap >> 20);
+			dao.close();
+		}
+
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+}
@@ -0,0 +1,199 @@
+package benchmark;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import model.DTOList;
+import model.IDAL;
+import model.IndexedUserDAO;
+import model.PersistentUserDAO;
+import model.UserDAO;
+import model.UserDTO;
+import model.storage.AsyncStorage;
+import model.storage.BinaryFileStorage;
+import model.storage.FileStorage;
+import model.storage.IDataStorage;
+import model.storage.JSONStorage;
+
+/**
+ * Benchmark suite for the IDAL and IDataStorage implementations. Every DAO is measured for
+ * get, list, create, update and delete, and every storage for a full write and read,
+ * at each dataset size, so new backends can be compared on equal terms.
+ * Queries on the secondary indexes are measured against scanning the user list.
+ *
+ * Run with: java -cp bin:lib/* benchmark.UserBenchmarks [sizes] [filter]
+ * where sizes is a comma separated list (default 100,1000,10000) and filter only runs benchmarks
+ * whose name contains it. -Dbench.warmup and -Dbench.time set the periods in milliseconds,
+ * and -Dbench.csv=file also writes the results as CSV.
+ */
+public class UserBenchmarks {
+
+	private final Bench bench = Bench.fromSystemProperties();
+	private final String filter;
+	private final File directory;
+
+	private interface StorageFactory {
+		IDataStorage create(String path) throws Exception;
+	}
+
+	private UserBenchmarks(String filter) throws Exception {
+		this.filter = filter;
+		this.directory = Files.createTempDirectory("userbenchmarks").toFile();
+	}
+
+	public static void main(String[] args) throws Exception {
+		String sizes = args.length > 0 ? args[0] : "100,1000,10000";
+		UserBenchmarks benchmarks = new UserBenchmarks(args.length > 1 ? args[1] : "");
+		System.out.println(Bench.header());
+		for (String size : sizes.split(",")) {
+			benchmarks.runAll(Integer.parseInt(size.trim()));
+		}
+		benchmarks.cleanUp();
+		String csv = System.getProperty("bench.csv");
+		if (csv != null) {
+			benchmarks.bench.writeCsv(csv);
+		}
+	}
+
+	private void runAll(int size) throws Exception {
+		dao("UserDAO", size, null);
+		dao("PersistentUserDAO+FileStorage", size, FileStorage::new);
+		dao("PersistentUserDAO+JSONStorage", size, path -> new JSONStorage(path, false));
+		dao("PersistentUserDAO+BinaryFileStorage", size, BinaryFileStorage::new);
+		dao("PersistentUserDAO+AsyncStorage+FileStorage", size, FileStorage::new, true);
+		storage("FileStorage", size, FileStorage::new);
+		storage("BinaryFileStorage", size, BinaryFileStorage::new);
+		storage("JSONStorage", size, path -> new JSONStorage(path, false));
+		storage("JSONStorage pretty", size, path -> new JSONStorage(path, true));
+		queries("IndexedUserDAO", size);
+	}
+
+	private boolean selected(String name) {
+		return name.contains(filter);
+	}
+
+	/**
+	 * Measures the DAO operations on a DAO that starts with size users. A persistent DAO gets its users
+	 * through a single storage.write, so setting up doesn't take a write per user.
+	 * @param storageFactory storage of a PersistentUserDAO, or null for the in-memory UserDAO
+	 */
+	private void dao(String name, int size, StorageFactory storageFactory) throws Exception {
+		dao(name, size, storageFactory, false);
+	}
+
+	/**
+	 * @param async true to wrap the storage in an AsyncStorage, so the measured calls don't wait for writes
+	 */
+	private void dao(String name, int size, StorageFactory storageFactory, boolean async) throws Exception {
+		if (!selected(name)) {
+			return;
+		}
+		ArrayList<UserDTO> users = users(0, size);
+		IDAL dao;
+		if (storageFactory == null) {
+			dao = new UserDAO();
+			for (UserDTO user : users) {
+				dao.createUser(user);
+			}
+		} else {
+			IDataStorage storage = storageFactory.create(new File(directory, name + "-" + size).getPath());
+			storage.write(users);
+			dao = async ? new PersistentUserDAO(new AsyncStorage(storage)) : new PersistentUserDAO(storage);
+			dao.init();
+		}
+		final Random random = new Random(42);
+		String prefix = name + " " + size + " ";
+
+		bench.run(prefix + "get", i -> dao.getUser(random.nextInt(size)));
+		bench.run(prefix + "list", i -> dao.getUserList());
+		bench.run(prefix + "update", i -> dao.updateUser(user(random.nextInt(size))));
+		bench.run(prefix + "create", i -> dao.createUser(user(size + i)));
+		// deletes exactly the users created above
+		int created = dao.getUserList().size() - size;
+		bench.run(prefix + "delete", created, i -> dao.deleteUser(size + i));
+		dao.close();
+	}
+
+	/**
+	 * Measures finding the users with a role held by one in a hundred users, and the users with a CPR number,
+	 * through the indexes and by scanning the user list
+	 */
+	private void queries(String name, int size) throws Exception {
+		if (!selected(name)) {
+			return;
+		}
+		IndexedUserDAO dao = new IndexedUserDAO(new UserDAO());
+		for (int i = 0; i < size; i++) {
+			UserDTO user = user(i);
+			user.setCpr(String.format("%010d", i));
+			if (i % 100 == 0) {
+				user.setRoles(new ArrayList<>(Arrays.asList("pharmacist")));
+			}
+			dao.createUser(user);
+		}
+		final Random random = new Random(42);
+		String prefix = name + " " + size + " ";
+		bench.run(prefix + "findByRole", i -> dao.findByRole("pharmacist"));
+		bench.run(prefix + "scan by role", i -> {
+			ArrayList<UserDTO> found = new ArrayList<>();
+			for (UserDTO user : dao.getUserList()) {
+				if (user.getRoles().contains("pharmacist")) {
+					found.add(user);
+				}
+			}
+		});
+		bench.run(prefix + "findByCpr", i -> dao.findByCpr(String.format("%010d", random.nextInt(size))));
+		bench.run(prefix + "scan by cpr", i -> {
+			String cpr = String.format("%010d", random.nextInt(size));
+			ArrayList<UserDTO> found = new ArrayList<>();
+			for (UserDTO user : dao.getUserList()) {
+				if (user.getCpr().equals(cpr)) {
+					found.add(user);
+				}
+			}
+		});
+	}
+
+	private void storage(String name, int size, StorageFactory factory) throws Exception {
+		if (!selected(name)) {
+			return;
+		}
+		IDataStorage storage = factory.create(new File(directory, name + "-" + size).getPath());
+		ArrayList<UserDTO> users = users(0, size);
+		String prefix = name + " " + size + " ";
+		bench.run(prefix + "write", i -> storage.write(users));
+		bench.run(prefix + "read", i -> storage.read());
+	}
+
+	private static ArrayList<UserDTO> users(int first, int count) {
+		DTOList<UserDTO> users = new DTOList<>();
+		for (int i = first; i < first + count; i++) {
+			users.add(user(i));
+		}
+		return users;
+	}
+
+	static UserDTO user(int userId) {
+		UserDTO user = new UserDTO();
+		user.setUserID(userId);
+		user.setUserName("User " + userId);
+		user.setIni("US");
+		user.setCpr("1402011234");
+		user.setPassword("Ab12!cdeFG");
+		user.setRoles(new ArrayList<>(Arrays.asList("operator", "admin")));
+		return user;
+	}
+
+	private void cleanUp() {
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+}
@@ -0,0 +1,141 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import model.DTOList;
+import model.UserDTO;
+import model.UserStore;
+
+/**
+ * Compares lookups, existence checks and deletes in {@link UserStore} against the linear scan
+ * over a {@link DTOList} that the DAOs used before.
+ * Run with: java -cp bin:lib/* benchmark.UserStoreBenchmark
+ */
+public class UserStoreBenchmark {
+
+	private static final int[] SIZES = {1000, 100000, 1000000};
+
+	public static void main(String[] args) {
+		System.out.printf("%-10s %-10s %14s %14s %14s%n", "users", "store", "get ns/op", "exists ns/op", "delete ns/op");
+		for (int size : SIZES) {
+			ArrayList<UserDTO> users = createUsers(size);
+			// the scan is O(n), so fewer operations are timed on big lists to keep the run short
+			int scanOps = Math.max(200, 20000000 / size);
+			int storeOps = 1000000;
+			int[] ids = randomIds(size, Math.max(scanOps, storeOps));
+
+			// warm up both paths before measuring
+			for (int i = 0; i < 3; i++) {
+				measureList(users, ids, scanOps);
+				measureStore(users, ids, storeOps);
+			}
+			double[] list = measureList(users, ids, scanOps);
+			double[] store = measureStore(users, ids, storeOps);
+			System.out.printf("%-10d %-10s %14.1f %14.1f %14.1f%n", size, "DTOList", list[0], list[1], list[2]);
+			System.out.printf("%-10d %-10s %14.1f %14.1f %14.1f%n", size, "UserStore", store[0], store[1], store[2]);
+		}
+	}
+
+	private static double[] measureList(ArrayList<UserDTO> users, int[] ids, int ops) {
+		DTOList<UserDTO> list = new DTOList<>();
+		list.addAll(users);
+		long sink = 0;
+
+		long start = System.nanoTime();
+		for (int i = 0; i < ops; i++) {
+			for (UserDTO user : list) {
+				if (user.getUserID() == ids[i]) {
+					sink += user.getUserID();
+					break;
+				}
+			}
+		}
+		double get = (System.nanoTime() - start) / (double) ops;
+
+		start = System.nanoTime();
+		for (int i = 0; i < ops; i++) {
+			for (UserDTO user : list) {
+				if (user.getUserID() == ids[i]) {
+					sink++;
+					break;
+				}
+			}
+		}
+		double exists = (System.nanoTime() - start) / (double) ops;
+
+		int deletes = Math.min(ops, list.size());
+		start = System.nanoTime();
+		for (int i = 0; i < deletes; i++) {
+			for (int j = 0; j < list.size(); j++) {
+				if (list.get(j).getUserID() == ids[i]) {
+					list.remove(j);
+					break;
+				}
+			}
+		}
+		double delete = (System.nanoTime() - start) / (double) deletes;
+		blackhole(sink);
+		return new double[] {get, exists, delete};
+	}
+
+	private static double[] measureStore(ArrayList<UserDTO> users, int[] ids, int ops) {
+		UserStore store = new UserStore(users.size());
+		for (UserDTO user : users) {
+			store.put(user);
+		}
+		long sink = 0;
+
+		long start = System.nanoTime();
+		for (int i = 0; i < ops; i++) {
+			UserDTO user = store.get(ids[i]);
+			if (user != null) {
+				sink += user.getUserID();
+			}
+		}
+		double get = (System.nanoTime() - start) / (double) ops;
+
+		start = System.nanoTime();
+		for (int i = 0; i < ops; i++) {
+			if (store.contains(ids[i])) {
+				sink++;
+			}
+		}
+		double exists = (System.nanoTime() - start) / (double) ops;
+
+		int deletes = Math.min(ops, store.size());
+		start = System.nanoTime();
+		for (int i = 0; i < deletes; i++) {
+			store.remove(ids[i]);
+		}
+		double delete = (System.nanoTime() - start) / (double) deletes;
+		blackhole(sink);
+		return new double[] {get, exists, delete};
+	}
+
+	private static ArrayList<UserDTO> createUsers(int count) {
+		ArrayList<UserDTO> users = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			UserDTO user = new UserDTO();
+			user.setUserID(i);
+			user.setUserName("User " + i);
+			users.add(user);
+		}
+		return users;
+	}
+
+	private static int[] randomIds(int size, int count) {
+		Random random = new Random(42);
+		int[] ids = new int[count];
+		for (int i = 0; i < count; i++) {
+			ids[i] = random.nextInt(size);
+		}
+		return ids;
+	}
+
+	private static volatile long sinkHole;
+
+	private static void blackhole(long value) {
+		sinkHole += value;
+	}
+}
@@ -0,0 +1,120 @@
+package benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import model.Validation;
+
+/**
+ * Measures time and allocated bytes per call of the validation methods,
+ * for {@link Validation} and for the previous implementation kept below as {@link Legacy}.
+ * Run with: java -cp bin:lib/* benchmark.ValidationBenchmark
+ */
+public class ValidationBenchmark {
+
+	private static final int OPERATIONS = 2000000;
+
+	private static final String[] CPRS = {"1402011234", "0101001234", "3102991234", "2902001238", "1212121212"};
+	private static final String[] PASSWORDS = {"Ab12!cdeFG", "password", "AAbb11!!cc", "Xy7!qwE3rt", "short"};
+	private static final String[] ROLES = {"admin", "Pharmacist", "FOREMAN", "operator", "janitor"};
+
+	private interface Check {
+		boolean test(String input);
+	}
+
+	public static void main(String[] args) {
+		System.out.printf("%-22s %12s %12s%n", "method", "ns/op", "bytes/op");
+		for (int round = 0; round < 2; round++) {
+			// the first round warms up the JIT and isn't printed
+			boolean print = round == 1;
+			run(print, "legacy isValidCpr", CPRS, Legacy::isValidCpr);
+			run(print, "isValidCpr", CPRS, Validation::isValidCpr);
+			run(print, "legacy isValidPassword", PASSWORDS, Legacy::isValidPassword);
+			run(print, "isValidPassword", PASSWORDS, Validation::isValidPassword);
+			run(print, "legacy isValidRole", ROLES, Legacy::isValidRole);
+			run(print, "isValidRole", ROLES, Validation::isValidRole);
+		}
+	}
+
+	private static void run(boolean print, String name, String[] inputs, Check check) {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		int valid = 0;
+		long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+		long start = System.nanoTime();
+		for (int i = 0; i < OPERATIONS; i++) {
+			if (check.test(inputs[i % inputs.length])) {
+				valid++;
+			}
+		}
+		long elapsed = System.nanoTime() - start;
+		long allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+		if (print) {
+			System.out.printf("%-22s %12.1f %12.1f   (%d valid)%n", name, elapsed / (double) OPERATIONS,
+					allocated / (double) OPERATIONS, valid);
+		}
+	}
+
+	/**
+	 * The validation methods as they were before the rewrite
+	 */
+	static class Legacy {
+
+		static boolean isPositiveInteger(String input) {
+			try {
+				long i = Long.parseLong(input);
+				return i >= 0;
+			} catch (Exception e) {
+				return false;
+			}
+		}
+
+		static boolean isValidCpr(String cpr) {
+			if (isPositiveInteger(cpr)) {
+				int month = Integer.parseInt(cpr.substring(2, 4));
+				if (month > 0 && month < 13) {
+					for (int i = 1900; i < 2100; i += 100) {
+						int day = Integer.parseInt(cpr.substring(0, 2));
+						int year = i + Integer.parseInt(cpr.substring(4, 6));
+						Calendar cprDate = new GregorianCalendar(year, month-1, 1);
+						int daysInMonth = cprDate.getActualMaximum(Calendar.DAY_OF_MONTH);
+						if (day > 0 && day <= daysInMonth) {
+							cprDate.set(year, month-1, day);
+							Calendar currentDate = new GregorianCalendar();
+							if (cprDate.compareTo(currentDate) <= 0) {
+								int CprProductSum = 0;
+								int[] multiplyBy = {4, 3, 2, 7, 6, 5, 4, 3, 2, 1};
+								for (int j = 0; j < cpr.length(); j++) {
+									CprProductSum += Integer.parseInt(cpr.substring(j, j+1)) * multiplyBy[j];
+								}
+								if (CprProductSum % 11 == 0) {
+									return true;
+								}
+							}
+						}
+					}
+				}
+			}
+			return false;
+		}
+
+		static boolean isValidPassword(String password) {
+			Pattern p = Pattern.compile("^(?=.*[A-Z].*[A-Z])(?=.*[!@#$&*])(?=.*[0-9].*[0-9])(?=.*[a-z].*[a-z].*[a-z]).{8,}$");
+			Matcher m = p.matcher(password);
+			return m.matches();
+		}
+
+		static boolean isValidRole(String role) {
+			ArrayList<String> validRoles = new ArrayList<>();
+			validRoles.add("admin");
+			validRoles.add("pharmacist");
+			validRoles.add("foreman");
+			validRoles.add("operator");
+			return validRoles.contains(role.toLowerCase());
+		}
+	}
+}
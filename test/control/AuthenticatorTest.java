@@ -0,0 +1,166 @@
+package control;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import model.PasswordHasher;
+import model.UserDAO;
+import model.UserDTO;
+
+public class AuthenticatorTest {
+
+	/**
+	 * Hasher that counts verifications, with a low cost to keep the tests fast.
+	 */
+	private static class CountingHasher extends PasswordHasher {
+		final AtomicInteger verifications = new AtomicInteger();
+
+		CountingHasher() {
+			super(1000);
+		}
+
+		@Override
+		public boolean verify(String password, String stored) {
+			verifications.incrementAndGet();
+			return super.verify(password, stored);
+		}
+	}
+
+	private static UserDTO user(int userId, String password) {
+		UserDTO user = new UserDTO();
+		user.setUserID(userId);
+		user.setPassword(password);
+		return user;
+	}
+
+	/**
+	 * Tests that hashes are salted and verify only the right password.
+	 */
+	@Test
+	public void hashTest() {
+		PasswordHasher hasher = new PasswordHasher(1000);
+		String hash = hasher.hash("Abc12!Defg");
+		assertTrue(PasswordHasher.isHashed(hash));
+		assertNotEquals(hash, hasher.hash("Abc12!Defg"));
+		assertTrue(hasher.verify("Abc12!Defg", hash));
+		assertFalse(hasher.verify("Abc12!Defh", hash));
+		assertFalse(hasher.verify("Abc12!Defg", hash.substring(0, hash.length() - 4)));
+		assertFalse(hasher.needsRehash(hash));
+		assertTrue(new PasswordHasher(2000).needsRehash(hash));
+		assertTrue(new PasswordHasher(2000).verify("Abc12!Defg", hash));
+	}
+
+	/**
+	 * Tests that a repeated login is answered from the cache, and that changing the password invalidates it.
+	 */
+	@Test
+	public void cacheTest() throws Exception {
+		CountingHasher hasher = new CountingHasher();
+		UserDAO dao = new UserDAO();
+		Authenticator authenticator = new Authenticator(dao, hasher, 2, 16, 60000, 100);
+		dao.createUser(user(11, hasher.hash("Abc12!Defg")));
+
+		assertTrue(authenticator.authenticate(11, "Abc12!Defg"));
+		assertTrue(authenticator.authenticate(11, "Abc12!Defg"));
+		assertEquals(1, hasher.verifications.get());
+		assertFalse(authenticator.authenticate(11, "Abc12!Defh"));
+		assertEquals(2, hasher.verifications.get());
+		assertFalse(authenticator.authenticate(12, "Abc12!Defg"));
+
+		dao.updateUser(user(11, hasher.hash("Xyz34#Uvwq")));
+		assertFalse(authenticator.authenticate(11, "Abc12!Defg"));
+		assertTrue(authenticator.authenticate(11, "Xyz34#Uvwq"));
+		authenticator.close();
+	}
+
+	/**
+	 * Tests that cached verifications expire and that the least recently used user is evicted.
+	 */
+	@Test
+	public void expiryTest() throws Exception {
+		CountingHasher hasher = new CountingHasher();
+		UserDAO dao = new UserDAO();
+		Authenticator authenticator = new Authenticator(dao, hasher, 1, 16, 50, 2);
+		for (int i = 11; i <= 13; i++) {
+			dao.createUser(user(i, hasher.hash("Abc12!Defg")));
+			assertTrue(authenticator.authenticate(i, "Abc12!Defg"));
+		}
+		assertEquals(2, authenticator.getCachedCount());
+		Thread.sleep(100);
+		assertTrue(authenticator.authenticate(13, "Abc12!Defg"));
+		assertEquals(4, hasher.verifications.get());
+		authenticator.close();
+	}
+
+	/**
+	 * Tests that a plaintext password from before hashing is accepted and rehashed.
+	 */
+	@Test
+	public void legacyPasswordTest() throws Exception {
+		PasswordHasher hasher = new PasswordHasher(1000);
+		UserDAO dao = new UserDAO();
+		Authenticator authenticator = new Authenticator(dao, hasher, 1, 16, 0, 0);
+		dao.createUser(user(11, "Abc12!Defg"));
+
+		assertFalse(authenticator.authenticate(11, "Abc12!Defh"));
+		assertEquals("Abc12!Defg", dao.getUser(11).getPassword());
+		assertTrue(authenticator.authenticate(11, "Abc12!Defg"));
+		assertTrue(PasswordHasher.isHashed(dao.getUser(11).getPassword()));
+		assertTrue(authenticator.authenticate(11, "Abc12!Defg"));
+		authenticator.close();
+	}
+
+	/**
+	 * Tests that rehashing a password at a login doesn't undo an edit of the user made meanwhile.
+	 */
+	@Test
+	public void rehashDuringEditTest() throws Exception {
+		PasswordHasher hasher = new PasswordHasher(1000);
+		AtomicBoolean editing = new AtomicBoolean();
+		Thread[] edit = new Thread[1];
+		UserDAO dao = new UserDAO() {
+			@Override
+			public UserDTO getUser(int userId) {
+				UserDTO user = super.getUser(userId);
+				// the rehash reads the user, and an edit starts before it writes the user back
+				if (Thread.currentThread().getName().startsWith("Authenticator worker") && editing.compareAndSet(false, true)) {
+					edit[0].start();
+					try {
+						edit[0].join(200);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				return user;
+			}
+		};
+		Authenticator authenticator = new Authenticator(dao, hasher, 1, 16, 0, 0);
+		Ctrl controller = new Ctrl(dao, authenticator);
+		dao.createUser(user(11, "Abc12!Defg"));
+		HashMap<String, Object> changes = new HashMap<>();
+		changes.put("ID", 11);
+		changes.put("userName", "Edited");
+		changes.put("password", "Xyz34#Uvwq");
+		edit[0] = new Thread(() -> {
+			try {
+				controller.editUser(changes);
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+		});
+
+		assertTrue(authenticator.authenticate(11, "Abc12!Defg"));
+		edit[0].join();
+		assertEquals("Edited", dao.getUser(11).getUserName());
+		assertTrue(authenticator.authenticate(11, "Xyz34#Uvwq"));
+		authenticator.close();
+	}
+}
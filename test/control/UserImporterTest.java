@@ -0,0 +1,83 @@
+package control;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import model.PasswordHasher;
+import model.UserDAO;
+import model.UserDTO;
+import model.Validation;
+
+public class UserImporterTest {
+
+	private final PasswordHasher hasher = new PasswordHasher(1000);
+
+	/**
+	 * Tests that valid CSV lines are imported, invalid and duplicate lines are reported,
+	 * and users without a password get a valid generated one.
+	 */
+	@Test
+	public void csvImportTest() throws Exception {
+		Path file = Files.createTempFile("users", ".csv");
+		try {
+			Files.write(file, Arrays.asList(
+					"ID,userName,ini,cpr,roles,password",
+					"11,Test User,TU,1402011234,admin;Operator,Abc12!Defg",
+					"12,Other User,OU,1402011234,foreman",
+					"# comment",
+					"13,x,OU,123,janitor",
+					"11,Duplicate,DU,1402011234,admin"), StandardCharsets.UTF_8);
+			UserDAO dao = new UserDAO();
+			UserImporter.ImportResult result = new UserImporter(dao, hasher).importFile(file);
+
+			assertEquals(2, result.getImported());
+			assertEquals(2, result.getErrors().size());
+			assertTrue(result.getErrors().get(0).startsWith("line 5:"));
+			assertTrue(result.getErrors().get(1).startsWith("line 6:"));
+			assertTrue(hasher.verify("Abc12!Defg", dao.getUser(11).getPassword()));
+			assertEquals(Arrays.asList("admin", "operator"), dao.getUser(11).getRoles());
+			assertFalse(dao.userExists(13));
+
+			UserDTO generated = dao.getUser(12);
+			assertEquals(1, result.getGeneratedPasswords().size());
+			assertTrue(hasher.verify(result.getGeneratedPasswords().get(12), generated.getPassword()));
+			assertTrue(Validation.isValidPassword(result.getGeneratedPasswords().get(12)));
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	/**
+	 * Tests that a JSON file in the format of JSONStorage is imported, and that taken IDs are rejected.
+	 */
+	@Test
+	public void jsonImportTest() throws Exception {
+		Path file = Files.createTempFile("users", ".json");
+		try {
+			Files.write(file, Arrays.asList("{\"users\": [",
+					"{\"userID\": 20, \"userName\": \"Json User\", \"ini\": \"JU\", \"cpr\": \"1402011234\", \"roles\": [\"Pharmacist\"]},",
+					"{\"userID\": 21, \"userName\": \"Taken\", \"ini\": \"TA\", \"cpr\": \"1402011234\", \"roles\": [\"admin\"]}",
+					"]}"), StandardCharsets.UTF_8);
+			UserDAO dao = new UserDAO();
+			UserDTO taken = new UserDTO();
+			taken.setUserID(21);
+			dao.createUser(taken);
+			UserImporter.ImportResult result = new UserImporter(dao, hasher).importFile(file);
+
+			assertEquals(1, result.getImported());
+			assertEquals("user 2: ID 21 is taken", result.getErrors().get(0));
+			assertEquals("Json User", dao.getUser(20).getUserName());
+			assertEquals(Arrays.asList("pharmacist"), dao.getUser(20).getRoles());
+		} finally {
+			Files.delete(file);
+		}
+	}
+}
@@ -1,15 +1,21 @@
 package integration_test;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import control.Ctrl;
+import model.ChangeEvent;
+import model.ChangeLog;
 import model.IDAL;
 import model.PersistentUserDAO;
 import model.Validation;
@@ -105,14 +111,19 @@ public class UserSystemTest {
 		if(Validation.isValidRole(roles.get(0)) && Validation.isValidRole(roles.get(1))) {
 			hashMap.put("roles", roles);
 		}
+		boolean authenticated = false;
 		try {
 			controller.createUser(hashMap);
 			output = controller.getUserList().toString();
+			authenticated = controller.authenticate(Integer.parseInt(ID), password);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
-		assertTrue(output, output.contains("userID = " + Integer.parseInt(ID) + ", password = " + password + ", userName = "
+		// passwords are stored hashed, so the password is checked by logging in
+		assertTrue(output, output.contains("userID = " + Integer.parseInt(ID) + ", password = ") && output.contains(", userName = "
 				+ userName + ", ini = " + initials + ", cpr = " + cpr + ", roles = " + roles.toString()));
+		assertTrue(!output.contains(password));
+		assertTrue(authenticated);
 		//clean up
 		hashMap.put("ID", 98);
 		try {
@@ -171,6 +182,58 @@ public class UserSystemTest {
 		assertTrue(output, output.contains("userID = 99, password = ") && output.contains(", userName = Peter Jensen, ini = PM, cpr = 1402011234, roles = [operator, admin]"));
 	}
 
+	/**
+	 * Tests that a user created without an ID gets a free one, and that a deleted user's ID is handed out again.
+	 */
+	@Test
+	public void autoIdTest() throws Exception {
+		HashMap<String, Object> hashMap = new HashMap<String, Object>();
+		hashMap.put("userName", "Anna Hansen");
+		hashMap.put("ini", "AH");
+		hashMap.put("cpr", "1402011234");
+		hashMap.put("password", "Ab12!cdeFG");
+		hashMap.put("roles", new ArrayList<>(Arrays.asList("operator")));
+		controller.createUser(hashMap);
+		int userId = (int) hashMap.get("ID");
+		assertTrue(controller.exists(hashMap));
+		assertEquals("Anna Hansen", controller.getUser(hashMap).getUserName());
+
+		controller.deleteUser(hashMap);
+		hashMap.remove("ID");
+		controller.createUser(hashMap);
+		assertEquals(userId, (int) hashMap.get("ID"));
+		controller.deleteUser(hashMap);
+	}
+
+	/**
+	 * Tests that a subscriber is told about an edit and a deletion, without the password,
+	 * and can resume from a sequence number it saved.
+	 */
+	@Test
+	public void subscribeTest() throws Exception {
+		ChangeLog.Subscription subscription = controller.subscribe();
+		long start = subscription.getNextSequence();
+		HashMap<String, Object> hashMap = new HashMap<String, Object>();
+		hashMap.put("ID", 99);
+		hashMap.put("userName", "Peter Jensen");
+		controller.editUser(hashMap);
+		controller.deleteUser(hashMap);
+
+		List<ChangeEvent> events = subscription.poll(10);
+		assertEquals(2, events.size());
+		assertEquals(ChangeEvent.Type.UPDATE, events.get(0).getType());
+		assertEquals(start, events.get(0).getSequence());
+		assertEquals("Peter Jensen", events.get(0).getUser().getUserName());
+		assertNull(events.get(0).getUser().getPassword());
+		assertEquals(ChangeEvent.Type.DELETE, events.get(1).getType());
+		assertEquals(99, events.get(1).getUserId());
+		assertTrue(subscription.poll(10).isEmpty());
+
+		List<ChangeEvent> resumed = controller.subscribe(start + 1).poll(10);
+		assertEquals(1, resumed.size());
+		assertEquals(ChangeEvent.Type.DELETE, resumed.get(0).getType());
+	}
+
 	/**
 	 * Tests if the roles can be edited.
 	 */
@@ -0,0 +1,82 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ChangeLogTest {
+
+	/**
+	 * Tests that a subscriber reads events in order across the end of the ring buffer,
+	 * and that one that falls too far behind is told so instead of skipping events.
+	 */
+	@Test
+	public void lagTest() throws Exception {
+		ChangeLog log = new ChangeLog(5);
+		assertEquals(8, log.getCapacity());
+		ChangeLog.Subscription subscription = log.subscribe();
+		for (int i = 0; i < 6; i++) {
+			log.publish(ChangeEvent.Type.DELETE, i, null);
+		}
+		assertEquals(4, subscription.poll(4).size());
+		for (int i = 6; i < 12; i++) {
+			log.publish(ChangeEvent.Type.DELETE, i, null);
+		}
+		List<ChangeEvent> events = subscription.poll(100);
+		assertEquals(8, events.size());
+		for (int i = 0; i < events.size(); i++) {
+			assertEquals(4 + i, events.get(i).getSequence());
+			assertEquals(4 + i, events.get(i).getUserId());
+		}
+
+		ChangeLog.Subscription slow = log.subscribe(1);
+		try {
+			slow.poll(1);
+			fail("Overwritten events should be reported");
+		} catch (ChangeLog.LaggedException e) {
+			assertEquals(1, e.getMissedSequence());
+			assertEquals(4, e.getOldestSequence());
+		}
+		slow.seek(log.getNextSequence());
+		assertEquals(0, slow.poll(1).size());
+	}
+
+	/**
+	 * Tests that every event of concurrent writers is read exactly once and in sequence order.
+	 */
+	@Test
+	public void concurrentTest() throws Exception {
+		ChangeLog log = new ChangeLog(1 << 16);
+		ChangeLog.Subscription subscription = log.subscribe();
+		List<Thread> writers = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			int writer = t;
+			writers.add(new Thread(() -> {
+				for (int i = 0; i < 10000; i++) {
+					log.publish(ChangeEvent.Type.CREATE, writer, null);
+				}
+			}));
+		}
+		for (Thread thread : writers) {
+			thread.start();
+		}
+		int[] perWriter = new int[4];
+		long expected = 0;
+		while (expected < 40000) {
+			for (ChangeEvent event : subscription.poll(1000)) {
+				assertEquals(expected++, event.getSequence());
+				perWriter[event.getUserId()]++;
+			}
+		}
+		for (Thread thread : writers) {
+			thread.join();
+		}
+		for (int count : perWriter) {
+			assertEquals(10000, count);
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package model;
+
+import static model.TestUsers.ids;
+import static model.TestUsers.user;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class CompactUserDAOTest {
+
+	/**
+	 * Tests that users read back equal to the users stored, also with missing values, a CPR number
+	 * that can't be packed, CPR numbers starting with 0 and roles that aren't valid roles.
+	 */
+	@Test
+	public void roundTripTest() throws Exception {
+		CompactUserDAO dao = new CompactUserDAO();
+		UserDTO plain = user(11);
+		plain.setCpr("0101010007");
+		plain.setRoles(new ArrayList<>(Arrays.asList("operator", "admin", "pharmacist", "foreman")));
+		UserDTO empty = new UserDTO();
+		empty.setUserID(12);
+		UserDTO odd = user(13);
+		odd.setUserName("Søren Ærø");
+		odd.setCpr("140201-1234");
+		odd.setRoles(new ArrayList<>(Arrays.asList("Admin", "operator")));
+		UserDTO noRoles = user(14);
+		noRoles.setRoles(new ArrayList<>());
+		dao.createUsers(Arrays.asList(plain, empty, odd, noRoles));
+
+		for (UserDTO expected : Arrays.asList(plain, empty, odd, noRoles)) {
+			assertSameUser(expected, dao.getUser(expected.getUserID()));
+		}
+		assertNull(dao.getUser(15));
+
+		// a user read is a copy
+		dao.getUser(11).getRoles().add("admin");
+		assertEquals(plain.getRoles(), dao.getUser(11).getRoles());
+
+		UserDTO changed = user(13);
+		changed.setPassword("Xy34!efgHI");
+		dao.updateUser(changed);
+		assertSameUser(changed, dao.getUser(13));
+	}
+
+	/**
+	 * Tests that users are listed in the order they were created, also after deleting enough users
+	 * to compact the columns, and that a batch with a taken ID creates no users.
+	 */
+	@Test
+	public void orderTest() throws Exception {
+		CompactUserDAO dao = new CompactUserDAO();
+		List<Integer> expected = new ArrayList<>();
+		for (int userId = 99; userId >= 11; userId--) {
+			dao.createUser(user(userId));
+			expected.add(userId);
+		}
+		for (int userId = 11; userId <= 80; userId++) {
+			dao.deleteUser(userId);
+			expected.remove(Integer.valueOf(userId));
+		}
+		for (int i = 0; i < 100; i++) {
+			UserDTO changed = user(90);
+			changed.setPassword("Pw" + i + "!abcdEF");
+			dao.updateUser(changed);
+		}
+		try {
+			dao.createUsers(Arrays.asList(user(11), user(95)));
+			fail("A taken ID should be rejected");
+		} catch (IDAL.DALException e) {
+			// expected
+		}
+		assertFalse(dao.userExists(11));
+		dao.createUser(user(11));
+		expected.add(11);
+
+		assertEquals(expected, ids(dao.getUserList()));
+		assertEquals(expected.subList(5, 10), ids(dao.getUserPage(5, 5)));
+		assertEquals(expected.subList(15, expected.size()), ids(dao.getUserPage(15, 100)));
+		assertTrue(dao.getUserPage(expected.size(), 5).isEmpty());
+		assertEquals("Pw99!abcdEF", dao.getUser(90).getPassword());
+		for (int userId : expected) {
+			assertEquals("User " + userId, dao.getUser(userId).getUserName());
+		}
+	}
+
+	/**
+	 * Tests that renaming a user many times doesn't keep every old name in memory.
+	 */
+	@Test
+	public void renameTest() throws Exception {
+		CompactUserDAO dao = new CompactUserDAO();
+		dao.createUser(user(11));
+		long before = dao.getSizeInBytes();
+		for (int i = 0; i < 10000; i++) {
+			UserDTO renamed = user(11);
+			renamed.setUserName("Renamed user number " + i);
+			renamed.setIni("R" + i);
+			dao.updateUser(renamed);
+		}
+		assertEquals("Renamed user number 9999", dao.getUser(11).getUserName());
+		assertTrue("Pool grew to " + dao.getSizeInBytes() + " bytes", dao.getSizeInBytes() < before + 4096);
+	}
+
+	private static void assertSameUser(UserDTO expected, UserDTO actual) {
+		assertEquals(expected.getUserID(), actual.getUserID());
+		assertEquals(expected.getUserName(), actual.getUserName());
+		assertEquals(expected.getIni(), actual.getIni());
+		assertEquals(expected.getCpr(), actual.getCpr());
+		assertEquals(expected.getPassword(), actual.getPassword());
+		assertEquals(expected.getRoles(), actual.getRoles());
+	}
+}
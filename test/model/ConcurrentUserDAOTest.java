@@ -0,0 +1,120 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+public class ConcurrentUserDAOTest {
+
+	private static final int THREADS = 8;
+	private static final int IDS_PER_THREAD = 500;
+	private static final int OPERATIONS = 100000;
+
+	private static UserDTO user(int userId, int version) {
+		UserDTO user = new UserDTO();
+		user.setUserID(userId);
+		user.setUserName("User " + userId + " v" + version);
+		return user;
+	}
+
+	/**
+	 * Runs writers on their own ID ranges while readers list and look up users,
+	 * and checks that the DAO ends up with exactly the users every writer expects.
+	 */
+	@Test
+	public void stressTest() throws Exception {
+		final ConcurrentUserDAO dao = new ConcurrentUserDAO(THREADS);
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicBoolean writing = new AtomicBoolean(true);
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS * 2);
+		List<Future<HashMap<Integer, String>>> writers = new ArrayList<>();
+		List<Future<Integer>> readers = new ArrayList<>();
+
+		for (int t = 0; t < THREADS; t++) {
+			final int first = t * IDS_PER_THREAD;
+			final long seed = t;
+			writers.add(executor.submit(new Callable<HashMap<Integer, String>>() {
+				@Override
+				public HashMap<Integer, String> call() throws Exception {
+					HashMap<Integer, String> expected = new HashMap<>();
+					Random random = new Random(seed);
+					start.await();
+					for (int i = 0; i < OPERATIONS; i++) {
+						int userId = first + random.nextInt(IDS_PER_THREAD);
+						if (!expected.containsKey(userId)) {
+							UserDTO user = user(userId, i);
+							dao.createUser(user);
+							expected.put(userId, user.getUserName());
+						} else if (random.nextBoolean()) {
+							UserDTO user = user(userId, i);
+							dao.updateUser(user);
+							expected.put(userId, user.getUserName());
+						} else {
+							dao.deleteUser(userId);
+							expected.remove(userId);
+						}
+					}
+					return expected;
+				}
+			}));
+			readers.add(executor.submit(new Callable<Integer>() {
+				@Override
+				public Integer call() throws Exception {
+					Random random = new Random(seed);
+					int reads = 0;
+					start.await();
+					while (writing.get()) {
+						int userId = random.nextInt(THREADS * IDS_PER_THREAD);
+						UserDTO user = dao.getUser(userId);
+						if (user != null) {
+							assertEquals(userId, user.getUserID());
+						}
+						if (reads % 1000 == 0) {
+							HashSet<Integer> seen = new HashSet<>();
+							for (UserDTO listed : dao.getUserList()) {
+								assertTrue(seen.add(listed.getUserID()));
+							}
+						}
+						reads++;
+					}
+					return reads;
+				}
+			}));
+		}
+
+		start.countDown();
+		HashMap<Integer, String> expected = new HashMap<>();
+		for (Future<HashMap<Integer, String>> writer : writers) {
+			expected.putAll(writer.get());
+		}
+		writing.set(false);
+		for (Future<Integer> reader : readers) {
+			assertTrue(reader.get() > 0);
+		}
+		executor.shutdown();
+
+		assertEquals(expected.size(), dao.getUserList().size());
+		assertEquals(expected.isEmpty(), dao.isUserListEmpty());
+		for (int userId = 0; userId < THREADS * IDS_PER_THREAD; userId++) {
+			if (expected.containsKey(userId)) {
+				assertEquals(expected.get(userId), dao.getUser(userId).getUserName());
+			} else {
+				assertFalse(dao.userExists(userId));
+			}
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class IdAllocatorTest {
+
+	/**
+	 * Tests that IDs are handed out from the bottom of the range, that released IDs are handed out again first,
+	 * and that reserved IDs are skipped.
+	 */
+	@Test
+	public void allocateTest() throws Exception {
+		IdAllocator ids = new IdAllocator(11, 15);
+		assertEquals(11, ids.allocate());
+		assertTrue(ids.reserve(12));
+		assertFalse(ids.reserve(12));
+		assertFalse(ids.reserve(16));
+		assertEquals(13, ids.allocate());
+		assertTrue(ids.release(11));
+		assertFalse(ids.release(11));
+		assertEquals(11, ids.allocate());
+		assertEquals(14, ids.allocate());
+		assertEquals(15, ids.allocate());
+		assertEquals(5, ids.getUsedCount());
+		try {
+			ids.allocate();
+			fail("A full range should be reported");
+		} catch (IDAL.DALException e) {
+			// expected
+		}
+		ids.release(13);
+		ids.reserve(13);
+		ids.release(14);
+		assertEquals(14, ids.allocate());
+	}
+
+	/**
+	 * Tests that an ID deleted and created again with a chosen ID many times is only queued once,
+	 * so the saved state can still be read.
+	 */
+	@Test
+	public void releaseReserveTest() throws Exception {
+		File directory = Files.createTempDirectory("idallocator").toFile();
+		String path = new File(directory, "data.ids").getPath();
+		try {
+			IdAllocator ids = new IdAllocator(11, 99, path);
+			for (int i = 0; i < 3; i++) {
+				ids.allocate();
+			}
+			for (int i = 0; i < 100; i++) {
+				assertTrue(ids.release(12));
+				assertTrue(ids.reserve(12));
+			}
+			ids.release(12);
+			ids.save();
+
+			IdAllocator reopened = new IdAllocator(11, 99, path);
+			assertEquals(2, reopened.getUsedCount());
+			assertEquals(12, reopened.allocate());
+			assertEquals(14, reopened.allocate());
+			assertTrue(reopened.release(12));
+			assertEquals(12, reopened.allocate());
+		} finally {
+			for (File file : directory.listFiles()) {
+				file.delete();
+			}
+			directory.delete();
+		}
+	}
+
+	/**
+	 * Tests that concurrent threads never get the same ID, over a range spanning every int.
+	 */
+	@Test
+	public void concurrentTest() throws Exception {
+		IdAllocator ids = new IdAllocator(Integer.MIN_VALUE, Integer.MAX_VALUE);
+		Set<Integer> allocated = Collections.synchronizedSet(new HashSet<>());
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(() -> {
+				try {
+					for (int i = 0; i < 10000; i++) {
+						assertTrue(allocated.add(ids.allocate()));
+					}
+				} catch (IDAL.DALException e) {
+					throw new IllegalStateException(e);
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(40000, allocated.size());
+		assertEquals(40000, ids.getUsedCount());
+		assertTrue(ids.isUsed(Integer.MIN_VALUE));
+	}
+
+	/**
+	 * Tests that a saved allocator continues where it stopped, and that a file of another range is rejected.
+	 */
+	@Test
+	public void persistTest() throws Exception {
+		File directory = Files.createTempDirectory("idallocator").toFile();
+		String path = new File(directory, "data.ids").getPath();
+		try {
+			IdAllocator ids = new IdAllocator(11, 99, path);
+			for (int i = 0; i < 5; i++) {
+				ids.allocate();
+			}
+			ids.release(12);
+			ids.reserve(50);
+			ids.save();
+
+			IdAllocator reopened = new IdAllocator(11, 99, path);
+			assertEquals(5, reopened.getUsedCount());
+			assertTrue(reopened.isUsed(50));
+			assertEquals(12, reopened.allocate());
+			assertEquals(16, reopened.allocate());
+			try {
+				new IdAllocator(11, 999, path);
+				fail("Another range should be rejected");
+			} catch (IOException e) {
+				// expected
+			}
+		} finally {
+			for (File file : directory.listFiles()) {
+				file.delete();
+			}
+			directory.delete();
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package model;
+
+import static model.TestUsers.ids;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class IndexedUserDAOTest {
+
+	private static UserDTO user(int userId, String userName, String ini, String cpr, String... roles) {
+		UserDTO user = new UserDTO();
+		user.setUserID(userId);
+		user.setUserName(userName);
+		user.setIni(ini);
+		user.setCpr(cpr);
+		user.setRoles(new ArrayList<>(Arrays.asList(roles)));
+		return user;
+	}
+
+	/**
+	 * Tests that the indexes follow creates, updates and deletes.
+	 */
+	@Test
+	public void indexTest() throws Exception {
+		IndexedUserDAO dao = new IndexedUserDAO(new UserDAO());
+		dao.createUser(user(13, "Peter Madsen", "PM", "1402011234", "admin", "operator"));
+		dao.createUser(user(11, "Hans Peter", "HP", "1402011234", "pharmacist"));
+		dao.createUsers(Arrays.asList(user(12, "Peter Jensen", "pj", "0101011234", "operator")));
+
+		assertEquals(Arrays.asList(12, 13), ids(dao.findByRole("Operator")));
+		assertEquals(Arrays.asList(11, 13), ids(dao.findByCpr("1402011234")));
+		assertEquals(Arrays.asList(12), ids(dao.findByIni("PJ")));
+		assertEquals(Arrays.asList(13), ids(dao.findByUserName("peter madsen")));
+		assertEquals(Arrays.asList(12, 13), ids(dao.findByUserNamePrefix("Peter")));
+		assertTrue(dao.findByRole("foreman").isEmpty());
+
+		dao.updateUser(user(13, "Peter Madsen", "PM", "0101011234", "foreman"));
+		assertEquals(Arrays.asList(12), ids(dao.findByRole("operator")));
+		assertEquals(Arrays.asList(13), ids(dao.findByRole("foreman")));
+		assertEquals(Arrays.asList(11), ids(dao.findByCpr("1402011234")));
+
+		dao.deleteUser(11);
+		assertFalse(dao.isCprTaken("1402011234"));
+		assertTrue(dao.findByRole("pharmacist").isEmpty());
+		assertTrue(dao.isCprTaken("0101011234"));
+	}
+
+	/**
+	 * Tests that init builds the indexes from the users already in the wrapped DAO,
+	 * and that a failed create leaves the indexes unchanged.
+	 */
+	@Test
+	public void initTest() throws Exception {
+		UserDAO stored = new UserDAO();
+		stored.createUser(user(11, "Hans Peter", "HP", "1402011234", "admin"));
+		IndexedUserDAO dao = new IndexedUserDAO(stored);
+		dao.init();
+		assertEquals(Arrays.asList(11), ids(dao.findByRole("admin")));
+
+		try {
+			dao.createUser(user(11, "Other", "OT", "0101011234", "foreman"));
+		} catch (IDAL.DALException e) {
+			// the ID is taken
+		}
+		assertTrue(dao.findByRole("foreman").isEmpty());
+		assertFalse(dao.isCprTaken("0101011234"));
+	}
+}
@@ -0,0 +1,74 @@
+package model;
+
+import static model.TestUsers.user;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import model.metrics.Metrics;
+import model.metrics.MetricsRegistry;
+
+public class InstrumentedUserDAOTest {
+
+	/**
+	 * Tests that calls and failed calls are counted per operation, and batches by their size.
+	 */
+	@Test
+	public void countTest() throws Exception {
+		InstrumentedUserDAO dao = new InstrumentedUserDAO(new UserDAO(), new Metrics("test dao"));
+		dao.createUser(user(11));
+		try {
+			dao.createUser(user(11));
+			fail("A taken ID should be rejected");
+		} catch (IDAL.DALException e) {
+			// expected
+		}
+		dao.createUsers(Arrays.asList(user(12), user(13), user(14)));
+		for (int i = 0; i < 10; i++) {
+			dao.getUser(12);
+		}
+		assertEquals(4, dao.getUserList().size());
+
+		Metrics metrics = dao.getMetrics();
+		assertEquals(2, metrics.operation("createUser").getCount());
+		assertEquals(1, metrics.operation("createUser").getErrors());
+		assertEquals(10, metrics.operation("getUser").getCount());
+		assertEquals(0, metrics.operation("deleteUser").getCount());
+		assertEquals(3, metrics.histogram("usersPerBatch").getMax());
+		assertEquals(4, metrics.counter("usersRead").sum());
+		assertTrue(metrics.report().contains("getUser"));
+		assertTrue(!metrics.report().contains("deleteUser"));
+	}
+
+	/**
+	 * Tests that a registered group can be read over JMX and is removed again when unregistered.
+	 */
+	@Test
+	public void jmxTest() throws Exception {
+		InstrumentedUserDAO dao = new InstrumentedUserDAO(new UserDAO(), new Metrics("jmx test"));
+		MetricsRegistry.register(dao.getMetrics());
+		try {
+			dao.createUser(user(11));
+			dao.userExists(11);
+			dao.userExists(12);
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName("model.metrics:type=Metrics,name=\"jmx test\"");
+			assertEquals(2L, server.getAttribute(name, "userExists.count"));
+			assertEquals(0L, server.getAttribute(name, "userExists.errors"));
+			assertTrue((Double) server.getAttribute(name, "createUser.p99Micros") > 0);
+			assertTrue(MetricsRegistry.report().contains("jmx test"));
+		} finally {
+			MetricsRegistry.unregister("jmx test");
+		}
+		assertTrue(!ManagementFactory.getPlatformMBeanServer().isRegistered(
+				new ObjectName("model.metrics:type=Metrics,name=\"jmx test\"")));
+	}
+}
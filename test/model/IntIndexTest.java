@@ -0,0 +1,43 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class IntIndexTest {
+
+	/**
+	 * Tests random puts and removes against a HashMap, with keys that collide often, so probe chains
+	 * are shifted back on remove and the table is grown many times.
+	 */
+	@Test
+	public void randomTest() {
+		IntIndex index = new IntIndex();
+		HashMap<Integer, Integer> expected = new HashMap<>();
+		Random random = new Random(5);
+		for (int i = 0; i < 100000; i++) {
+			int key = random.nextInt(2000) * 1024 - 1000000;
+			if (random.nextInt(3) == 0) {
+				Integer removed = expected.remove(key);
+				assertEquals(removed == null ? -1 : removed, index.remove(key));
+			} else {
+				expected.put(key, i);
+				index.put(key, i);
+			}
+			if (i % 1000 == 0) {
+				for (int probe = 0; probe < 2000; probe++) {
+					int probed = probe * 1024 - 1000000;
+					Integer value = expected.get(probed);
+					assertEquals(value == null ? -1 : value, index.get(probed));
+				}
+			}
+		}
+		assertEquals(expected.size(), index.size());
+		index.clear();
+		assertEquals(0, index.size());
+		assertEquals(-1, index.get(-1000000));
+	}
+}
@@ -0,0 +1,99 @@
+package model;
+
+import static model.TestUsers.user;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+public class MvccUserDAOTest {
+
+	/**
+	 * Tests that a snapshot keeps the users it was taken with while the DAO changes,
+	 * and that a failed batch isn't seen at all.
+	 */
+	@Test
+	public void snapshotTest() throws Exception {
+		MvccUserDAO dao = new MvccUserDAO();
+		dao.createUsers(Arrays.asList(user(13), user(11), user(12)));
+		UserSnapshot before = dao.snapshot();
+
+		UserDTO changed = user(12);
+		changed.setUserName("Changed");
+		dao.updateUser(changed);
+		dao.deleteUser(11);
+		dao.createUser(user(14));
+		try {
+			dao.createUsers(Arrays.asList(user(15), user(13)));
+			fail("A taken ID should be rejected");
+		} catch (IDAL.DALException e) {
+			// expected
+		}
+
+		assertEquals(3, before.size());
+		assertEquals("User 12", before.get(12).getUserName());
+		assertTrue(before.contains(11));
+		assertFalse(before.contains(14));
+		assertEquals("[11, 12, 13]", ids(before.iterator()));
+
+		assertEquals("Changed", dao.getUser(12).getUserName());
+		assertNull(dao.getUser(11));
+		assertFalse(dao.userExists(15));
+		assertEquals("[12, 13, 14]", ids(dao.streamUsers(1).iterator()));
+	}
+
+	/**
+	 * Tests random changes against a sorted map, with IDs of any sign, listing the users in pages.
+	 */
+	@Test
+	public void randomTest() throws Exception {
+		MvccUserDAO dao = new MvccUserDAO();
+		TreeMap<Integer, UserDTO> expected = new TreeMap<>();
+		Random random = new Random(7);
+		for (int i = 0; i < 5000; i++) {
+			int userId = random.nextInt(3) == 0 ? random.nextInt() : random.nextInt(2000) - 1000;
+			if (random.nextInt(4) == 0) {
+				dao.deleteUser(userId);
+				expected.remove(userId);
+			} else if (expected.containsKey(userId)) {
+				dao.updateUser(user(userId));
+				expected.put(userId, user(userId));
+			} else {
+				dao.createUser(user(userId));
+				expected.put(userId, user(userId));
+			}
+		}
+		UserSnapshot snapshot = dao.snapshot();
+		assertEquals(expected.size(), snapshot.size());
+		assertEquals(expected.keySet().toString(), ids(snapshot.iterator()));
+
+		ArrayList<UserDTO> paged = new ArrayList<>();
+		for (int offset = 0; offset < expected.size(); offset += 97) {
+			paged.addAll(dao.getUserPage(offset, 97));
+		}
+		assertEquals(expected.keySet().toString(), ids(paged.iterator()));
+		assertTrue(dao.getUserPage(expected.size(), 10).isEmpty());
+
+		for (int userId : new ArrayList<>(expected.keySet())) {
+			dao.deleteUser(userId);
+		}
+		assertTrue(dao.isUserListEmpty());
+		assertFalse(dao.snapshot().iterator().hasNext());
+		assertEquals(expected.size(), snapshot.size());
+	}
+
+	private static String ids(Iterator<UserDTO> users) {
+		ArrayList<Integer> ids = new ArrayList<>();
+		users.forEachRemaining(user -> ids.add(user.getUserID()));
+		return ids.toString();
+	}
+}
@@ -0,0 +1,45 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+public class PasswordGeneratorTest {
+
+	/**
+	 * Tests that every generated password is valid and that passwords don't repeat.
+	 */
+	@Test
+	public void defaultPolicyTest() {
+		PasswordGenerator generator = new PasswordGenerator();
+		List<String> passwords = generator.generate(1000);
+		assertEquals(1000, passwords.size());
+		for (String password : passwords) {
+			assertEquals(10, password.length());
+			assertTrue(password, Validation.isValidPassword(password));
+		}
+		assertEquals(1000, new HashSet<>(passwords).size());
+	}
+
+	/**
+	 * Tests that a policy where the minimums fill the whole password is met exactly.
+	 */
+	@Test
+	public void customPolicyTest() {
+		PasswordGenerator generator = new PasswordGenerator(new PasswordGenerator.Policy(4, 1, 1, 1, 1, "%"));
+		for (int i = 0; i < 100; i++) {
+			String password = generator.generate();
+			assertEquals(4, password.length());
+			assertTrue(password, password.matches("(?=.*[A-Z])(?=.*[a-z])(?=.*[0-9])(?=.*%).{4}"));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidPolicyTest() {
+		new PasswordGenerator.Policy(3, 1, 1, 1, 1, "%");
+	}
+}
@@ -0,0 +1,174 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+import model.storage.AsyncStorage;
+import model.storage.IDataStorage;
+
+public class PersistentUserDAOTest {
+
+	/**
+	 * Storage that only counts writes and keeps the last written users in memory.
+	 * The first writes can be made to fail.
+	 */
+	private static class CountingStorage implements IDataStorage, Closeable {
+		int writes;
+		volatile int failingWrites;
+		boolean closed;
+		DTOList<UserDTO> stored = new DTOList<>();
+
+		@Override
+		public void write(ArrayList<UserDTO> users) throws IOException {
+			if (failingWrites > 0) {
+				failingWrites--;
+				throw new IOException("Disk full");
+			}
+			writes++;
+			stored = new DTOList<>();
+			stored.addAll(users);
+		}
+
+		@Override
+		public DTOList<UserDTO> read() throws IOException {
+			return stored;
+		}
+
+		@Override
+		public void close() {
+			closed = true;
+		}
+	}
+
+	private static UserDTO user(int userId) {
+		UserDTO user = new UserDTO();
+		user.setUserID(userId);
+		user.setUserName("User " + userId);
+		return user;
+	}
+
+	/**
+	 * Tests that the default mode writes every change right away.
+	 */
+	@Test
+	public void syncModeTest() throws Exception {
+		CountingStorage storage = new CountingStorage();
+		PersistentUserDAO dao = new PersistentUserDAO(storage);
+		dao.init();
+		dao.createUser(user(11));
+		dao.updateUser(user(11));
+		dao.deleteUser(11);
+		assertEquals(3, storage.writes);
+		assertEquals(0, storage.stored.size());
+	}
+
+	/**
+	 * Tests that write-behind mode merges changes into one write per threshold, and that close writes the rest.
+	 */
+	@Test
+	public void writeBehindThresholdTest() throws Exception {
+		CountingStorage storage = new CountingStorage();
+		PersistentUserDAO dao = new PersistentUserDAO(storage, 0, 100);
+		dao.init();
+		for (int i = 0; i < 1050; i++) {
+			dao.createUser(user(i));
+		}
+		assertEquals(10, storage.writes);
+		assertEquals(50, dao.getPendingChanges());
+		dao.close();
+		assertEquals(11, storage.writes);
+		assertEquals(1050, storage.stored.size());
+	}
+
+	/**
+	 * Tests that write-behind mode writes pending changes once the time window has passed.
+	 */
+	@Test
+	public void writeBehindIntervalTest() throws Exception {
+		CountingStorage storage = new CountingStorage();
+		PersistentUserDAO dao = new PersistentUserDAO(storage, 50, Integer.MAX_VALUE);
+		dao.init();
+		for (int i = 0; i < 500; i++) {
+			dao.createUser(user(i));
+		}
+		long deadline = System.currentTimeMillis() + 5000;
+		while (dao.getPendingChanges() > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(0, dao.getPendingChanges());
+		assertEquals(500, storage.stored.size());
+		dao.close();
+	}
+
+	/**
+	 * Tests that close writes the changes a flush in the background failed to write, and closes the storage.
+	 */
+	@Test
+	public void backgroundFailureTest() throws Exception {
+		CountingStorage storage = new CountingStorage();
+		storage.failingWrites = 1;
+		PersistentUserDAO dao = new PersistentUserDAO(storage, 20, Integer.MAX_VALUE);
+		dao.init();
+		dao.createUser(user(11));
+		long deadline = System.currentTimeMillis() + 5000;
+		while (storage.failingWrites > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(0, storage.failingWrites);
+		assertEquals(1, dao.getPendingChanges());
+		dao.close();
+		assertEquals(0, dao.getPendingChanges());
+		assertEquals(1, storage.stored.size());
+		assertTrue(storage.closed);
+	}
+
+	/**
+	 * Tests that when the last write fails too, close throws it with the background failure
+	 * as suppressed, and still closes the storage.
+	 */
+	@Test
+	public void failedCloseTest() throws Exception {
+		CountingStorage storage = new CountingStorage();
+		storage.failingWrites = 2;
+		PersistentUserDAO dao = new PersistentUserDAO(storage, 20, Integer.MAX_VALUE);
+		dao.init();
+		dao.createUser(user(11));
+		long deadline = System.currentTimeMillis() + 5000;
+		while (storage.failingWrites > 1 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		try {
+			dao.close();
+			fail("The failed write should be thrown");
+		} catch (IDAL.DALException e) {
+			assertEquals(1, e.getSuppressed().length);
+		}
+		assertEquals(1, dao.getPendingChanges());
+		assertTrue(storage.closed);
+	}
+
+	/**
+	 * Tests that async mode acknowledges changes before they're written, and that every change is durable once flushed.
+	 */
+	@Test
+	public void asyncModeTest() throws Exception {
+		CountingStorage storage = new CountingStorage();
+		PersistentUserDAO dao = new PersistentUserDAO(new AsyncStorage(storage));
+		dao.init();
+		for (int i = 0; i < 500; i++) {
+			dao.createUser(user(i));
+		}
+		dao.deleteUser(0);
+		dao.whenDurable().join();
+		dao.close();
+		assertEquals(499, storage.stored.size());
+		assertTrue(storage.writes >= 1 && storage.writes <= 501);
+	}
+}
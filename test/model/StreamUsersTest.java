@@ -0,0 +1,94 @@
+package model;
+
+import static model.TestUsers.ids;
+import static model.TestUsers.user;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+import model.storage.LazyFileStorage;
+
+public class StreamUsersTest {
+
+	/**
+	 * Tests that streaming neither skips nor repeats users while users already streamed are deleted,
+	 * enough to compact the stores, and users not yet streamed are deleted or changed.
+	 */
+	@Test
+	public void deleteWhileStreamingTest() throws Exception {
+		assertStreamsAcrossDeletes(new UserDAO());
+		assertStreamsAcrossDeletes(new ConcurrentUserDAO(4));
+		assertStreamsAcrossDeletes(new CompactUserDAO());
+		File directory = Files.createTempDirectory("streamusers").toFile();
+		try {
+			LazyUserDAO dao = new LazyUserDAO(new LazyFileStorage(new File(directory, "users.lazy").getPath()));
+			dao.init();
+			assertStreamsAcrossDeletes(dao);
+			dao.close();
+		} finally {
+			for (File file : directory.listFiles()) {
+				file.delete();
+			}
+			directory.delete();
+		}
+	}
+
+	/**
+	 * Tests that a page at an offset is right after many deletes.
+	 */
+	@Test
+	public void pageAfterDeletesTest() throws Exception {
+		for (IDAL dao : Arrays.asList(new UserDAO(), new ConcurrentUserDAO(4), new CompactUserDAO())) {
+			for (int userId = 11; userId < 1011; userId++) {
+				dao.createUser(user(userId));
+			}
+			for (int userId = 13; userId < 1011; userId += 3) {
+				dao.deleteUser(userId);
+			}
+			List<UserDTO> all = dao.getUserList();
+			for (int offset = 0; offset < all.size(); offset += 37) {
+				assertEquals(ids(all.subList(offset, Math.min(offset + 50, all.size()))), ids(dao.getUserPage(offset, 50)));
+			}
+		}
+	}
+
+	private static void assertStreamsAcrossDeletes(IDAL dao) throws Exception {
+		for (int userId = 11; userId < 1011; userId++) {
+			dao.createUser(user(userId));
+		}
+		List<Integer> expected = ids(dao.getUserList());
+		HashSet<Integer> deletedAhead = new HashSet<>();
+		List<Integer> seen = new ArrayList<>();
+		Iterator<UserDTO> users = dao.streamUsers(10).iterator();
+		while (users.hasNext()) {
+			seen.add(users.next().getUserID());
+			if (seen.size() % 10 == 5) {
+				// delete most users already streamed, one not streamed yet, and change another
+				for (int i = seen.size() - 5; i < seen.size() - 1; i++) {
+					dao.deleteUser(seen.get(i));
+				}
+				int ahead = expected.get(expected.size() - 1 - deletedAhead.size());
+				// users of the page being streamed were fetched already, so only later users are deleted
+				if (expected.indexOf(ahead) > expected.indexOf(seen.get(seen.size() - 1)) + 10) {
+					dao.deleteUser(ahead);
+					deletedAhead.add(ahead);
+				}
+				UserDTO changed = user(expected.get(Math.min(seen.size() + 20, expected.size() - 1)));
+				changed.setUserName("Changed");
+				if (dao.userExists(changed.getUserID())) {
+					dao.updateUser(changed);
+				}
+			}
+		}
+		expected.removeAll(deletedAhead);
+		assertEquals(expected, seen);
+	}
+}
@@ -0,0 +1,46 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Users shared by the tests
+ */
+public final class TestUsers {
+
+	private TestUsers() {
+	}
+
+	/**
+	 * @return a valid user with the ID, a name made from the ID and the role operator
+	 */
+	public static UserDTO user(int userId) {
+		return user(userId, "operator");
+	}
+
+	/**
+	 * @return a valid user with the ID, a name made from the ID and the roles
+	 */
+	public static UserDTO user(int userId, String... roles) {
+		UserDTO user = new UserDTO();
+		user.setUserID(userId);
+		user.setUserName("User " + userId);
+		user.setIni("US");
+		user.setCpr("1402011234");
+		user.setPassword("Ab12!cdeFG");
+		user.setRoles(new ArrayList<>(Arrays.asList(roles)));
+		return user;
+	}
+
+	/**
+	 * @return the IDs of the users in the same order
+	 */
+	public static List<Integer> ids(List<UserDTO> users) {
+		List<Integer> ids = new ArrayList<>();
+		for (UserDTO user : users) {
+			ids.add(user.getUserID());
+		}
+		return ids;
+	}
+}
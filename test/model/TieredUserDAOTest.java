@@ -0,0 +1,88 @@
+package model;
+
+import static model.TestUsers.user;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import model.storage.LazyFileStorage;
+
+public class TieredUserDAOTest {
+
+	private File directory;
+	private LazyFileStorage storage;
+
+	@Before
+	public void setUp() throws Exception {
+		directory = Files.createTempDirectory("tiereddao").toFile();
+		storage = new LazyFileStorage(new File(directory, "users.lazy").getPath());
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		storage.close();
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+
+	/**
+	 * Tests that the cache stays within its budget by evicting the least recently used users,
+	 * and that evicted users are read back from the storage.
+	 */
+	@Test
+	public void evictionTest() throws Exception {
+		int userSize = TieredUserDAO.estimateSize(user(100));
+		TieredUserDAO dao = new TieredUserDAO(storage, 10L * userSize);
+		dao.init();
+		for (int i = 100; i < 200; i++) {
+			dao.createUser(user(i));
+		}
+		assertEquals(10, dao.getCachedCount());
+		assertTrue(dao.getCachedBytes() <= dao.getMemoryBudget());
+		assertEquals(90, dao.getEvictions());
+
+		UserDTO hot = dao.getUser(195);
+		for (int i = 100; i < 105; i++) {
+			assertEquals(user(i).toString(), dao.getUser(i).toString());
+		}
+		assertSame(hot, dao.getUser(195));
+		assertEquals(2, dao.getHits());
+		assertEquals(5, dao.getMisses());
+		assertEquals(2 / 7.0, dao.getHitRate(), 1e-9);
+		assertNull(dao.getUser(12));
+	}
+
+	/**
+	 * Tests that listing every user doesn't evict cached users, and that changes reach the storage.
+	 */
+	@Test
+	public void listAndChangeTest() throws Exception {
+		TieredUserDAO dao = new TieredUserDAO(storage, 1000);
+		dao.init();
+		for (int i = 100; i < 200; i++) {
+			dao.createUser(user(i));
+		}
+		UserDTO hot = dao.getUser(150);
+		assertEquals(100, dao.getUserList().size());
+		assertSame(hot, dao.getUser(150));
+
+		UserDTO changed = user(150);
+		changed.setUserName("Changed");
+		dao.updateUser(changed);
+		dao.deleteUser(199);
+		assertEquals("Changed", storage.readUser(150).getUserName());
+		assertFalse(dao.userExists(199));
+		assertEquals(99, storage.countUsers());
+	}
+}
@@ -0,0 +1,89 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class UserStoreTest {
+
+	private static UserDTO user(int userId) {
+		UserDTO user = new UserDTO();
+		user.setUserID(userId);
+		return user;
+	}
+
+	/**
+	 * Tests that users can be found, replaced and removed by ID.
+	 */
+	@Test
+	public void putGetRemoveTest() {
+		UserStore store = new UserStore();
+		UserDTO first = user(11);
+		store.put(first);
+		store.put(user(12));
+		assertSame(first, store.get(11));
+		assertTrue(store.contains(12));
+		assertFalse(store.contains(13));
+
+		UserDTO replacement = user(11);
+		assertSame(first, store.put(replacement));
+		assertSame(replacement, store.get(11));
+		assertEquals(2, store.size());
+
+		assertSame(replacement, store.remove(11));
+		assertNull(store.get(11));
+		assertNull(store.remove(11));
+		assertEquals(1, store.size());
+	}
+
+	/**
+	 * Tests that listing keeps insertion order, and that a replaced user keeps its position.
+	 */
+	@Test
+	public void stableOrderTest() {
+		UserStore store = new UserStore();
+		for (int i = 20; i > 10; i--) {
+			store.put(user(i));
+		}
+		store.remove(15);
+		store.put(user(18));
+		store.put(user(15));
+		ArrayList<Integer> ids = new ArrayList<>();
+		for (UserDTO user : store.toList()) {
+			ids.add(user.getUserID());
+		}
+		assertEquals("[20, 19, 18, 17, 16, 14, 13, 12, 11, 15]", ids.toString());
+	}
+
+	/**
+	 * Compares the store with a HashMap over a long random sequence of puts and removes.
+	 */
+	@Test
+	public void randomOperationsTest() {
+		UserStore store = new UserStore();
+		HashMap<Integer, UserDTO> expected = new HashMap<>();
+		Random random = new Random(7);
+		for (int i = 0; i < 200000; i++) {
+			int userId = random.nextInt(5000) - 100;
+			if (random.nextInt(3) == 0) {
+				assertSame(expected.remove(userId), store.remove(userId));
+			} else {
+				UserDTO user = user(userId);
+				assertSame(expected.put(userId, user), store.put(user));
+			}
+		}
+		assertEquals(expected.size(), store.size());
+		assertEquals(expected.size(), store.toList().size());
+		for (int userId = -100; userId < 4900; userId++) {
+			assertSame(expected.get(userId), store.get(userId));
+		}
+	}
+}
@@ -0,0 +1,40 @@
+package model.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class HistogramTest {
+
+	/**
+	 * Tests that every value falls in a bucket whose upper bound is at most 1/16 above it.
+	 */
+	@Test
+	public void bucketTest() {
+		for (long value = 0; value < 1L << 40; value = value * 3 / 2 + 1) {
+			long upper = Histogram.upperBound(Histogram.bucket(value));
+			assertTrue(value + " in bucket up to " + upper, upper >= value && upper <= value + value / 16);
+		}
+		assertEquals(Long.MAX_VALUE, Histogram.upperBound(Histogram.bucket(Long.MAX_VALUE)));
+	}
+
+	/**
+	 * Tests percentiles of 1 to 1000 against their exact values.
+	 */
+	@Test
+	public void percentileTest() {
+		Histogram histogram = new Histogram();
+		assertEquals(0, histogram.getPercentile(0.99));
+		for (int value = 1000; value >= 1; value--) {
+			histogram.record(value);
+		}
+		assertEquals(1000, histogram.getCount());
+		assertEquals(1000, histogram.getMax());
+		assertEquals(500.5, histogram.getMean(), 1e-9);
+		assertEquals(500, histogram.getPercentile(0.5), 500 / 16);
+		assertEquals(990, histogram.getPercentile(0.99), 990 / 16);
+		assertEquals(1000, histogram.getPercentile(0.999));
+		assertEquals(1, histogram.getPercentile(0));
+	}
+}
@@ -0,0 +1,108 @@
+package model.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import model.DTOList;
+import model.UserDTO;
+
+public class AsyncStorageTest {
+
+	/**
+	 * Storage whose first write waits until it's released, so snapshots queue up behind it.
+	 */
+	private static class BlockingStorage implements IDataStorage {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final ArrayList<Integer> writtenSizes = new ArrayList<>();
+		DTOList<UserDTO> stored = new DTOList<>();
+		boolean fail;
+
+		@Override
+		public void write(ArrayList<UserDTO> users) throws IOException {
+			started.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				throw new IOException(e);
+			}
+			if (fail) {
+				throw new IOException("Disk full");
+			}
+			writtenSizes.add(users.size());
+			stored = new DTOList<>();
+			stored.addAll(users);
+		}
+
+		@Override
+		public DTOList<UserDTO> read() throws IOException {
+			return stored;
+		}
+	}
+
+	private static ArrayList<UserDTO> users(int count) {
+		ArrayList<UserDTO> users = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			UserDTO user = new UserDTO();
+			user.setUserID(i);
+			users.add(user);
+		}
+		return users;
+	}
+
+	/**
+	 * Tests that snapshots arriving during a write are dropped except the last, and every future completes.
+	 */
+	@Test
+	public void dropSupersededTest() throws Exception {
+		BlockingStorage storage = new BlockingStorage();
+		AsyncStorage async = new AsyncStorage(storage);
+		CompletableFuture<Void> first = async.writeAsync(users(1));
+		storage.started.await();
+		ArrayList<CompletableFuture<Void>> queued = new ArrayList<>();
+		for (int i = 2; i <= 10; i++) {
+			queued.add(async.writeAsync(users(i)));
+		}
+		CompletableFuture<DTOList<UserDTO>> read = async.readAsync();
+		assertTrue(!first.isDone());
+		storage.release.countDown();
+
+		first.join();
+		for (CompletableFuture<Void> future : queued) {
+			future.join();
+		}
+		assertEquals(10, read.join().size());
+		assertEquals("[1, 10]", storage.writtenSizes.toString());
+		assertEquals(2, async.getWrittenCount());
+		assertEquals(8, async.getDroppedCount());
+		async.close();
+	}
+
+	/**
+	 * Tests that a failed write completes its futures with the storage's exception, and that close refuses writes.
+	 */
+	@Test
+	public void failureTest() throws Exception {
+		BlockingStorage storage = new BlockingStorage();
+		storage.fail = true;
+		storage.release.countDown();
+		AsyncStorage async = new AsyncStorage(storage);
+		try {
+			async.writeAsync(users(3)).join();
+			fail("The write should fail");
+		} catch (CompletionException e) {
+			assertEquals("Disk full", e.getCause().getMessage());
+		}
+		async.close();
+		assertTrue(async.writeAsync(users(1)).isCompletedExceptionally());
+	}
+}
@@ -0,0 +1,105 @@
+package model.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import model.DTOList;
+import model.UserDTO;
+
+public class BinaryFileStorageTest {
+
+	private File directory;
+
+	@Before
+	public void setUp() throws Exception {
+		directory = Files.createTempDirectory("binarystorage").toFile();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+
+	private static UserDTO user(int userId, String cpr, String... roles) {
+		UserDTO user = new UserDTO();
+		user.setUserID(userId);
+		user.setUserName("Peter Madsen");
+		user.setIni("PM");
+		user.setCpr(cpr);
+		user.setPassword("Ab12!cdeFG");
+		user.setRoles(new ArrayList<>(Arrays.asList(roles)));
+		return user;
+	}
+
+	/**
+	 * Tests that users read back as written, whichever encoding their CPR and roles get.
+	 */
+	@Test
+	public void roundTripTest() throws Exception {
+		DTOList<UserDTO> users = new DTOList<>();
+		users.add(user(11, "0102031234", "admin", "operator"));
+		users.add(user(12, "1402011234", "operator", "admin"));
+		users.add(user(13, "140201-1234", "Admin", "janitor"));
+		users.add(user(-5, "", "admin", "admin"));
+		UserDTO empty = new UserDTO();
+		empty.setUserID(Integer.MAX_VALUE);
+		users.add(empty);
+		UserDTO unicode = user(14, "0000000000");
+		unicode.setUserName("Søren Ærø");
+		users.add(unicode);
+
+		BinaryFileStorage storage = new BinaryFileStorage(new File(directory, "users.bin").getPath());
+		storage.write(users);
+		assertEquals(users.toString(), storage.read().toString());
+	}
+
+	/**
+	 * Tests that the migrator copies a file of Java serialized users into a smaller binary file.
+	 */
+	@Test
+	public void migrateTest() throws Exception {
+		DTOList<UserDTO> users = new DTOList<>();
+		for (int i = 11; i < 100; i++) {
+			users.add(user(i, "1402011234", "admin", "operator"));
+		}
+		FileStorage source = new FileStorage(new File(directory, "data.txt").getPath());
+		source.write(users);
+		BinaryFileStorage target = new BinaryFileStorage(new File(directory, "data.bin").getPath());
+
+		assertEquals(users.size(), StorageMigrator.migrate(source, target));
+		assertEquals(users.toString(), target.read().toString());
+		assertTrue(target.getFileSize() < new File(directory, "data.txt").length());
+	}
+
+	/**
+	 * Tests that a record with a negative or huge length is rejected before a buffer for it is allocated.
+	 */
+	@Test
+	public void corruptLengthTest() throws Exception {
+		byte[][] lengths = { {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F},
+				{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07}, {(byte) 0x81, (byte) 0x80, (byte) 0x40} };
+		for (byte[] length : lengths) {
+			try {
+				new UserCodec().read(new ByteArrayInputStream(length));
+				fail("A corrupt record length should be rejected");
+			} catch (EOFException e) {
+				assertEquals("Corrupt record length", e.getMessage());
+			}
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package model.storage;
+
+import static model.TestUsers.user;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import model.DTOList;
+import model.UserDTO;
+
+public class CompressedStorageTest {
+
+	private File directory;
+	private String path;
+	private DTOList<UserDTO> users;
+
+	@Before
+	public void setUp() throws Exception {
+		directory = Files.createTempDirectory("compressedstorage").toFile();
+		path = new File(directory, "users.z").getPath();
+		users = new DTOList<>();
+		for (int i = 11; i < 100; i++) {
+			users.add(user(i, "operator", "admin"));
+		}
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+
+	/**
+	 * Tests that every codec compresses each stream storage and reads the users back.
+	 */
+	@Test
+	public void roundTripTest() throws Exception {
+		IStreamStorage[] storages = { new JSONStorage(path + ".unused", true), new FileStorage(path + ".unused"),
+				new BinaryFileStorage(path + ".unused") };
+		for (IStreamStorage storage : storages) {
+			for (CompressedStorage.Codec codec : CompressedStorage.Codec.values()) {
+				CompressedStorage compressed = new CompressedStorage(storage, path, codec);
+				compressed.write(users);
+				assertEquals(users.toString(), compressed.read().toString());
+
+				CompressedStorage.Stats written = compressed.getLastWrite();
+				assertEquals(new File(path).length(), written.getCompressedBytes());
+				assertTrue(written.getRatio() < 0.5);
+				assertEquals(written.getUncompressedBytes(), compressed.getLastRead().getUncompressedBytes());
+				assertEquals(written.getCompressedBytes(), compressed.getLastRead().getCompressedBytes());
+			}
+		}
+		assertTrue(!new File(path + ".unused").exists());
+	}
+
+	/**
+	 * Tests that a file is read whichever codec wrote it.
+	 */
+	@Test
+	public void detectCodecTest() throws Exception {
+		JSONStorage json = new JSONStorage(path + ".unused", false);
+		new CompressedStorage(json, path, CompressedStorage.Codec.GZIP).write(users);
+		assertEquals(users.toString(), new CompressedStorage(json, path, CompressedStorage.Codec.DEFLATE_BEST).read().toString());
+		assertEquals(0, new CompressedStorage(json, path + ".missing", CompressedStorage.Codec.GZIP).read().size());
+	}
+
+	/**
+	 * Tests that a failed write leaves the old users in place and no temporary file behind.
+	 */
+	@Test
+	public void failedWriteTest() throws Exception {
+		JSONStorage json = new JSONStorage(path + ".unused", false);
+		IStreamStorage failing = new JSONStorage(path + ".unused", false) {
+			@Override
+			public void write(ArrayList<UserDTO> users, OutputStream out) throws IOException {
+				out.write('{');
+				throw new IOException("Disk full");
+			}
+		};
+		for (CompressedStorage.Codec codec : CompressedStorage.Codec.values()) {
+			new CompressedStorage(json, path, codec).write(users);
+			try {
+				new CompressedStorage(failing, path, codec).write(users);
+				fail("The failed write should be thrown");
+			} catch (IOException e) {
+				// expected
+			}
+			assertFalse(new File(path + ".tmp").exists());
+			assertEquals(users.toString(), new CompressedStorage(json, path, codec).read().toString());
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package model.storage;
+
+import static model.TestUsers.user;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import model.UserDTO;
+import model.metrics.Metrics;
+
+public class InstrumentedStorageTest {
+
+	private File directory;
+
+	@Before
+	public void setUp() throws Exception {
+		directory = Files.createTempDirectory("instrumentedstorage").toFile();
+	}
+
+	@After
+	public void tearDown() {
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+
+	/**
+	 * Tests that full writes and reads count their records and the bytes of the file.
+	 */
+	@Test
+	public void writeReadTest() throws Exception {
+		File file = new File(directory, "users.bin");
+		Metrics metrics = new Metrics("binary");
+		IDataStorage storage = InstrumentedStorage.wrap(new BinaryFileStorage(file.getPath()), metrics, file);
+		assertFalse(storage instanceof IRecordStorage);
+
+		ArrayList<UserDTO> users = new ArrayList<>();
+		for (int i = 11; i < 31; i++) {
+			users.add(user(i));
+		}
+		storage.write(users);
+		assertEquals(20, storage.read().size());
+
+		assertEquals(1, metrics.operation("write").getCount());
+		assertEquals(1, metrics.operation("read").getCount());
+		assertEquals(20, metrics.counter("recordsWritten").sum());
+		assertEquals(20, metrics.counter("recordsRead").sum());
+		assertEquals(20, metrics.histogram("recordsPerWrite").getMax());
+		assertEquals(file.length(), metrics.counter("bytesWritten").sum());
+		assertEquals(file.length(), metrics.counter("bytesRead").sum());
+	}
+
+	/**
+	 * Tests that a random access storage keeps its capabilities and that single records count
+	 * the bytes they appended.
+	 */
+	@Test
+	public void recordTest() throws Exception {
+		File file = new File(directory, "users.lazy");
+		Metrics metrics = new Metrics("lazy");
+		LazyFileStorage lazy = new LazyFileStorage(file.getPath());
+		IDataStorage wrapped = InstrumentedStorage.wrap((IDataStorage) lazy, metrics, file);
+		assertTrue(wrapped instanceof IRandomAccessStorage);
+		IRandomAccessStorage storage = (IRandomAccessStorage) wrapped;
+		try {
+			assertEquals(0, storage.countUsers());
+			long header = file.length();
+			storage.writeUser(user(11));
+			storage.writeUser(user(12));
+			storage.deleteUser(11);
+			assertEquals("User 12", storage.readUser(12).getUserName());
+			assertFalse(storage.containsUser(11));
+
+			assertEquals(2, metrics.operation("writeUser").getCount());
+			assertEquals(1, metrics.operation("deleteUser").getCount());
+			assertEquals(1, metrics.operation("readUser").getCount());
+			assertEquals(3, metrics.counter("recordsWritten").sum());
+			assertEquals(1, metrics.histogram("recordsPerWrite").getMax());
+			assertEquals(file.length() - header, metrics.counter("bytesWritten").sum());
+		} finally {
+			((InstrumentedStorage) storage).close();
+		}
+	}
+}
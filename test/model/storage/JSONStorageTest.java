@@ -0,0 +1,139 @@
+package model.storage;
+
+import static model.TestUsers.user;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import model.DTOList;
+import model.UserDTO;
+
+public class JSONStorageTest {
+
+	private File directory;
+	private File file;
+
+	@Before
+	public void setUp() throws Exception {
+		directory = Files.createTempDirectory("jsonstorage").toFile();
+		file = new File(directory, "data.json");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+
+	/**
+	 * Tests that users, also with missing values, no roles and characters outside ASCII, read back as written.
+	 */
+	@Test
+	public void roundTripTest() throws Exception {
+		DTOList<UserDTO> users = new DTOList<>();
+		users.add(user(11, "admin", "operator"));
+		UserDTO unicode = user(12);
+		unicode.setUserName("Søren \"Ærø\"");
+		users.add(unicode);
+		UserDTO noRoles = user(13);
+		noRoles.setRoles(new ArrayList<>());
+		users.add(noRoles);
+		UserDTO empty = new UserDTO();
+		empty.setUserID(14);
+		users.add(empty);
+
+		JSONStorage storage = new JSONStorage(file.getPath());
+		storage.write(users);
+		assertEquals(users.toString(), storage.read().toString());
+		storage.write(new ArrayList<>());
+		assertTrue(storage.read().isEmpty());
+	}
+
+	/**
+	 * Tests that fields the storage doesn't know, also in users, are skipped, and that null fields
+	 * and null roles read as missing values.
+	 */
+	@Test
+	public void unknownAndNullFieldsTest() throws Exception {
+		write("{\"version\": 2, \"users\": [{\"userID\": 11, \"userName\": \"User 11\", \"email\": \"a@b.dk\","
+				+ " \"address\": {\"city\": \"Lyngby\", \"zip\": [2800]}, \"ini\": null, \"roles\": null},"
+				+ " {\"roles\": [\"operator\"], \"cpr\": null, \"userID\": 12}], \"settings\": {\"users\": 3}}");
+		DTOList<UserDTO> users = new JSONStorage(file.getPath()).read();
+
+		assertEquals(2, users.size());
+		UserDTO first = users.get(0);
+		assertEquals(11, first.getUserID());
+		assertEquals("User 11", first.getUserName());
+		assertNull(first.getIni());
+		assertNull(first.getRoles());
+		UserDTO second = users.get(1);
+		assertEquals(12, second.getUserID());
+		assertNull(second.getCpr());
+		assertEquals("[operator]", second.getRoles().toString());
+	}
+
+	/**
+	 * Tests that a file that isn't a user file is rejected with an IOException.
+	 */
+	@Test
+	public void invalidFileTest() throws Exception {
+		for (String json : new String[] {"[]", "{\"users\": [{\"userID\": \"eleven\"}]}", "{\"users\": [{\"userID\": 11"}) {
+			write(json);
+			try {
+				new JSONStorage(file.getPath()).read();
+				fail("Invalid file should be rejected: " + json);
+			} catch (IOException e) {
+				// expected
+			}
+		}
+	}
+
+	/**
+	 * Tests that pretty printing indents the file, that without it the file is on one line,
+	 * and that both read back the same users.
+	 */
+	@Test
+	public void prettyPrintTest() throws Exception {
+		DTOList<UserDTO> users = new DTOList<>();
+		users.add(user(11));
+		users.add(user(12, "admin", "operator"));
+
+		JSONStorage storage = new JSONStorage(file.getPath());
+		assertTrue(storage.isPrettyPrint());
+		storage.write(users);
+		String pretty = read();
+		assertTrue(pretty, pretty.contains("\n  \"users\": [\n    {\n      \"password\""));
+		assertEquals(users.toString(), storage.read().toString());
+
+		storage.setPrettyPrint(false);
+		assertFalse(storage.isPrettyPrint());
+		storage.write(users);
+		String compact = read();
+		assertFalse(compact, compact.contains("\n"));
+		assertFalse(compact, compact.contains(" \""));
+		assertTrue(compact.length() < pretty.length());
+		assertEquals(users.toString(), new JSONStorage(file.getPath(), false).read().toString());
+	}
+
+	private void write(String json) throws IOException {
+		Files.write(file.toPath(), json.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private String read() throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+	}
+}
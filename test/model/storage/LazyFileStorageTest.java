@@ -0,0 +1,156 @@
+package model.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import model.LazyUserDAO;
+import model.UserDTO;
+
+public class LazyFileStorageTest {
+
+	private File directory;
+	private String path;
+
+	@Before
+	public void setUp() throws Exception {
+		directory = Files.createTempDirectory("lazystorage").toFile();
+		path = new File(directory, "users.lazy").getPath();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+
+	private static UserDTO user(int userId, String userName) {
+		UserDTO user = new UserDTO();
+		user.setUserID(userId);
+		user.setUserName(userName);
+		user.setRoles(new ArrayList<>(Arrays.asList("admin")));
+		return user;
+	}
+
+	private static ArrayList<UserDTO> users(int count) {
+		ArrayList<UserDTO> users = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			users.add(user(i, "User " + i));
+		}
+		return users;
+	}
+
+	/**
+	 * Tests that users written one at a time are read back by ID after reopening, with and without a saved index.
+	 */
+	@Test
+	public void reopenTest() throws Exception {
+		LazyFileStorage storage = new LazyFileStorage(path);
+		storage.write(users(10));
+		storage.writeUser(user(3, "Changed"));
+		storage.deleteUser(4);
+		storage.writeUser(user(10, "New"));
+		storage.close();
+
+		LazyFileStorage reopened = new LazyFileStorage(path);
+		assertEquals(10, reopened.countUsers());
+		assertEquals("Changed", reopened.readUser(3).getUserName());
+		assertNull(reopened.readUser(4));
+		assertEquals(Arrays.asList("admin"), reopened.readUser(10).getRoles());
+		assertEquals(5, reopened.readUserIds(4, 1)[0]);
+		reopened.writeUser(user(11, "Not indexed"));
+
+		// the index saved at close doesn't cover user 11, so the end of the file is scanned
+		LazyFileStorage unclosed = new LazyFileStorage(path);
+		assertEquals("Not indexed", unclosed.readUser(11).getUserName());
+		unclosed.close();
+		reopened.close();
+
+		new File(path + ".idx").delete();
+		LazyFileStorage rebuilt = new LazyFileStorage(path);
+		assertEquals(11, rebuilt.read().size());
+		rebuilt.close();
+	}
+
+	/**
+	 * Tests that a torn record at the end of the file is cut off and later records are appended after valid ones.
+	 */
+	@Test
+	public void tornRecordTest() throws Exception {
+		LazyFileStorage storage = new LazyFileStorage(path);
+		storage.write(users(3));
+		storage.writeUser(user(3, "Torn"));
+		long size = storage.getDataSize();
+		storage.close();
+		try (RandomAccessFile file = new RandomAccessFile(path, "rw")) {
+			file.setLength(size - 2);
+		}
+		new File(path + ".idx").delete();
+
+		LazyFileStorage reopened = new LazyFileStorage(path);
+		assertFalse(reopened.containsUser(3));
+		reopened.writeUser(user(3, "Whole"));
+		reopened.close();
+		assertEquals("Whole", new LazyFileStorage(path).readUser(3).getUserName());
+	}
+
+	/**
+	 * Tests that outdated records are compacted away and the users stay readable.
+	 */
+	@Test
+	public void compactionTest() throws Exception {
+		LazyFileStorage storage = new LazyFileStorage(path);
+		storage.write(users(100));
+		long initialSize = storage.getDataSize();
+		for (int round = 0; round < 30; round++) {
+			for (int i = 0; i < 100; i++) {
+				storage.writeUser(user(i, "Round " + round));
+			}
+		}
+		assertTrue(storage.getDataSize() < 4 * initialSize);
+		assertEquals("Round 29", storage.readUser(42).getUserName());
+		storage.close();
+		assertEquals(100, new LazyFileStorage(path).read().size());
+	}
+
+	/**
+	 * Tests that the lazy DAO only decodes the users that are read.
+	 */
+	@Test
+	public void lazyUserDAOTest() throws Exception {
+		LazyFileStorage storage = new LazyFileStorage(path);
+		storage.write(users(1000));
+		storage.close();
+
+		LazyUserDAO dao = new LazyUserDAO(new LazyFileStorage(path));
+		dao.init();
+		assertEquals(0, dao.getLoadedCount());
+		assertFalse(dao.isUserListEmpty());
+		assertTrue(dao.userExists(999));
+		assertEquals("User 20", dao.getUserPage(20, 20).get(0).getUserName());
+		assertEquals(20, dao.getLoadedCount());
+		dao.deleteUser(20);
+		dao.createUser(user(1000, "Created"));
+		dao.close();
+
+		LazyUserDAO reopened = new LazyUserDAO(new LazyFileStorage(path));
+		reopened.init();
+		assertNull(reopened.getUser(20));
+		assertEquals("Created", reopened.getUser(1000).getUserName());
+		assertEquals(1000, reopened.getUserList().size());
+		reopened.close();
+	}
+}
@@ -0,0 +1,129 @@
+package model.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import model.DTOList;
+import model.UserDTO;
+
+public class LogStorageTest {
+
+	private File directory;
+	private String path;
+
+	@Before
+	public void setUp() throws Exception {
+		directory = Files.createTempDirectory("logstorage").toFile();
+		path = new File(directory, "users.wal").getPath();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+
+	private static UserDTO user(int userId, String userName) {
+		UserDTO user = new UserDTO();
+		user.setUserID(userId);
+		user.setUserName(userName);
+		user.setIni("AB");
+		user.setCpr("1402011234");
+		user.setPassword("Ab12!cdeFG");
+		user.setRoles(new ArrayList<>(Arrays.asList("admin", "operator")));
+		return user;
+	}
+
+	/**
+	 * Tests that single user records are replayed in order when the storage is reopened.
+	 */
+	@Test
+	public void replayTest() throws Exception {
+		LogStorage storage = new LogStorage(path);
+		storage.read();
+		storage.writeUser(user(11, "Peter Madsen"));
+		storage.writeUser(user(12, "Hans Thorsen"));
+		storage.writeUser(user(11, "Peter Jensen"));
+		storage.deleteUser(12);
+		storage.close();
+
+		DTOList<UserDTO> users = new LogStorage(path).read();
+		assertEquals(1, users.size());
+		assertEquals(users.get(0).toString(), user(11, "Peter Jensen").toString());
+	}
+
+	/**
+	 * Tests that no change is lost when the log is compacted into snapshots many times.
+	 */
+	@Test
+	public void compactionTest() throws Exception {
+		LogStorage storage = new LogStorage(path, 2048);
+		storage.read();
+		for (int i = 0; i < 2000; i++) {
+			storage.writeUser(user(i % 150, "User " + i));
+			if (i % 7 == 0) {
+				storage.deleteUser((i + 3) % 150);
+			}
+		}
+		storage.close();
+		assertTrue(new File(path).exists());
+		assertTrue(!new File(path + ".log.old").exists());
+
+		DTOList<UserDTO> expected = storage.read();
+		DTOList<UserDTO> users = new LogStorage(path).read();
+		assertEquals(expected.toString(), users.toString());
+	}
+
+	/**
+	 * Tests that a torn record at the end of the log is cut off, so users written after it
+	 * are replayed too, and that a corrupt record length is ignored.
+	 */
+	@Test
+	public void tornTailTest() throws Exception {
+		LogStorage storage = new LogStorage(path);
+		storage.read();
+		storage.writeUser(user(11, "Peter Madsen"));
+		storage.writeUser(user(12, "Hans Thorsen"));
+		storage.close();
+		File log = new File(path + ".log");
+		try (RandomAccessFile file = new RandomAccessFile(log, "rw")) {
+			file.setLength(file.length() - 3);
+		}
+
+		storage = new LogStorage(path);
+		assertEquals(1, storage.read().size());
+		storage.writeUser(user(13, "Lise Hansen"));
+		storage.writeUser(user(14, "Ole Olsen"));
+		storage.close();
+		try (DataOutputStream out = new DataOutputStream(new FileOutputStream(log, true))) {
+			out.writeInt(Integer.MAX_VALUE);
+			out.writeInt(0);
+		}
+
+		DTOList<UserDTO> users = new LogStorage(path).read();
+		assertEquals("[11, 13, 14]", ids(users));
+		assertEquals(user(14, "Ole Olsen").toString(), users.get(2).toString());
+	}
+
+	private static String ids(DTOList<UserDTO> users) {
+		ArrayList<Integer> ids = new ArrayList<>();
+		for (UserDTO user : users) {
+			ids.add(user.getUserID());
+		}
+		return ids.toString();
+	}
+}
@@ -0,0 +1,173 @@
+package model.storage;
+
+import static model.TestUsers.user;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import model.DTOList;
+import model.UserDTO;
+
+public class MappedStorageTest {
+
+	private static final int SLOT_SIZE = 256;
+
+	private File directory;
+	private String path;
+
+	@Before
+	public void setUp() throws Exception {
+		directory = Files.createTempDirectory("mappedstorage").toFile();
+		path = new File(directory, "users.slots").getPath();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+
+	/**
+	 * Tests that users, also with missing values, read back the same after the storage is reopened,
+	 * and that single writes and deletes only change their own user.
+	 */
+	@Test
+	public void roundTripTest() throws Exception {
+		MappedStorage storage = new MappedStorage(path, 11, 99, SLOT_SIZE);
+		UserDTO empty = new UserDTO();
+		empty.setUserID(13);
+		UserDTO noRoles = user(14);
+		noRoles.setUserName("Søren Ærø");
+		noRoles.setRoles(new ArrayList<>());
+		storage.write(new ArrayList<>(Arrays.asList(user(11), user(12), empty, noRoles)));
+		UserDTO changed = user(12);
+		changed.setUserName("Changed");
+		storage.writeUser(changed);
+		storage.deleteUser(11);
+		storage.writeUser(user(99));
+		storage.close();
+
+		storage = new MappedStorage(path, 11, 99, SLOT_SIZE);
+		DTOList<UserDTO> users = storage.read();
+		assertEquals(Arrays.asList(changed.toString(), empty.toString(), noRoles.toString(), user(99).toString()), strings(users));
+		assertEquals(changed.toString(), storage.readUser(12).toString());
+		assertNull(storage.readUser(11));
+		assertNull(storage.readUser(100));
+		storage.close();
+	}
+
+	/**
+	 * Tests that a write with a user too big for a slot is rejected without changing the stored users.
+	 */
+	@Test
+	public void oversizedUserTest() throws Exception {
+		MappedStorage storage = new MappedStorage(path, 11, 99, SLOT_SIZE);
+		ArrayList<UserDTO> users = new ArrayList<>();
+		for (int userId = 11; userId < 20; userId++) {
+			users.add(user(userId));
+		}
+		storage.write(users);
+
+		UserDTO big = user(20);
+		char[] name = new char[SLOT_SIZE];
+		Arrays.fill(name, 'x');
+		big.setUserName(new String(name));
+		ArrayList<UserDTO> replaced = new ArrayList<>(Arrays.asList(user(30), big));
+		try {
+			storage.write(replaced);
+			fail("A user bigger than a slot should be rejected");
+		} catch (IOException e) {
+			// expected
+		}
+		try {
+			storage.writeUser(big);
+			fail("A user bigger than a slot should be rejected");
+		} catch (IOException e) {
+			// expected
+		}
+		assertEquals(strings(users), strings(storage.read()));
+		storage.close();
+	}
+
+	/**
+	 * Tests that a change torn by a crash leaves the user as it was before the change.
+	 */
+	@Test
+	public void tornUpdateTest() throws Exception {
+		MappedStorage storage = new MappedStorage(path, 11, 99, SLOT_SIZE);
+		storage.writeUser(user(12));
+		UserDTO changed = user(12);
+		changed.setUserName("Changed");
+		storage.writeUser(changed);
+		storage.close();
+
+		// the change went to the second copy of the slot: header, slot 1, slot header, first copy, copy header
+		long secondCopy = 32 + SLOT_SIZE + 5 + (SLOT_SIZE - 5) / 2 + 6;
+		try (RandomAccessFile file = new RandomAccessFile(path, "rw")) {
+			file.seek(secondCopy + 4);
+			file.write('X');
+		}
+		storage = new MappedStorage(path, 11, 99, SLOT_SIZE);
+		assertEquals(user(12).toString(), storage.readUser(12).toString());
+		storage.close();
+	}
+
+	/**
+	 * Tests that only IDs in the configured range are stored, and that a file is only opened
+	 * with the range it was created with.
+	 */
+	@Test
+	public void idRangeTest() throws Exception {
+		MappedStorage storage = new MappedStorage(path, 1000, 1000000, SLOT_SIZE);
+		storage.writeUser(user(1000));
+		storage.writeUser(user(1000000));
+		try {
+			storage.writeUser(user(999));
+			fail("An ID below the range should be rejected");
+		} catch (IOException e) {
+			// expected
+		}
+		try {
+			storage.write(new ArrayList<>(Arrays.asList(user(1000), user(1000001))));
+			fail("An ID above the range should be rejected");
+		} catch (IOException e) {
+			// expected
+		}
+		assertEquals(2, storage.read().size());
+		storage.close();
+
+		try {
+			new MappedStorage(path, 11, 99, SLOT_SIZE).read();
+			fail("A file created with another range should be rejected");
+		} catch (IOException e) {
+			// expected
+		}
+		try {
+			new MappedStorage(path, 10, 5, SLOT_SIZE);
+			fail("An empty range should be rejected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	private static ArrayList<String> strings(ArrayList<UserDTO> users) {
+		ArrayList<String> strings = new ArrayList<>();
+		for (UserDTO user : users) {
+			strings.add(user.toString());
+		}
+		return strings;
+	}
+}
@@ -0,0 +1,114 @@
+package model.storage;
+
+import static model.TestUsers.user;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import model.PersistentUserDAO;
+import model.UserDTO;
+
+public class ShardedStorageTest {
+
+	private File directory;
+
+	@Before
+	public void setUp() throws Exception {
+		directory = Files.createTempDirectory("shardedstorage").toFile();
+	}
+
+	@After
+	public void tearDown() {
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+
+	private static ArrayList<UserDTO> users(int count) {
+		ArrayList<UserDTO> users = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			users.add(user(i));
+		}
+		return users;
+	}
+
+	private File shard(int shard, int shardCount) {
+		return new File(directory, "shard-" + shard + "-of-" + shardCount);
+	}
+
+	/**
+	 * Tests that a full write only rewrites the shards whose users changed, and that the users are read back.
+	 */
+	@Test
+	public void writeTest() throws Exception {
+		ShardedStorage storage = new ShardedStorage(directory.getPath(), 4);
+		ArrayList<UserDTO> users = users(100);
+		storage.write(users);
+		for (int i = 0; i < 4; i++) {
+			assertTrue(shard(i, 4).exists());
+			shard(i, 4).setLastModified(0);
+		}
+		UserDTO changed = user(42);
+		changed.setUserName("Changed");
+		users.set(42, changed);
+		storage.write(users);
+		for (int i = 0; i < 4; i++) {
+			assertEquals(i == storage.shardOf(42), shard(i, 4).lastModified() != 0);
+		}
+		storage.close();
+
+		ShardedStorage reopened = new ShardedStorage(directory.getPath(), 4);
+		assertEquals(users.toString(), sorted(reopened.read()).toString());
+		reopened.close();
+	}
+
+	/**
+	 * Tests that a DAO writes single changes to the shard of the user, and that the shards can be rebalanced.
+	 */
+	@Test
+	public void recordAndRebalanceTest() throws Exception {
+		ShardedStorage storage = new ShardedStorage(directory.getPath(), 3);
+		PersistentUserDAO dao = new PersistentUserDAO(storage);
+		dao.init();
+		for (int i = 0; i < 30; i++) {
+			dao.createUser(user(i));
+		}
+		dao.deleteUser(7);
+		dao.close();
+
+		try {
+			new ShardedStorage(directory.getPath(), 5).read();
+			fail("Another shard count should be rejected");
+		} catch (IOException e) {
+			// expected
+		}
+		assertEquals(29, ShardedStorage.rebalance(directory.getPath(), 5, BinaryFileStorage::new));
+		assertFalse(shard(0, 3).exists());
+		ShardedStorage rebalanced = new ShardedStorage(directory.getPath(), 5);
+		ArrayList<UserDTO> users = sorted(rebalanced.read());
+		rebalanced.close();
+		assertEquals(29, users.size());
+		assertFalse(users.toString().contains("userID = 7,"));
+		assertEquals(user(29).toString(), users.get(28).toString());
+	}
+
+	private static ArrayList<UserDTO> sorted(ArrayList<UserDTO> users) {
+		TreeMap<Integer, UserDTO> byId = new TreeMap<>();
+		for (UserDTO user : users) {
+			byId.put(user.getUserID(), user);
+		}
+		return new ArrayList<>(byId.values());
+	}
+}
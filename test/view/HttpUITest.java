@@ -0,0 +1,141 @@
+package view;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import control.Authenticator;
+import control.Ctrl;
+import model.PasswordHasher;
+import model.UserDAO;
+
+public class HttpUITest {
+
+	private static final String USER = "{\"ID\": 11, \"userName\": \"Peter Madsen\", \"ini\": \"pm\", \"cpr\": \"1402011234\", \"roles\": [\"Admin\"]}";
+
+	private Ctrl controller;
+	private HttpUI ui;
+
+	@Before
+	public void setUp() throws Exception {
+		UserDAO dao = new UserDAO();
+		controller = new Ctrl(dao, new Authenticator(dao, new PasswordHasher(1000), 2, 64, 60000, 100));
+		ui = new HttpUI(controller, 0, 4);
+		ui.start();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		ui.stop();
+		controller.closeStorage();
+	}
+
+	/**
+	 * Sends a request and returns the status followed by the body
+	 */
+	static String request(int port, String method, String path, String body) throws Exception {
+		HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + path).openConnection();
+		connection.setRequestMethod(method);
+		if (body != null) {
+			connection.setDoOutput(true);
+			try (OutputStream out = connection.getOutputStream()) {
+				out.write(body.getBytes(StandardCharsets.UTF_8));
+			}
+		}
+		int status = connection.getResponseCode();
+		InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		if (in != null) {
+			byte[] buffer = new byte[4096];
+			int n;
+			while ((n = in.read(buffer)) >= 0) {
+				bytes.write(buffer, 0, n);
+			}
+			in.close();
+		}
+		return status + " " + new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private String request(String method, String path, String body) throws Exception {
+		return request(ui.getPort(), method, path, body);
+	}
+
+	/**
+	 * Tests creating, getting, listing, editing and deleting a user over HTTP, and that passwords aren't returned.
+	 */
+	@Test
+	public void crudTest() throws Exception {
+		String created = request("POST", "/users", USER);
+		assertTrue(created, created.startsWith("201 {\"userID\":11,\"password\":\""));
+		String password = created.substring(created.indexOf("password\":\"") + 11, created.lastIndexOf('"'));
+		assertTrue(controller.authenticate(11, password));
+
+		assertEquals("200 {\"userID\":11,\"userName\":\"Peter Madsen\",\"ini\":\"PM\",\"cpr\":\"1402011234\",\"roles\":[\"admin\"]}",
+				request("GET", "/users/11", null));
+		assertTrue(request("GET", "/users", null).startsWith("200 [{\"userID\":11,"));
+		assertEquals("200 {\"exists\":true}", request("GET", "/users/11/exists", null));
+
+		assertEquals("204 ", request("PUT", "/users/11", "{\"userName\": \"Peter Jensen\", \"password\": \"Ab12!cdeFG\"}"));
+		assertTrue(request("GET", "/users/11", null).contains("\"userName\":\"Peter Jensen\""));
+		assertTrue(controller.authenticate(11, "Ab12!cdeFG"));
+		assertFalse(request("GET", "/users", null).contains("password"));
+
+		assertEquals("204 ", request("DELETE", "/users/11", null));
+		assertEquals("200 {\"exists\":false}", request("GET", "/users/11/exists", null));
+		String allocated = request("POST", "/users", USER.replace("\"ID\": 11, ", ""));
+		assertTrue(allocated, allocated.startsWith("201 {\"userID\":11,"));
+	}
+
+	/**
+	 * Tests that invalid and conflicting requests are answered with an error status.
+	 */
+	@Test
+	public void errorTest() throws Exception {
+		assertEquals("201", request("POST", "/users", USER).substring(0, 3));
+		assertEquals("409", request("POST", "/users", USER).substring(0, 3));
+		assertTrue(request("POST", "/users", "{\"ID\": 5}").startsWith("400 {\"errors\":[\"Invalid ID: 5\",\"No user name provided\""));
+		assertEquals("400", request("POST", "/users", "not json").substring(0, 3));
+		assertEquals("400 {\"errors\":[\"Invalid CPR: 123\"]}", request("PUT", "/users/11", "{\"cpr\": \"123\"}"));
+		assertEquals("404", request("GET", "/users/12", null).substring(0, 3));
+		assertEquals("404", request("PUT", "/users/12", "{\"ini\": \"AB\"}").substring(0, 3));
+		assertEquals("404", request("DELETE", "/users/12", null).substring(0, 3));
+		assertEquals("404", request("GET", "/users/abc", null).substring(0, 3));
+		assertEquals("405", request("DELETE", "/users", null).substring(0, 3));
+	}
+
+	/**
+	 * Tests that concurrent edits of different fields of the same user are all kept.
+	 */
+	@Test
+	public void concurrentEditTest() throws Exception {
+		request("POST", "/users", USER);
+		ExecutorService clients = Executors.newFixedThreadPool(8);
+		List<Future<String>> responses = new ArrayList<>();
+		for (int i = 0; i < 40; i++) {
+			String body = i % 2 == 0 ? "{\"userName\": \"Name " + i + "\"}" : "{\"ini\": \"I" + i + "\"}";
+			responses.add(clients.submit(() -> request("PUT", "/users/11", body)));
+		}
+		for (Future<String> response : responses) {
+			assertEquals("204 ", response.get());
+		}
+		clients.shutdown();
+		String user = request("GET", "/users/11", null);
+		assertTrue(user, user.contains("\"userName\":\"Name ") && user.contains("\"ini\":\"I"));
+	}
+}